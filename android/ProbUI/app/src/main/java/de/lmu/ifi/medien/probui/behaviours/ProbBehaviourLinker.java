@@ -19,7 +19,11 @@ along with this program. If not, see <http://www.gnu.org/licenses/>.
 
 package de.lmu.ifi.medien.probui.behaviours;
 
+import android.util.Log;
+
+import be.ac.ulg.montefiore.run.jahmm.io.FileFormatException;
 import de.lmu.ifi.medien.probui.gui.ProbInteractor;
+import de.lmu.ifi.medien.probui.pml.PMLAssetLibrary;
 import de.lmu.ifi.medien.probui.pml.PMLBehaviourListener;
 import de.lmu.ifi.medien.probui.pml.PMLParserTouch;
 import de.lmu.ifi.medien.probui.pml.PMLParserTouchImpl;
@@ -65,6 +69,53 @@ public class ProbBehaviourLinker {
     }
 
 
+    /**
+     * Adds the touch behaviour with the given label in the given library to the given interactor.
+     * The behaviour's model is decoded on first use and placed relative to the interactor's view,
+     * as if its PML statement had been parsed.
+     *
+     * @param interactor
+     * @param library
+     * @param label
+     * @param addToExistingBehaviours If true, behaviours attached to the interactor are kept;
+     *                                if false, all existing behaviour are removed before linking.
+     * @param listener
+     * @param ddensity
+     * @return The behaviour, or null if the library has no (valid) behaviour with the given label.
+     */
+    public static ProbBehaviourTouch linkLibraryBehaviourTouch(ProbInteractor interactor, PMLAssetLibrary library, String label, boolean addToExistingBehaviours, PMLBehaviourListener listener, float ddensity) {
+
+        // Create the behaviour from the library:
+        ProbBehaviourTouch behaviour;
+        try {
+            behaviour = library.createBehaviour(label,
+                    interactor.getView().getX(), interactor.getView().getY(),
+                    interactor.getView().getWidth(), interactor.getView().getHeight(),
+                    interactor.getCore().getSurfaceWidth(), interactor.getCore().getSurfaceHeight(), ddensity);
+        } catch (FileFormatException e) {
+            Log.e("ProbBehaviourLinker", "Could not create library behaviour " + label + ": " + e.getMessage());
+            return null;
+        }
+        if (behaviour == null)
+            return null;
+
+        // Delete all existing behaviours:
+        if (!addToExistingBehaviours) {
+            interactor.getCore().clearBehaviours();
+        }
+
+        // Add the listener if available:
+        if (listener != null) {
+            behaviour.setListenerForPML(listener);
+        }
+
+        // Add the behaviour:
+        interactor.getCore().addBehaviour(behaviour);
+
+        return behaviour;
+    }
+
+
     /**
      * Adds the given preset touch behaviour to the given interactor.
      *
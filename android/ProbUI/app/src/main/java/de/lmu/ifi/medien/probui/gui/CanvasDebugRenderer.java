@@ -0,0 +1,81 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.gui;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+
+import de.lmu.ifi.medien.probui.behaviours.ProbDebugRenderer;
+
+/**
+ * Draws the debug visualisations of behaviours on an Android canvas.
+ */
+public class CanvasDebugRenderer implements ProbDebugRenderer {
+
+
+    private final Paint paint;
+
+    private final RectF rect = new RectF();
+
+    private Canvas canvas;
+
+
+    public CanvasDebugRenderer() {
+        this.paint = new Paint();
+        this.paint.setStrokeWidth(12);
+        this.paint.setStyle(Paint.Style.STROKE);
+    }
+
+
+    /**
+     * Sets the canvas to draw on (e.g. in onDraw).
+     *
+     * @param canvas
+     */
+    public void setCanvas(Canvas canvas) {
+        this.canvas = canvas;
+    }
+
+
+    @Override
+    public void drawCircle(float cx, float cy, float radius, int color) {
+        this.paint.setColor(color);
+        this.canvas.drawCircle(cx, cy, radius, this.paint);
+    }
+
+
+    @Override
+    public void drawOval(float left, float top, float right, float bottom, float degrees, int color) {
+        this.paint.setColor(color);
+        this.rect.set(left, top, right, bottom);
+        this.canvas.save();
+        this.canvas.rotate(degrees, (left + right) / 2, (top + bottom) / 2);
+        this.canvas.drawOval(this.rect, this.paint);
+        this.canvas.restore();
+    }
+
+
+    @Override
+    public void drawLine(float startX, float startY, float stopX, float stopY, int color) {
+        this.paint.setColor(color);
+        this.canvas.drawLine(startX, startY, stopX, stopY, this.paint);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.pml;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import be.ac.ulg.montefiore.run.jahmm.io.FileFormatException;
+
+/**
+ * Opens {@link PMLAssetLibrary PML asset libraries} in the assets of an app.
+ */
+public class PMLAssetLibraryLoader {
+
+
+    /**
+     * Opens the library in the given asset. Uncompressed assets are memory-mapped,
+     * compressed ones are read completely.
+     *
+     * @param assets
+     * @param path
+     * @return
+     * @throws IOException
+     * @throws FileFormatException
+     */
+    public static PMLAssetLibrary open(AssetManager assets, String path) throws IOException, FileFormatException {
+
+        // 1. Map the asset (in the apk) if it is not compressed:
+        AssetFileDescriptor descriptor;
+        try {
+            descriptor = assets.openFd(path);
+        } catch (FileNotFoundException e) { // compressed
+            descriptor = null;
+        }
+        if (descriptor != null) {
+            FileInputStream stream = descriptor.createInputStream();
+            try {
+                return PMLAssetLibrary.open(stream.getChannel(), descriptor.getStartOffset(), descriptor.getLength());
+            } finally {
+                stream.close(); // the mapping stays valid
+                descriptor.close();
+            }
+        }
+
+        // 2. Otherwise, read it:
+        InputStream stream = assets.open(path);
+        try {
+            return PMLAssetLibrary.read(stream);
+        } finally {
+            stream.close();
+        }
+    }
+}
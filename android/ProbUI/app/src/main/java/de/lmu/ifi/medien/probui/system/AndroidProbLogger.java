@@ -0,0 +1,48 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.system;
+
+import android.util.Log;
+
+/**
+ * Forwards the log messages of the reasoning core to the Android log (see {@link ProbLog}).
+ * Installed by the {@link ProbUIManager}, unless another logger has been set.
+ */
+public class AndroidProbLogger implements ProbLogger {
+
+
+    @Override
+    public boolean isLoggable(String tag, int level) {
+        return true; // as android.util.Log, which is filtered by logcat
+    }
+
+
+    @Override
+    public void log(int level, String tag, String message, Throwable throwable) {
+        if (level >= ProbLog.ERROR)
+            Log.e(tag, message, throwable);
+        else if (level >= ProbLog.WARN)
+            Log.w(tag, message, throwable);
+        else if (level >= ProbLog.INFO)
+            Log.i(tag, message);
+        else
+            Log.d(tag, message);
+    }
+}
@@ -25,16 +25,29 @@ import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewTreeObserver;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
+import be.ac.ulg.montefiore.run.jahmm.io.FileFormatException;
 import de.lmu.ifi.medien.probui.R;
+import de.lmu.ifi.medien.probui.behaviours.ProbBehaviour;
 import de.lmu.ifi.medien.probui.behaviours.ProbBehaviourLinker;
+import de.lmu.ifi.medien.probui.behaviours.ProbBehaviourTouch;
 import de.lmu.ifi.medien.probui.exceptions.WrongObservationDelegationException;
 import de.lmu.ifi.medien.probui.gui.ProbInteractor;
+import de.lmu.ifi.medien.probui.gui.ProbInteractorBase;
 import de.lmu.ifi.medien.probui.gui.ProbUIContainer;
 import de.lmu.ifi.medien.probui.observations.ProbObservationFactory;
 import de.lmu.ifi.medien.probui.observations.ProbObservationTouch;
+import de.lmu.ifi.medien.probui.pml.PMLAssetLibrary;
+import de.lmu.ifi.medien.probui.pml.PMLBehaviourLibrary;
+import de.lmu.ifi.medien.probui.pml.PMLBehaviourLibraryWriter;
 
 /**
  * Created by Daniel on 05.07.2015.
@@ -42,6 +55,18 @@ import de.lmu.ifi.medien.probui.observations.ProbObservationTouch;
 public class ProbUIManager {
 
 
+    /**
+     * Magic number ("PUIS") and version of the states written by {@link #saveState()}.
+     */
+    public static final int STATE_MAGIC = 0x50554953;
+    public static final short STATE_VERSION = 1;
+
+    /**
+     * Tolerance for the (relative) bounds of an interactor to count as unchanged when restoring a state.
+     */
+    private static final float STATE_BOUNDS_TOLERANCE = 0.001f;
+
+
     /**
      * Instance for the singleton pattern.
      */
@@ -71,6 +96,12 @@ public class ProbUIManager {
      */
     protected ProbUIMediator mediator;
 
+    /**
+     * Passes the touch observations to the interactors and the mediator
+     * (the same pipeline as in TouchTraceReplay).
+     */
+    private TouchEventDispatcher dispatcher;
+
 
     /**
      * Array to hold last touch observations.
@@ -91,8 +122,33 @@ public class ProbUIManager {
     private MotionEvent lastTouchEvent;
 
 
+    /**
+     * Records the managed touch observations (if set).
+     */
+    private TouchTraceRecorder traceRecorder;
+
+    /**
+     * Records the reasoning per touch event (if set).
+     */
+    private InferenceTelemetrySink telemetrySink;
+
+    /**
+     * A state to restore when finalising the setup (see {@link #restoreState(byte[])}).
+     */
+    private byte[] stateToRestore;
+
+    /**
+     * Named behaviours and rules for the managed interactors (if set).
+     */
+    private PMLAssetLibrary behaviourLibrary;
+
+
     public ProbUIManager(View view, int containerID) {
 
+        // Log the messages of the reasoning core to the Android log (unless another logger has been set):
+        if (ProbLog.getLogger() == ProbLog.STANDARD_ERROR)
+            ProbLog.setLogger(new AndroidProbLogger());
+
         this.view = view;
         container = (ProbUIContainer) view.findViewById(containerID);
         container.registerProbUIManager(this);
@@ -116,6 +172,7 @@ public class ProbUIManager {
 
         // init mediator:
         this.mediator = new ProbUIMediatorImpl();
+        this.dispatcher = new TouchEventDispatcher(this.probInteractors, this.mediator);
     }
 
 
@@ -130,6 +187,8 @@ public class ProbUIManager {
         this.probInteractors.add(interactor);
         this.mediator.addInteractor(interactor);
         interactor.getCore().setMediationRequestListener(this.mediator);
+        if (this.behaviourLibrary != null)
+            interactor.getCore().setBehaviourLibrary(this.behaviourLibrary);
     }
 
 
@@ -153,16 +212,30 @@ public class ProbUIManager {
             return;
         this.setupFinalised = true;
 
+        // restored states of the probInteractors (their behaviours are used instead of parsing PML again):
+        List<RestoredInteractor> restored = this.readStateToRestore();
+        for (int k = 0; k < restored.size(); k++) {
+            if (restored.get(k) != null)
+                this.probInteractors.get(k).getCore().setRestoredBehaviours(restored.get(k).behaviours);
+        }
+
         // call on setup of the probInteractors:
-        for (ProbInteractor interactor : this.probInteractors) {
+        for (int k = 0; k < this.probInteractors.size(); k++) {
+            ProbInteractor interactor = this.probInteractors.get(k);
             interactor.onProbSetup();
-            interactor.getCore().setReady();
+            if (restored.get(k) != null)
+                interactor.getCore().finaliseBehaviourSetup(restored.get(k).getPrior(interactor.getCore().getBehaviours()));
+            else
+                interactor.getCore().setReady();
         }
 
         // add a default touch pattern:
-        for (ProbInteractor interactor : this.probInteractors) {
+        for (int k = 0; k < this.probInteractors.size(); k++) {
+            ProbInteractor interactor = this.probInteractors.get(k);
             String[] bbs = interactor.getDefaultBehaviours();
-            if (bbs != null && bbs.length > 0)
+            if (bbs != null && bbs.length > 0) {
+                if (restored.get(k) != null && restored.get(k).linkBehaviours(interactor))
+                    continue;
                 for (int i = 0; i < bbs.length; i++) {
                     ProbBehaviourLinker.linkPresetProbBehaviourTouch(
                             this,
@@ -171,8 +244,343 @@ public class ProbUIManager {
                             i > 0,
                             this.view.getContext().getResources().getDisplayMetrics().density);
                 }
+            }
+        }
+
+        // restore the reasoning state:
+        for (int k = 0; k < restored.size(); k++) {
+            if (restored.get(k) != null) {
+                this.probInteractors.get(k).getCore().setRestoredBehaviours(null);
+                try {
+                    this.probInteractors.get(k).getCore().readState(
+                            new DataInputStream(new ByteArrayInputStream(restored.get(k).coreState)));
+                } catch (IOException e) {
+                    Log.w("ProbUIManager", "Could not restore the reasoning state of interactor " + k + ": " + e.getMessage());
+                    restored.set(k, null);
+                }
+            }
+        }
+        if (this.stateToRestore != null) {
+            this.readReasoningState(restored);
+            this.stateToRestore = null;
+        }
+    }
+
+
+    /**
+     * Saves the models and the reasoning state of all managed interactors
+     * (incl. the state of in-progress touch interactions) into a compact byte array,
+     * e.g. to put it into the Bundle in Activity.onSaveInstanceState.
+     * <p/>
+     * Format (version 1, big-endian):
+     * <pre>
+     * int magic ("PUIS"), short version
+     * int number of interactors, for each: int length, record:
+     *     byte restorable (0: nothing follows, e.g. for behaviours without unique labels)
+     *     4 floats x, y, width, height of the interactor relative to the surface (-1 if it has no view)
+     *     int length, behaviour library (see {@link PMLBehaviourLibrary})
+     *     int number of behaviours, for each: UTF label, double prior
+     *     int length, reasoning state of the core (see {@link ProbInteractorCore#writeState(DataOutputStream)})
+     * int number of candidates of the mediator, int index of each candidate
+     * int number of previous touch observations, for each: boolean present, observation
+     * </pre>
+     *
+     * @return
+     */
+    public byte[] saveState() {
+
+        if (!this.setupFinalised)
+            throw new IllegalStateException("Cannot save the state before the setup is finalised");
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(STATE_MAGIC);
+            out.writeShort(STATE_VERSION);
+
+            // 1. Interactors:
+            out.writeInt(this.probInteractors.size());
+            for (ProbInteractor interactor : this.probInteractors) {
+                byte[] record = this.writeInteractorState(interactor);
+                out.writeInt(record.length);
+                out.write(record);
+            }
+
+            // 2. Mediator:
+            List<ProbInteractorBase> candidates = this.mediator.getCandidates();
+            out.writeInt(candidates.size());
+            for (ProbInteractorBase candidate : candidates)
+                out.writeInt(this.probInteractors.indexOf(candidate));
+
+            // 3. Observations for the move filter:
+            out.writeInt(this.previousTouchObservations.size());
+            for (ProbObservationTouch obs : this.previousTouchObservations) {
+                out.writeBoolean(obs != null);
+                if (obs != null)
+                    obs.write(out);
+            }
+
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // not thrown by byte array streams
+        }
+    }
+
+
+    /**
+     * Restores a state saved by {@link #saveState()}, e.g. from the Bundle in Activity.onCreate
+     * after a configuration change. Must be called before the setup is finalised, i.e. right after
+     * creating this manager and adding the interactors.
+     * <p/>
+     * The interactors are still set up as usual (so that their listeners and rules are set), but their behaviours
+     * are taken from the state instead of parsing PML again. Then their reasoning state is restored,
+     * so that in-progress touch interactions continue seamlessly. This is skipped for interactors whose
+     * bounds (relative to the surface) or behaviours have changed, e.g. after a rotation with a different layout.
+     *
+     * @param state
+     */
+    public void restoreState(byte[] state) {
+
+        if (this.setupFinalised)
+            throw new IllegalStateException("The state must be restored before the setup is finalised");
+        if (state.length < 6 || ByteBuffer.wrap(state).getInt(0) != STATE_MAGIC)
+            throw new IllegalArgumentException("Not a ProbUI state");
+        if (ByteBuffer.wrap(state).getShort(4) != STATE_VERSION)
+            throw new IllegalArgumentException("Unsupported ProbUI state version: " + ByteBuffer.wrap(state).getShort(4));
+        this.stateToRestore = state;
+    }
+
+
+    private byte[] writeInteractorState(ProbInteractor interactor) throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        // 1. Models (only behaviours with unique labels can be found again when restoring):
+        List<ProbBehaviour> behaviours = interactor.getCore().getBehaviours();
+        List<ProbBehaviourTouch> touchBehaviours = interactor.getCore().getBehavioursTouch();
+        ByteArrayOutputStream library = new ByteArrayOutputStream();
+        boolean restorable = touchBehaviours.size() == behaviours.size();
+        for (ProbBehaviourTouch behaviour : touchBehaviours)
+            restorable &= behaviour.getLabel() != null;
+        if (restorable) {
+            try {
+                PMLBehaviourLibraryWriter.write(library, touchBehaviours);
+            } catch (IllegalArgumentException e) { // duplicate labels, or no sequence rules
+                restorable = false;
+            }
+        }
+        out.writeBoolean(restorable);
+        if (!restorable) {
+            out.flush();
+            return bytes.toByteArray();
+        }
+
+        // 2. Bounds:
+        float[] bounds = this.getRelativeBounds(interactor);
+        for (float b : bounds)
+            out.writeFloat(b);
+        out.writeInt(library.size());
+        library.writeTo(out);
+
+        // 3. Behaviour order and prior:
+        double[] prior = interactor.getCore().getBehavioursPrior();
+        out.writeInt(behaviours.size());
+        for (int i = 0; i < behaviours.size(); i++) {
+            out.writeUTF(behaviours.get(i).getLabel());
+            out.writeDouble(prior[i]);
+        }
+
+        // 4. Reasoning state:
+        ByteArrayOutputStream coreState = new ByteArrayOutputStream();
+        DataOutputStream coreOut = new DataOutputStream(coreState);
+        interactor.getCore().writeState(coreOut);
+        coreOut.flush();
+        out.writeInt(coreState.size());
+        coreState.writeTo(out);
+
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+
+    /**
+     * Reads the interactor records of the state to restore.
+     *
+     * @return The records (null for interactors without a restorable record), in the order of the interactors.
+     */
+    private List<RestoredInteractor> readStateToRestore() {
+
+        List<RestoredInteractor> restored = new ArrayList<RestoredInteractor>();
+        for (int k = 0; k < this.probInteractors.size(); k++)
+            restored.add(null);
+        if (this.stateToRestore == null)
+            return restored;
+
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(this.stateToRestore, 6,
+                    this.stateToRestore.length - 6));
+            int numInteractors = in.readInt();
+            if (numInteractors != this.probInteractors.size()) {
+                Log.w("ProbUIManager", "State for " + numInteractors + " interactors instead of "
+                        + this.probInteractors.size() + ", not restored");
+                this.stateToRestore = null;
+                return restored;
+            }
+            for (int k = 0; k < numInteractors; k++) {
+                byte[] record = new byte[in.readInt()];
+                in.readFully(record);
+                restored.set(k, this.readInteractorState(this.probInteractors.get(k), record));
+            }
+        } catch (IOException e) {
+            Log.w("ProbUIManager", "Corrupt state, not restored: " + e.getMessage());
+            this.stateToRestore = null;
+            for (int k = 0; k < restored.size(); k++)
+                restored.set(k, null);
+        }
+        return restored;
+    }
+
+
+    private RestoredInteractor readInteractorState(ProbInteractor interactor, byte[] record) throws IOException {
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        if (!in.readBoolean())
+            return null;
+
+        // 1. Bounds:
+        float[] bounds = this.getRelativeBounds(interactor);
+        for (float b : bounds) {
+            if (Math.abs(in.readFloat() - b) > STATE_BOUNDS_TOLERANCE)
+                return null; // moved or resized, so the models do not fit anymore
+        }
+
+        RestoredInteractor restored = new RestoredInteractor();
+        byte[] library = new byte[in.readInt()];
+        in.readFully(library);
+        try {
+            restored.behaviours = new PMLBehaviourLibrary(ByteBuffer.wrap(library));
+        } catch (FileFormatException e) {
+            throw new IOException(e.getMessage());
+        }
+
+        // 2. Behaviour order and prior:
+        int numBehaviours = in.readInt();
+        restored.labels = new String[numBehaviours];
+        restored.prior = new double[numBehaviours];
+        for (int i = 0; i < numBehaviours; i++) {
+            restored.labels[i] = in.readUTF();
+            restored.prior[i] = in.readDouble();
         }
 
+        // 3. Reasoning state:
+        restored.coreState = new byte[in.readInt()];
+        in.readFully(restored.coreState);
+        return restored;
+    }
+
+
+    /**
+     * Restores the state of the mediator and of this manager, after the interactors have been restored.
+     *
+     * @param restored
+     */
+    private void readReasoningState(List<RestoredInteractor> restored) {
+
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(this.stateToRestore, 6,
+                    this.stateToRestore.length - 6));
+            int numInteractors = in.readInt();
+            for (int k = 0; k < numInteractors; k++)
+                in.skipBytes(in.readInt());
+
+            // 1. Mediator (only restored interactors can still be candidates):
+            List<ProbInteractorBase> candidates = new ArrayList<ProbInteractorBase>();
+            int numCandidates = in.readInt();
+            for (int i = 0; i < numCandidates; i++) {
+                int k = in.readInt();
+                if (k >= 0 && k < restored.size() && restored.get(k) != null)
+                    candidates.add(this.probInteractors.get(k));
+            }
+            this.mediator.setCandidates(candidates);
+
+            // 2. Observations for the move filter:
+            this.previousTouchObservations.clear();
+            int numObservations = in.readInt();
+            for (int i = 0; i < numObservations; i++)
+                this.previousTouchObservations.add(in.readBoolean() ? ProbObservationTouch.read(in) : null);
+        } catch (IOException e) {
+            Log.w("ProbUIManager", "Could not restore the mediation state: " + e.getMessage());
+            this.previousTouchObservations.clear();
+        }
+    }
+
+
+    /**
+     * Returns the bounds of the given interactor relative to the surface, or -1s if it has no view.
+     *
+     * @param interactor
+     * @return
+     */
+    private float[] getRelativeBounds(ProbInteractor interactor) {
+        View view = interactor.getView();
+        if (view == null || this.screenWidth == 0 || this.screenHeight == 0)
+            return new float[]{-1, -1, -1, -1};
+        return new float[]{
+                view.getX() / this.screenWidth, view.getY() / this.screenHeight,
+                view.getWidth() * 1f / this.screenWidth, view.getHeight() * 1f / this.screenHeight};
+    }
+
+
+    /**
+     * The record of an interactor in a state to restore.
+     */
+    private static class RestoredInteractor {
+
+        PMLBehaviourLibrary behaviours;
+        String[] labels;
+        double[] prior;
+        byte[] coreState;
+
+
+        /**
+         * Returns the saved prior, if the given behaviours are the saved ones.
+         *
+         * @param behaviours
+         * @return The prior, or null for a uniform one.
+         */
+        double[] getPrior(List<ProbBehaviour> behaviours) {
+            if (behaviours.size() != this.labels.length)
+                return null;
+            for (int i = 0; i < this.labels.length; i++) {
+                if (!this.labels[i].equals(behaviours.get(i).getLabel()))
+                    return null;
+            }
+            return this.prior.clone();
+        }
+
+
+        /**
+         * Replaces the behaviours of the given interactor with the saved ones (e.g. instead of its presets).
+         *
+         * @param interactor
+         * @return False if the saved behaviours could not be created.
+         */
+        boolean linkBehaviours(ProbInteractor interactor) {
+            List<ProbBehaviourTouch> created = new ArrayList<ProbBehaviourTouch>();
+            for (String label : this.labels) {
+                ProbBehaviourTouch behaviour = interactor.getCore().createRestoredBehaviour(label);
+                if (behaviour == null)
+                    return false;
+                created.add(behaviour);
+            }
+            interactor.getCore().clearBehaviours();
+            for (ProbBehaviourTouch behaviour : created)
+                interactor.getCore().addBehaviour(behaviour);
+            interactor.getCore().finaliseBehaviourSetup(this.prior.clone());
+            return true;
+        }
     }
 
 
@@ -189,6 +597,64 @@ public class ProbUIManager {
     }
 
 
+    /**
+     * Sets the recorder to which all managed touch observations are recorded,
+     * together with the resulting determination and posterior (null to stop recording).
+     * The recorder is not closed by this manager.
+     *
+     * @param traceRecorder
+     */
+    public void setTraceRecorder(TouchTraceRecorder traceRecorder) {
+        if (this.traceRecorder != null)
+            this.traceRecorder.flush();
+        this.traceRecorder = traceRecorder;
+    }
+
+
+    public TouchTraceRecorder getTraceRecorder() {
+        return this.traceRecorder;
+    }
+
+
+    /**
+     * Sets the sink to which the reasoning (evidence, posteriors, rule outcomes and timings)
+     * is recorded for each managed touch event (null to stop recording).
+     * The sink is not closed by this manager.
+     *
+     * @param telemetrySink
+     */
+    public void setTelemetrySink(InferenceTelemetrySink telemetrySink) {
+        if (this.telemetrySink != null)
+            this.telemetrySink.flush();
+        this.telemetrySink = telemetrySink;
+    }
+
+
+    public InferenceTelemetrySink getTelemetrySink() {
+        return this.telemetrySink;
+    }
+
+
+    /**
+     * Sets a library of named behaviours and rules (e.g. opened from the app's assets with
+     * {@link de.lmu.ifi.medien.probui.pml.PMLAssetLibraryLoader#open(android.content.res.AssetManager, String)}) for all managed interactors,
+     * so that they can add behaviours and rules by their labels in {@link ProbInteractor#onProbSetup()}.
+     *
+     * @param behaviourLibrary
+     */
+    public void setBehaviourLibrary(PMLAssetLibrary behaviourLibrary) {
+        this.behaviourLibrary = behaviourLibrary;
+        for (ProbInteractor interactor : this.probInteractors) {
+            interactor.getCore().setBehaviourLibrary(behaviourLibrary);
+        }
+    }
+
+
+    public PMLAssetLibrary getBehaviourLibrary() {
+        return this.behaviourLibrary;
+    }
+
+
     /**
      * Called by the container ViewGroup when a touch event is received.
      *
@@ -203,6 +669,10 @@ public class ProbUIManager {
 
     public void manageHelper(MotionEvent ev) throws WrongObservationDelegationException {
 
+        // Timings are only taken for the telemetry:
+        boolean timed = this.telemetrySink != null;
+        long startTime = timed ? System.nanoTime() : 0;
+
         this.currentTouchObservations.clear();
 
         int action = MotionEventCompat.getActionMasked(ev);
@@ -253,96 +723,12 @@ public class ProbUIManager {
 
         //Log.d("MULTITOUCH", "type: " + type + ", index: " + pointerID + ", size: " + ev.getTouchMajor(index) * 1.0 / container.getHeight());
 
-        // Distribute touch observation to the cores of all probInteractors
-        // (for reasoning by these interactor cores!, not for visual feedback etc. - that comes below: interactor.onTouchDown etc.)
-        boolean passedOn = false;
-        for (ProbInteractor interactor : this.probInteractors) {
-
-            for (int i = 0; i < this.currentTouchObservations.size(); i++) {
-                ProbObservationTouch obs = this.currentTouchObservations.get(i);
-                if (obs == null) continue;
-                if (obs.getNominalFeatures()[0] != ProbObservationTouch.TYPE_TOUCH_MOVE
-                        || this.currentTouchObservations.size() != this.previousTouchObservations.size()) {
-                    interactor.getCore().onTouchObservation(obs);
-                    passedOn = true;
-                } else { // This code filters out move events that moved very little (potentially improves performance):
-                    double[] obsXY = this.currentTouchObservations.get(i).getRealFeatures();
-                    double[] obsPrevXY = this.previousTouchObservations.get(i).getRealFeatures();
-                    double dx = obsXY[0] - obsPrevXY[0];
-                    double dy = obsXY[1] - obsPrevXY[1];
-                    double dist = Math.sqrt(dx * dx + dy * dy);
-                    if (dist > 0.0125) { // TODO: movement threshold currently hardcoded: 0.0125
-                        interactor.getCore().onTouchObservation(obs);
-                        passedOn = true;
-                    } else {
-                    }
-                }
-            }
-
-        }
-
-        if (passedOn) {
-            this.previousTouchObservations.clear();
-            this.previousTouchObservations.addAll(this.currentTouchObservations);
-        }
-
-
-        // Forward the touch observation for probInteractors
-        // to react (e.g. visual feedback, triggering actions, nothing to do with the mediation):
-        for (ProbInteractor interactor : this.probInteractors) {
-            for (ProbObservationTouch obs : this.currentTouchObservations) {
-                if (obs != null) {
-                    switch (obs.getNominalFeatures()[0]) {
-
-                        case ProbObservationTouch.TYPE_TOUCH_DOWN:
-                            interactor.onTouchDown(obs);
-                            break;
-
-                        case ProbObservationTouch.TYPE_TOUCH_MOVE:
-                            interactor.onTouchMove(obs);
-                            break;
-
-                        case ProbObservationTouch.TYPE_TOUCH_UP:
-                            interactor.onTouchUp(obs, ev.getPointerCount() - 1);
-                            break;
-                        default:
-                            break;
-                    }
-                }
-            }
-        }
-
-
-        // If no element is determined yet (i.e. no decision yet), update the reasoning process.
-        if (!isOneDetermined() && passedOn) {
-            this.mediator.mediate(false);
-        }
-
-
-        // Post mediation: Forward the touch observation again
-        // to the post-mediation versions of the onTouch... methods
-        for (ProbInteractor interactor : this.probInteractors) {
-            for (ProbObservationTouch obs : this.currentTouchObservations) {
-                if (obs != null) {
-                    switch (obs.getNominalFeatures()[0]) {
-
-                        case ProbObservationTouch.TYPE_TOUCH_DOWN:
-                            interactor.onTouchDownPost(obs);
-                            break;
-
-                        case ProbObservationTouch.TYPE_TOUCH_MOVE:
-                            interactor.onTouchMovePost(obs);
-                            break;
-
-                        case ProbObservationTouch.TYPE_TOUCH_UP:
-                            interactor.onTouchUpPost(obs, ev.getPointerCount() - 1);
-                            break;
-                        default:
-                            break;
-                    }
-                }
-            }
-        }
+        // Distribute the touch observations to the cores, notify the probInteractors and mediate:
+        double moveDistance = timed ?
+                ProbObservationTouch.getMoveDistance(this.currentTouchObservations, this.previousTouchObservations, 0) : Double.NaN;
+        this.dispatcher.setTimed(timed);
+        boolean passedOn = this.dispatcher.dispatch(this.currentTouchObservations, this.previousTouchObservations,
+                ev.getPointerCount() - 1);
 
 
         // Pass on to other GUI elements:
@@ -352,6 +738,19 @@ public class ProbUIManager {
                     view.onTouchEvent(ev);
             }
         }
+
+
+        // Record the observations with the resulting state of the interactors:
+        if (this.traceRecorder != null) {
+            this.traceRecorder.record(this.currentTouchObservations, this.probInteractors,
+                    this.container.getWidth(), this.container.getHeight());
+        }
+
+        // Record the reasoning:
+        if (timed) {
+            this.telemetrySink.record(this.currentTouchObservations, passedOn, moveDistance, this.probInteractors,
+                    this.dispatcher.getObserveTime(), this.dispatcher.getMediateTime(), System.nanoTime() - startTime);
+        }
     }
 
 
@@ -361,12 +760,7 @@ public class ProbUIManager {
      * @return
      */
     public boolean isOneDetermined() {
-        for (ProbInteractor interactor : this.probInteractors) {
-            if (interactor.getCore().isDetermined()) {
-                return true;
-            }
-        }
-        return false;
+        return this.dispatcher.isOneDetermined();
     }
 
 
@@ -88,7 +88,19 @@ implements RandomDistribution {
 	
 	public double generate()
 	{
-		return randomGenerator.nextGaussian() * deviation + mean;
+		return generate(randomGenerator);
+	}
+	
+	
+	/**
+	 * Generates a pseudo-random number according to this distribution.
+	 *
+	 * @param random The generator of the random numbers.
+	 * @return A pseudo-random number.
+	 */
+	public double generate(Random random)
+	{
+		return random.nextGaussian() * deviation + mean;
 	}
 	
 	
@@ -33,8 +33,9 @@ public class MultiGaussianDistribution
     final private int dimension;
     final private double[] mean;
     final private double[][] covariance;
-    private double[][] covarianceL = null; // covariance' Cholesky decomposition
-    private double[][] covarianceInv = null;
+    // Computed lazily; volatile so that a distribution can be evaluated by several threads:
+    private volatile double[][] covarianceL = null; // covariance' Cholesky decomposition
+    private volatile double[][] covarianceInv = null;
     private double covarianceDet;
     private final static Random randomGenerator = new Random();
 
@@ -115,20 +116,23 @@ public class MultiGaussianDistribution
 
 
     private double[][] covarianceL() {
-        if (covarianceL == null) {
-            covarianceL = SimpleMatrix.decomposeCholesky(covariance);
-            covarianceDet = SimpleMatrix.determinantCholesky(covarianceL);
+        double[][] l = covarianceL;
+        if (l == null) {
+            l = SimpleMatrix.decomposeCholesky(covariance);
+            covarianceDet = SimpleMatrix.determinantCholesky(l);
+            covarianceL = l; // published after the determinant
         }
 
-        return covarianceL;
+        return l;
     }
 
 
     private double[][] covarianceInv() {
-        if (covarianceInv == null)
-            covarianceInv = SimpleMatrix.inverseCholesky(covarianceL());
+        double[][] inv = covarianceInv;
+        if (inv == null)
+            covarianceInv = inv = SimpleMatrix.inverseCholesky(covarianceL());
 
-        return covarianceInv;
+        return inv;
     }
 
 
@@ -152,12 +156,34 @@ public class MultiGaussianDistribution
      * @return A pseudo-random vector.
      */
     public double[] generate() {
-        double[] d = SimpleMatrix.vector(dimension);
+        return generate(randomGenerator, new double[dimension]);
+    }
+
+
+    /**
+     * Generates a pseudo-random vector according to this distribution
+     * (see {@link #generate()}).
+     *
+     * @param random The generator of the random numbers.
+     * @param values The array the vector is written to; its length must be
+     *               this distribution's dimension.
+     * @return <code>values</code>.
+     */
+    public double[] generate(Random random, double[] values) {
+        double[][] l = covarianceL();
 
+        /* l is lower triangular: values[r] only depends on d[0..r] */
         for (int i = 0; i < dimension; i++)
-            d[i] = randomGenerator.nextGaussian();
+            values[i] = random.nextGaussian();
+
+        for (int r = dimension - 1; r >= 0; r--) {
+            double v = 0.;
+            for (int c = 0; c <= r; c++)
+                v += l[r][c] * values[c];
+            values[r] = v + mean[r];
+        }
 
-        return SimpleMatrix.plus(SimpleMatrix.times(covarianceL(), d), mean);
+        return values;
     }
 
 
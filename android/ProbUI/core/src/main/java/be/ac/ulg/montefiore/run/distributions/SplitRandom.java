@@ -0,0 +1,147 @@
+/* jahmm package - v0.6.1 */
+
+/*
+ *  Copyright (c) 2004-2006, Jean-Marc Francois.
+ *
+ *  This file is part of Jahmm.
+ *  Jahmm is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Jahmm is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Jahmm; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ */
+
+package be.ac.ulg.montefiore.run.distributions;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * A fast pseudo-random number generator that can be split in independent
+ * generators (using the <i>SplitMix64</i> algorithm of
+ * <code>java.util.SplittableRandom</code>, which is not available on all
+ * platforms).
+ * <p>
+ * Contrary to <code>java.util.Random</code>, this class is not thread-safe:
+ * each thread should use its own generator, e.g. obtained with 
+ * {@link #split}.  The sequence of numbers generated by a generator and the
+ * generators split from it only depend on its seed.
+ */
+public class SplitRandom
+extends Random
+{
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+	private static final AtomicLong defaultSeeds = new AtomicLong(
+			mix64(System.currentTimeMillis()) ^ mix64(System.nanoTime()));
+	
+	private long seed;
+	private long gamma;
+	
+	
+	/**
+	 * Creates a new generator whose seed is (very probably) different from
+	 * the seeds of the other generators.
+	 */
+	public SplitRandom()
+	{
+		this(mix64(defaultSeeds.getAndAdd(2 * GOLDEN_GAMMA)));
+	}
+	
+	
+	/**
+	 * Creates a new generator.
+	 * 
+	 * @param seed The seed of the generator.
+	 */
+	public SplitRandom(long seed)
+	{
+		this(seed, GOLDEN_GAMMA);
+	}
+	
+	
+	private SplitRandom(long seed, long gamma)
+	{
+		super(0L);
+		this.seed = seed;
+		this.gamma = gamma;
+	}
+	
+	
+	/**
+	 * Creates a new generator whose numbers are independent of the numbers
+	 * of this generator.  This generator advances.
+	 * 
+	 * @return A new generator.
+	 */
+	public SplitRandom split()
+	{
+		return new SplitRandom(nextLong(), mixGamma(nextSeed()));
+	}
+	
+	
+	/**
+	 * Sets the seed of this generator (called by the constructor of
+	 * <code>java.util.Random</code>).
+	 */
+	public void setSeed(long seed)
+	{
+		this.seed = seed;
+		this.gamma = GOLDEN_GAMMA;
+	}
+	
+	
+	protected int next(int bits)
+	{
+		return (int) (nextLong() >>> (64 - bits));
+	}
+	
+	
+	public long nextLong()
+	{
+		return mix64(nextSeed());
+	}
+	
+	
+	public double nextDouble()
+	{
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+	
+	
+	private long nextSeed()
+	{
+		return seed += gamma;
+	}
+	
+	
+	private static long mix64(long z)
+	{
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+	
+	
+	/* The gammas must be odd and have enough bit transitions */
+	private static long mixGamma(long z)
+	{
+		z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+		z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		z = (z ^ (z >>> 33)) | 1L;
+		int n = Long.bitCount(z ^ (z >>> 1));
+		return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+	}
+	
+	
+	private static final long serialVersionUID = 6215137826466436171L;
+}
@@ -0,0 +1,448 @@
+/* jahmm package - v0.6.1 */
+
+/*
+ *  Copyright (c) 2004-2006, Jean-Marc Francois.
+ *
+ *  This file is part of Jahmm.
+ *  Jahmm is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Jahmm is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Jahmm; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ */
+
+package be.ac.ulg.montefiore.run.jahmm;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+
+/**
+ * This class divides a set of real vectors in clusters using the k-means
+ * algorithm, as {@link KMeansCalculator} does, but works on a flat array of
+ * values instead of lists of observations and centroid objects.
+ * <p>
+ * The initial centroids are chosen using the k-means++ method (D. Arthur and
+ * S. Vassilvitskii, <i>k-means++: The Advantages of Careful Seeding</i>,
+ * 2007).  Then, each iteration (Lloyd's algorithm) assigns every element to 
+ * its nearest centroid and recomputes the centroids; both steps can be 
+ * distributed over an executor.  The result only depends on the random seed
+ * and on the number of parts the elements are split in, not on the number of
+ * threads of the executor.
+ */
+public class FlatKMeansCalculator
+{
+	/**
+	 * Maximum number of iterations performed (it is almost never reached, 
+	 * since the algorithm stops as soon as no element changes its cluster).
+	 */
+	public static final int MAX_ITERATIONS = 1000;
+	
+	private final int k;
+	private final int dimension;
+	private final int nbElements;
+	private final double[] values;
+	private final double[] centroids;
+	private final int[] clusterNbs;
+	private final int[] clusterSizes;
+	private final ExecutorService executor;
+	private final int nbParts;
+	
+	
+	/* Result of the assignment step over a part of the elements */
+	private static class Assignment
+	{
+		final double[] sums;
+		final int[] sizes;
+		int nbChanged = 0;
+		
+		Assignment(int k, int dimension)
+		{
+			sums = new double[k * dimension];
+			sizes = new int[k];
+		}
+	}
+	
+	
+	/**
+	 * Divides a set of elements in a given number of clusters.  The elements
+	 * are handled by the calling thread.
+	 *
+	 * @param k The number of clusters to get.
+	 * @param values The values of the elements: the values of the 
+	 *        <i>i</i>-th element are 
+	 *        <code>values[i * dimension ... (i+1) * dimension - 1]</code>.
+	 * @param dimension The dimension of the elements.
+	 */
+	public FlatKMeansCalculator(int k, double[] values, int dimension)
+	{
+		this(k, values, dimension, 0, null, 1);
+	}
+	
+	
+	/**
+	 * Divides a set of elements in a given number of clusters.
+	 *
+	 * @param k The number of clusters to get.
+	 * @param values The values of the elements: the values of the 
+	 *        <i>i</i>-th element are 
+	 *        <code>values[i * dimension ... (i+1) * dimension - 1]</code>.
+	 * @param dimension The dimension of the elements.
+	 * @param seed The seed of the random choice of the initial centroids.
+	 * @param executor The executor the parts are computed by, or 
+	 *        <code>null</code> to compute them in the calling thread.
+	 * @param nbParts The number of parts the elements are split in.
+	 */
+	public FlatKMeansCalculator(int k, double[] values, int dimension,
+			long seed, ExecutorService executor, int nbParts)
+	{
+		if (k <= 0)
+			throw new IllegalArgumentException("Illegal number of clusters");
+		if (dimension <= 0 || values.length % dimension != 0)
+			throw new IllegalArgumentException("Illegal dimension");
+		if (nbParts <= 0)
+			throw new IllegalArgumentException("Illegal number of parts");
+		
+		this.k = k;
+		this.dimension = dimension;
+		this.nbElements = values.length / dimension;
+		this.values = values;
+		this.centroids = new double[k * dimension];
+		this.clusterNbs = new int[nbElements];
+		this.clusterSizes = new int[k];
+		this.executor = executor;
+		this.nbParts = Math.max(1, Math.min(nbParts, nbElements));
+		
+		Arrays.fill(clusterNbs, -1);
+		if (nbElements == 0)
+			return;
+		
+		seed(new Random(seed));
+		
+		for (int i = 0; i < MAX_ITERATIONS && iterate(); i++);
+	}
+	
+	
+	/* k-means++ seeding: each new centroid is an element chosen with a
+	 probability proportional to its squared distance to the nearest centroid
+	 chosen so far. */
+	private void seed(Random random)
+	{
+		final double[] minDistances = new double[nbElements];
+		Arrays.fill(minDistances, Double.POSITIVE_INFINITY);
+		
+		int chosen = random.nextInt(nbElements);
+		for (int c = 0; c < k; c++) {
+			System.arraycopy(values, chosen * dimension, centroids,
+					c * dimension, dimension);
+			
+			if (c == k - 1)
+				break;
+			
+			final int centroid = c;
+			List<Double> sums = run(new PartFactory<Double>() {
+				public Callable<Double> part(final int from, final int to)
+				{
+					return new Callable<Double>() {
+						public Double call()
+						{
+							double sum = 0.;
+							for (int i = from; i < to; i++) {
+								double d = distance(i, centroid);
+								if (d < minDistances[i])
+									minDistances[i] = d;
+								sum += minDistances[i];
+							}
+							return sum;
+						}
+					};
+				}
+			});
+			
+			double sum = 0.;
+			for (double s : sums)
+				sum += s;
+			
+			/* All the elements are centroids already: pick any */
+			if (sum == 0.) {
+				chosen = random.nextInt(nbElements);
+				continue;
+			}
+			
+			double target = random.nextDouble() * sum;
+			chosen = nbElements - 1;
+			for (int i = 0; i < nbElements; i++) {
+				target -= minDistances[i];
+				if (target < 0. && minDistances[i] > 0.) {
+					chosen = i;
+					break;
+				}
+			}
+		}
+	}
+	
+	
+	/* One iteration of Lloyd's algorithm; returns true iff at least one 
+	 element changed its cluster. */
+	private boolean iterate()
+	{
+		List<Assignment> assignments = run(new PartFactory<Assignment>() {
+			public Callable<Assignment> part(final int from, final int to)
+			{
+				return new Callable<Assignment>() {
+					public Assignment call()
+					{
+						return assign(from, to);
+					}
+				};
+			}
+		});
+		
+		double[] sums = new double[k * dimension];
+		Arrays.fill(clusterSizes, 0);
+		int nbChanged = 0;
+		for (Assignment assignment : assignments) {
+			for (int i = 0; i < sums.length; i++)
+				sums[i] += assignment.sums[i];
+			for (int c = 0; c < k; c++)
+				clusterSizes[c] += assignment.sizes[c];
+			nbChanged += assignment.nbChanged;
+		}
+		
+		/* The centroids of empty clusters are kept */
+		for (int c = 0; c < k; c++)
+			if (clusterSizes[c] > 0)
+				for (int d = 0; d < dimension; d++)
+					centroids[c * dimension + d] = 
+						sums[c * dimension + d] / clusterSizes[c];
+		
+		return nbChanged > 0;
+	}
+	
+	
+	private Assignment assign(int from, int to)
+	{
+		Assignment assignment = new Assignment(k, dimension);
+		
+		for (int i = from; i < to; i++) {
+			int nearest = 0;
+			double minDistance = distance(i, 0);
+			for (int c = 1; c < k; c++) {
+				double d = distance(i, c);
+				if (d < minDistance) {
+					minDistance = d;
+					nearest = c;
+				}
+			}
+			
+			if (clusterNbs[i] != nearest) {
+				clusterNbs[i] = nearest;
+				assignment.nbChanged++;
+			}
+			
+			assignment.sizes[nearest]++;
+			for (int d = 0; d < dimension; d++)
+				assignment.sums[nearest * dimension + d] +=
+					values[i * dimension + d];
+		}
+		
+		return assignment;
+	}
+	
+	
+	/* Squared euclidian distance between an element and a centroid */
+	private double distance(int element, int centroid)
+	{
+		double distance = 0.;
+		int e = element * dimension;
+		int c = centroid * dimension;
+		
+		for (int d = 0; d < dimension; d++) {
+			double diff = values[e + d] - centroids[c + d];
+			distance += diff * diff;
+		}
+		
+		return distance;
+	}
+	
+	
+	private interface PartFactory<T>
+	{
+		Callable<T> part(int from, int to);
+	}
+	
+	
+	/* Runs a task per part, and returns the results in the order of the
+	 parts */
+	private <T> List<T> run(PartFactory<T> factory)
+	{
+		List<T> results = new ArrayList<T>(nbParts);
+		
+		try {
+			if (executor == null || nbParts == 1) {
+				for (int p = 0; p < nbParts; p++)
+					results.add(factory.part(from(p), from(p + 1)).call());
+				return results;
+			}
+			
+			List<Future<T>> futures = new ArrayList<Future<T>>(nbParts);
+			for (int p = 0; p < nbParts; p++)
+				futures.add(executor.submit(
+						factory.part(from(p), from(p + 1))));
+			
+			try {
+				for (Future<T> future : futures)
+					results.add(future.get());
+			} catch(InterruptedException e) {
+				for (Future<T> future : futures)
+					future.cancel(true);
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted", e);
+			} catch(ExecutionException e) {
+				for (Future<T> future : futures)
+					future.cancel(true);
+				if (e.getCause() instanceof RuntimeException)
+					throw (RuntimeException) e.getCause();
+				if (e.getCause() instanceof Error)
+					throw (Error) e.getCause();
+				throw new IllegalStateException(e.getCause());
+			}
+		} catch(RuntimeException e) {
+			throw e;
+		} catch(Exception e) { // Not thrown by the parts
+			throw new InternalError(e.toString());
+		}
+		
+		return results;
+	}
+	
+	
+	private int from(int part)
+	{
+		return (int) ((long) nbElements * part / nbParts);
+	}
+	
+	
+	/**
+	 * Returns the cluster of an element.
+	 *
+	 * @param element The index of the element.
+	 * @return The index of its cluster.
+	 */
+	public int clusterNb(int element)
+	{
+		return clusterNbs[element];
+	}
+	
+	
+	/**
+	 * Returns the clusters of all the elements.
+	 *
+	 * @return A copy of the cluster index of each element.
+	 */
+	public int[] clusterNbs()
+	{
+		return clusterNbs.clone();
+	}
+	
+	
+	/**
+	 * Returns the number of elements of a cluster.
+	 *
+	 * @param index A cluster index.
+	 * @return The number of elements of this cluster.
+	 */
+	public int clusterSize(int index)
+	{
+		return clusterSizes[index];
+	}
+	
+	
+	/**
+	 * Returns the centroid (the mean) of a cluster.
+	 *
+	 * @param index A cluster index.
+	 * @return A copy of the centroid.
+	 */
+	public double[] centroid(int index)
+	{
+		double[] centroid = new double[dimension];
+		System.arraycopy(centroids, index * dimension, centroid, 0, dimension);
+		return centroid;
+	}
+	
+	
+	/**
+	 * Returns the number of clusters.
+	 *
+	 * @return The number of clusters.
+	 */
+	public int nbClusters()
+	{
+		return k;
+	}
+	
+	
+	/**
+	 * Returns the number of elements.
+	 *
+	 * @return The number of elements.
+	 */
+	public int nbElements()
+	{
+		return nbElements;
+	}
+	
+	
+	/**
+	 * Returns the values of a list of vector observations, as expected by the
+	 * constructors of this class.
+	 *
+	 * @param observations A non-empty list of observations of the same
+	 *        dimension.
+	 * @return The values of the observations.
+	 */
+	public static double[] values(List<? extends ObservationVector> observations)
+	{
+		int dimension = observations.get(0).dimension();
+		double[] values = new double[observations.size() * dimension];
+		
+		int i = 0;
+		for (ObservationVector o : observations) {
+			if (o.dimension() != dimension)
+				throw new IllegalArgumentException("Wrong dimension");
+			System.arraycopy(o.value, 0, values, i, dimension);
+			i += dimension;
+		}
+		
+		return values;
+	}
+	
+	
+	/**
+	 * Returns the values of a list of real observations, as expected by the
+	 * constructors of this class (with a dimension of 1).
+	 *
+	 * @param observations A list of observations.
+	 * @return The values of the observations.
+	 */
+	public static double[] realValues(List<? extends ObservationReal> observations)
+	{
+		double[] values = new double[observations.size()];
+		
+		int i = 0;
+		for (ObservationReal o : observations)
+			values[i++] = o.value;
+		
+		return values;
+	}
+}
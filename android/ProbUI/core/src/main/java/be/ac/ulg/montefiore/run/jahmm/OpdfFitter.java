@@ -0,0 +1,61 @@
+/* jahmm package - v0.6.1 */
+
+/*
+ *  Copyright (c) 2004-2006, Jean-Marc Francois.
+ *
+ *  This file is part of Jahmm.
+ *  Jahmm is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Jahmm is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Jahmm; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ */
+
+package be.ac.ulg.montefiore.run.jahmm;
+
+
+/**
+ * Fits an observation probability function to a stream of weighted
+ * observations, without keeping the observations in memory.
+ * <p>
+ * The weights are normalized when fitting, thus fitting the observations
+ * <code>o</code> added with weights <code>w</code> is equivalent to calling
+ * <code>opdf.fit(o, w / sum(w))</code>.
+ */
+public interface OpdfFitter<O extends Observation>
+{
+	/**
+	 * Adds a weighted observation.
+	 *
+	 * @param o An observation.
+	 * @param weight The (positive) weight of this observation.
+	 */
+	public void add(O o, double weight);
+	
+	
+	/**
+	 * Adds all the observations added to another fitter (e.g. a fitter used
+	 * for a part of the observations).
+	 *
+	 * @param fitter A fitter created by an observation probability function
+	 *         of the same class.
+	 */
+	public void add(OpdfFitter<O> fitter);
+	
+	
+	/**
+	 * Fits the observation probability function that created this object to
+	 * the observations added so far.  The function is left unchanged if the
+	 * sum of the weights is zero.
+	 */
+	public void fit();
+}
@@ -25,6 +25,7 @@ package be.ac.ulg.montefiore.run.jahmm;
 import java.text.NumberFormat;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Random;
 
 import be.ac.ulg.montefiore.run.distributions.GaussianDistribution;
 
@@ -33,7 +34,8 @@ import be.ac.ulg.montefiore.run.distributions.GaussianDistribution;
  * This class represents a (monovariate) gaussian distribution function.
  */
 public class OpdfGaussian
-implements Opdf<ObservationReal>
+implements Opdf<ObservationReal>, StreamFittable<ObservationReal>,
+RandomGenerable<ObservationReal>
 {	
 	private GaussianDistribution distribution;
 	
@@ -95,6 +97,12 @@ implements Opdf<ObservationReal>
 	}
 	
 	
+	public ObservationReal generate(Random random)
+	{
+		return new ObservationReal(distribution.generate(random));
+	}
+	
+	
 	public void fit(ObservationReal... oa) 
 	{
 		fit(Arrays.asList(oa));
@@ -141,6 +149,43 @@ implements Opdf<ObservationReal>
 	}
 	
 	
+	public OpdfFitter<ObservationReal> fitter()
+	{
+		return new Fitter();
+	}
+	
+	
+	private class Fitter
+	implements OpdfFitter<ObservationReal>
+	{
+		private final WeightedMoments moments = new WeightedMoments(1);
+		private final double[] value = new double[1];
+		
+		
+		public void add(ObservationReal o, double weight)
+		{
+			value[0] = o.value;
+			moments.add(value, weight);
+		}
+		
+		
+		public void add(OpdfFitter<ObservationReal> fitter)
+		{
+			moments.add(((Fitter) fitter).moments);
+		}
+		
+		
+		public void fit()
+		{
+			if (moments.weight() == 0.)
+				return;
+			
+			distribution = new GaussianDistribution(moments.mean()[0],
+					moments.covariance()[0][0]);
+		}
+	}
+	
+	
 	public OpdfGaussian clone()
 	{
 		try {
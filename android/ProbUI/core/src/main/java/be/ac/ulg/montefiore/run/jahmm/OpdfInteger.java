@@ -25,6 +25,7 @@ package be.ac.ulg.montefiore.run.jahmm;
 import java.text.NumberFormat;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Random;
 
 
 /**
@@ -32,7 +33,8 @@ import java.util.Collection;
  * observations.
  */
 public class OpdfInteger
-implements Opdf<ObservationInteger>
+implements Opdf<ObservationInteger>, StreamFittable<ObservationInteger>,
+RandomGenerable<ObservationInteger>
 {	
 	private double[] probabilities;
 	
@@ -104,8 +106,18 @@ implements Opdf<ObservationInteger>
 	
 	public ObservationInteger generate()
 	{	
-		double rand = Math.random();
-		
+		return generate(Math.random());
+	}
+	
+	
+	public ObservationInteger generate(Random random)
+	{	
+		return generate(random.nextDouble());
+	}
+	
+	
+	private ObservationInteger generate(double rand)
+	{	
 		for (int i = 0; i < probabilities.length - 1; i++)
 			if ((rand -= probabilities[i]) < 0.)
 				return new ObservationInteger(i);
@@ -156,10 +168,54 @@ implements Opdf<ObservationInteger>
 	}
 	
 	
+	public OpdfFitter<ObservationInteger> fitter()
+	{
+		return new Fitter();
+	}
+	
+	
+	private class Fitter
+	implements OpdfFitter<ObservationInteger>
+	{
+		private final double[] weights = new double[probabilities.length];
+		
+		
+		public void add(ObservationInteger o, double weight)
+		{
+			weights[o.value] += weight;
+		}
+		
+		
+		public void add(OpdfFitter<ObservationInteger> fitter)
+		{
+			double[] w = ((Fitter) fitter).weights;
+			
+			for (int i = 0; i < weights.length; i++)
+				weights[i] += w[i];
+		}
+		
+		
+		public void fit()
+		{
+			double sum = 0.;
+			for (double w : weights)
+				sum += w;
+			
+			if (sum == 0.)
+				return;
+			
+			for (int i = 0; i < probabilities.length; i++)
+				probabilities[i] = weights[i] / sum;
+		}
+	}
+	
+	
 	public OpdfInteger clone()
 	{	
 		try {
-			return (OpdfInteger) super.clone();
+			OpdfInteger opdf = (OpdfInteger) super.clone();
+			opdf.probabilities = probabilities.clone();
+			return opdf;
 		} catch(CloneNotSupportedException e) {
             throw new AssertionError(e);
         }
@@ -25,6 +25,7 @@ package be.ac.ulg.montefiore.run.jahmm;
 import java.text.NumberFormat;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Random;
 
 import be.ac.ulg.montefiore.run.distributions.MultiGaussianDistribution;
 
@@ -34,7 +35,8 @@ import be.ac.ulg.montefiore.run.distributions.MultiGaussianDistribution;
  * This class represents a multivariate gaussian distribution function.
  */
 public class OpdfMultiGaussian
-implements Opdf<ObservationVector>
+implements Opdf<ObservationVector>, StreamFittable<ObservationVector>,
+RandomGenerable<ObservationVector>
 {	
 	private MultiGaussianDistribution distribution;
 	
@@ -117,6 +119,13 @@ implements Opdf<ObservationVector>
 	}
 	
 	
+	public ObservationVector generate(Random random)
+	{
+		return new ObservationVector(distribution.generate(random, 
+				new double[distribution.dimension()]));
+	}
+	
+	
 	public void fit(ObservationVector... oa)
 	{
 		fit(Arrays.asList(oa));
@@ -181,6 +190,46 @@ implements Opdf<ObservationVector>
 	}
 	
 	
+	public OpdfFitter<ObservationVector> fitter()
+	{
+		return new Fitter();
+	}
+	
+	
+	private class Fitter
+	implements OpdfFitter<ObservationVector>
+	{
+		private final WeightedMoments moments = 
+			new WeightedMoments(dimension());
+		
+		
+		public void add(ObservationVector o, double weight)
+		{
+			moments.add(o.value, weight);
+		}
+		
+		
+		public void add(OpdfFitter<ObservationVector> fitter)
+		{
+			moments.add(((Fitter) fitter).moments);
+		}
+		
+		
+		public void fit()
+		{
+			if (moments.weight() == 0.)
+				return;
+			
+			double[][] covariance = moments.covariance();
+			for (int r = 0; r < dimension(); r++)
+				covariance[r][r] += 0.00001 * moments.count(); // see fit()
+			
+			distribution = new MultiGaussianDistribution(moments.mean(),
+					covariance);
+		}
+	}
+	
+	
 	public OpdfMultiGaussian clone()
 	{
 		try {
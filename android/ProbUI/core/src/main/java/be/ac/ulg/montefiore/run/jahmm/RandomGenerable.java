@@ -0,0 +1,43 @@
+/* jahmm package - v0.6.1 */
+
+/*
+ *  Copyright (c) 2004-2006, Jean-Marc Francois.
+ *
+ *  This file is part of Jahmm.
+ *  Jahmm is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Jahmm is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Jahmm; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ */
+
+package be.ac.ulg.montefiore.run.jahmm;
+
+import java.util.Random;
+
+
+/**
+ * Observation probability functions that can generate observations using a
+ * given pseudo-random number generator (e.g. to get reproducible sequences,
+ * or to avoid sharing a generator between threads).
+ */
+public interface RandomGenerable<O extends Observation>
+{
+	/**
+	 * Generates a (pseudo) random observation according to this
+	 * distribution.
+	 *
+	 * @param random The generator of the random numbers.
+	 * @return An observation.
+	 */
+	public O generate(Random random);
+}
@@ -0,0 +1,168 @@
+/* jahmm package - v0.6.1 */
+
+/*
+ *  Copyright (c) 2004-2006, Jean-Marc Francois.
+ *
+ *  This file is part of Jahmm.
+ *  Jahmm is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Jahmm is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Jahmm; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ */
+
+package be.ac.ulg.montefiore.run.jahmm;
+
+
+/**
+ * Accumulates the weighted mean and covariance of a stream of vectors.
+ * <p>
+ * The values are updated incrementally (West's weighted version of Welford's
+ * algorithm), which is numerically stable and does not need a second pass
+ * over the vectors.  Two accumulators can be merged (Chan <i>et al.</i>).
+ */
+public class WeightedMoments
+{
+	private final int dimension;
+	private int count;
+	private double weight;
+	private final double[] mean;
+	private final double[][] m2; // sum of weighted squared deviations
+	private final double[] delta;
+	
+	
+	/**
+	 * Creates an accumulator with no vector.
+	 *
+	 * @param dimension The dimension of the vectors.
+	 */
+	public WeightedMoments(int dimension)
+	{
+		if (dimension <= 0)
+			throw new IllegalArgumentException("Positive dimension expected");
+		
+		this.dimension = dimension;
+		mean = new double[dimension];
+		m2 = new double[dimension][dimension];
+		delta = new double[dimension];
+	}
+	
+	
+	/**
+	 * Adds a weighted vector.
+	 *
+	 * @param v A vector.
+	 * @param w Its (positive) weight.
+	 */
+	public void add(double[] v, double w)
+	{
+		if (v.length != dimension)
+			throw new IllegalArgumentException("Wrong dimension");
+		if (w < 0.)
+			throw new IllegalArgumentException("Negative weight");
+		
+		count++;
+		if (w == 0.)
+			return;
+		
+		weight += w;
+		double ratio = w / weight;
+		for (int r = 0; r < dimension; r++) {
+			delta[r] = v[r] - mean[r];
+			mean[r] += delta[r] * ratio;
+		}
+		
+		for (int r = 0; r < dimension; r++)
+			for (int c = 0; c < dimension; c++)
+				m2[r][c] += w * delta[r] * (v[c] - mean[c]);
+	}
+	
+	
+	/**
+	 * Adds all the vectors added to another accumulator.
+	 *
+	 * @param moments An accumulator of the same dimension.
+	 */
+	public void add(WeightedMoments moments)
+	{
+		if (moments.dimension != dimension)
+			throw new IllegalArgumentException("Wrong dimension");
+		
+		count += moments.count;
+		if (moments.weight == 0.)
+			return;
+		
+		double sum = weight + moments.weight;
+		double factor = weight * moments.weight / sum;
+		for (int r = 0; r < dimension; r++)
+			delta[r] = moments.mean[r] - mean[r];
+		
+		for (int r = 0; r < dimension; r++) {
+			for (int c = 0; c < dimension; c++)
+				m2[r][c] += moments.m2[r][c] + delta[r] * delta[c] * factor;
+			mean[r] += delta[r] * moments.weight / sum;
+		}
+		
+		weight = sum;
+	}
+	
+	
+	/**
+	 * Returns the number of vectors added so far (including those with a
+	 * zero weight).
+	 *
+	 * @return The number of vectors.
+	 */
+	public int count()
+	{
+		return count;
+	}
+	
+	
+	/**
+	 * Returns the sum of the weights.
+	 *
+	 * @return The sum of the weights.
+	 */
+	public double weight()
+	{
+		return weight;
+	}
+	
+	
+	/**
+	 * Returns (a copy of) the weighted mean.
+	 *
+	 * @return The weighted mean.
+	 */
+	public double[] mean()
+	{
+		return mean.clone();
+	}
+	
+	
+	/**
+	 * Returns the weighted covariance (normalized by the sum of the weights).
+	 *
+	 * @return A new covariance matrix.
+	 */
+	public double[][] covariance()
+	{
+		double[][] covariance = new double[dimension][dimension];
+		
+		for (int r = 0; r < dimension; r++)
+			for (int c = 0; c < dimension; c++)
+				covariance[r][c] = m2[r][c] / weight;
+		
+		return covariance;
+	}
+}
@@ -35,9 +35,13 @@ abstract class ActionHandler
 		PRINT("print", PrintActionHandler.class),
 		CREATE("create", CreateActionHandler.class),
 		BW("learn-bw", BWActionHandler.class),
+		TOUCH_BW("learn-touch", TouchBWActionHandler.class),
 		KMEANS("learn-kmeans", KMeansActionHandler.class),
 		GENERATE("generate", GenerateActionHandler.class),
-		KL("distance-kl", KLActionHandler.class);
+		KL("distance-kl", KLActionHandler.class),
+		EVALUATE("evaluate", EvaluateActionHandler.class),
+		BENCH("bench", BenchActionHandler.class),
+		COMPILE_PML("compile-pml", CompilePmlActionHandler.class);
 		
 		private String argument;
 		private Class<? extends ActionHandler> handler;
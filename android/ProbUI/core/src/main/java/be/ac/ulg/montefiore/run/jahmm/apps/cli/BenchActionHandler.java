@@ -0,0 +1,231 @@
+/* jahmm package - v0.6.1 */
+
+/*
+ *  Copyright (c) 2004-2006, Jean-Marc Francois.
+ *
+ *  This file is part of Jahmm.
+ *  Jahmm is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Jahmm is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Jahmm; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ */
+
+package be.ac.ulg.montefiore.run.jahmm.apps.cli;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import be.ac.ulg.montefiore.run.jahmm.*;
+import be.ac.ulg.montefiore.run.jahmm.apps.cli.CommandLineArguments.Arguments;
+import be.ac.ulg.montefiore.run.jahmm.io.*;
+import be.ac.ulg.montefiore.run.jahmm.learn.BaumWelchLearner;
+import be.ac.ulg.montefiore.run.jahmm.learn.BaumWelchScaledLearner;
+
+
+/**
+ * Measures the throughput and latency of the forward, Viterbi and
+ * Baum-Welch algorithms on given HMMs and sequences.
+ * <p>
+ * The forward and Viterbi algorithms are run on each sequence, in parallel
+ * over the sequences; their latency is measured per sequence.  The
+ * Baum-Welch algorithm is run on all the sequences at once (in parallel as
+ * well); its latency is measured per iteration.  Each measure is repeated
+ * a given number of rounds, after a round for warming up.
+ */
+class BenchActionHandler
+extends ActionHandler
+{
+	private static final double[] PERCENTILES = { .5, .9, .99 };
+	
+	
+	public void act()
+	throws FileNotFoundException, IOException, FileFormatException,
+	AbnormalTerminationException
+	{
+		EnumSet<Arguments> args = EnumSet.of(
+				Arguments.OPDF,
+				Arguments.IN_HMM,
+				Arguments.IN_SEQ,
+				Arguments.NB_ITERATIONS,
+				Arguments.NB_THREADS);
+		CommandLineArguments.checkArgs(args);
+		
+		int nbRounds = Arguments.NB_ITERATIONS.getAsInt();
+		if (nbRounds <= 0)
+			throw new WrongArgumentsException("Number of rounds must be " +
+					"strictly positive");
+		int nbThreads = Arguments.NB_THREADS.getAsInt();
+		if (nbThreads <= 0)
+			nbThreads = Runtime.getRuntime().availableProcessors();
+		
+		ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+		try {
+			bench(Types.relatedObjs(), executor, nbThreads, nbRounds);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	
+	private <O extends Observation & CentroidFactory<O>> void
+	bench(RelatedObjs<O> relatedObjs, ExecutorService executor,
+			int nbThreads, int nbRounds)
+	throws IOException, FileFormatException, AbnormalTerminationException
+	{
+		String[] files = Arguments.IN_HMM.get().split(",");
+		List<Hmm<O>> hmms = EvaluateActionHandler.readHmms(relatedObjs,
+				Arguments.IN_HMM.get());
+		
+		EvaluateActionHandler.Sequences<O> reader =
+			EvaluateActionHandler.openSequences(relatedObjs);
+		List<List<O>> sequences;
+		try {
+			sequences = reader.next(Integer.MAX_VALUE);
+		} finally {
+			reader.close();
+		}
+		
+		if (sequences.isEmpty())
+			throw new AbnormalTerminationException("No sequence to run on");
+		
+		/* Baum-Welch needs two observations */
+		List<List<O>> bwSequences = new ArrayList<List<O>>();
+		long nbObservations = 0, nbBwObservations = 0;
+		for (List<O> sequence : sequences) {
+			nbObservations += sequence.size();
+			if (sequence.size() > 1) {
+				bwSequences.add(sequence);
+				nbBwObservations += sequence.size();
+			}
+		}
+		
+		System.out.println(sequences.size() + " sequences, " +
+				nbObservations + " observations, " + nbThreads +
+				" threads, " + nbRounds + " rounds");
+		
+		for (int h = 0; h < hmms.size(); h++) {
+			Hmm<O> hmm = hmms.get(h);
+			System.out.println("\n" + files[h] + " (" + hmm.nbStates() +
+					" states):");
+			
+			for (boolean viterbi : new boolean[] { false, true }) {
+				long[] latencies = new long[nbRounds * sequences.size()];
+				long time = 0;
+				for (int round = -1; round < nbRounds; round++) {
+					long start = System.nanoTime();
+					run(hmm, sequences, viterbi, executor, nbThreads,
+							latencies, round < 0 ? -1 :
+								round * sequences.size());
+					if (round >= 0)
+						time += System.nanoTime() - start;
+				}
+				report(viterbi ? "viterbi" : "forward", latencies,
+						nbRounds * sequences.size(),
+						nbRounds * nbObservations, time);
+			}
+			
+			if (bwSequences.isEmpty())
+				continue;
+			
+			BaumWelchLearner bw = new BaumWelchScaledLearner();
+			bw.setExecutor(executor, 4 * nbThreads);
+			long[] latencies = new long[nbRounds];
+			long time = 0;
+			for (int round = -1; round < nbRounds; round++) {
+				long start = System.nanoTime();
+				bw.iterate(hmm, bwSequences);
+				if (round >= 0) {
+					latencies[round] = System.nanoTime() - start;
+					time += latencies[round];
+				}
+			}
+			report("baum-welch", latencies, nbRounds,
+					nbRounds * nbBwObservations, time);
+		}
+	}
+	
+	
+	/*
+	 * Runs the forward or Viterbi algorithm on each sequence.  The latencies
+	 * are stored starting at the given offset of the array (if positive).
+	 */
+	private <O extends Observation> void
+	run(Hmm<O> hmm, final List<List<O>> sequences, final boolean viterbi,
+			ExecutorService executor, int nbThreads, final long[] latencies,
+			final int offset)
+	throws AbnormalTerminationException
+	{
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		List<Hmm<O>> hmms = Collections.singletonList(hmm);
+		int partSize = Math.max(1, (sequences.size() + 4 * nbThreads - 1) /
+				(4 * nbThreads));
+		
+		for (int from = 0; from < sequences.size(); from += partSize) {
+			final int start = from;
+			final int end = Math.min(from + partSize, sequences.size());
+			final Hmm<O> copy = EvaluateActionHandler.copy(hmms).get(0);
+			
+			futures.add(executor.submit(new Runnable() {
+				public void run()
+				{
+					for (int s = start; s < end; s++) {
+						long time = System.nanoTime();
+						if (viterbi)
+							copy.mostLikelyStateSequence(sequences.get(s));
+						else
+							copy.lnProbability(sequences.get(s));
+						if (offset >= 0)
+							latencies[offset + s] = System.nanoTime() - time;
+					}
+				}
+			}));
+		}
+		
+		try {
+			for (Future<?> future : futures)
+				future.get();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AbnormalTerminationException("Interrupted");
+		} catch(ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new AbnormalTerminationException(e.getCause().toString());
+		}
+	}
+	
+	
+	private void report(String name, long[] latencies, int nbRuns,
+			long nbObservations, long time)
+	{
+		Arrays.sort(latencies, 0, nbRuns);
+		
+		String s = "  " + name + ": " + 
+		format(nbObservations * 1e9 / time) + " observations/s, " +
+		format(nbRuns * 1e9 / time) + " runs/s; latency (us)";
+		for (double p : PERCENTILES)
+			s += " p" + (int) Math.round(p * 100) + " " + format(
+					latencies[Math.max(0, (int) Math.ceil(p * nbRuns) - 1)] /
+					1e3);
+		s += " max " + format(latencies[nbRuns - 1] / 1e3);
+		
+		System.out.println(s);
+	}
+	
+	
+	private static String format(double value)
+	{
+		return String.format(Locale.US, "%.1f", value);
+	}
+}
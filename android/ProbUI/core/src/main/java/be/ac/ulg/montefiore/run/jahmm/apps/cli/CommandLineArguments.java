@@ -48,7 +48,13 @@ class CommandLineArguments
 		NB_GAUSSIANS("-ng", ""),
 		VECTOR_DIMENSION("-d", ""),
 		NB_ITERATIONS("-ni", "10"),
-		NB_STATES("-n", "");
+		NB_STATES("-n", ""),
+		IN_PML("-ipml", ""),
+		OUT_DIR("-od", ""),
+		NB_THREADS("-nt", "0"),
+		NB_SEQUENCES("-ns", "100"),
+		SEQUENCE_LENGTH("-l", "1000"),
+		SEED("-seed", "random");
 		
 		final String argString;       // The expected string for the arg
 		final String[] allowedValues; // Accepted values.  If "", any
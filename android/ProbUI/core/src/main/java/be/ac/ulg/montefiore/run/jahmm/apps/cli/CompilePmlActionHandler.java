@@ -0,0 +1,92 @@
+/* jahmm package - v0.6.1 */
+
+/*
+ *  Copyright (c) 2004-2006, Jean-Marc Francois.
+ *
+ *  This file is part of Jahmm.
+ *  Jahmm is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Jahmm is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Jahmm; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ */
+
+package be.ac.ulg.montefiore.run.jahmm.apps.cli;
+
+import java.io.*;
+import java.util.*;
+
+import be.ac.ulg.montefiore.run.jahmm.apps.cli.CommandLineArguments.Arguments;
+import be.ac.ulg.montefiore.run.jahmm.io.FileFormatException;
+import de.lmu.ifi.medien.probui.pml.PMLAssetLibrary;
+import de.lmu.ifi.medien.probui.pml.PMLAssetLibraryWriter;
+
+
+/**
+ * Compiles labelled PML behaviours and rules into a library that can be
+ * shipped in the assets of an app (see {@link PMLAssetLibrary}).
+ * <p>
+ * The input holds a PML statement per line; rules are prefixed by
+ * <tt>rule</tt> (e.g. <tt>rule activated: tap on complete</tt>).
+ */
+class CompilePmlActionHandler
+extends ActionHandler
+{
+	private static final String RULE_PREFIX = "rule ";
+	
+	
+	public void act()
+	throws FileNotFoundException, IOException, FileFormatException,
+	AbnormalTerminationException
+	{
+		EnumSet<Arguments> args = EnumSet.of(
+				Arguments.IN_PML,
+				Arguments.OUT_HMM);
+		CommandLineArguments.checkArgs(args);
+		
+		List<String> behaviours = new ArrayList<String>();
+		List<String> rules = new ArrayList<String>();
+		BufferedReader br = new BufferedReader(
+				new InputStreamReader(Arguments.IN_PML.getAsInputStream(),
+						"UTF-8"));
+		try {
+			String line;
+			for (int lineNb = 1; (line = br.readLine()) != null; lineNb++) {
+				int comment = line.indexOf('#');
+				if (comment >= 0)
+					line = line.substring(0, comment);
+				line = line.trim();
+				if (line.length() == 0)
+					continue;
+				
+				boolean rule = line.startsWith(RULE_PREFIX);
+				if (rule)
+					line = line.substring(RULE_PREFIX.length()).trim();
+				if (line.indexOf(':') < 0)
+					throw new FileFormatException(lineNb,
+							"Labelled PML statement expected");
+				(rule ? rules : behaviours).add(line);
+			}
+		} finally {
+			br.close();
+		}
+		
+		OutputStream os = Arguments.OUT_HMM.getAsOutputStream();
+		try {
+			PMLAssetLibraryWriter.write(os, behaviours, rules);
+		} catch(IllegalArgumentException e) {
+			throw new AbnormalTerminationException(e.getMessage());
+		} finally {
+			os.close();
+		}
+	}
+}
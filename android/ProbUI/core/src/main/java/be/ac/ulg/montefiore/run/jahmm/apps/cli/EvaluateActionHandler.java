@@ -0,0 +1,280 @@
+/* jahmm package - v0.6.1 */
+
+/*
+ *  Copyright (c) 2004-2006, Jean-Marc Francois.
+ *
+ *  This file is part of Jahmm.
+ *  Jahmm is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Jahmm is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Jahmm; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ */
+
+package be.ac.ulg.montefiore.run.jahmm.apps.cli;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import be.ac.ulg.montefiore.run.jahmm.*;
+import be.ac.ulg.montefiore.run.jahmm.apps.cli.CommandLineArguments.Arguments;
+import be.ac.ulg.montefiore.run.jahmm.io.*;
+
+
+/**
+ * Scores each sequence of an observation file against one or more HMMs.
+ * <p>
+ * For each sequence and HMM, a line holding the index of the sequence, the
+ * index of the HMM, the logarithm of the probability of the sequence given
+ * the HMM and its most likely state sequence (Viterbi path) is written to
+ * the standard output, in the order of the sequences.
+ * <p>
+ * The sequences are streamed out of the file and scored in parallel, in
+ * chunks; only a bounded number of chunks is held in memory at any time,
+ * so that files of any size can be scored.
+ */
+class EvaluateActionHandler
+extends ActionHandler
+{
+	/* Number of sequences scored by a single task */
+	static final int CHUNK = 256;
+	
+	
+	public void act()
+	throws FileNotFoundException, IOException, FileFormatException,
+	AbnormalTerminationException
+	{
+		EnumSet<Arguments> args = EnumSet.of(
+				Arguments.OPDF,
+				Arguments.IN_HMM,
+				Arguments.IN_SEQ,
+				Arguments.NB_THREADS);
+		CommandLineArguments.checkArgs(args);
+		
+		int nbThreads = Arguments.NB_THREADS.getAsInt();
+		if (nbThreads <= 0)
+			nbThreads = Runtime.getRuntime().availableProcessors();
+		Writer writer = new BufferedWriter(new OutputStreamWriter(System.out));
+		
+		ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+		try {
+			evaluate(Types.relatedObjs(), writer, executor, nbThreads);
+		} finally {
+			executor.shutdownNow();
+		}
+		
+		writer.flush();
+	}
+	
+	
+	private <O extends Observation & CentroidFactory<O>> void
+	evaluate(RelatedObjs<O> relatedObjs, Writer writer,
+			ExecutorService executor, int nbThreads)
+	throws IOException, FileFormatException, AbnormalTerminationException
+	{
+		List<Hmm<O>> hmms = readHmms(relatedObjs, Arguments.IN_HMM.get());
+		Sequences<O> sequences = openSequences(relatedObjs);
+		
+		LinkedList<Future<String>> futures = new LinkedList<Future<String>>();
+		try {
+			writer.write("# sequence hmm ln(P) viterbi_path\n");
+			
+			int first = 0;
+			List<List<O>> chunk;
+			while (!(chunk = sequences.next(CHUNK)).isEmpty()) {
+				futures.add(executor.submit(score(hmms, chunk, first)));
+				first += chunk.size();
+				
+				/* Bounds the number of chunks in memory */
+				if (futures.size() >= 2 * nbThreads)
+					writer.write(futures.removeFirst().get());
+			}
+			
+			while (!futures.isEmpty())
+				writer.write(futures.removeFirst().get());
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AbnormalTerminationException("Interrupted");
+		} catch(ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new AbnormalTerminationException(e.getCause().toString());
+		} finally {
+			sequences.close();
+		}
+	}
+	
+	
+	private <O extends Observation> Callable<String>
+	score(List<Hmm<O>> hmms, final List<List<O>> chunk, final int first)
+	{
+		/* Each task works on its own copies, since the opdfs use temporary
+		 buffers when computing probabilities */
+		final List<Hmm<O>> copies = copy(hmms);
+		
+		return new Callable<String>() {
+			public String call()
+			{
+				StringBuilder sb = new StringBuilder();
+				
+				for (int s = 0; s < chunk.size(); s++)
+					for (int h = 0; h < copies.size(); h++) {
+						Hmm<O> hmm = copies.get(h);
+						sb.append(first + s).append(' ').append(h).
+						append(' ').append(hmm.lnProbability(chunk.get(s)));
+						for (int state : 
+							hmm.mostLikelyStateSequence(chunk.get(s)))
+							sb.append(' ').append(state);
+						sb.append('\n');
+					}
+				
+				return sb.toString();
+			}
+		};
+	}
+	
+	
+	static <O extends Observation> List<Hmm<O>> copy(List<Hmm<O>> hmms)
+	{
+		List<Hmm<O>> copies = new ArrayList<Hmm<O>>();
+		
+		for (Hmm<O> hmm : hmms)
+			try {
+				copies.add(hmm.clone());
+			} catch(CloneNotSupportedException e) {
+				throw new InternalError();
+			}
+		
+		return copies;
+	}
+	
+	
+	/**
+	 * Reads a comma-separated list of HMM files.  Each file either holds a
+	 * HMM in the textual format (see {@link HmmReader}) or a serialized HMM
+	 * (see {@link HmmBinaryReader}); the latter is faster to load.
+	 */
+	@SuppressWarnings("unchecked")
+	static <O extends Observation & CentroidFactory<O>> List<Hmm<O>>
+	readHmms(RelatedObjs<O> relatedObjs, String files)
+	throws IOException, FileFormatException
+	{
+		List<Hmm<O>> hmms = new ArrayList<Hmm<O>>();
+		
+		for (String file : files.split(",")) {
+			InputStream stream = new BufferedInputStream(file.equals("-") ?
+					System.in : new FileInputStream(file));
+			try {
+				/* Serialized objects start with 0xACED */
+				stream.mark(2);
+				boolean binary = stream.read() == 0xAC && 
+					stream.read() == 0xED;
+				stream.reset();
+				
+				if (binary)
+					hmms.add((Hmm<O>) HmmBinaryReader.read(stream));
+				else
+					hmms.add(HmmReader.read(new InputStreamReader(stream),
+							relatedObjs.opdfReader()));
+			} finally {
+				if (stream != System.in)
+					stream.close();
+			}
+		}
+		
+		return hmms;
+	}
+	
+	
+	/**
+	 * Opens the sequences file.  Files are streamed; the standard input is
+	 * read at once.
+	 */
+	static <O extends Observation & CentroidFactory<O>> Sequences<O>
+	openSequences(RelatedObjs<O> relatedObjs)
+	throws IOException, FileFormatException, WrongArgumentsException
+	{
+		if (Arguments.IN_SEQ.get().equals("-"))
+			return new Sequences<O>(relatedObjs.readSequences(
+					new InputStreamReader(System.in)));
+		
+		FileInputStream stream = new FileInputStream(Arguments.IN_SEQ.get());
+		return new Sequences<O>(stream, 
+				new ObservationSequencesStreamReader<O>(stream.getChannel(),
+						relatedObjs.sequenceBuilder()));
+	}
+	
+	
+	/**
+	 * The sequences of a file, either streamed or held in memory.
+	 */
+	static class Sequences<O extends Observation>
+	{
+		private final FileInputStream stream;
+		private final ObservationSequencesStreamReader<O> reader;
+		private final Iterator<List<O>> iterator;
+		
+		
+		Sequences(FileInputStream stream,
+				ObservationSequencesStreamReader<O> reader)
+		{
+			this.stream = stream;
+			this.reader = reader;
+			this.iterator = null;
+		}
+		
+		
+		Sequences(List<List<O>> sequences)
+		{
+			this.stream = null;
+			this.reader = null;
+			this.iterator = sequences.iterator();
+		}
+		
+		
+		/**
+		 * Returns the next sequences.
+		 *
+		 * @param max The maximum number of sequences returned.
+		 * @return The next sequences; an empty list when all the sequences
+		 *         have been read.
+		 */
+		List<List<O>> next(int max)
+		throws IOException, FileFormatException
+		{
+			List<List<O>> sequences = new ArrayList<List<O>>();
+			
+			while (sequences.size() < max) {
+				List<O> sequence;
+				if (reader != null)
+					sequence = reader.nextSequence();
+				else
+					sequence = iterator.hasNext() ? iterator.next() : null;
+				
+				if (sequence == null)
+					break;
+				sequences.add(sequence);
+			}
+			
+			return sequences;
+		}
+		
+		
+		void close()
+		throws IOException
+		{
+			if (stream != null)
+				stream.close();
+		}
+	}
+}
@@ -0,0 +1,177 @@
+/* jahmm package - v0.6.1 */
+
+/*
+ *  *  Copyright (c) 2004-2006, Jean-Marc Francois.
+ *
+ *  This file is part of Jahmm.
+ *  Jahmm is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Jahmm is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Jahmm; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ */
+package be.ac.ulg.montefiore.run.jahmm.apps.cli;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import be.ac.ulg.montefiore.run.distributions.SplitRandom;
+import be.ac.ulg.montefiore.run.jahmm.*;
+import be.ac.ulg.montefiore.run.jahmm.apps.cli.CommandLineArguments.Arguments;
+import be.ac.ulg.montefiore.run.jahmm.io.*;
+import be.ac.ulg.montefiore.run.jahmm.toolbox.MarkovGenerator;
+
+
+/**
+ * Generates observation sequences from a HMM and write it to file.
+ * <p>
+ * The sequences are generated in chunks, each with its own generator split
+ * from a (seeded) root generator, and written as soon as they are
+ * generated; the chunks can be generated in parallel, in which case they
+ * are written in order.  The sequences thus only depend on the seed, not on
+ * the number of threads, and any number of sequences can be generated.
+ */
+class GenerateActionHandler
+extends ActionHandler
+{
+	/* Approximate number of observations generated by a single task */
+	private static final int CHUNK_OBSERVATIONS = 1 << 16;
+	
+	
+	public void act()
+	throws FileNotFoundException, IOException, FileFormatException,
+	AbnormalTerminationException
+	{
+		EnumSet<Arguments> args = EnumSet.of(
+				Arguments.OPDF,
+				Arguments.OUT_SEQS,
+				Arguments.IN_HMM,
+				Arguments.NB_SEQUENCES,
+				Arguments.SEQUENCE_LENGTH,
+				Arguments.SEED,
+				Arguments.NB_THREADS);
+		CommandLineArguments.checkArgs(args);
+		
+		int nbSequences = Arguments.NB_SEQUENCES.getAsInt();
+		int length = Arguments.SEQUENCE_LENGTH.getAsInt();
+		if (nbSequences < 0 || length <= 0)
+			throw new WrongArgumentsException("Invalid number of sequences " +
+					"or sequence length");
+		Random random = new SplitRandom();
+		if (!Arguments.SEED.get().equals(Arguments.SEED.getDefault()))
+			try {
+				random = new SplitRandom(Long.parseLong(Arguments.SEED.get()));
+			} catch(NumberFormatException e) {
+				throw new WrongArgumentsException("'" + Arguments.SEED.get() +
+						"' is not a number; number expected");
+			}
+		int nbThreads = Arguments.NB_THREADS.getAsInt();
+		if (nbThreads <= 0)
+			nbThreads = Runtime.getRuntime().availableProcessors();
+		
+		InputStream hmmStream = Arguments.IN_HMM.getAsInputStream();
+		Reader hmmFileReader = new InputStreamReader(hmmStream);
+		OutputStream seqsStream = Arguments.OUT_SEQS.getAsOutputStream();
+		Writer seqsFileWriter = new BufferedWriter(
+				new OutputStreamWriter(seqsStream, "US-ASCII"), 1 << 16);
+		
+		write(hmmFileReader, seqsFileWriter, Types.relatedObjs(), random,
+				nbSequences, length, nbThreads);
+		
+		seqsFileWriter.flush();
+	}
+	
+	
+	private <O extends Observation & CentroidFactory<O>> void
+	write(Reader hmmFileReader, Writer seqsFileWriter,
+			RelatedObjs<O> relatedObjs, Random random, int nbSequences,
+			int length, int nbThreads)
+	throws IOException, FileFormatException, AbnormalTerminationException
+	{
+		OpdfReader<? extends Opdf<O>> opdfReader = relatedObjs.opdfReader();
+		Hmm<O> hmm = HmmReader.read(hmmFileReader, opdfReader);
+		
+		MarkovGenerator<O> root = relatedObjs.generator(hmm, random);
+		int chunkSize = Math.max(1, CHUNK_OBSERVATIONS / length);
+		
+		if (nbThreads == 1) {
+			for (int first = 0; first < nbSequences; first += chunkSize)
+				write(root.split(), relatedObjs.observationWriter(), 
+						Math.min(chunkSize, nbSequences - first), length,
+						seqsFileWriter);
+			return;
+		}
+		
+		ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+		LinkedList<Future<String>> futures = new LinkedList<Future<String>>();
+		try {
+			for (int first = 0; first < nbSequences; first += chunkSize) {
+				futures.add(executor.submit(generate(root.split(), 
+						relatedObjs.observationWriter(),
+						Math.min(chunkSize, nbSequences - first),
+						length)));
+				
+				/* Bounds the number of chunks in memory */
+				if (futures.size() >= 2 * nbThreads)
+					seqsFileWriter.write(futures.removeFirst().get());
+			}
+			
+			while (!futures.isEmpty())
+				seqsFileWriter.write(futures.removeFirst().get());
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AbnormalTerminationException("Interrupted");
+		} catch(ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new AbnormalTerminationException(e.getCause().toString());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	
+	private <O extends Observation> Callable<String>
+	generate(final MarkovGenerator<O> generator,
+			final ObservationWriter<O> obsWriter, final int nbSequences,
+			final int length)
+	{
+		return new Callable<String>() {
+			public String call()
+			throws IOException
+			{
+				StringWriter writer = new StringWriter();
+				write(generator, obsWriter, nbSequences, length, writer);
+				return writer.toString();
+			}
+		};
+	}
+	
+	
+	/*
+	 * Generates sequences, writing each observation as soon as it is
+	 * generated.
+	 */
+	private static <O extends Observation> void
+	write(MarkovGenerator<O> generator, ObservationWriter<O> obsWriter,
+			int nbSequences, int length, Writer writer)
+	throws IOException
+	{
+		for (int s = 0; s < nbSequences; s++) {
+			for (int t = 0; t < length; t++)
+				obsWriter.write(generator.observation(), writer);
+			writer.write("\n");
+			generator.newSequence();
+		}
+	}
+}
@@ -33,7 +33,9 @@ public class HelpActionHandler extends ActionHandler
 	public void act()
 	{
 		String s = "Usage:\tCli (create|print|learn-kmeans|" +
-		"learn-bw|generate|distance-kl) <arguments>\n" +
+		"learn-bw|learn-touch|generate|distance-kl|evaluate|bench|" +
+		"compile-pml) " +
+		"<arguments>\n" +
 		"\tCli -help\n";
 		
 		s += "\nCommand line interface for the Jahmm library.\nThe '-help'" +
@@ -44,7 +46,14 @@ public class HelpActionHandler extends ActionHandler
 		"readable way.  'learn-kmeans' (resp.\n'learn-bw') applies the " +
 		"k-means (resp. Baum-Welch) learning algorithm.\n'generate' creates" +
 		"sequences of observation from a HMM. 'distance-kl' computes a\n" +
-		"stochastic Kullback-Leibler distance between two HMMs.\n";
+		"stochastic Kullback-Leibler distance between two HMMs.\n" +
+		"'learn-touch' learns the touch behaviours of ProbUI interactors " +
+		"out of a touch\nlog. 'evaluate' writes the probability and the " +
+		"Viterbi path of each sequence\ngiven each HMM. 'bench' measures " +
+		"the throughput and latency of the forward,\nViterbi and " +
+		"Baum-Welch algorithms. 'compile-pml' compiles labelled PML " +
+		"behaviours and rules\n(one per line, rules prefixed by 'rule') " +
+		"into a library for the assets of an\napp.\n";
 		
 		s += "\nMore information can be found at:\n" +
 		"http://www.run.montefiore.ulg.ac.be/~francois/software/jahmm/cli/\n";
@@ -68,21 +77,43 @@ public class HelpActionHandler extends ActionHandler
 		
 		s += "-n <nb_states>\n\tThe number of states of the HMM.\n";
 		s += "-i <input_file>\n\tAn HMM input file.  Default is standard " +
-		"input.\n";
+		"input.  'evaluate' and 'bench'\n\taccept a comma-separated list " +
+		"of files, textual or serialized.\n";
 		s += "-o <output_file>\n\tAn HMM output file.  Default is standard " +
 		"output.\n";
 		
 		s += "-os <output_file>\n\tA sequences output file.\n  Default is " +
 		"standard output.\n";
-		s += "-is <input_file>\n\tA sequences input file.\n";
+		s += "-is <input_file>\n\tA sequences input file (a touch log for " +
+		"'learn-touch').\n";
 		
 		s += "-ikl <input_file>\n\tAn HMM input file with respect to which " +
 		"a Kullback-Leibler distance can\n\tbe computed.\n";
 		
 		s += "-ni <nb>\n\tThe number of iterations performed by the " +
-		"Baum-Welch algorithm.  Default is " +
+		"Baum-Welch algorithm (the number\n\tof measured rounds for " +
+		"'bench').  Default is " +
 		Arguments.NB_ITERATIONS.getDefault() + ".\n";
 		
+		s += "-ipml <input_file>\n\tA file describing the touch behaviours " +
+		"(one per line: interactor,\n\tdensity, x, y, width, height, " +
+		"surface width, surface height and PML\n\tstatement; only the " +
+		"PML statements for 'compile-pml').\n";
+		s += "-od <output_directory>\n\tThe directory the learnt touch " +
+		"behaviours are written to.\n";
+		s += "-nt <nb>\n\tThe number of threads used for learning, " +
+		"generating, evaluating and\n\tbenchmarking.  " +
+		"Default is " + Arguments.NB_THREADS.getDefault() + ", i.e. one " +
+		"per\n\tprocessor.\n";
+		
+		s += "-ns <nb>\n\tThe number of sequences generated.  Default is " +
+		Arguments.NB_SEQUENCES.getDefault() + ".\n";
+		s += "-l <length>\n\tThe length of the sequences generated.  " +
+		"Default is " + Arguments.SEQUENCE_LENGTH.getDefault() + ".\n";
+		s += "-seed <seed>\n\tThe seed of the generated sequences, which " +
+		"do not depend on the\n\tnumber of threads.  Default is " +
+		Arguments.SEED.getDefault() + ".\n";
+		
 		s += "All input (resp. output) file names can be replaced by '-' " +
 		"to mean using\nstandard input (resp. output).\n";
 		
@@ -25,6 +25,7 @@ package be.ac.ulg.montefiore.run.jahmm.apps.cli;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.List;
+import java.util.Random;
 
 import be.ac.ulg.montefiore.run.jahmm.*;
 import be.ac.ulg.montefiore.run.jahmm.io.*;
@@ -44,5 +45,6 @@ public interface RelatedObjs<O extends Observation & CentroidFactory<O>>
 	public OpdfWriter<? extends Opdf<O>> opdfWriter();
 	public List<List<O>> readSequences(Reader reader)
 	throws FileFormatException, IOException;
-	public MarkovGenerator<O> generator(Hmm<O> hmm);
+	public ObservationSequencesStreamReader.Builder<O> sequenceBuilder();
+	public MarkovGenerator<O> generator(Hmm<O> hmm, Random random);
 }
\ No newline at end of file
@@ -0,0 +1,392 @@
+/* jahmm package - v0.6.1 */
+
+/*
+ *  Copyright (c) 2004-2006, Jean-Marc Francois.
+ *
+ *  This file is part of Jahmm.
+ *  Jahmm is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Jahmm is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Jahmm; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ */
+
+package be.ac.ulg.montefiore.run.jahmm.apps.cli;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import be.ac.ulg.montefiore.run.jahmm.Hmm;
+import be.ac.ulg.montefiore.run.jahmm.apps.cli.CommandLineArguments.Arguments;
+import be.ac.ulg.montefiore.run.jahmm.io.*;
+import be.ac.ulg.montefiore.run.jahmm.learn.BaumWelchLearner;
+import be.ac.ulg.montefiore.run.jahmm.learn.BaumWelchScaledLearner;
+import de.lmu.ifi.medien.probui.behaviours.ProbBehaviourTouch;
+import de.lmu.ifi.medien.probui.hmm.ObservationVectorTouch;
+import de.lmu.ifi.medien.probui.observations.ProbObservationTouch;
+import de.lmu.ifi.medien.probui.pml.PMLParserTouchImpl;
+
+
+/**
+ * Learns the parameters of ProbUI touch behaviours out of a touch log (see
+ * {@link TouchLogReader}).
+ * <p>
+ * The behaviours are described by a file holding a line per behaviour, made
+ * of the name of the interactor, the display density, the position and size
+ * of the interactor, the size of the surface (all in pixels) and the PML
+ * statement of the behaviour, separated by spaces.  The behaviours of an
+ * interactor are initialised from their PML statements; each gesture of the
+ * log that determined this interactor is then assigned to its most likely
+ * behaviour, and the behaviours are learnt with the Baum-Welch algorithm
+ * (in parallel over the sequences).  For relative gestures, each sequence is
+ * translated so that its touch down lands on the behaviour's origin, as the
+ * behaviour is moved to the touch down location at runtime.
+ * <p>
+ * The log is only read once: the sequences of each interactor are spilled to
+ * a temporary file, so that only the sequences of one interactor are kept in
+ * memory at a time.
+ * <p>
+ * The result is written to a file per behaviour in the output directory,
+ * named after the interactor and the behaviour's label; each file can be
+ * loaded with {@link ProbBehaviourTouch#loadModel(Reader)} (for the geometry
+ * and surface given in the behaviours file).
+ */
+class TouchBWActionHandler
+extends ActionHandler
+{
+	/* Number of sequences assigned to behaviours by a single task */
+	private static final int ASSIGNMENT_CHUNK = 1024;
+	
+	
+	public void act()
+	throws FileNotFoundException, IOException, FileFormatException,
+	AbnormalTerminationException
+	{
+		EnumSet<Arguments> args = EnumSet.of(
+				Arguments.IN_PML,
+				Arguments.IN_SEQ,
+				Arguments.OUT_DIR,
+				Arguments.NB_ITERATIONS,
+				Arguments.NB_THREADS);
+		CommandLineArguments.checkArgs(args);
+		
+		int nbIterations = Arguments.NB_ITERATIONS.getAsInt();
+		int nbThreads = Arguments.NB_THREADS.getAsInt();
+		if (nbThreads <= 0)
+			nbThreads = Runtime.getRuntime().availableProcessors();
+		File outDir = new File(Arguments.OUT_DIR.get());
+		if (!outDir.isDirectory() && !outDir.mkdirs())
+			throw new AbnormalTerminationException("Cannot create directory '"
+					+ outDir + "'");
+		
+		Map<String, List<ProbBehaviourTouch>> behaviours = readBehaviours(
+				new InputStreamReader(Arguments.IN_PML.getAsInputStream()));
+		
+		Map<String, File> spills = new HashMap<String, File>();
+		ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+		try {
+			spillSequences(new InputStreamReader(
+					Arguments.IN_SEQ.getAsInputStream()), behaviours.keySet(),
+					spills);
+			
+			for (String interactor : behaviours.keySet()) {
+				List<List<ObservationVectorTouch>> sequences =
+					readSpill(spills.get(interactor));
+				learn(interactor, behaviours.get(interactor), sequences,
+						executor, nbThreads, nbIterations, outDir);
+			}
+		} finally {
+			executor.shutdown();
+			for (File file : spills.values())
+				file.delete();
+		}
+	}
+	
+	
+	private Map<String, List<ProbBehaviourTouch>> readBehaviours(Reader reader)
+	throws IOException, FileFormatException
+	{
+		Map<String, List<ProbBehaviourTouch>> behaviours =
+			new LinkedHashMap<String, List<ProbBehaviourTouch>>();
+		BufferedReader br = new BufferedReader(reader);
+		
+		String line;
+		for (int lineNb = 1; (line = br.readLine()) != null; lineNb++) {
+			int comment = line.indexOf('#');
+			if (comment >= 0)
+				line = line.substring(0, comment);
+			line = line.trim();
+			if (line.length() == 0)
+				continue;
+			
+			String[] fields = line.split("\\s+", 9);
+			if (fields.length != 9)
+				throw new FileFormatException(lineNb, "Interactor name, " +
+						"density, position, size, surface size and PML " +
+						"statement expected");
+			
+			double[] numbers = new double[7];
+			for (int i = 0; i < numbers.length; i++)
+				try {
+					numbers[i] = Double.parseDouble(fields[i + 1]);
+				} catch(NumberFormatException e) {
+					throw new FileFormatException(lineNb, "'" + 
+							fields[i + 1] + "' is not a number");
+				}
+			
+			ProbBehaviourTouch behaviour = 
+				new PMLParserTouchImpl((float) numbers[0]).parse(fields[8],
+						numbers[1], numbers[2], numbers[3], numbers[4],
+						numbers[5], numbers[6]);
+			
+			List<ProbBehaviourTouch> list = behaviours.get(fields[0]);
+			if (list == null) {
+				list = new ArrayList<ProbBehaviourTouch>();
+				behaviours.put(fields[0], list);
+			}
+			list.add(behaviour);
+		}
+		
+		return behaviours;
+	}
+	
+	
+	/*
+	 * Streams the log and writes the sequences of each known interactor to its
+	 * own temporary file (added to 'spills' as soon as it is created, so that
+	 * the caller can delete it).
+	 */
+	private void spillSequences(Reader reader, Set<String> interactors,
+			Map<String, File> spills)
+	throws IOException, FileFormatException
+	{
+		Map<String, DataOutputStream> streams =
+			new HashMap<String, DataOutputStream>();
+		try {
+			for (String interactor : interactors) {
+				File file = File.createTempFile("touch-bw", ".seq");
+				spills.put(interactor, file);
+				streams.put(interactor, new DataOutputStream(
+						new BufferedOutputStream(new FileOutputStream(file))));
+			}
+			
+			TouchLogReader tlr = new TouchLogReader(reader);
+			while (tlr.next()) {
+				DataOutputStream out = streams.get(tlr.interactor());
+				if (out == null)
+					continue;
+				
+				for (List<ObservationVectorTouch> sequence : tlr.sequences())
+					if (sequence.size() > 1) { // Baum-Welch needs two observations
+						out.writeInt(sequence.size());
+						for (ObservationVectorTouch o : sequence)
+							new ProbObservationTouch(o.realFeatures,
+									o.nominalFeatures, 0).write(out);
+					}
+			}
+		} finally {
+			for (DataOutputStream out : streams.values())
+				out.close();
+		}
+	}
+	
+	
+	/* Reads the sequences spilled by spillSequences */
+	private List<List<ObservationVectorTouch>> readSpill(File file)
+	throws IOException
+	{
+		List<List<ObservationVectorTouch>> sequences =
+			new ArrayList<List<ObservationVectorTouch>>();
+		DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file)));
+		try {
+			while (true) {
+				int size;
+				try {
+					size = in.readInt();
+				} catch(EOFException e) {
+					break;
+				}
+				
+				List<ObservationVectorTouch> sequence =
+					new ArrayList<ObservationVectorTouch>(size);
+				for (int i = 0; i < size; i++)
+					sequence.add(new ObservationVectorTouch(
+							ProbObservationTouch.read(in)));
+				sequences.add(sequence);
+			}
+		} finally {
+			in.close();
+		}
+		
+		return sequences;
+	}
+	
+	
+	/*
+	 * Returns the origin of the given behaviour if it is a relative gesture,
+	 * null otherwise.
+	 */
+	private static float[] relativeOrigin(ProbBehaviourTouch behaviour)
+	{
+		return behaviour.isRelativeGesture() ?
+				behaviour.getRelativeOriginFakeState() : null;
+	}
+	
+	
+	/*
+	 * Translates the sequence so that its first observation (the touch down)
+	 * lands on the given origin.
+	 */
+	private static List<ObservationVectorTouch>
+	translate(List<ObservationVectorTouch> sequence, float[] origin)
+	{
+		double dx = origin[0] - 
+			sequence.get(0).realFeatures[ProbObservationTouch.FEATURE_X];
+		double dy = origin[1] -
+			sequence.get(0).realFeatures[ProbObservationTouch.FEATURE_Y];
+		
+		List<ObservationVectorTouch> translated =
+			new ArrayList<ObservationVectorTouch>(sequence.size());
+		for (ObservationVectorTouch o : sequence) {
+			double[] features = o.realFeatures.clone();
+			features[ProbObservationTouch.FEATURE_X] += dx;
+			features[ProbObservationTouch.FEATURE_Y] += dy;
+			translated.add(new ObservationVectorTouch(
+					new ProbObservationTouch(features, o.nominalFeatures, 0)));
+		}
+		
+		return translated;
+	}
+	
+	
+	private void learn(String interactor, List<ProbBehaviourTouch> behaviours,
+			List<List<ObservationVectorTouch>> sequences,
+			ExecutorService executor, int nbThreads, int nbIterations, 
+			File outDir)
+	throws IOException, AbnormalTerminationException
+	{
+		List<List<List<ObservationVectorTouch>>> assigned =
+			assign(behaviours, sequences, executor);
+		
+		for (int b = 0; b < behaviours.size(); b++) {
+			Hmm<ObservationVectorTouch> hmm = behaviours.get(b).getModel();
+			
+			if (!assigned.get(b).isEmpty()) {
+				BaumWelchLearner bw = new BaumWelchScaledLearner();
+				bw.setNbIterations(nbIterations);
+				bw.setMemoryBounded(true);
+				bw.setExecutor(executor, 4 * nbThreads);
+				hmm = bw.learn(hmm, assigned.get(b));
+			}
+			
+			String label = behaviours.get(b).getLabel();
+			File file = new File(outDir, interactor + "." + 
+					(label == null || label.length() == 0 ? "" + b : label) +
+			".hmm");
+			Writer writer = new BufferedWriter(new FileWriter(file));
+			try {
+				HmmWriter.write(writer, new OpdfTouchGaussianWriter(), hmm);
+			} finally {
+				writer.close();
+			}
+			
+			System.out.println(file + ": " + assigned.get(b).size() + 
+			" sequences");
+		}
+	}
+	
+	
+	/*
+	 * Assigns each sequence to the behaviour that explains it best.  The
+	 * sequences that no behaviour can explain are dropped.
+	 */
+	private List<List<List<ObservationVectorTouch>>>
+	assign(final List<ProbBehaviourTouch> behaviours,
+			final List<List<ObservationVectorTouch>> sequences,
+			ExecutorService executor)
+	throws AbnormalTerminationException
+	{
+		List<Future<int[]>> futures = new ArrayList<Future<int[]>>();
+		
+		for (int from = 0; from < sequences.size(); from += ASSIGNMENT_CHUNK) {
+			final List<List<ObservationVectorTouch>> part = sequences.subList(
+					from, Math.min(from + ASSIGNMENT_CHUNK, sequences.size()));
+			
+			/* Each task works on its own copies, since the opdfs use 
+			 temporary buffers when computing probabilities */
+			final List<Hmm<ObservationVectorTouch>> hmms =
+				new ArrayList<Hmm<ObservationVectorTouch>>();
+			final List<float[]> origins = new ArrayList<float[]>();
+			for (ProbBehaviourTouch behaviour : behaviours) {
+				try {
+					hmms.add(behaviour.getModel().clone());
+				} catch(CloneNotSupportedException e) {
+					throw new InternalError();
+				}
+				origins.add(relativeOrigin(behaviour));
+			}
+			
+			futures.add(executor.submit(new Callable<int[]>() {
+				public int[] call()
+				{
+					int[] best = new int[part.size()];
+					
+					for (int s = 0; s < best.length; s++) {
+						double max = Double.NEGATIVE_INFINITY;
+						best[s] = -1;
+						for (int b = 0; b < hmms.size(); b++) {
+							List<ObservationVectorTouch> sequence =
+								origins.get(b) == null ? part.get(s) :
+									translate(part.get(s), origins.get(b));
+							double lnP = hmms.get(b).lnProbability(sequence);
+							if (lnP > max) {
+								max = lnP;
+								best[s] = b;
+							}
+						}
+					}
+					
+					return best;
+				}
+			}));
+		}
+		
+		List<List<List<ObservationVectorTouch>>> assigned =
+			new ArrayList<List<List<ObservationVectorTouch>>>();
+		for (int b = 0; b < behaviours.size(); b++)
+			assigned.add(new ArrayList<List<ObservationVectorTouch>>());
+		
+		try {
+			int s = 0;
+			for (Future<int[]> future : futures)
+				for (int b : future.get()) {
+					if (b >= 0) {
+						float[] origin = relativeOrigin(behaviours.get(b));
+						assigned.get(b).add(origin == null ? sequences.get(s) :
+							translate(sequences.get(s), origin));
+					}
+					s++;
+				}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AbnormalTerminationException("Interrupted");
+		} catch(ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new AbnormalTerminationException(e.getCause().toString());
+		}
+		
+		return assigned;
+	}
+}
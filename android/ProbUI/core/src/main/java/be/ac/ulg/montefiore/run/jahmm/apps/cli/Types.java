@@ -25,6 +25,7 @@ package be.ac.ulg.montefiore.run.jahmm.apps.cli;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.List;
+import java.util.Random;
 
 import be.ac.ulg.montefiore.run.jahmm.*;
 import be.ac.ulg.montefiore.run.jahmm.apps.cli.CommandLineArguments.Arguments;
@@ -106,10 +107,17 @@ implements RelatedObjs<ObservationInteger>
 	}
 	
 	
+	public ObservationSequencesStreamReader.Builder<ObservationInteger>
+	sequenceBuilder()
+	{
+		return new ObservationSequencesStreamReader.IntegerBuilder(range);
+	}
+	
+	
 	public MarkovGenerator<ObservationInteger>
-	generator(Hmm<ObservationInteger> hmm)
+	generator(Hmm<ObservationInteger> hmm, Random random)
 	{
-		return new MarkovGenerator<ObservationInteger>(hmm);
+		return new MarkovGenerator<ObservationInteger>(hmm, random);
 	}
 }
 
@@ -177,10 +185,17 @@ implements RelatedObjs<ObservationReal>
 	}
 	
 	
+	public ObservationSequencesStreamReader.Builder<ObservationReal>
+	sequenceBuilder()
+	{
+		return new ObservationSequencesStreamReader.RealBuilder();
+	}
+	
+	
 	public MarkovGenerator<ObservationReal>
-	generator(Hmm<ObservationReal> hmm)
+	generator(Hmm<ObservationReal> hmm, Random random)
 	{
-		return new MarkovGenerator<ObservationReal>(hmm);
+		return new MarkovGenerator<ObservationReal>(hmm, random);
 	}
 }
 
@@ -238,10 +253,17 @@ implements RelatedObjs<ObservationVector>
 	}
 	
 	
+	public ObservationSequencesStreamReader.Builder<ObservationVector>
+	sequenceBuilder()
+	{
+		return new ObservationSequencesStreamReader.VectorBuilder(dimension);
+	}
+	
+	
 	public MarkovGenerator<ObservationVector>
-	generator(Hmm<ObservationVector> hmm)
+	generator(Hmm<ObservationVector> hmm, Random random)
 	{
-		return new MarkovGenerator<ObservationVector>(hmm);
+		return new MarkovGenerator<ObservationVector>(hmm, random);
 	}
 }
 
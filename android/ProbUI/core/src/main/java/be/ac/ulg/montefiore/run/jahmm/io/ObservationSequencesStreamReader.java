@@ -0,0 +1,744 @@
+/* jahmm package - v0.6.1 */
+
+/*
+ *  Copyright (c) 2004-2006, Jean-Marc Francois.
+ *
+ *  This file is part of Jahmm.
+ *  Jahmm is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Jahmm is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Jahmm; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ */
+
+package be.ac.ulg.montefiore.run.jahmm.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import be.ac.ulg.montefiore.run.jahmm.*;
+
+
+/**
+ * Reads observation sequences files in chunks out of a
+ * {@link java.nio.channels.FileChannel FileChannel}.
+ * <p>
+ * The file format is the one of {@link ObservationSequencesReader
+ * ObservationSequencesReader}, with two extensions: real values can have an
+ * exponent (<i>e.g.</i> <code>1.5e-3</code>) and the last line does not need
+ * to be terminated by a newline.  Numbers are parsed directly out of the
+ * bytes read, so no intermediate strings or tokens are created (but for the
+ * rare numbers that can't be converted exactly with a
+ * <code>double</code> multiplication).
+ * <p>
+ * Sequences are pulled one by one using {@link #nextSequence()
+ * nextSequence}, so a whole file never needs to be held in memory.  A file
+ * can also be split into parts ending at sequence boundaries
+ * (see {@link #split(FileChannel, int) split}), each part being read by its
+ * own reader, <i>e.g.</i> in its own thread.
+ */
+public class ObservationSequencesStreamReader<O extends Observation>
+{
+	/**
+	 * Default size of the chunks read out of the file.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+	
+	/* Powers of ten that are exactly represented as doubles */
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+		1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+	
+	private static final int EOF = -1;
+	
+	private final FileChannel channel;
+	private final long to;
+	private final Builder<O> builder;
+	
+	private final ByteBuffer buffer;
+	private final byte[] bytes;
+	private long bufferOffset; /* File offset of bytes[0] */
+	private int bufferPosition;
+	private int bufferLimit;
+	private boolean eof;
+	
+	private double[] values;
+	private char[] token;
+	
+	
+	/**
+	 * Creates a reader of the observation sequences held in a whole file.
+	 *
+	 * @param channel The channel the sequences are read from.  It is only
+	 *                accessed using absolute positions, so that its position
+	 *                is left untouched and it can be shared between readers.
+	 * @param builder Builds the observations out of the values read.
+	 */
+	public ObservationSequencesStreamReader(FileChannel channel,
+			Builder<O> builder)
+	throws IOException
+	{
+		this(channel, 0, channel.size(), builder, DEFAULT_BUFFER_SIZE);
+	}
+	
+	
+	/**
+	 * Creates a reader of the observation sequences starting in a part of
+	 * a file.
+	 *
+	 * @param channel The channel the sequences are read from.  It is only
+	 *                accessed using absolute positions, so that its position
+	 *                is left untouched and it can be shared between readers.
+	 * @param from The offset of the first byte of the part; must be the
+	 *             beginning of the file or follow a newline that ends a
+	 *             sequence (see {@link #split(FileChannel, int) split}).
+	 * @param to The offset following the part.  The last sequence starting
+	 *           before this offset is read entirely, even if it ends after it.
+	 * @param builder Builds the observations out of the values read.
+	 * @param bufferSize The size of the chunks read out of the file.
+	 */
+	public ObservationSequencesStreamReader(FileChannel channel, long from,
+			long to, Builder<O> builder, int bufferSize)
+	{
+		if (from < 0 || from > to)
+			throw new IllegalArgumentException("Invalid part of file");
+		if (bufferSize <= 0)
+			throw new IllegalArgumentException("Buffer size must be " +
+					"strictly positive");
+		
+		this.channel = channel;
+		this.to = to;
+		this.builder = builder;
+		
+		bytes = new byte[bufferSize];
+		buffer = ByteBuffer.wrap(bytes);
+		bufferOffset = from;
+		bufferPosition = 0;
+		bufferLimit = 0;
+		eof = false;
+		
+		values = new double[16];
+		token = new char[32];
+	}
+	
+	
+	/**
+	 * Reads the next observation sequence.  Empty lines or comments can
+	 * appear before the sequence itself.
+	 *
+	 * @return The next sequence, or null if the end of the file (or part of
+	 *         the file) is reached before any sequence is found.
+	 */
+	public List<O> nextSequence()
+	throws IOException, FileFormatException
+	{
+		/* Skip empty lines and comments */
+		int c;
+		while (true) {
+			c = peek();
+			if (c == '#')
+				skipComment();
+			else if (c != EOF && c <= ' ')
+				bufferPosition++;
+			else
+				break;
+		}
+		
+		if (c == EOF || offset() >= to)
+			return null;
+		
+		List<O> sequence = new ArrayList<O>();
+		
+		while (true) {
+			sequence.add(readObservation());
+			
+			c = skipBlanks();
+			if (c == '\\') { /* New lines can be escaped by '\' */
+				bufferPosition++;
+				c = skipBlanks();
+				if (c == '#')
+					c = skipComment();
+				if (c != '\n')
+					throw formatException("'\\' is not followed by a " +
+							"new line");
+				bufferPosition++;
+				
+				/* An empty line ends the sequence, as does a comment */
+				c = skipBlanks();
+				if (c == '#')
+					c = skipComment();
+			} else if (c == '#')
+				c = skipComment();
+			
+			if (c == '\n') {
+				bufferPosition++;
+				return sequence;
+			}
+			if (c == EOF)
+				return sequence;
+		}
+	}
+	
+	
+	/* Reads an observation and the semi-colon following it */
+	private O readObservation()
+	throws IOException, FileFormatException
+	{
+		int nbValues = 0;
+		
+		if (builder.readsVectors()) {
+			if (skipBlanks() != '[')
+				throw formatException("'[' expected");
+			bufferPosition++;
+			
+			while (skipBlanks() != ']') {
+				if (nbValues == values.length) {
+					double[] newValues = new double[2 * values.length];
+					System.arraycopy(values, 0, newValues, 0, nbValues);
+					values = newValues;
+				}
+				values[nbValues++] = readNumber();
+			}
+			bufferPosition++;
+			
+			if (nbValues == 0)
+				throw formatException("Empty vector found");
+		} else {
+			skipBlanks();
+			values[nbValues++] = readNumber();
+		}
+		
+		if (skipBlanks() != ';')
+			throw formatException("';' expected");
+		
+		O observation;
+		try {
+			observation = builder.build(values, nbValues);
+		} catch(FileFormatException e) {
+			throw formatException(e.getMessage());
+		}
+		bufferPosition++;
+		
+		return observation;
+	}
+	
+	
+	/* Reads a number of the form [+-]digits[.digits][(e|E)[+-]digits] */
+	private double readNumber()
+	throws IOException, FileFormatException
+	{
+		int nbChars = 0;
+		boolean negative = false;
+		long mantissa = 0;
+		int nbDigits = 0; /* Significant digits in the mantissa */
+		int exponent = 0;
+		boolean exact = true;
+		boolean digitFound = false;
+		
+		int c = peek();
+		if (c == '-' || c == '+') {
+			negative = c == '-';
+			nbChars = append(nbChars, c);
+			c = next();
+		}
+		
+		for (; c >= '0' && c <= '9'; c = next()) {
+			nbChars = append(nbChars, c);
+			digitFound = true;
+			if (mantissa == 0 && c == '0')
+				continue;
+			if (nbDigits < 18) {
+				mantissa = 10 * mantissa + (c - '0');
+				nbDigits++;
+			} else {
+				exponent++;
+				exact = false;
+			}
+		}
+		
+		if (c == '.') {
+			nbChars = append(nbChars, c);
+			for (c = next(); c >= '0' && c <= '9'; c = next()) {
+				nbChars = append(nbChars, c);
+				digitFound = true;
+				if (mantissa == 0 && c == '0')
+					exponent--;
+				else if (nbDigits < 18) {
+					mantissa = 10 * mantissa + (c - '0');
+					nbDigits++;
+					exponent--;
+				} else
+					exact = false;
+			}
+		}
+		
+		if (!digitFound)
+			throw formatException("Number expected");
+		
+		if (c == 'e' || c == 'E') {
+			nbChars = append(nbChars, c);
+			c = next();
+			boolean negativeExponent = false;
+			if (c == '-' || c == '+') {
+				negativeExponent = c == '-';
+				nbChars = append(nbChars, c);
+				c = next();
+			}
+			
+			int value = 0;
+			boolean exponentFound = false;
+			for (; c >= '0' && c <= '9'; c = next()) {
+				nbChars = append(nbChars, c);
+				exponentFound = true;
+				if (value < 100000)
+					value = 10 * value + (c - '0');
+			}
+			if (!exponentFound)
+				throw formatException("Exponent expected");
+			
+			exponent += negativeExponent ? -value : value;
+		}
+		
+		if (c != EOF && c > ' ' && c != ';' && c != ']' && c != '#' &&
+				c != '\\')
+			throw formatException("Unexpected character after number");
+		
+		if (mantissa == 0)
+			return negative ? -0. : 0.;
+		
+		/* A mantissa and a power of ten that are both exactly represented
+		 * lead to a correctly rounded result */
+		if (exact && nbDigits <= 15 && exponent >= -22 && exponent <= 22) {
+			double value = exponent < 0 ?
+					mantissa / POWERS_OF_TEN[-exponent] :
+						mantissa * POWERS_OF_TEN[exponent];
+			return negative ? -value : value;
+		}
+		
+		return Double.parseDouble(new String(token, 0, nbChars));
+	}
+	
+	
+	private int append(int nbChars, int c)
+	{
+		if (nbChars == token.length) {
+			char[] newToken = new char[2 * token.length];
+			System.arraycopy(token, 0, newToken, 0, nbChars);
+			token = newToken;
+		}
+		token[nbChars] = (char) c;
+		
+		return nbChars + 1;
+	}
+	
+	
+	/* Skips spaces and tabs (but not newlines); returns the next byte */
+	private int skipBlanks()
+	throws IOException
+	{
+		int c;
+		while ((c = peek()) != EOF && c != '\n' && c <= ' ')
+			bufferPosition++;
+		
+		return c;
+	}
+	
+	
+	/* Skips a comment up to (but not including) the newline ending it */
+	private int skipComment()
+	throws IOException
+	{
+		int c;
+		while ((c = peek()) != EOF && c != '\n')
+			bufferPosition++;
+		
+		return c;
+	}
+	
+	
+	/* Consumes the current byte and returns the next one */
+	private int next()
+	throws IOException
+	{
+		bufferPosition++;
+		return peek();
+	}
+	
+	
+	private int peek()
+	throws IOException
+	{
+		if (bufferPosition == bufferLimit && !fill())
+			return EOF;
+		
+		return bytes[bufferPosition] & 0xFF;
+	}
+	
+	
+	private boolean fill()
+	throws IOException
+	{
+		if (eof)
+			return false;
+		
+		bufferOffset += bufferLimit;
+		bufferPosition = 0;
+		bufferLimit = 0;
+		
+		buffer.clear();
+		int nbRead = channel.read(buffer, bufferOffset);
+		if (nbRead <= 0) {
+			eof = true;
+			return false;
+		}
+		bufferLimit = nbRead;
+		
+		return true;
+	}
+	
+	
+	/* The offset of the current byte in the file */
+	private long offset()
+	{
+		return bufferOffset + bufferPosition;
+	}
+	
+	
+	private FileFormatException formatException(String s)
+	{
+		return new FileFormatException("Offset " + offset() + ": " + s);
+	}
+	
+	
+	/**
+	 * Splits a file into parts holding whole sequences.  Each part can be
+	 * read by its own reader.
+	 * <p>
+	 * The parts have roughly the same size, and each of them (but the
+	 * first one) begins right after a newline ending a sequence (i.e. a
+	 * newline that is not escaped).
+	 *
+	 * @param channel The channel holding the file.
+	 * @param nbParts The number of parts wanted.
+	 * @return The <code>nbParts+1</code> boundaries of the parts: part
+	 *         <code>p</code> spans the bytes between the offsets
+	 *         <code>p</code> and <code>p+1</code>.  Some parts might be empty.
+	 */
+	public static long[] split(FileChannel channel, int nbParts)
+	throws IOException
+	{
+		if (nbParts <= 0)
+			throw new IllegalArgumentException("Number of parts must be " +
+					"strictly positive");
+		
+		long size = channel.size();
+		long[] boundaries = new long[nbParts + 1];
+		boundaries[nbParts] = size;
+		
+		ByteBuffer buffer = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE);
+		for (int p = 1; p < nbParts; p++) {
+			long from = Math.max(size * p / nbParts, boundaries[p-1]);
+			boundaries[p] = Math.min(nextBoundary(channel, from, buffer),
+					size);
+		}
+		
+		return boundaries;
+	}
+	
+	
+	/*
+	 * Finds the first sequence boundary after an offset.  The line holding
+	 * the offset is skipped, since it is only known from its start whether
+	 * a '\' escapes its newline or is part of a comment.
+	 */
+	private static long nextBoundary(FileChannel channel, long offset,
+			ByteBuffer buffer)
+	throws IOException
+	{
+		boolean lineStarted = offset == 0;
+		boolean inComment = false;
+		boolean escaped = false;
+		
+		while (true) {
+			buffer.clear();
+			int nbRead = channel.read(buffer, offset);
+			if (nbRead <= 0)
+				return offset;
+			
+			byte[] bytes = buffer.array();
+			for (int i = 0; i < nbRead; i++) {
+				byte c = bytes[i];
+				
+				if (c == '\n') {
+					if (lineStarted && !escaped)
+						return offset + i + 1;
+					lineStarted = true;
+					inComment = false;
+					escaped = false;
+				} else if (!inComment) {
+					if (c == '#')
+						inComment = true;
+					else if (c == '\\')
+						escaped = true;
+					else if (c > ' ' || c < 0)
+						escaped = false;
+				}
+			}
+			offset += nbRead;
+		}
+	}
+	
+	
+	/**
+	 * Reads all the observation sequences of a file.
+	 *
+	 * @param channel The channel the sequences are read from.
+	 * @param builder Builds the observations out of the values read.
+	 * @param executor The executor the parts of the file are read with, or
+	 *                 null to read the file in the calling thread.
+	 * @param nbParts The number of parts the file is split into.
+	 * @return The sequences, in the order of the file.
+	 */
+	public static <O extends Observation> List<List<O>>
+	readSequences(final FileChannel channel, final Builder<O> builder,
+			ExecutorService executor, int nbParts)
+	throws IOException, FileFormatException
+	{
+		if (executor == null || nbParts <= 1)
+			return readSequences(new ObservationSequencesStreamReader<O>(
+					channel, builder));
+		
+		final long[] boundaries = split(channel, nbParts);
+		List<Future<List<List<O>>>> futures =
+			new ArrayList<Future<List<List<O>>>>(nbParts);
+		
+		for (int p = 0; p < nbParts; p++) {
+			final int part = p;
+			
+			futures.add(executor.submit(new Callable<List<List<O>>>() {
+				public List<List<O>> call()
+				throws IOException, FileFormatException
+				{
+					return readSequences(
+							new ObservationSequencesStreamReader<O>(channel,
+									boundaries[part], boundaries[part+1],
+									builder, DEFAULT_BUFFER_SIZE));
+				}
+			}));
+		}
+		
+		List<List<O>> sequences = new ArrayList<List<O>>();
+		try {
+			for (Future<List<List<O>>> future : futures)
+				sequences.addAll(future.get());
+		} catch(InterruptedException e) {
+			for (Future<?> future : futures)
+				future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while reading " +
+					"sequences", e);
+		} catch(ExecutionException e) {
+			for (Future<?> future : futures)
+				future.cancel(true);
+			if (e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			if (e.getCause() instanceof FileFormatException)
+				throw (FileFormatException) e.getCause();
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+		
+		return sequences;
+	}
+	
+	
+	private static <O extends Observation> List<List<O>>
+	readSequences(ObservationSequencesStreamReader<O> reader)
+	throws IOException, FileFormatException
+	{
+		List<List<O>> sequences = new ArrayList<List<O>>();
+		
+		List<O> sequence;
+		while ((sequence = reader.nextSequence()) != null)
+			sequences.add(sequence);
+		
+		return sequences;
+	}
+	
+	
+	/**
+	 * Builds observations out of the values read.
+	 */
+	public static interface Builder<O extends Observation>
+	{
+		/**
+		 * Tells if observations are written as vectors
+		 * (<i>e.g.</i> <code>[ 1.1 2.2 ];</code>) or as a single number
+		 * (<i>e.g.</i> <code>3;</code>).
+		 *
+		 * @return True iff the observations are vectors.
+		 */
+		public boolean readsVectors();
+		
+		/**
+		 * Builds an observation.
+		 *
+		 * @param values The values read; this array is reused by the reader.
+		 * @param nbValues The number of values read.
+		 * @return The observation.
+		 */
+		public O build(double[] values, int nbValues)
+		throws FileFormatException;
+	}
+	
+	
+	/**
+	 * Builds {@link be.ac.ulg.montefiore.run.jahmm.ObservationInteger
+	 * ObservationInteger}s, with the same syntax as
+	 * {@link ObservationIntegerReader ObservationIntegerReader}.
+	 */
+	public static class IntegerBuilder
+	implements Builder<ObservationInteger>
+	{
+		private final int nbElements;
+		
+		
+		/**
+		 * Builds integer observations of any value.
+		 */
+		public IntegerBuilder()
+		{
+			nbElements = -1;
+		}
+		
+		
+		/**
+		 * Builds integer observations taking values between 0 and
+		 * <code>nbElements-1</code>.
+		 *
+		 * @param nbElements The number of possible values.
+		 */
+		public IntegerBuilder(int nbElements)
+		{
+			if (nbElements <= 0)
+				throw new IllegalArgumentException("Argument must be " +
+						"strictly positive");
+			
+			this.nbElements = nbElements;
+		}
+		
+		
+		public boolean readsVectors()
+		{
+			return false;
+		}
+		
+		
+		public ObservationInteger build(double[] values, int nbValues)
+		throws FileFormatException
+		{
+			if (nbElements > 0 && values[0] > nbElements - 1)
+				throw new FileFormatException("Integer higher than maximum " +
+						"value " + (nbElements-1));
+			
+			return new ObservationInteger((int) values[0]);
+		}
+	}
+	
+	
+	/**
+	 * Builds {@link be.ac.ulg.montefiore.run.jahmm.ObservationReal
+	 * ObservationReal}s, with the same syntax as
+	 * {@link ObservationRealReader ObservationRealReader}.
+	 */
+	public static class RealBuilder
+	implements Builder<ObservationReal>
+	{
+		public boolean readsVectors()
+		{
+			return false;
+		}
+		
+		
+		public ObservationReal build(double[] values, int nbValues)
+		{
+			return new ObservationReal(values[0]);
+		}
+	}
+	
+	
+	/**
+	 * Builds {@link be.ac.ulg.montefiore.run.jahmm.ObservationVector
+	 * ObservationVector}s, with the same syntax as
+	 * {@link ObservationVectorReader ObservationVectorReader}.
+	 */
+	public static class VectorBuilder
+	implements Builder<ObservationVector>
+	{
+		private final int dimension;
+		
+		
+		/**
+		 * Builds vector observations of any dimension.
+		 */
+		public VectorBuilder()
+		{
+			dimension = -1;
+		}
+		
+		
+		/**
+		 * Builds vector observations of a given dimension.
+		 *
+		 * @param dimension The dimension of the vectors read.
+		 */
+		public VectorBuilder(int dimension)
+		{
+			if (dimension <= 0)
+				throw new IllegalArgumentException("Argument must be " +
+						"strictly positive");
+			
+			this.dimension = dimension;
+		}
+		
+		
+		public boolean readsVectors()
+		{
+			return true;
+		}
+		
+		
+		public ObservationVector build(double[] values, int nbValues)
+		throws FileFormatException
+		{
+			if (dimension > 0 && nbValues != dimension)
+				throw new FileFormatException("Bad observation: wrong " +
+						"dimension (" + nbValues + " instead of " +
+						dimension + ")");
+			
+			ObservationVector ov = new ObservationVector(nbValues);
+			System.arraycopy(values, 0, ov.value, 0, nbValues);
+			
+			return ov;
+		}
+	}
+}
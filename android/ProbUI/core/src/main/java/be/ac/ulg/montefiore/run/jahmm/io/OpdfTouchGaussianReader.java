@@ -0,0 +1,67 @@
+/* jahmm package - v0.6.1 */
+
+/*
+ *  Copyright (c) 2004-2006, Jean-Marc Francois.
+ *
+ *  This file is part of Jahmm.
+ *  Jahmm is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Jahmm is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Jahmm; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ */
+
+package be.ac.ulg.montefiore.run.jahmm.io;
+
+import java.io.IOException;
+import java.io.StreamTokenizer;
+
+import de.lmu.ifi.medien.probui.hmm.OpdfTouchGaussian;
+
+/**
+ * This class implements a {@link OpdfTouchGaussian} reader.  The syntax of
+ * the distribution description is the one of {@link OpdfMultiGaussianReader},
+ * except that the description begins with the keyword
+ * <tt>TouchGaussianOPDF</tt>.
+ * <p>
+ * For example, reading<br>
+ * <tt>TouchGaussianOPDF [ [ .5 .5 ] [ [ .001 0 ] [ 0 .002 ] ] ]</tt>
+ * returns a distribution equivalent to<br>
+ * <code>new OpdfTouchGaussian(new double[] { .5, .5 },
+ *       new double[][] { { .001, 0. }, { 0., .002 } })</code>.
+ */
+public class OpdfTouchGaussianReader
+extends OpdfReader<OpdfTouchGaussian>
+{
+	String keyword()
+	{
+		return "TouchGaussianOPDF";
+	}
+	
+	
+	public OpdfTouchGaussian read(StreamTokenizer st)
+	throws IOException, FileFormatException
+	{
+		HmmReader.readWords(st, keyword(), "[");
+		
+		double[] means = OpdfReader.read(st, -1);
+		double[][] covariance = new double[means.length][];
+		
+		HmmReader.readWords(st, "[");
+		for (int l = 0; l < covariance.length; l++)
+			covariance[l] = OpdfReader.read(st, means.length);
+		HmmReader.readWords(st, "]");
+		HmmReader.readWords(st, "]");
+		
+		return new OpdfTouchGaussian(means, covariance);
+	}
+}
@@ -0,0 +1,73 @@
+/* jahmm package - v0.6.1 */
+
+/*
+ *  Copyright (c) 2004-2006, Jean-Marc Francois.
+ *
+ *  This file is part of Jahmm.
+ *  Jahmm is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Jahmm is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Jahmm; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ */
+
+package be.ac.ulg.montefiore.run.jahmm.io;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+import de.lmu.ifi.medien.probui.hmm.OpdfTouchGaussian;
+
+
+/**
+ * This class implements a {@link OpdfTouchGaussian} writer.  It is compatible
+ * with the {@link OpdfTouchGaussianReader} class.
+ * <p>
+ * Touch models use coordinates relative to the screen size, so that the 
+ * covariances are typically smaller than 10<sup>-3</sup>; the numbers are
+ * thus written with more decimals than by the other writers (and without an 
+ * exponent, which the readers do not support).
+ */
+public class OpdfTouchGaussianWriter
+extends OpdfWriter<OpdfTouchGaussian>
+{
+	public void write(Writer writer, OpdfTouchGaussian opdf)
+	throws IOException
+	{
+		DecimalFormat formatter = new DecimalFormat("0.##################",
+				new DecimalFormatSymbols(Locale.US));
+		
+		writer.write("TouchGaussianOPDF [ ");
+		write(writer, formatter, opdf.mean());
+		writer.write(" [");
+		for (double[] line : opdf.covariance()) {
+			writer.write(" ");
+			write(writer, formatter, line);
+		}
+		writer.write(" ] ]");
+	}
+	
+	
+	private void write(Writer writer, DecimalFormat formatter, double[] array)
+	throws IOException
+	{
+		writer.write("[");
+		
+		for (int i = 0; i < array.length; i++)
+			writer.write(" " + formatter.format(array[i]));
+		
+		writer.write(" ]");
+	}
+}
@@ -0,0 +1,198 @@
+/* jahmm package - v0.6.1 */
+
+/*
+ *  Copyright (c) 2004-2006, Jean-Marc Francois.
+ *
+ *  This file is part of Jahmm.
+ *  Jahmm is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Jahmm is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Jahmm; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ */
+
+package be.ac.ulg.montefiore.run.jahmm.io;
+
+import java.io.*;
+import java.util.*;
+
+import de.lmu.ifi.medien.probui.hmm.ObservationVectorTouch;
+import de.lmu.ifi.medien.probui.observations.ProbObservationFactory;
+
+
+/**
+ * This class reads touch logs, one gesture at a time, so that arbitrarily
+ * large logs can be streamed.
+ * <p>
+ * The file format is the following:
+ * <ul>
+ * <li> a line per touch event, made of the event type (0: down, 1: move,
+ *      2: up), the pointer ID, the timestamp (in ms), the x and y coordinates
+ *      (relative to the screen size, as for the touch behaviours), the
+ *      orientation, the minor and major axes and the pressure, separated by
+ *      spaces;</li>
+ * <li> after the events of a gesture, a line made of the character '='
+ *      followed by the name of the interactor that was determined, or '-' if
+ *      none was;</li>
+ * <li> empty lines are not significant; the '#' character introduces a
+ *      comment that spans the rest of the line.</li>
+ * </ul>
+ * <p>
+ * For example:
+ * <pre>
+ * 0 0 1000 .51 .22 0 .01 .012 .8
+ * 1 0 1016 .52 .22 0 .01 .012 .8
+ * 2 0 1032 .53 .22 0 .01 .012 .8
+ * = okButton
+ * </pre>
+ */
+public class TouchLogReader
+{
+	private final BufferedReader reader;
+	private int lineNb = 0;
+	
+	private String interactor;
+	private final Map<Integer, List<ObservationVectorTouch>> pointers =
+		new TreeMap<Integer, List<ObservationVectorTouch>>();
+	
+	
+	/**
+	 * Creates a touch log reader.
+	 * 
+	 * @param reader The reader the log is read from.
+	 */
+	public TouchLogReader(Reader reader)
+	{
+		this.reader = reader instanceof BufferedReader ?
+				(BufferedReader) reader : new BufferedReader(reader, 1 << 16);
+	}
+	
+	
+	/**
+	 * Reads the next gesture for which an interactor was determined.
+	 * The events of gestures that are not followed by a '=' line (at the end
+	 * of the file) are ignored.
+	 * 
+	 * @return <code>false</code> iff the end of the log has been reached.
+	 */
+	public boolean next()
+	throws IOException, FileFormatException
+	{
+		pointers.clear();
+		interactor = null;
+		
+		String line;
+		while ((line = reader.readLine()) != null) {
+			lineNb++;
+			
+			int comment = line.indexOf('#');
+			if (comment >= 0)
+				line = line.substring(0, comment);
+			line = line.trim();
+			
+			if (line.length() == 0)
+				continue;
+			
+			if (line.charAt(0) == '=') {
+				String name = line.substring(1).trim();
+				if (name.length() == 0)
+					throw new FileFormatException(lineNb,
+							"Interactor name expected");
+				
+				if (name.equals("-") || pointers.isEmpty()) {
+					pointers.clear();
+					continue;
+				}
+				
+				interactor = name;
+				return true;
+			}
+			
+			readEvent(line);
+		}
+		
+		pointers.clear();
+		return false;
+	}
+	
+	
+	/**
+	 * Returns the interactor that was determined for the last gesture read.
+	 * 
+	 * @return The name of the interactor.
+	 */
+	public String interactor()
+	{
+		return interactor;
+	}
+	
+	
+	/**
+	 * Returns the observation sequences of the last gesture read, one per
+	 * pointer (in ascending pointer ID order).
+	 * 
+	 * @return The observation sequences; the list and the sequences are
+	 *         freshly allocated.
+	 */
+	public List<List<ObservationVectorTouch>> sequences()
+	{
+		return new ArrayList<List<ObservationVectorTouch>>(pointers.values());
+	}
+	
+	
+	/* Parses a touch event line; avoids regular expressions, since logs can
+	 be made of millions of lines. */
+	private void readEvent(String line)
+	throws FileFormatException
+	{
+		double[] values = new double[9];
+		int nb = 0;
+		int i = 0;
+		
+		while (i < line.length()) {
+			while (i < line.length() && line.charAt(i) <= ' ')
+				i++;
+			int start = i;
+			while (i < line.length() && line.charAt(i) > ' ')
+				i++;
+			if (start == i)
+				break;
+			
+			if (nb == values.length)
+				throw new FileFormatException(lineNb, "Too many values");
+			
+			try {
+				values[nb++] = Double.parseDouble(line.substring(start, i));
+			} catch(NumberFormatException e) {
+				throw new FileFormatException(lineNb, "'" +
+						line.substring(start, i) + "' is not a number");
+			}
+		}
+		
+		if (nb != values.length)
+			throw new FileFormatException(lineNb, values.length +
+					" values expected, " + nb + " found");
+		
+		int pointerID = (int) values[1];
+		List<ObservationVectorTouch> sequence = pointers.get(pointerID);
+		if (sequence == null) {
+			sequence = new ArrayList<ObservationVectorTouch>();
+			pointers.put(pointerID, sequence);
+		}
+		
+		sequence.add(new ObservationVectorTouch(
+				ProbObservationFactory.createTouchObservation(
+						values[3], values[4], values[3], values[4],
+						values[5], values[6], values[7], values[8],
+						(int) values[0], pointerID, (long) values[2])));
+	}
+}
@@ -0,0 +1,712 @@
+/* jahmm package - v0.6.1 */
+
+/*
+  *  Copyright (c) 2004-2006, Jean-Marc Francois.
+ *
+ *  This file is part of Jahmm.
+ *  Jahmm is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Jahmm is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Jahmm; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ */
+
+package be.ac.ulg.montefiore.run.jahmm.learn;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import be.ac.ulg.montefiore.run.jahmm.*;
+
+
+/**
+ * An implementation of the Baum-Welch learning algorithm.  This algorithm
+ * finds a HMM that models a set of observation sequences.
+ * <p>
+ * The expectation step can be distributed over several threads (see
+ * {@link #setExecutor}).  The sequences are split in a fixed number of
+ * contiguous parts, each part accumulates its own sufficient statistics, and
+ * these are summed in the order of the parts.  Thus, the result only depends
+ * on the number of parts, not on the number of threads or their scheduling
+ * (or whether the parts are processed by the calling thread).
+ */
+public class BaumWelchLearner
+{	
+	/**
+	 * Number of iterations performed by the {@link #learn} method.
+	 */
+	private int nbIterations = 9;
+	
+	/**
+	 * If strictly positive, the {@link #learn} method stops as soon as the
+	 * log-likelihood of the sequences improves by less than this value.
+	 */
+	private double convergenceThreshold = 0.;
+	
+	/**
+	 * If set, the xi and gamma arrays are never stored (see
+	 * {@link #setMemoryBounded}).
+	 */
+	private boolean memoryBounded = false;
+	
+	/**
+	 * Executes the expectation step of the parts, or <code>null</code> if
+	 * the sequences are processed by the calling thread.
+	 */
+	private ExecutorService executor = null;
+	
+	/**
+	 * Number of parts the sequences are split in.
+	 */
+	private int nbParts = 1;
+	
+	/**
+	 * Log-likelihood of the sequences given the HMM of the last iteration.
+	 */
+	private double lnProbability = Double.NEGATIVE_INFINITY;
+	
+	
+	/**
+	 * Sufficient statistics of (a part of) the observation sequences.
+	 */
+	protected static class Statistics<O extends Observation>
+	{
+		/* aijNum[i][j] = expected number of transitions from state i to j */
+		final double aijNum[][];
+		/* aijDen[i] = expected number of transitions from state i */
+		final double aijDen[];
+		/* gamma arrays of the sequences, in the order of the sequences
+		 (only if the learner is not memory bounded) */
+		final List<double[][]> gammas;
+		/* pi[i] = sum of gamma[0][i] / number of sequences 
+		 (only if the learner is memory bounded) */
+		final double pi[];
+		/* fitters[i] = weighted observations of state i 
+		 (only if the learner is memory bounded) */
+		final List<OpdfFitter<O>> fitters;
+		/* log-likelihood of the sequences */
+		double lnProbability;
+		
+		
+		Statistics(Hmm<O> hmm, boolean memoryBounded)
+		{
+			aijNum = new double[hmm.nbStates()][hmm.nbStates()];
+			aijDen = new double[hmm.nbStates()];
+			gammas = new ArrayList<double[][]>();
+			pi = new double[hmm.nbStates()];
+			fitters = new ArrayList<OpdfFitter<O>>();
+			
+			if (memoryBounded)
+				for (int i = 0; i < hmm.nbStates(); i++)
+					fitters.add(fitter(hmm.getOpdf(i)));
+		}
+		
+		
+		void add(Statistics<O> statistics)
+		{
+			for (int i = 0; i < aijDen.length; i++) {
+				aijDen[i] += statistics.aijDen[i];
+				pi[i] += statistics.pi[i];
+				
+				for (int j = 0; j < aijDen.length; j++)
+					aijNum[i][j] += statistics.aijNum[i][j];
+			}
+			
+			gammas.addAll(statistics.gammas);
+			for (int i = 0; i < fitters.size(); i++)
+				fitters.get(i).add(statistics.fitters.get(i));
+			lnProbability += statistics.lnProbability;
+		}
+	}
+	
+	
+	/* Fitter for the opdfs that cannot be fitted to a stream: the 
+	 observations are kept (once, not once per state) and fitted at the end */
+	static class CollectingFitter<O extends Observation>
+	implements OpdfFitter<O>
+	{
+		private final Opdf<O> opdf;
+		private final List<O> observations = new ArrayList<O>();
+		private double[] weights = new double[16];
+		
+		
+		CollectingFitter(Opdf<O> opdf)
+		{
+			this.opdf = opdf;
+		}
+		
+		
+		public void add(O o, double weight)
+		{
+			if (observations.size() == weights.length)
+				weights = Arrays.copyOf(weights, weights.length * 2);
+			weights[observations.size()] = weight;
+			observations.add(o);
+		}
+		
+		
+		public void add(OpdfFitter<O> fitter)
+		{
+			CollectingFitter<O> cf = (CollectingFitter<O>) fitter;
+			for (int i = 0; i < cf.observations.size(); i++)
+				add(cf.observations.get(i), cf.weights[i]);
+		}
+		
+		
+		public void fit()
+		{
+			double[] w = Arrays.copyOf(weights, observations.size());
+			double sum = 0.;
+			for (double v : w)
+				sum += v;
+			
+			if (sum == 0.)
+				return;
+			
+			for (int i = 0; i < w.length; i++)
+				w[i] /= sum;
+			
+			opdf.fit(observations, w);
+		}
+	}
+	
+	
+	/* Also used by the K-Means learner */
+	@SuppressWarnings("unchecked")
+	static <O extends Observation> OpdfFitter<O> fitter(Opdf<O> opdf)
+	{
+		if (opdf instanceof StreamFittable)
+			return ((StreamFittable<O>) opdf).fitter();
+		
+		return new CollectingFitter<O>(opdf);
+	}
+	
+	
+	/**
+	 * Initializes a Baum-Welch instance. 
+	 */
+	public BaumWelchLearner()
+	{
+	}
+	
+	
+	/**
+	 * Performs one iteration of the Baum-Welch algorithm.
+	 * In one iteration, a new HMM is computed using a previously estimated
+	 * HMM.
+	 *
+	 * @param hmm A previously estimated HMM.
+	 * @param sequences The observation sequences on which the learning is
+	 *         based.  Each sequence must have a length higher or equal to
+         *         2.
+	 * @return A new, updated HMM.
+	 */
+	public <O extends Observation> Hmm<O>
+	iterate(Hmm<O> hmm, List<? extends List<? extends O>> sequences)
+	{		
+		Hmm<O> nhmm;
+		try {
+			nhmm = hmm.clone();
+		} catch(CloneNotSupportedException e) {
+			throw new InternalError();
+		}
+			
+		/* gamma and xi arrays are those defined by Rabiner and Juang */
+		Statistics<O> statistics = estimateStatistics(hmm, nhmm, sequences);
+		lnProbability = statistics.lnProbability;
+		
+		/* a[i][j] = aijNum[i][j] / aijDen[i] */
+		double aijNum[][] = statistics.aijNum;
+		double aijDen[] = statistics.aijDen;
+		
+		for (int i = 0; i < hmm.nbStates(); i++) {
+			if (aijDen[i] == 0.) // State i is not reachable
+				for (int j = 0; j < hmm.nbStates(); j++)
+					nhmm.setAij(i, j, hmm.getAij(i, j));
+			else
+				for (int j = 0; j < hmm.nbStates(); j++)
+					nhmm.setAij(i, j, aijNum[i][j] / aijDen[i]);
+		}
+		
+		if (memoryBounded) {
+			for (int i = 0; i < hmm.nbStates(); i++) {
+				nhmm.setPi(i, statistics.pi[i]);
+				statistics.fitters.get(i).fit();
+			}
+			
+			return nhmm;
+		}
+		
+		/* allGamma[n] = gamma array associated to observation sequence n */
+		double allGamma[][][] = 
+			statistics.gammas.toArray(new double[sequences.size()][][]);
+		
+		/* pi computation */
+		for (int i = 0; i < hmm.nbStates(); i++)
+			nhmm.setPi(i, 0.);
+		
+		for (int o = 0; o < sequences.size(); o++)
+			for (int i = 0; i < hmm.nbStates(); i++)
+				nhmm.setPi(i,
+						nhmm.getPi(i) + allGamma[o][0][i] / sequences.size());
+		
+		/* pdfs computation */
+		List<O> observations = KMeansLearner.flat(sequences);
+		double[] weights = new double[observations.size()];
+		for (int i = 0; i < hmm.nbStates(); i++) {
+			double sum = 0.;
+			int j = 0;
+			
+			int o = 0;
+			for (List<? extends O> obsSeq : sequences) {
+				for (int t = 0; t < obsSeq.size(); t++, j++)
+					sum += weights[j] = allGamma[o][t][i];
+				o++;
+			}
+			
+			for (j--; j >= 0; j--)
+				weights[j] /= sum;
+			
+			Opdf<O> opdf = nhmm.getOpdf(i);
+			opdf.fit(observations, weights);
+		}
+		
+		return nhmm;
+	}
+	
+	
+	/*
+	 * Computes the statistics of all the sequences, split in parts that are
+	 * handled by the executor (or the calling thread if there is none).  The
+	 * statistics fit the opdfs of 'nhmm'.
+	 */
+	private <O extends Observation> Statistics<O>
+	estimateStatistics(Hmm<O> hmm, Hmm<O> nhmm,
+			final List<? extends List<? extends O>> sequences)
+	{
+		Statistics<O> statistics = new Statistics<O>(nhmm, memoryBounded);
+		
+		if (nbParts <= 1 || sequences.size() <= 1) {
+			statistics.add(estimateStatistics(hmm, sequences, 
+					0, sequences.size()));
+			return statistics;
+		}
+		
+		int nbParts = Math.min(this.nbParts, sequences.size());
+		
+		if (executor == null) {
+			for (int p = 0; p < nbParts; p++)
+				statistics.add(estimateStatistics(hmm, sequences,
+						(int) ((long) sequences.size() * p / nbParts),
+						(int) ((long) sequences.size() * (p + 1) / nbParts)));
+			return statistics;
+		}
+		
+		List<Future<Statistics<O>>> futures = 
+			new ArrayList<Future<Statistics<O>>>(nbParts);
+		
+		for (int p = 0; p < nbParts; p++) {
+			final int from = (int) ((long) sequences.size() * p / nbParts);
+			final int to = (int) ((long) sequences.size() * (p + 1) / nbParts);
+			
+			/* Each part works on its own copy, since the opdfs might use
+			 temporary buffers when computing probabilities */
+			final Hmm<O> partHmm;
+			try {
+				partHmm = hmm.clone();
+			} catch(CloneNotSupportedException e) {
+				throw new InternalError();
+			}
+			
+			futures.add(executor.submit(new Callable<Statistics<O>>() {
+				public Statistics<O> call()
+				{
+					return estimateStatistics(partHmm, sequences, from, to);
+				}
+			}));
+		}
+		
+		try {
+			for (Future<Statistics<O>> future : futures)
+				statistics.add(future.get());
+		} catch(InterruptedException e) {
+			for (Future<Statistics<O>> future : futures)
+				future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while learning", e);
+		} catch(ExecutionException e) {
+			for (Future<Statistics<O>> future : futures)
+				future.cancel(true);
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+		
+		return statistics;
+	}
+	
+	
+	/*
+	 * Computes the statistics of the sequences with indices 'from'
+	 * (inclusive) to 'to' (exclusive).
+	 */
+	private <O extends Observation> Statistics<O>
+	estimateStatistics(Hmm<O> hmm, List<? extends List<? extends O>> sequences,
+			int from, int to)
+	{
+		Statistics<O> statistics = new Statistics<O>(hmm, memoryBounded);
+		double aijNum[][] = statistics.aijNum;
+		double aijDen[] = statistics.aijDen;
+		
+		for (List<? extends O> obsSeq : sequences.subList(from, to)) {
+			ForwardBackwardCalculator fbc = 
+				generateForwardBackwardCalculator(obsSeq, hmm);
+			statistics.lnProbability += lnProbability(fbc);
+			
+			if (memoryBounded) {
+				accumulateStatistics(obsSeq, fbc, hmm, statistics,
+						sequences.size());
+				continue;
+			}
+			
+			double xi[][][] = estimateXi(obsSeq, fbc, hmm);
+			double gamma[][] = estimateGamma(xi, fbc);
+			statistics.gammas.add(gamma);
+			
+			for (int i = 0; i < hmm.nbStates(); i++)
+				for (int t = 0; t < obsSeq.size() - 1; t++) {
+					aijDen[i] += gamma[t][i];
+					
+					for (int j = 0; j < hmm.nbStates(); j++)
+						aijNum[i][j] += xi[t][i][j];
+				}
+		}
+		
+		return statistics;
+	}
+	
+	
+	/*
+	 * Adds the xi and gamma values of a sequence to the statistics, one time
+	 * step at a time, without storing them.
+	 */
+	private <O extends Observation> void
+	accumulateStatistics(List<? extends O> sequence, 
+			ForwardBackwardCalculator fbc, Hmm<O> hmm, 
+			Statistics<O> statistics, int nbSequences)
+	{
+		if (sequence.size() <= 1)
+			throw new IllegalArgumentException("Observation sequence too " +
+			"short");
+		
+		int nbStates = hmm.nbStates();
+		double factor = xiFactor(fbc);
+		double[] bBeta = new double[nbStates];
+		double[] gamma = new double[nbStates];
+		double[] nextGamma = new double[nbStates];
+		
+		Iterator<? extends O> seqIterator = sequence.iterator();
+		O o = seqIterator.next();
+		
+		for (int t = 0; t < sequence.size() - 1; t++) {
+			O next = seqIterator.next();
+			
+			for (int j = 0; j < nbStates; j++) {
+				bBeta[j] = hmm.getOpdf(j).probability(next) *
+				fbc.betaElement(t + 1, j) * factor;
+				nextGamma[j] = 0.;
+			}
+			
+			for (int i = 0; i < nbStates; i++) {
+				double alpha = fbc.alphaElement(t, i);
+				double g = 0.;
+				
+				for (int j = 0; j < nbStates; j++) {
+					double xi = alpha * hmm.getAij(i, j) * bBeta[j];
+					statistics.aijNum[i][j] += xi;
+					g += xi;
+					nextGamma[j] += xi;
+				}
+				
+				gamma[i] = g;
+				statistics.aijDen[i] += g;
+				if (t == 0)
+					statistics.pi[i] += g / nbSequences;
+				statistics.fitters.get(i).add(o, g);
+			}
+			
+			double[] tmp = gamma;
+			gamma = nextGamma;
+			nextGamma = tmp;
+			o = next;
+		}
+		
+		/* The last gamma values are the sums of the last xi values */
+		for (int i = 0; i < nbStates; i++)
+			statistics.fitters.get(i).add(o, gamma[i]);
+	}
+	
+	
+	/**
+	 * Returns the factor of the xi values computed from the alpha and beta 
+	 * values of a calculator, such that they sum to one at each time step
+	 * (used in the memory bounded mode).
+	 * 
+	 * @param fbc A calculator of the alpha and beta values.
+	 * @return The factor.
+	 */
+	protected double xiFactor(ForwardBackwardCalculator fbc)
+	{
+		return 1. / fbc.probability();
+	}
+	
+	
+	/**
+	 * Returns the log-likelihood of the sequence of a calculator.
+	 * 
+	 * @param fbc A calculator of the alpha and beta values.
+	 * @return The log-likelihood.
+	 */
+	protected double lnProbability(ForwardBackwardCalculator fbc)
+	{
+		return Math.log(fbc.probability());
+	}
+	
+	
+	protected <O extends Observation> ForwardBackwardCalculator
+	generateForwardBackwardCalculator(List<? extends O> sequence, Hmm<O> hmm)
+	{	
+		return new ForwardBackwardCalculator(sequence, hmm, 
+				EnumSet.allOf(ForwardBackwardCalculator.Computation.class));
+	}
+	
+	
+	/**
+	 * Does a fixed number of iterations (see {@link #getNbIterations}) of the
+	 * Baum-Welch algorithm.  If a convergence threshold is set (see 
+	 * {@link #setConvergenceThreshold}), this number is the maximum, and the
+	 * iterations stop as soon as the log-likelihood of the sequences does not
+	 * improve enough anymore.
+	 * 
+	 * @param initialHmm An initial estimation of the expected HMM.  This
+	 *         estimate is critical as the Baum-Welch algorithm only find
+	 *         local minima of its likelihood function.
+	 * @param sequences The observation sequences on which the learning is
+	 *         based.  Each sequence must have a length higher or equal to 2.
+	 * @return The HMM that best matches the set of observation sequences given
+	 *         (according to the Baum-Welch algorithm).
+	 */
+	public <O extends Observation> Hmm<O>
+	learn(Hmm<O> initialHmm, List<? extends List<? extends O>> sequences)
+	{
+		Hmm<O> hmm = initialHmm;
+		double previousLnProbability = Double.NEGATIVE_INFINITY;
+		
+		for (int i = 0; i < nbIterations; i++) {
+			hmm = iterate(hmm, sequences);
+			
+			if (convergenceThreshold > 0.) {
+				if (lnProbability - previousLnProbability < 
+						convergenceThreshold)
+					break;
+				previousLnProbability = lnProbability;
+			}
+		}
+		
+		return hmm;
+	}
+	
+	
+	protected <O extends Observation> double[][][]
+	estimateXi(List<? extends O> sequence, ForwardBackwardCalculator fbc,
+			Hmm<O> hmm)
+	{	
+		if (sequence.size() <= 1)
+			throw new IllegalArgumentException("Observation sequence too " +
+			"short");
+		
+		double xi[][][] = 
+			new double[sequence.size()-1][hmm.nbStates()][hmm.nbStates()];
+		double probability = fbc.probability();
+		
+		Iterator<? extends O> seqIterator = sequence.iterator();
+		seqIterator.next();
+		
+		for (int t = 0; t < sequence.size() - 1; t++) {
+			O o = seqIterator.next();
+			
+			for (int i = 0; i < hmm.nbStates(); i++)
+				for (int j = 0; j < hmm.nbStates(); j++)
+					xi[t][i][j] = fbc.alphaElement(t, i) *
+					hmm.getAij(i, j) *
+					hmm.getOpdf(j).probability(o) *
+					fbc.betaElement(t+1, j) / probability;
+		}
+		
+		return xi;
+	}
+	
+	
+	/* gamma[][] could be computed directly using the alpha and beta
+	 * arrays, but this (slower) method is prefered because it doesn't
+	 * change if the xi array has been scaled (and should be changed with
+	 * the scaled alpha and beta arrays).
+	 */
+	protected double[][]
+	estimateGamma(double[][][] xi, ForwardBackwardCalculator fbc)
+	{
+		double[][] gamma = new double[xi.length + 1][xi[0].length];
+		
+		for (int t = 0; t < xi.length + 1; t++)
+			Arrays.fill(gamma[t], 0.);
+		
+		for (int t = 0; t < xi.length; t++)
+			for (int i = 0; i < xi[0].length; i++)
+				for (int j = 0; j < xi[0].length; j++)
+					gamma[t][i] += xi[t][i][j];
+		
+		for (int j = 0; j < xi[0].length; j++)
+			for (int i = 0; i < xi[0].length; i++)
+				gamma[xi.length][j] += xi[xi.length - 1][i][j];
+		
+		return gamma;
+	}
+	
+	
+	/**
+	 * Returns the number of iterations performed by the {@link #learn} method.
+	 * 
+	 * @return The number of iterations performed.
+	 */
+	public int getNbIterations()
+	{
+		return nbIterations;
+	}
+	
+	
+	/**
+	 * Sets the number of iterations performed by the {@link #learn} method.
+	 * 
+	 * @param nb The (positive) number of iterations to perform.
+	 */
+	public void setNbIterations(int nb)
+	{
+		if (nb < 0)
+			throw new IllegalArgumentException("Positive number expected");
+		
+		nbIterations = nb;
+	}
+	
+	
+	/**
+	 * Sets the convergence threshold of the {@link #learn} method.
+	 * 
+	 * @param threshold The minimal improvement of the log-likelihood of the
+	 *         sequences for which the iterations go on, or zero to always
+	 *         perform the number of iterations given by 
+	 *         {@link #getNbIterations}.
+	 */
+	public void setConvergenceThreshold(double threshold)
+	{
+		if (threshold < 0.)
+			throw new IllegalArgumentException("Positive number expected");
+		
+		convergenceThreshold = threshold;
+	}
+	
+	
+	/**
+	 * Returns the convergence threshold of the {@link #learn} method.
+	 * 
+	 * @return The convergence threshold (zero if disabled).
+	 */
+	public double getConvergenceThreshold()
+	{
+		return convergenceThreshold;
+	}
+	
+	
+	/**
+	 * Enables the memory bounded mode.  In this mode, the xi and gamma values
+	 * are added to the statistics of the states one time step at a time,
+	 * instead of storing xi and gamma arrays for all the sequences.  The
+	 * opdfs are fitted to the weighted observations as these are streamed
+	 * (see {@link StreamFittable}); opdfs that cannot be fitted this way
+	 * keep the observations until the end of the iteration.
+	 * <p>
+	 * The {@link #estimateXi} and {@link #estimateGamma} methods are not used
+	 * in this mode; subclasses adapt it via {@link #xiFactor}.
+	 * 
+	 * @param memoryBounded Whether to use the memory bounded mode.
+	 */
+	public void setMemoryBounded(boolean memoryBounded)
+	{
+		this.memoryBounded = memoryBounded;
+	}
+	
+	
+	/**
+	 * Returns whether the memory bounded mode is used.
+	 * 
+	 * @return <code>true</code> iff the memory bounded mode is used.
+	 */
+	public boolean isMemoryBounded()
+	{
+		return memoryBounded;
+	}
+	
+	
+	/**
+	 * Returns the log-likelihood of the sequences given the HMM of the last
+	 * call to {@link #iterate} (i.e. before its update).
+	 * 
+	 * @return The log-likelihood of the sequences.
+	 */
+	public double lnProbability()
+	{
+		return lnProbability;
+	}
+	
+	
+	/**
+	 * Distributes the expectation step of each iteration over an executor.
+	 * The result of the learning is reproducible for a given number of parts,
+	 * whatever the number of threads of the executor.
+	 * 
+	 * @param executor The executor, or <code>null</code> to process the
+	 *         parts in the calling thread.  The executor is not shut
+	 *         down by this object.
+	 * @param nbParts The (positive) number of parts the sequences are split
+	 *         in.
+	 */
+	public void setExecutor(ExecutorService executor, int nbParts)
+	{
+		if (nbParts <= 0)
+			throw new IllegalArgumentException("Positive number expected");
+		
+		this.executor = executor;
+		this.nbParts = nbParts;
+	}
+	
+	
+	/**
+	 * Returns the number of parts the sequences are split in.
+	 * 
+	 * @return The number of parts.
+	 */
+	public int getNbParts()
+	{
+		return nbParts;
+	}
+}
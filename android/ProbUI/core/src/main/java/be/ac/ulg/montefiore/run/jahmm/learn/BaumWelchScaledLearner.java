@@ -55,6 +55,20 @@ extends BaumWelchLearner
 	}
 	
 	
+	/* The scaled alpha and beta values already give xi values that sum to
+	 one at each time step. */
+	protected double xiFactor(ForwardBackwardCalculator fbc)
+	{
+		return 1.;
+	}
+	
+	
+	protected double lnProbability(ForwardBackwardCalculator fbc)
+	{
+		return ((ForwardBackwardScaledCalculator) fbc).lnProbability();
+	}
+	
+	
 	/* Here, the xi (and, thus, gamma) values are not divided by the
 	 probability of the sequence because this probability might be
 	 too small and induce an underflow. xi[t][i][j] still can be
@@ -0,0 +1,584 @@
+/* jahmm package - v0.6.1 */
+
+/*
+  *  Copyright (c) 2004-2006, Jean-Marc Francois.
+ *
+ *  This file is part of Jahmm.
+ *  Jahmm is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Jahmm is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Jahmm; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ */
+
+package be.ac.ulg.montefiore.run.jahmm.learn;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import be.ac.ulg.montefiore.run.jahmm.*;
+
+
+/**
+ * An implementation of the K-Means learning algorithm.
+ * <p>
+ * Each observation is assigned to a state (first using the k-means
+ * algorithm, then using the most likely state sequences of the sequences).
+ * An iteration computes a HMM from the counts of these assignments and
+ * re-assigns the observations by decoding the sequences with this HMM.
+ * <p>
+ * The decoding can be distributed over several threads (see 
+ * {@link #setExecutor}).  The sequences are then split in a fixed number of
+ * contiguous parts, each part decodes its sequences with its own workspace
+ * and accumulates its own statistics, and these are summed in the order of
+ * the parts.  Thus, the result only depends on the number of parts, not on
+ * the number of threads or their scheduling.
+ */
+public class KMeansLearner<O extends Observation & CentroidFactory<? super O>>
+{	
+	private int nbStates;
+	private List<? extends List<? extends O>> obsSeqs;
+	private OpdfFactory<? extends Opdf<O>> opdfFactory;
+	private boolean terminated;
+	
+	/* states[n][t] = state of the t-th observation of the n-th sequence */
+	private int[][] states;
+	private int nbObservations;
+	
+	/* Statistics of the current states, used by the next iteration */
+	private Statistics<O> statistics;
+	
+	/*
+	 * The learning stops when the fraction of the observations whose state
+	 * changes is lower or equal to this value.
+	 */
+	private double convergenceThreshold = 0.;
+	
+	private ExecutorService executor = null;
+	private int nbParts = 1;
+	
+	/* Viterbi workspaces of the parts, reused by all the iterations */
+	private List<Workspace> workspaces = new ArrayList<Workspace>();
+	
+	
+	/*
+	 * Statistics of the states of (a part of) the observation sequences.
+	 */
+	private static class Statistics<O extends Observation>
+	{
+		/* pi[i] = number of sequences starting in state i */
+		final double pi[];
+		/* aij[i][j] = number of transitions from state i to j */
+		final double aij[][];
+		/* fitters[i] = observations of state i */
+		final List<OpdfFitter<O>> fitters;
+		/* number of observations whose state changed */
+		long nbChanges;
+		
+		
+		Statistics(List<? extends Opdf<O>> opdfs)
+		{
+			pi = new double[opdfs.size()];
+			aij = new double[opdfs.size()][opdfs.size()];
+			fitters = new ArrayList<OpdfFitter<O>>();
+			
+			for (Opdf<O> opdf : opdfs)
+				fitters.add(BaumWelchLearner.fitter(opdf));
+		}
+		
+		
+		void add(Statistics<O> statistics)
+		{
+			for (int i = 0; i < pi.length; i++) {
+				pi[i] += statistics.pi[i];
+				
+				for (int j = 0; j < pi.length; j++)
+					aij[i][j] += statistics.aij[i][j];
+				
+				fitters.get(i).add(statistics.fitters.get(i));
+			}
+			
+			nbChanges += statistics.nbChanges;
+		}
+	}
+	
+	
+	/*
+	 * The arrays used to compute the most likely state sequences (with the
+	 * same arithmetic as the ViterbiCalculator class), grown when needed.
+	 */
+	private static class Workspace
+	{
+		double[] delta;
+		double[] nextDelta;
+		/* psy[t * nbStates + j] */
+		int[] psy;
+		/* lnA[i][j] = -ln(aij), lnPi[i] = -ln(pi[i]) */
+		final double[][] lnA;
+		final double[] lnPi;
+		
+		
+		Workspace(int nbStates)
+		{
+			delta = new double[nbStates];
+			nextDelta = new double[nbStates];
+			psy = new int[16 * nbStates];
+			lnA = new double[nbStates][nbStates];
+			lnPi = new double[nbStates];
+		}
+	}
+	
+	
+	/**
+	 * Initializes a K-Means algorithm implementation.  This algorithm
+	 * finds a HMM that models a set of observation sequences.
+	 *
+	 * @param nbStates  The number of states the resulting HMM will be made of.
+	 * @param opdfFactory A class that builds the observation probability
+	 *                    distributions associated to the states of the HMM.
+	 * @param sequences A vector of observation sequences.  Each observation
+	 *                sequences is a vector of
+	 *                {@link be.ac.ulg.montefiore.run.jahmm.Observation
+	 *                observations} compatible with the 
+	 *                {@link be.ac.ulg.montefiore.run.jahmm.CentroidFactory
+	 *                k-means algorithm}.
+	 */
+	public KMeansLearner(int nbStates,
+			OpdfFactory<? extends Opdf<O>> opdfFactory,
+			List<? extends List<? extends O>> sequences)
+	{	
+		this.obsSeqs = sequences;
+		this.opdfFactory = opdfFactory;
+		this.nbStates = nbStates;
+		
+		List<? extends O> observations = flat(sequences);
+		KMeansCalculator<O> kmc = 
+			new KMeansCalculator<O>(nbStates, observations);
+		
+		/* The observations are matched by identity, not by value */
+		Map<O,Integer> clusterNbs = new IdentityHashMap<O,Integer>();
+		for (int i = 0; i < nbStates; i++)
+			for (O element : kmc.cluster(i))
+				clusterNbs.put(element, i);
+		
+		states = new int[sequences.size()][];
+		int n = 0;
+		for (List<? extends O> obsSeq : sequences) {
+			states[n] = new int[obsSeq.size()];
+			int t = 0;
+			for (O o : obsSeq)
+				states[n][t++] = clusterNbs.get(o);
+			n++;
+		}
+		
+		nbObservations = observations.size();
+		terminated = false;
+	}
+	
+	
+	/**
+	 * Initializes a K-Means algorithm implementation from clusters computed
+	 * by a {@link FlatKMeansCalculator} (which is much faster than the
+	 * default {@link KMeansCalculator} for large sets of observations).
+	 *
+	 * @param nbStates  The number of states the resulting HMM will be made of.
+	 * @param opdfFactory A class that builds the observation probability
+	 *                    distributions associated to the states of the HMM.
+	 * @param sequences A vector of observation sequences.
+	 * @param kmc The clusters of the observations of <code>sequences</code>,
+	 *            taken in order (see {@link FlatKMeansCalculator#values}); 
+	 *            there must be <code>nbStates</code> of them.
+	 */
+	public KMeansLearner(int nbStates,
+			OpdfFactory<? extends Opdf<O>> opdfFactory,
+			List<? extends List<? extends O>> sequences,
+			FlatKMeansCalculator kmc)
+	{	
+		this.obsSeqs = sequences;
+		this.opdfFactory = opdfFactory;
+		this.nbStates = nbStates;
+		
+		nbObservations = 0;
+		for (List<? extends O> obsSeq : sequences)
+			nbObservations += obsSeq.size();
+		
+		if (kmc.nbClusters() != nbStates || 
+				kmc.nbElements() != nbObservations)
+			throw new IllegalArgumentException("Clusters do not match the " +
+					"observations");
+		
+		states = new int[sequences.size()][];
+		int n = 0, i = 0;
+		for (List<? extends O> obsSeq : sequences) {
+			states[n] = new int[obsSeq.size()];
+			for (int t = 0; t < obsSeq.size(); t++)
+				states[n][t] = kmc.clusterNb(i++);
+			n++;
+		}
+		
+		terminated = false;
+	}
+	
+	
+	/**
+	 * Performs one iteration of the K-Means algorithm.
+	 * In one iteration, a new HMM is computed using the current clusters, and
+	 * the clusters are re-estimated using this HMM.
+	 *
+	 * @return A new, updated HMM.
+	 */
+	public Hmm<O> iterate()
+	{	
+		if (statistics == null)
+			statistics = estimateStatistics(null);
+		
+		Hmm<O> hmm = new Hmm<O>(nbStates, opdfFactory);
+		
+		learnPi(hmm);
+		learnAij(hmm);
+		learnOpdf(hmm);
+		
+		statistics = estimateStatistics(hmm);
+		terminated = statistics.nbChanges <= 
+			convergenceThreshold * nbObservations;
+		
+		return hmm;
+	}
+	
+	
+	/**
+	 * Returns <code>true</code> if the algorithm has reached a fix point
+	 * (or, if a convergence threshold is set, if few enough observations
+	 * changed their state during the last iteration), else returns 
+	 * <code>false</code>.
+	 */
+	public boolean isTerminated()
+	{
+		return terminated;
+	}
+	
+	
+	/**
+	 * Does iterations of the K-Means algorithm until a fix point is reached
+	 * (see {@link #isTerminated}).
+	 * 
+	 * @return The HMM that best matches the set of observation sequences given
+	 *         (according to the K-Means algorithm).
+	 */
+	public Hmm<O> learn()
+	{	
+		Hmm<O> hmm;
+		
+		do 
+			hmm = iterate();
+		while(!isTerminated());
+		
+		return hmm;
+	}
+	
+	
+	/**
+	 * Sets the convergence threshold of the {@link #learn} method.
+	 * 
+	 * @param threshold The fraction (between 0 and 1) of the observations 
+	 *         that may still change their state when the learning stops, or
+	 *         zero to stop only at a fix point.
+	 */
+	public void setConvergenceThreshold(double threshold)
+	{
+		if (threshold < 0. || threshold > 1.)
+			throw new IllegalArgumentException("Invalid threshold");
+		
+		convergenceThreshold = threshold;
+	}
+	
+	
+	/**
+	 * Returns the convergence threshold of the {@link #learn} method.
+	 * 
+	 * @return The fraction of the observations that may still change their
+	 *         state when the learning stops.
+	 */
+	public double getConvergenceThreshold()
+	{
+		return convergenceThreshold;
+	}
+	
+	
+	/**
+	 * Distributes the decoding of the sequences over an executor.  The result
+	 * of the learning is reproducible for a given number of parts, whatever
+	 * the number of threads of the executor.
+	 * 
+	 * @param executor The executor, or <code>null</code> to process the
+	 *         parts in the calling thread.  The executor is not shut
+	 *         down by this object.
+	 * @param nbParts The (positive) number of parts the sequences are split
+	 *         in.
+	 */
+	public void setExecutor(ExecutorService executor, int nbParts)
+	{
+		if (nbParts <= 0)
+			throw new IllegalArgumentException("Positive number expected");
+		
+		this.executor = executor;
+		this.nbParts = nbParts;
+	}
+	
+	
+	private void learnPi(Hmm<?> hmm)
+	{	
+		for (int i = 0; i < nbStates; i++)
+			hmm.setPi(i, statistics.pi[i] / obsSeqs.size());
+	}
+	
+	
+	private void learnAij(Hmm<O> hmm)
+	{	
+		/* Normalize Aij array */
+		for (int i = 0; i < hmm.nbStates(); i++) {
+			double sum = 0;
+			
+			for (int j = 0; j < hmm.nbStates(); j++)
+				sum += statistics.aij[i][j];
+			
+			if (sum == 0.)
+				for (int j = 0; j < hmm.nbStates(); j++) 
+					hmm.setAij(i, j, 1. / hmm.nbStates());     // Arbitrarily
+			else
+				for (int j = 0; j < hmm.nbStates(); j++)
+					hmm.setAij(i, j, statistics.aij[i][j] / sum);
+		}
+	}
+	
+	
+	/* The opdfs of the states without observation are left as built by the
+	 factory */
+	private void learnOpdf(Hmm<O> hmm)
+	{
+		List<Opdf<O>> opdfs = new ArrayList<Opdf<O>>(nbStates);
+		for (int i = 0; i < nbStates; i++)
+			opdfs.add(hmm.getOpdf(i));
+		
+		Statistics<O> hmmStatistics = new Statistics<O>(opdfs);
+		hmmStatistics.add(statistics);
+		
+		for (OpdfFitter<O> fitter : hmmStatistics.fitters)
+			fitter.fit();
+	}
+	
+	
+	/*
+	 * Re-assigns the observations to the states of the most likely state
+	 * sequences given 'hmm' (unless it is null), and returns the statistics
+	 * of the new states.
+	 */
+	private Statistics<O> estimateStatistics(Hmm<O> hmm)
+	{
+		int nbParts = Math.max(1, Math.min(this.nbParts, obsSeqs.size()));
+		while (workspaces.size() < nbParts)
+			workspaces.add(new Workspace(nbStates));
+		
+		Statistics<O> statistics = new Statistics<O>(factorOpdfs());
+		
+		/* Without an executor, the parts are handled in the calling thread,
+		 so that the statistics are summed in the same way */
+		if (nbParts == 1 || executor == null) {
+			for (int p = 0; p < nbParts; p++)
+				statistics.add(estimateStatistics(hmm, workspaces.get(p),
+						(int) ((long) obsSeqs.size() * p / nbParts),
+						(int) ((long) obsSeqs.size() * (p + 1) / nbParts)));
+			return statistics;
+		}
+		
+		List<Future<Statistics<O>>> futures = 
+			new ArrayList<Future<Statistics<O>>>(nbParts);
+		
+		for (int p = 0; p < nbParts; p++) {
+			final int from = (int) ((long) obsSeqs.size() * p / nbParts);
+			final int to = (int) ((long) obsSeqs.size() * (p + 1) / nbParts);
+			final Workspace workspace = workspaces.get(p);
+			
+			/* Each part works on its own copy, since the opdfs might use
+			 temporary buffers when computing probabilities */
+			final Hmm<O> partHmm;
+			try {
+				partHmm = hmm == null ? null : hmm.clone();
+			} catch(CloneNotSupportedException e) {
+				throw new InternalError();
+			}
+			
+			futures.add(executor.submit(new Callable<Statistics<O>>() {
+				public Statistics<O> call()
+				{
+					return estimateStatistics(partHmm, workspace, from, to);
+				}
+			}));
+		}
+		
+		try {
+			for (Future<Statistics<O>> future : futures)
+				statistics.add(future.get());
+		} catch(InterruptedException e) {
+			for (Future<Statistics<O>> future : futures)
+				future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while learning", e);
+		} catch(ExecutionException e) {
+			for (Future<Statistics<O>> future : futures)
+				future.cancel(true);
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+		
+		return statistics;
+	}
+	
+	
+	/*
+	 * Same as above for the sequences with indices 'from' (inclusive) to 'to'
+	 * (exclusive).
+	 */
+	private Statistics<O> estimateStatistics(Hmm<O> hmm, Workspace workspace,
+			int from, int to)
+	{
+		Statistics<O> statistics = new Statistics<O>(factorOpdfs());
+		
+		if (hmm != null)
+			for (int i = 0; i < nbStates; i++) {
+				workspace.lnPi[i] = -Math.log(hmm.getPi(i));
+				for (int j = 0; j < nbStates; j++)
+					workspace.lnA[i][j] = -Math.log(hmm.getAij(i, j));
+			}
+		
+		for (int n = from; n < to; n++) {
+			List<? extends O> obsSeq = obsSeqs.get(n);
+			int[] seqStates = states[n];
+			
+			if (hmm != null)
+				statistics.nbChanges += 
+					decode(hmm, workspace, obsSeq, seqStates);
+			
+			if (seqStates.length == 0)
+				continue;
+			
+			statistics.pi[seqStates[0]]++;
+			
+			int t = 0;
+			for (O o : obsSeq) {
+				statistics.fitters.get(seqStates[t]).add(o, 1.);
+				if (t > 0)
+					statistics.aij[seqStates[t - 1]][seqStates[t]]++;
+				t++;
+			}
+		}
+		
+		return statistics;
+	}
+	
+	
+	/*
+	 * Stores the most likely state sequence of 'obsSeq' in 'seqStates' and
+	 * returns the number of states that changed.
+	 */
+	private int decode(Hmm<O> hmm, Workspace workspace, 
+			List<? extends O> obsSeq, int[] seqStates)
+	{
+		if (obsSeq.isEmpty())
+			throw new IllegalArgumentException("Invalid empty sequence");
+		
+		if (workspace.psy.length < obsSeq.size() * nbStates)
+			workspace.psy = new int[Math.max(obsSeq.size() * nbStates,
+					workspace.psy.length * 2)];
+		
+		double[] delta = workspace.delta;
+		double[] nextDelta = workspace.nextDelta;
+		int[] psy = workspace.psy;
+		double[][] lnA = workspace.lnA;
+		
+		Iterator<? extends O> oseqIterator = obsSeq.iterator();
+		O first = oseqIterator.next();
+		for (int i = 0; i < nbStates; i++)
+			delta[i] = workspace.lnPi[i] - 
+			Math.log(hmm.getOpdf(i).probability(first));
+		
+		for (int t = 1; oseqIterator.hasNext(); t++) {
+			O observation = oseqIterator.next();
+			
+			for (int j = 0; j < nbStates; j++) {
+				double minDelta = Double.MAX_VALUE;
+				int minPsy = 0;
+				
+				for (int i = 0; i < nbStates; i++) {
+					double thisDelta = delta[i] + lnA[i][j];
+					
+					if (minDelta > thisDelta) {
+						minDelta = thisDelta;
+						minPsy = i;
+					}
+				}
+				
+				nextDelta[j] = minDelta - 
+				Math.log(hmm.getOpdf(j).probability(observation));
+				psy[t * nbStates + j] = minPsy;
+			}
+			
+			double[] tmp = delta;
+			delta = nextDelta;
+			nextDelta = tmp;
+		}
+		
+		int state = 0;
+		double minDelta = Double.MAX_VALUE;
+		for (int i = 0; i < nbStates; i++)
+			if (minDelta > delta[i]) {
+				minDelta = delta[i];
+				state = i;
+			}
+		
+		int nbChanges = 0;
+		for (int t = obsSeq.size() - 1; t >= 0; t--) {
+			if (seqStates[t] != state) {
+				seqStates[t] = state;
+				nbChanges++;
+			}
+			state = psy[t * nbStates + state];
+		}
+		
+		return nbChanges;
+	}
+	
+	
+	/* Opdfs only used to create fitters that accumulate observations */
+	private List<Opdf<O>> factorOpdfs()
+	{
+		List<Opdf<O>> opdfs = new ArrayList<Opdf<O>>(nbStates);
+		for (int i = 0; i < nbStates; i++)
+			opdfs.add(opdfFactory.factor());
+		
+		return opdfs;
+	}
+	
+	
+	static <T> List<T> flat(List<? extends List<? extends T>> lists)
+	{	
+		List<T> v = new ArrayList<T>();
+		
+		for (List<? extends T> list : lists)
+			v.addAll(list);
+		
+		return v;
+	}
+}
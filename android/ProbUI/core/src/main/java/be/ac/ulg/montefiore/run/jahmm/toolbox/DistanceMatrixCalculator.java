@@ -0,0 +1,357 @@
+/* jahmm package - v0.6.1 */
+
+/*
+ *  Copyright (c) 2004-2006, Jean-Marc Francois.
+ *
+ *  This file is part of Jahmm.
+ *  Jahmm is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Jahmm is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Jahmm; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ */
+
+package be.ac.ulg.montefiore.run.jahmm.toolbox;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import be.ac.ulg.montefiore.run.jahmm.*;
+
+
+/**
+ * Computes the distances between all the pairs of a set of HMMs.
+ * <p>
+ * As in {@link KullbackLeiblerDistanceCalculator}, the distances are
+ * estimated using sequences generated by each HMM.  However, these sequences
+ * are generated once and evaluated once by each HMM, so that all the
+ * <code>n<sup>2</sup></code> distances only need <code>n</code> times the
+ * evaluations needed by the distance between two HMMs.
+ * <p>
+ * Two (per observation) distances are given: the Kullback-Leibler distance
+ * (as computed by {@link KullbackLeiblerDistanceCalculator}) and the 
+ * Bhattacharyya distance.  The Bhattacharyya distance <code>d</code> of two
+ * HMMs is symetric and bounds the error of the optimal decision between them
+ * (with equal priors) on sequences of length <code>T</code>:
+ * <code>P[error] &lt;= exp(-T d) / 2</code>.
+ * <p>
+ * The evaluations can be distributed over several threads (see the
+ * constructors).  The result does not depend on the number of threads.
+ */
+public class DistanceMatrixCalculator
+{
+	/* lnProbabilities[m][k][n] = ln P[k-th sequence of HMM m | HMM n] */
+	private final double[][][] lnProbabilities;
+	/* lengths[m][k] = length of the k-th sequence of HMM m */
+	private final int[][] lengths;
+	
+	
+	/**
+	 * Computes the distances between HMMs, generating the sequences with
+	 * {@link MarkovGenerator}s.
+	 *
+	 * @param hmms The HMMs.
+	 * @param nbSequences The number of sequences generated by each HMM.
+	 * @param sequencesLength The length of the generated sequences.
+	 * @param executor The executor that evaluates the sequences, or
+	 *         <code>null</code> to evaluate them in the calling thread.  The
+	 *         executor is not shut down by this object.
+	 * @param nbParts The (positive) number of parts the sequences are split
+	 *         in when using an executor.
+	 */
+	public <O extends Observation> 
+	DistanceMatrixCalculator(List<? extends Hmm<O>> hmms, int nbSequences,
+			int sequencesLength, ExecutorService executor, int nbParts)
+	{
+		this(hmms, generate(hmms, nbSequences, sequencesLength), executor,
+				nbParts);
+	}
+	
+	
+	/**
+	 * Computes the distances between HMMs using given sequences.
+	 *
+	 * @param hmms The HMMs.
+	 * @param sequences The sequences generated by each HMM: the 
+	 *         <code>m</code>-th element holds the (non empty) sequences 
+	 *         generated by the <code>m</code>-th HMM.
+	 * @param executor The executor that evaluates the sequences, or
+	 *         <code>null</code> to evaluate them in the calling thread.  The
+	 *         executor is not shut down by this object.
+	 * @param nbParts The (positive) number of parts the sequences are split
+	 *         in when using an executor.
+	 */
+	public <O extends Observation> 
+	DistanceMatrixCalculator(final List<? extends Hmm<O>> hmms, 
+			List<? extends List<? extends List<? extends O>>> sequences,
+			ExecutorService executor, int nbParts)
+	{
+		if (sequences.size() != hmms.size())
+			throw new IllegalArgumentException("One list of sequences " +
+					"expected per HMM");
+		if (nbParts <= 0)
+			throw new IllegalArgumentException("Positive number expected");
+		
+		lnProbabilities = new double[hmms.size()][][];
+		lengths = new int[hmms.size()][];
+		
+		/* All the sequences, with their HMM and their index */
+		final List<List<? extends O>> allSequences = 
+			new ArrayList<List<? extends O>>();
+		final List<double[]> results = new ArrayList<double[]>();
+		
+		for (int m = 0; m < hmms.size(); m++) {
+			List<? extends List<? extends O>> mSequences = sequences.get(m);
+			if (mSequences.isEmpty())
+				throw new IllegalArgumentException("No sequence for HMM " + m);
+			
+			lnProbabilities[m] = new double[mSequences.size()][hmms.size()];
+			lengths[m] = new int[mSequences.size()];
+			
+			for (int k = 0; k < mSequences.size(); k++) {
+				if (mSequences.get(k).isEmpty())
+					throw new IllegalArgumentException("Invalid empty " +
+							"sequence");
+				
+				allSequences.add(mSequences.get(k));
+				results.add(lnProbabilities[m][k]);
+				lengths[m][k] = mSequences.get(k).size();
+			}
+		}
+		
+		if (executor == null || nbParts <= 1 || allSequences.size() <= 1) {
+			evaluate(hmms, allSequences, results, 0, allSequences.size());
+			return;
+		}
+		
+		nbParts = Math.min(nbParts, allSequences.size());
+		List<Future<?>> futures = new ArrayList<Future<?>>(nbParts);
+		
+		for (int p = 0; p < nbParts; p++) {
+			final int from = (int) ((long) allSequences.size() * p / nbParts);
+			final int to = 
+				(int) ((long) allSequences.size() * (p + 1) / nbParts);
+			
+			/* Each part works on its own copies, since the opdfs might use
+			 temporary buffers when computing probabilities */
+			final List<Hmm<O>> partHmms = new ArrayList<Hmm<O>>(hmms.size());
+			try {
+				for (Hmm<O> hmm : hmms)
+					partHmms.add(hmm.clone());
+			} catch(CloneNotSupportedException e) {
+				throw new InternalError();
+			}
+			
+			futures.add(executor.submit(new Runnable() {
+				public void run()
+				{
+					evaluate(partHmms, allSequences, results, from, to);
+				}
+			}));
+		}
+		
+		try {
+			for (Future<?> future : futures)
+				future.get();
+		} catch(InterruptedException e) {
+			for (Future<?> future : futures)
+				future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while computing " +
+					"distances", e);
+		} catch(ExecutionException e) {
+			for (Future<?> future : futures)
+				future.cancel(true);
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+	
+	
+	private static <O extends Observation> List<List<List<O>>> 
+	generate(List<? extends Hmm<O>> hmms, int nbSequences, int sequencesLength)
+	{
+		if (nbSequences <= 0)
+			throw new IllegalArgumentException("Positive number expected");
+		
+		List<List<List<O>>> sequences = 
+			new ArrayList<List<List<O>>>(hmms.size());
+		
+		for (Hmm<O> hmm : hmms) {
+			MarkovGenerator<O> mg = new MarkovGenerator<O>(hmm);
+			List<List<O>> hmmSequences = new ArrayList<List<O>>(nbSequences);
+			
+			for (int k = 0; k < nbSequences; k++)
+				hmmSequences.add(mg.observationSequence(sequencesLength));
+			sequences.add(hmmSequences);
+		}
+		
+		return sequences;
+	}
+	
+	
+	/*
+	 * Evaluates the sequences with indices 'from' (inclusive) to 'to'
+	 * (exclusive) with all the HMMs.
+	 */
+	private static <O extends Observation> void 
+	evaluate(List<? extends Hmm<O>> hmms, 
+			List<List<? extends O>> sequences, List<double[]> results,
+			int from, int to)
+	{
+		for (int s = from; s < to; s++) {
+			double[] result = results.get(s);
+			
+			for (int n = 0; n < hmms.size(); n++)
+				result[n] = new ForwardBackwardScaledCalculator(
+						sequences.get(s), hmms.get(n)).lnProbability();
+		}
+	}
+	
+	
+	/**
+	 * Returns the number of HMMs.
+	 *
+	 * @return The number of HMMs.
+	 */
+	public int nbHmms()
+	{
+		return lengths.length;
+	}
+	
+	
+	/**
+	 * Returns the Kullback-Leibler distance between two HMMs (as defined by
+	 * {@link KullbackLeiblerDistanceCalculator}).
+	 * 
+	 * @param m The index of the HMM with regard to which the distance is 
+	 *         computed.
+	 * @param n The index of the other HMM.
+	 * @return The distance (per observation).
+	 */
+	public double kullbackLeibler(int m, int n)
+	{
+		double distance = 0.;
+		
+		for (int k = 0; k < lengths[m].length; k++)
+			distance += (lnProbabilities[m][k][m] - lnProbabilities[m][k][n])
+			/ lengths[m][k];
+		
+		return distance / lengths[m].length;
+	}
+	
+	
+	/**
+	 * Returns the symetric Kullback-Leibler distance between two HMMs, i.e.
+	 * the mean of the distances with regard to each of them.
+	 * 
+	 * @param m The index of an HMM.
+	 * @param n The index of another HMM.
+	 * @return The distance (per observation).
+	 */
+	public double symmetricKullbackLeibler(int m, int n)
+	{
+		return (kullbackLeibler(m, n) + kullbackLeibler(n, m)) / 2.;
+	}
+	
+	
+	/**
+	 * Returns the Bhattacharyya distance between two HMMs.
+	 * 
+	 * @param m The index of an HMM.
+	 * @param n The index of another HMM.
+	 * @return The distance (per observation).
+	 */
+	public double bhattacharyya(int m, int n)
+	{
+		if (m == n)
+			return 0.;
+		
+		/* The Bhattacharyya coefficient is the expected value of
+		 sqrt(P[O|n] / P[O|m]) over the sequences O of m (and symetrically);
+		 the terms are summed in the log domain */
+		int nbTerms = lengths[m].length + lengths[n].length;
+		double[] lnTerms = new double[nbTerms];
+		double length = 0.;
+		double max = Double.NEGATIVE_INFINITY;
+		
+		int i = 0;
+		for (int k = 0; k < lengths[m].length; k++, i++) {
+			lnTerms[i] = (lnProbabilities[m][k][n] - lnProbabilities[m][k][m])
+			/ 2.;
+			length += lengths[m][k];
+			max = Math.max(max, lnTerms[i]);
+		}
+		for (int k = 0; k < lengths[n].length; k++, i++) {
+			lnTerms[i] = (lnProbabilities[n][k][m] - lnProbabilities[n][k][n])
+			/ 2.;
+			length += lengths[n][k];
+			max = Math.max(max, lnTerms[i]);
+		}
+		
+		if (max == Double.NEGATIVE_INFINITY)
+			return Double.POSITIVE_INFINITY;
+		
+		/* Both expected values are estimated with the same weight */
+		double sumM = 0., sumN = 0.;
+		for (i = 0; i < lengths[m].length; i++)
+			sumM += Math.exp(lnTerms[i] - max);
+		for (; i < nbTerms; i++)
+			sumN += Math.exp(lnTerms[i] - max);
+		
+		double lnCoefficient = max + Math.log((sumM / lengths[m].length +
+				sumN / lengths[n].length) / 2.);
+		
+		return -lnCoefficient / (length / nbTerms);
+	}
+	
+	
+	/**
+	 * Returns the matrix of the symetric Kullback-Leibler distances (see
+	 * {@link #symmetricKullbackLeibler}).
+	 * 
+	 * @return A symetric matrix whose element <code>[m][n]</code> is the
+	 *         distance between the HMMs <code>m</code> and <code>n</code>.
+	 */
+	public double[][] symmetricKullbackLeiblerMatrix()
+	{
+		double[][] matrix = new double[nbHmms()][nbHmms()];
+		
+		for (int m = 0; m < nbHmms(); m++)
+			for (int n = m + 1; n < nbHmms(); n++)
+				matrix[m][n] = matrix[n][m] = symmetricKullbackLeibler(m, n);
+		
+		return matrix;
+	}
+	
+	
+	/**
+	 * Returns the matrix of the Bhattacharyya distances (see 
+	 * {@link #bhattacharyya}).
+	 * 
+	 * @return A symetric matrix whose element <code>[m][n]</code> is the
+	 *         distance between the HMMs <code>m</code> and <code>n</code>.
+	 */
+	public double[][] bhattacharyyaMatrix()
+	{
+		double[][] matrix = new double[nbHmms()][nbHmms()];
+		
+		for (int m = 0; m < nbHmms(); m++)
+			for (int n = m + 1; n < nbHmms(); n++)
+				matrix[m][n] = matrix[n][m] = bhattacharyya(m, n);
+		
+		return matrix;
+	}
+}
@@ -62,11 +62,11 @@ public class KullbackLeiblerDistanceCalculator
 	distance(Hmm<O> hmm1, Hmm<? super O> hmm2)
 	{			
 		double distance = 0.;
+		MarkovGenerator<O> mg = new MarkovGenerator<O>(hmm1);
 		
 		for (int i = 0; i < nbSequences; i++) {
 			
-			List<O> oseq = new MarkovGenerator<O>(hmm1).
-			observationSequence(sequencesLength);
+			List<O> oseq = mg.observationSequence(sequencesLength);
 			
 			distance += (new ForwardBackwardScaledCalculator(oseq, hmm1).
 					lnProbability() -
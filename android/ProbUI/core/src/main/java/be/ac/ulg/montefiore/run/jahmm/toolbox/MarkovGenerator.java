@@ -0,0 +1,291 @@
+/* jahmm package - v0.6.1 */
+
+/*
+  *  Copyright (c) 2004-2006, Jean-Marc Francois.
+ *
+ *  This file is part of Jahmm.
+ *  Jahmm is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Jahmm is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Jahmm; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ */
+
+package be.ac.ulg.montefiore.run.jahmm.toolbox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import be.ac.ulg.montefiore.run.distributions.SplitRandom;
+import be.ac.ulg.montefiore.run.jahmm.*;
+
+
+/**
+ * Generates sequences of markovian observations given a HMM.
+ * <p>
+ * The states are drawn in constant time using alias tables (see <i>Vose</i>,
+ * <i>A linear algorithm for generating random numbers with a given 
+ * distribution</i>, IEEE Transactions on Software Engineering, 1991) of the
+ * initial probabilities and of the transition probabilities, computed when
+ * the generator is built: the initial and transition probabilities of the
+ * HMM must not be modified afterwards.
+ * <p>
+ * All the random numbers are drawn from the generator's own pseudo-random
+ * number generator, including those of the observations if the observation
+ * distributions implement {@link RandomGenerable}.  A generator must only
+ * be used by one thread; other threads can use generators obtained with
+ * {@link #split}.
+ */
+public class MarkovGenerator<O extends Observation>
+{	
+	private final Hmm<O> hmm;
+	private final Random random;
+	/* Alias tables of the transition probabilities of each state (rows 0 to
+	 nbStates - 1) and of the initial probabilities (last row) */
+	private final double[][] probabilities;
+	private final int[][] aliases;
+	private int stateNb;
+	
+	
+	/**
+	 * Initializes a Markovian generator.
+	 *
+	 * @param hmm An Hidden Markov Model that perfectly models the sequences
+	 *            generated by this object.
+	 */
+	public MarkovGenerator(Hmm<O> hmm)
+	{
+		this(hmm, new SplitRandom());
+	}
+	
+	
+	/**
+	 * Initializes a Markovian generator that draws its random numbers from a
+	 * given generator.
+	 *
+	 * @param hmm An Hidden Markov Model that perfectly models the sequences
+	 *            generated by this object.
+	 * @param random The pseudo-random number generator (e.g. a 
+	 *            {@link SplitRandom} to get reproducible sequences).
+	 */
+	public MarkovGenerator(Hmm<O> hmm, Random random)
+	{
+		if (hmm == null)
+			throw new IllegalArgumentException("Invalid null HMM");
+		if (random == null)
+			throw new IllegalArgumentException("Invalid null generator");
+		
+		this.hmm = hmm;
+		this.random = random;
+		
+		int nbStates = hmm.nbStates();
+		probabilities = new double[nbStates + 1][nbStates];
+		aliases = new int[nbStates + 1][nbStates];
+		
+		double[] row = new double[nbStates];
+		for (int i = 0; i <= nbStates; i++) {
+			for (int j = 0; j < nbStates; j++)
+				row[j] = i < nbStates ? hmm.getAij(i, j) : hmm.getPi(j);
+			aliasTable(row, probabilities[i], aliases[i]);
+		}
+		
+		newSequence();
+	}
+	
+	
+	private MarkovGenerator(MarkovGenerator<O> generator, Random random)
+	{
+		this.hmm = generator.hmm;
+		this.random = random;
+		this.probabilities = generator.probabilities;
+		this.aliases = generator.aliases;
+		newSequence();
+	}
+	
+	
+	/*
+	 * Computes the alias table of a distribution: value i is drawn with 
+	 * probability probabilities[i] / n, else aliases[i] is drawn.
+	 */
+	private static void aliasTable(double[] distribution, 
+			double[] probabilities, int[] aliases)
+	{
+		int n = distribution.length;
+		double sum = 0.;
+		int max = 0;
+		for (int i = 0; i < n; i++) {
+			sum += distribution[i];
+			if (distribution[i] > distribution[max])
+				max = i;
+		}
+		
+		if (!(sum > 0.))
+			throw new IllegalArgumentException("Invalid distribution");
+		
+		int[] small = new int[n];
+		int[] large = new int[n];
+		int nbSmall = 0, nbLarge = 0;
+		
+		for (int i = 0; i < n; i++) {
+			probabilities[i] = distribution[i] * n / sum;
+			if (probabilities[i] < 1.)
+				small[nbSmall++] = i;
+			else
+				large[nbLarge++] = i;
+		}
+		
+		while (nbSmall > 0 && nbLarge > 0) {
+			int s = small[--nbSmall];
+			int l = large[--nbLarge];
+			
+			aliases[s] = l;
+			probabilities[l] += probabilities[s] - 1.;
+			
+			if (probabilities[l] < 1.)
+				small[nbSmall++] = l;
+			else
+				large[nbLarge++] = l;
+		}
+		
+		/* The remaining values only differ from 1 by rounding errors; the
+		 values that can not be drawn must stay so */
+		while (nbLarge > 0)
+			probabilities[large[--nbLarge]] = 1.;
+		while (nbSmall > 0) {
+			int s = small[--nbSmall];
+			probabilities[s] = distribution[s] > 0. ? 1. : 0.;
+			aliases[s] = max;
+		}
+	}
+	
+	
+	/* Draws a value using the alias table of the given row */
+	private int draw(int row)
+	{
+		double[] p = probabilities[row];
+		double u = random.nextDouble() * p.length;
+		int i = (int) u;
+		
+		if (i == p.length) // Can only happen because of rounding
+			i--;
+		
+		return u - i < p[i] ? i : aliases[row][i];
+	}
+	
+	
+	/**
+	 * Returns a new generator of the same HMM, whose random numbers are
+	 * independent of this generator's (if it uses a {@link SplitRandom},
+	 * the new generator's numbers only depend on the seed of this one).
+	 *
+	 * @return A new generator, with a new sequence.
+	 */
+	public MarkovGenerator<O> split()
+	{
+		Random splitRandom = random instanceof SplitRandom ?
+				((SplitRandom) random).split() : 
+				new SplitRandom(random.nextLong());
+		
+		return new MarkovGenerator<O>(this, splitRandom);
+	}
+	
+	
+	/**
+	 * Generates a new (pseudo) random observation.
+	 *
+	 * @return The generated observation.
+	 */
+	public O observation()
+	{	
+		O o = generate(stateNb);
+		stateNb = draw(stateNb);
+		
+		return o;
+	}
+	
+	
+	@SuppressWarnings("unchecked")
+	private O generate(int stateNb)
+	{
+		Opdf<O> opdf = hmm.getOpdf(stateNb);
+		
+		if (opdf instanceof RandomGenerable)
+			return ((RandomGenerable<O>) opdf).generate(random);
+		
+		return opdf.generate();
+	}
+	
+	
+	/**
+	 * Generates a new (pseudo) random observation sequence and start
+	 * a new one.
+	 * 
+	 * @param length The length of the sequence.
+	 * @return An observation sequence.
+	 */
+	public List<O> observationSequence(int length)
+	{	
+		if (length <= 0)
+			throw new IllegalArgumentException("Positive length required");
+		
+		int[] states = new int[length];
+		stateSequence(states);
+		
+		ArrayList<O> sequence = new ArrayList<O>(length);
+		for (int state : states)
+			sequence.add(generate(state));
+		
+		return sequence;
+	}
+	
+	
+	/**
+	 * Generates a new (pseudo) random state sequence (without generating the
+	 * observations) and start a new one.
+	 * 
+	 * @param states The array filled with the state numbers of the sequence,
+	 *         whose length is the length of the sequence.
+	 */
+	public void stateSequence(int[] states)
+	{
+		if (states.length == 0)
+			throw new IllegalArgumentException("Positive length required");
+		
+		states[0] = stateNb;
+		for (int t = 1; t < states.length; t++)
+			states[t] = draw(states[t - 1]);
+		
+		newSequence();
+	}
+	
+	
+	/**
+	 * Finds a new state according to the initial (pi) probabilities of each
+	 * state.
+	 */
+	public void newSequence()
+	{	
+		stateNb = draw(probabilities.length - 1);
+	}
+	
+	
+	/**
+	 * Returns the state number of the current state.
+	 *
+	 * @return A state number.
+	 */
+	public int stateNb()
+	{
+		return stateNb;
+	}
+}
@@ -0,0 +1,204 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+
+import be.ac.ulg.montefiore.run.jahmm.Hmm;
+import be.ac.ulg.montefiore.run.jahmm.toolbox.DistanceMatrixCalculator;
+import de.lmu.ifi.medien.probui.behaviours.ProbBehaviourTouch;
+import de.lmu.ifi.medien.probui.gui.ProbInteractorBase;
+import de.lmu.ifi.medien.probui.hmm.ObservationVectorTouch;
+import de.lmu.ifi.medien.probui.observations.ProbObservationTouch;
+
+/**
+ * Pairwise confusability of all touch behaviours of all interactors of an interface
+ * (e.g. to review a layout): For each pair of behaviours, this gives the symmetric
+ * Kullback-Leibler distance and the Bhattacharyya distance of their models (per observation),
+ * and an upper bound on the error of telling them apart.
+ * <p/>
+ * The distances are estimated with a {@link DistanceMatrixCalculator}, i.e. the samples
+ * generated from each behaviour are reused for all comparisons, and can be evaluated in parallel.
+ */
+public class ConfusabilityAnalysis {
+
+
+    private List<ProbBehaviourTouch> behaviours;
+
+    private int[] interactorIndices;
+
+    private int sequenceLength;
+
+    private double[][] kullbackLeibler;
+
+    private double[][] bhattacharyya;
+
+
+    private ConfusabilityAnalysis(List<ProbBehaviourTouch> behaviours, int[] interactorIndices,
+                                  int sequenceLength, DistanceMatrixCalculator calculator) {
+        this.behaviours = behaviours;
+        this.interactorIndices = interactorIndices;
+        this.sequenceLength = sequenceLength;
+        this.kullbackLeibler = calculator.symmetricKullbackLeiblerMatrix();
+        this.bhattacharyya = calculator.bhattacharyyaMatrix();
+    }
+
+
+    /**
+     * Computes the confusability of all touch behaviours of the given interactors.
+     * Since the touch models might use the touch ellipse (see SystemSetup.TOUCH_PROBABILITY_MODE),
+     * the given ellipse parameters are "injected" into the sampled observations.
+     *
+     * @param interactors    E.g. the interactors of a ProbUIManager.
+     * @param numSamples     Number of sequences sampled from each behaviour.
+     * @param sequenceLength Length of the sampled sequences.
+     * @param orientation
+     * @param axisMinor
+     * @param axisMajor
+     * @param executor       Evaluates the samples, or null to evaluate them in the calling thread.
+     *                       It is not shut down by this method.
+     * @param numParts       Number of parts the samples are split in when using the executor.
+     * @return
+     */
+    public static ConfusabilityAnalysis analyse(List<? extends ProbInteractorBase> interactors, int numSamples, int sequenceLength,
+                                                double orientation, double axisMinor, double axisMajor,
+                                                ExecutorService executor, int numParts) {
+
+        // 1. Collect the behaviours of all interactors:
+        List<ProbBehaviourTouch> behaviours = new ArrayList<ProbBehaviourTouch>();
+        List<Integer> indices = new ArrayList<Integer>();
+        int interactorIndex = 0;
+        for (ProbInteractorBase interactor : interactors) {
+            for (ProbBehaviourTouch behaviour : interactor.getCore().getBehavioursTouch()) {
+                behaviours.add(behaviour);
+                indices.add(interactorIndex);
+            }
+            interactorIndex++;
+        }
+        int[] interactorIndices = new int[indices.size()];
+        for (int i = 0; i < interactorIndices.length; i++) {
+            interactorIndices[i] = indices.get(i);
+        }
+
+        // 2. Sample from each behaviour (once, all comparisons reuse these samples):
+        List<Hmm<ObservationVectorTouch>> models = new ArrayList<Hmm<ObservationVectorTouch>>();
+        List<List<List<ObservationVectorTouch>>> samples = new ArrayList<List<List<ObservationVectorTouch>>>();
+        for (ProbBehaviourTouch behaviour : behaviours) {
+            models.add(behaviour.getModel());
+            List<List<ObservationVectorTouch>> behaviourSamples = new ArrayList<List<ObservationVectorTouch>>();
+            for (int i = 0; i < numSamples; i++) {
+                behaviourSamples.add(injectTouchEllipse(behaviour.sample(sequenceLength),
+                        orientation, axisMinor, axisMajor));
+            }
+            samples.add(behaviourSamples);
+        }
+
+        // 3. Evaluate all samples with all models:
+        DistanceMatrixCalculator calculator = new DistanceMatrixCalculator(models, samples, executor, numParts);
+
+        return new ConfusabilityAnalysis(behaviours, interactorIndices, sequenceLength, calculator);
+    }
+
+
+    private static List<ObservationVectorTouch> injectTouchEllipse(List<ObservationVectorTouch> obsSeq,
+                                                                   double orientation, double axisMinor,
+                                                                   double axisMajor) {
+        List<ObservationVectorTouch> result = new ArrayList<ObservationVectorTouch>(obsSeq.size());
+        int i = 0;
+        for (ObservationVectorTouch obs : obsSeq) {
+            int touchType = ProbObservationTouch.TYPE_TOUCH_MOVE;
+            if (i == 0) touchType = ProbObservationTouch.TYPE_TOUCH_DOWN;
+            if (i == obsSeq.size() - 1) touchType = ProbObservationTouch.TYPE_TOUCH_UP;
+            double[] touchFeatures = {obs.value(0), obs.value(1), orientation, axisMinor, axisMajor};
+            result.add(new ObservationVectorTouch(
+                    new ProbObservationTouch(touchFeatures, new int[]{touchType, 0}, -1)));//-1 --> no timestamp
+            i++;
+        }
+        return result;
+    }
+
+
+    public int getNumBehaviours() {
+        return this.behaviours.size();
+    }
+
+
+    public ProbBehaviourTouch getBehaviour(int index) {
+        return this.behaviours.get(index);
+    }
+
+
+    /**
+     * @param index
+     * @return The index of the interactor of the behaviour (in the given list of interactors).
+     */
+    public int getInteractorIndex(int index) {
+        return this.interactorIndices[index];
+    }
+
+
+    /**
+     * @return Symmetric matrix of the symmetric Kullback-Leibler distances (per observation).
+     */
+    public double[][] getKullbackLeibler() {
+        return this.kullbackLeibler;
+    }
+
+
+    /**
+     * @return Symmetric matrix of the Bhattacharyya distances (per observation).
+     */
+    public double[][] getBhattacharyya() {
+        return this.bhattacharyya;
+    }
+
+
+    /**
+     * Upper bound on the error rate of deciding between two behaviours (with equal priors)
+     * after observing a sequence of the analysed length.
+     *
+     * @param i
+     * @param j
+     * @return
+     */
+    public double getErrorBound(int i, int j) {
+        return 0.5 * Math.exp(-this.sequenceLength * this.bhattacharyya[i][j]);
+    }
+
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < this.behaviours.size(); i++) {
+            for (int j = i + 1; j < this.behaviours.size(); j++) {
+                sb.append(this.interactorIndices[i]).append(':').append(this.behaviours.get(i).getLabel())
+                        .append(" <-> ")
+                        .append(this.interactorIndices[j]).append(':').append(this.behaviours.get(j).getLabel())
+                        .append(String.format(Locale.US, "  KL %.4f  BD %.4f  error <= %.4f",
+                                this.kullbackLeibler[i][j], this.bhattacharyya[i][j], getErrorBound(i, j)))
+                        .append("\n");
+            }
+        }
+        return sb.toString();
+    }
+}
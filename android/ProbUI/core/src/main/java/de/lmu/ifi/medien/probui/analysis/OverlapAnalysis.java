@@ -0,0 +1,465 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+
+import be.ac.ulg.montefiore.run.distributions.SplitRandom;
+import be.ac.ulg.montefiore.run.jahmm.Hmm;
+import be.ac.ulg.montefiore.run.jahmm.toolbox.DistanceMatrixCalculator;
+import be.ac.ulg.montefiore.run.jahmm.toolbox.MarkovGenerator;
+import de.lmu.ifi.medien.probui.hmm.ObservationVectorTouch;
+import de.lmu.ifi.medien.probui.hmm.OpdfTouchGaussian;
+
+/**
+ * Analytic check of how much the interactors of an interface overlap, e.g. to find out
+ * whether a layout is ambiguous while it is being changed:
+ * For each pair of interactors, this gives an upper bound on the Bhattacharyya coefficient
+ * of their touch sequences of a given length, and thus on the error of telling them apart.
+ * <p/>
+ * The bounds are computed in closed form from the Gaussian parameters of the states
+ * (i.e. without sampling), which takes only microseconds for the usual behaviours:
+ * <ul>
+ * <li>Two states: The Bhattacharyya coefficient of two Gaussians.</li>
+ * <li>Two behaviours: The coefficients of their state pairs, combined along all pairs of paths
+ * with a forward pass over the product of both models (sqrt(sum) <= sum(sqrt)). This is exact
+ * for single-state behaviours (e.g. "touch_centre") and gets looser the more paths a model has.</li>
+ * <li>Two interactors: The coefficients of their behaviour pairs, weighted with the square roots
+ * of the behaviours' priors.</li>
+ * </ul>
+ * Behaviour pairs with a model with more states than a given limit can be estimated by sampling
+ * instead (with a {@link DistanceMatrixCalculator}); only the behaviours of these pairs are sampled.
+ * <p/>
+ * Note: The bounds refer to the Gaussian models of the states, i.e. they do not take into account
+ * the touch ellipse (see SystemSetup.TOUCH_PROBABILITY_MODE), nor that relative gestures are moved
+ * to the touch down (these are compared at their current positions).
+ */
+public class OverlapAnalysis {
+
+
+    private final int sequenceLength;
+
+    /**
+     * Upper bounds of the Bhattacharyya coefficients of the interactors.
+     */
+    private final double[][] coefficients;
+
+    /**
+     * sampled[i][j] is true if the coefficient of the interactors i and j was (partly)
+     * estimated by sampling.
+     */
+    private final boolean[][] sampled;
+
+
+    private OverlapAnalysis(int sequenceLength, double[][] coefficients, boolean[][] sampled) {
+        this.sequenceLength = sequenceLength;
+        this.coefficients = coefficients;
+        this.sampled = sampled;
+    }
+
+
+    /**
+     * Computes the overlap of all interactors of the given snapshot analytically
+     * (for behaviours with any number of states).
+     *
+     * @param snapshot
+     * @param sequenceLength Number of touch observations the interactors are told apart with.
+     * @return
+     */
+    public static OverlapAnalysis analyse(StaticProbUISnapshot snapshot, int sequenceLength) {
+        return analyse(snapshot, sequenceLength, Integer.MAX_VALUE, 0, 0, 0, 0, 0, null, 1);
+    }
+
+
+    /**
+     * Computes the overlap of all interactors of the given snapshot; behaviour pairs with a model with more than
+     * the given number of states are estimated by sampling. Since the touch models might use the touch ellipse
+     * (see SystemSetup.TOUCH_PROBABILITY_MODE), the given ellipse parameters are "injected" into the samples.
+     *
+     * @param snapshot
+     * @param sequenceLength    Number of touch observations the interactors are told apart with.
+     * @param maxAnalyticStates Behaviour pairs with a model with more states are sampled.
+     * @param numSamples        Number of sequences sampled from each behaviour of a sampled pair.
+     * @param orientation
+     * @param axisMinor
+     * @param axisMajor
+     * @param seed              Seed of the random numbers of the samples.
+     * @param executor          Evaluates the samples, or null to evaluate them in the calling thread.
+     *                          It is not shut down by this method.
+     * @param numParts          Number of parts the samples are split in when using the executor.
+     * @return
+     */
+    public static OverlapAnalysis analyse(StaticProbUISnapshot snapshot, int sequenceLength,
+                                          int maxAnalyticStates, int numSamples,
+                                          double orientation, double axisMinor, double axisMajor, long seed,
+                                          ExecutorService executor, int numParts) {
+
+        if (sequenceLength <= 0)
+            throw new IllegalArgumentException("Sequence length must be positive: " + sequenceLength);
+
+        // 1. Collect the behaviours of all interactors (with the parameters of their states):
+        List<StateParameters> behaviours = new ArrayList<StateParameters>();
+        int numInteractors = snapshot.getNumInteractors();
+        int[] firstBehaviours = new int[numInteractors + 1];
+        for (int k = 0; k < numInteractors; k++) {
+            firstBehaviours[k] = behaviours.size();
+            for (StaticProbUISnapshot.Behaviour behaviour : snapshot.getBehaviours(k)) {
+                behaviours.add(new StateParameters(behaviour.getModel()));
+            }
+        }
+        firstBehaviours[numInteractors] = behaviours.size();
+
+        // 2. Find the behaviours that are compared by sampling, i.e. those in a pair (of different interactors)
+        // with a model with too many states:
+        boolean[] needed = new boolean[behaviours.size()];
+        boolean sampling = false;
+        for (int k = 0; k < numInteractors; k++) {
+            for (int l = k + 1; l < numInteractors; l++) {
+                for (int a = firstBehaviours[k]; a < firstBehaviours[k + 1]; a++) {
+                    for (int b = firstBehaviours[l]; b < firstBehaviours[l + 1]; b++) {
+                        if (behaviours.get(a).numStates > maxAnalyticStates
+                                || behaviours.get(b).numStates > maxAnalyticStates) {
+                            needed[a] = needed[b] = true;
+                            sampling = true;
+                        }
+                    }
+                }
+            }
+        }
+
+        // 3. Estimate the distances of these behaviours by sampling, if needed (else, everything is analytic):
+        DistanceMatrixCalculator calculator = null;
+        int[] calculatorIndices = new int[behaviours.size()];
+        if (sampling) {
+            if (numSamples <= 0)
+                throw new IllegalArgumentException("Behaviours with more than " + maxAnalyticStates
+                        + " states need samples");
+            calculator = sample(snapshot, needed, calculatorIndices, numSamples, sequenceLength,
+                    orientation, axisMinor, axisMajor, seed, executor, numParts);
+        }
+
+        // 4. Combine the coefficients of the behaviours of each pair of interactors:
+        double[][] coefficients = new double[numInteractors][numInteractors];
+        boolean[][] sampled = new boolean[numInteractors][numInteractors];
+        ProductForward forward = new ProductForward();
+        for (int k = 0; k < numInteractors; k++) {
+            coefficients[k][k] = 1;
+            double[] priorK = snapshot.getBehavioursPrior(k);
+            for (int l = k + 1; l < numInteractors; l++) {
+                double[] priorL = snapshot.getBehavioursPrior(l);
+                double sum = 0;
+                for (int a = firstBehaviours[k]; a < firstBehaviours[k + 1]; a++) {
+                    for (int b = firstBehaviours[l]; b < firstBehaviours[l + 1]; b++) {
+                        StateParameters behaviourA = behaviours.get(a);
+                        StateParameters behaviourB = behaviours.get(b);
+                        double coefficient;
+                        if (behaviourA.numStates > maxAnalyticStates || behaviourB.numStates > maxAnalyticStates) {
+                            coefficient = Math.min(1, Math.exp(-sequenceLength * calculator.bhattacharyya(
+                                    calculatorIndices[a], calculatorIndices[b])));
+                            sampled[k][l] = sampled[l][k] = true;
+                        } else {
+                            coefficient = forward.coefficient(behaviourA, behaviourB, sequenceLength);
+                        }
+                        sum += Math.sqrt(priorK[a - firstBehaviours[k]] * priorL[b - firstBehaviours[l]])
+                                * coefficient;
+                    }
+                }
+                coefficients[k][l] = coefficients[l][k] = Math.min(1, sum);
+            }
+        }
+
+        return new OverlapAnalysis(sequenceLength, coefficients, sampled);
+    }
+
+
+    /**
+     * Samples the needed behaviours and evaluates the samples with all of them.
+     * Each behaviour gets its own random numbers (split in the order of the snapshot, whether it is needed or not),
+     * so that the samples of a behaviour do not depend on which other behaviours are sampled.
+     *
+     * @param snapshot
+     * @param needed            needed[a] is true if the a-th behaviour (over all interactors) is sampled.
+     * @param calculatorIndices Set to the index of each needed behaviour in the returned calculator.
+     * @param numSamples
+     * @param sequenceLength
+     * @param orientation
+     * @param axisMinor
+     * @param axisMajor
+     * @param seed
+     * @param executor
+     * @param numParts
+     * @return
+     */
+    private static DistanceMatrixCalculator sample(StaticProbUISnapshot snapshot, boolean[] needed,
+                                                   int[] calculatorIndices, int numSamples,
+                                                   int sequenceLength, double orientation, double axisMinor,
+                                                   double axisMajor, long seed,
+                                                   ExecutorService executor, int numParts) {
+
+        List<Hmm<ObservationVectorTouch>> models = new ArrayList<Hmm<ObservationVectorTouch>>();
+        List<List<List<ObservationVectorTouch>>> samples = new ArrayList<List<List<ObservationVectorTouch>>>();
+        SplitRandom random = new SplitRandom(seed);
+        int a = 0;
+        for (int k = 0; k < snapshot.getNumInteractors(); k++) {
+            for (StaticProbUISnapshot.Behaviour behaviour : snapshot.getBehaviours(k)) {
+                SplitRandom behaviourRandom = random.split();
+                if (!needed[a++])
+                    continue;
+                Hmm<ObservationVectorTouch> model = behaviour.cloneModel();
+                MarkovGenerator<ObservationVectorTouch> generator =
+                        new MarkovGenerator<ObservationVectorTouch>(model, behaviourRandom);
+                List<List<ObservationVectorTouch>> behaviourSamples = new ArrayList<List<ObservationVectorTouch>>();
+                for (int i = 0; i < numSamples; i++) {
+                    behaviourSamples.add(StaticProbUIAnalysis.convertTouchObservationVectors(
+                            generator.observationSequence(sequenceLength), 0, 0,
+                            orientation, axisMinor, axisMajor));
+                }
+                calculatorIndices[a - 1] = models.size();
+                models.add(model);
+                samples.add(behaviourSamples);
+            }
+        }
+        return new DistanceMatrixCalculator(models, samples, executor, numParts);
+    }
+
+
+    /**
+     * The parameters of a behaviour's model, as needed for the analytic bounds.
+     */
+    private static class StateParameters {
+
+        final int numStates;
+        final double[] pi;
+        final double[][] sqrtA;
+
+        final double[][] means;
+
+        /**
+         * The covariance matrix of each state as {c00, c01, c11}.
+         */
+        final double[][] covariances;
+
+        final double[] lnDets;
+
+
+        StateParameters(Hmm<ObservationVectorTouch> model) {
+            this.numStates = model.nbStates();
+            this.pi = new double[this.numStates];
+            this.sqrtA = new double[this.numStates][this.numStates];
+            this.means = new double[this.numStates][];
+            this.covariances = new double[this.numStates][];
+            this.lnDets = new double[this.numStates];
+            for (int i = 0; i < this.numStates; i++) {
+                this.pi[i] = model.getPi(i);
+                for (int j = 0; j < this.numStates; j++) {
+                    this.sqrtA[i][j] = Math.sqrt(model.getAij(i, j));
+                }
+                OpdfTouchGaussian opdf = (OpdfTouchGaussian) model.getOpdf(i);
+                this.means[i] = opdf.mean();
+                double[][] covariance = opdf.covariance();
+                this.covariances[i] = new double[]{covariance[0][0], covariance[0][1], covariance[1][1]};
+                this.lnDets[i] = Math.log(covariance[0][0] * covariance[1][1] - covariance[0][1] * covariance[0][1]);
+            }
+        }
+    }
+
+
+    /**
+     * Bounds the Bhattacharyya coefficient of two behaviours with a forward pass over the product of their models:
+     * alpha_1(i,j) = sqrt(pi_i pi'_j) BC_ij, alpha_t+1(k,l) = sum_ij alpha_t(i,j) sqrt(a_ik a'_jl) BC_kl.
+     * The arrays are reused for all pairs.
+     */
+    private static class ProductForward {
+
+        private double[] stateCoefficients = new double[0];
+        private double[] alpha = new double[0];
+        private double[] nextAlpha = new double[0];
+
+
+        double coefficient(StateParameters a, StateParameters b, int sequenceLength) {
+
+            int numStates = a.numStates * b.numStates;
+            if (this.alpha.length < numStates) {
+                this.stateCoefficients = new double[numStates];
+                this.alpha = new double[numStates];
+                this.nextAlpha = new double[numStates];
+            }
+
+            // 1. Coefficients of all state pairs:
+            for (int i = 0; i < a.numStates; i++) {
+                for (int j = 0; j < b.numStates; j++) {
+                    this.stateCoefficients[i * b.numStates + j] = gaussianCoefficient(a, i, b, j);
+                }
+            }
+
+            // 2. Single states are i.i.d., i.e. the coefficient of the sequences is exact:
+            if (numStates == 1)
+                return Math.pow(this.stateCoefficients[0], sequenceLength);
+
+            // 3. Forward pass (scaled, since the values decrease with the length):
+            double lnScale = 0;
+            for (int i = 0; i < a.numStates; i++) {
+                for (int j = 0; j < b.numStates; j++) {
+                    int ij = i * b.numStates + j;
+                    this.alpha[ij] = Math.sqrt(a.pi[i] * b.pi[j]) * this.stateCoefficients[ij];
+                }
+            }
+            for (int t = 1; t < sequenceLength; t++) {
+                double sum = 0;
+                for (int k = 0; k < a.numStates; k++) {
+                    for (int l = 0; l < b.numStates; l++) {
+                        int kl = k * b.numStates + l;
+                        double value = 0;
+                        for (int i = 0; i < a.numStates; i++) {
+                            if (a.sqrtA[i][k] == 0)
+                                continue;
+                            for (int j = 0; j < b.numStates; j++) {
+                                value += this.alpha[i * b.numStates + j] * a.sqrtA[i][k] * b.sqrtA[j][l];
+                            }
+                        }
+                        value *= this.stateCoefficients[kl];
+                        this.nextAlpha[kl] = value;
+                        sum += value;
+                    }
+                }
+                if (sum == 0)
+                    return 0;
+                for (int kl = 0; kl < numStates; kl++) {
+                    this.nextAlpha[kl] /= sum;
+                }
+                lnScale += Math.log(sum);
+                double[] tmp = this.alpha;
+                this.alpha = this.nextAlpha;
+                this.nextAlpha = tmp;
+            }
+            double sum = 0;
+            for (int ij = 0; ij < numStates; ij++) {
+                sum += this.alpha[ij];
+            }
+            return Math.min(1, sum * Math.exp(lnScale));
+        }
+
+
+        /**
+         * Computes the Bhattacharyya coefficient of two 2D Gaussians:
+         * BC = exp(-1/8 d' S^-1 d) sqrt(sqrt(det S1 det S2) / det S), with S = (S1 + S2) / 2 and d = m1 - m2.
+         */
+        private static double gaussianCoefficient(StateParameters a, int i, StateParameters b, int j) {
+            double[] covA = a.covariances[i];
+            double[] covB = b.covariances[j];
+            double s00 = (covA[0] + covB[0]) / 2;
+            double s01 = (covA[1] + covB[1]) / 2;
+            double s11 = (covA[2] + covB[2]) / 2;
+            double det = s00 * s11 - s01 * s01;
+            double dx = a.means[i][0] - b.means[j][0];
+            double dy = a.means[i][1] - b.means[j][1];
+            double mahalanobis = (s11 * dx * dx - 2 * s01 * dx * dy + s00 * dy * dy) / det;
+            double lnCoefficient = -mahalanobis / 8 - Math.log(det) / 2 + (a.lnDets[i] + b.lnDets[j]) / 4;
+            return Math.min(1, Math.exp(lnCoefficient));
+        }
+    }
+
+
+    public int getNumInteractors() {
+        return this.coefficients.length;
+    }
+
+
+    public int getSequenceLength() {
+        return this.sequenceLength;
+    }
+
+
+    /**
+     * @param i
+     * @param j
+     * @return Upper bound of the Bhattacharyya coefficient of the touch sequences of the two interactors.
+     */
+    public double getCoefficient(int i, int j) {
+        return this.coefficients[i][j];
+    }
+
+
+    /**
+     * Upper bound on the error rate of deciding between two interactors (with equal priors)
+     * after observing a sequence of the analysed length.
+     *
+     * @param i
+     * @param j
+     * @return
+     */
+    public double getErrorBound(int i, int j) {
+        return 0.5 * this.coefficients[i][j];
+    }
+
+
+    /**
+     * @param i
+     * @param j
+     * @return True if the bound of the two interactors was (partly) estimated by sampling.
+     */
+    public boolean isSampled(int i, int j) {
+        return this.sampled[i][j];
+    }
+
+
+    /**
+     * @return The highest error bound of all pairs of (different) interactors, or 0 if there are none.
+     */
+    public double getMaxErrorBound() {
+        double max = 0;
+        for (int i = 0; i < this.coefficients.length; i++) {
+            for (int j = i + 1; j < this.coefficients.length; j++) {
+                max = Math.max(max, getErrorBound(i, j));
+            }
+        }
+        return max;
+    }
+
+
+    /**
+     * Checks if any pair of interactors might be confused more often than the given error rate.
+     *
+     * @param maxErrorRate
+     * @return
+     */
+    public boolean isAmbiguous(double maxErrorRate) {
+        return getMaxErrorBound() > maxErrorRate;
+    }
+
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < this.coefficients.length; i++) {
+            for (int j = i + 1; j < this.coefficients.length; j++) {
+                sb.append(i).append(" <-> ").append(j)
+                        .append(String.format(Locale.US, "  BC <= %.4f  error <= %.4f",
+                                this.coefficients[i][j], getErrorBound(i, j)))
+                        .append(this.sampled[i][j] ? "  (sampled)" : "")
+                        .append("\n");
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,416 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import be.ac.ulg.montefiore.run.distributions.SplitRandom;
+import be.ac.ulg.montefiore.run.jahmm.Hmm;
+import be.ac.ulg.montefiore.run.jahmm.toolbox.MarkovGenerator;
+import de.lmu.ifi.medien.probui.gui.ProbInteractorBase;
+import de.lmu.ifi.medien.probui.hmm.ObservationVectorTouch;
+import de.lmu.ifi.medien.probui.observations.ProbObservationTouch;
+
+/**
+ * Monte-Carlo analysis of an interface: Samples behaviours from the interactors, and checks
+ * how well (and how certainly) the posterior over the interactors identifies the right one.
+ * <p/>
+ * The analysis works on a {@link StaticProbUISnapshot}, so it does not touch the live interactors.
+ * The samples can be evaluated in parallel; each sample draws its random numbers from its own
+ * generator (seeded from the given seed), so the result only depends on the seed.
+ * <p/>
+ * Note: This is experimental, not fully developed, and not required to run any of ProbUIs actual functionality.
+ */
+public class StaticProbUIAnalysis {
+
+
+    /**
+     * The scratch state of a thread: its own copies of the models and the arrays of the computations.
+     */
+    private static class Worker {
+
+        private final StaticProbUISnapshot snapshot;
+        private final List<List<Hmm<ObservationVectorTouch>>> models;
+        private final double orientation;
+        private final double axisMinor;
+        private final double axisMajor;
+
+        private double[] alpha;
+        private double[] nextAlpha;
+        private final double[] evidences;
+        private final List<ObservationVectorTouch> window = new ArrayList<ObservationVectorTouch>();
+
+
+        Worker(StaticProbUISnapshot snapshot, double orientation, double axisMinor, double axisMajor) {
+            this.snapshot = snapshot;
+            this.orientation = orientation;
+            this.axisMinor = axisMinor;
+            this.axisMajor = axisMajor;
+
+            int maxStates = 0;
+            this.models = new ArrayList<List<Hmm<ObservationVectorTouch>>>();
+            for (int k = 0; k < snapshot.getNumInteractors(); k++) {
+                List<Hmm<ObservationVectorTouch>> interactorModels = new ArrayList<Hmm<ObservationVectorTouch>>();
+                for (StaticProbUISnapshot.Behaviour behaviour : snapshot.getBehaviours(k)) {
+                    Hmm<ObservationVectorTouch> model = behaviour.cloneModel();
+                    interactorModels.add(model);
+                    maxStates = Math.max(maxStates, model.nbStates());
+                }
+                this.models.add(interactorModels);
+            }
+            this.alpha = new double[maxStates];
+            this.nextAlpha = new double[maxStates];
+            this.evidences = new double[snapshot.getNumInteractors()];
+        }
+
+
+        /**
+         * Draws and evaluates the given samples.
+         */
+        void run(long[] seeds, int from, int to, int sequenceLength,
+                 int[] trueInteractors, int[] decisions, double[] entropies) {
+
+            for (int i = from; i < to; i++) {
+
+                Random random = new SplitRandom(seeds[i]);
+
+                // 1. Choose an interactor (uniform prior) and one of its behaviours (based on its prior):
+                int interactorIndex = random.nextInt(this.snapshot.getNumInteractors());
+                int behaviourIndex = drawFromPrior(this.snapshot.getBehavioursPrior(interactorIndex), random);
+
+                // 2. Sample from the chosen behaviour:
+                List<ObservationVectorTouch> obsSeq =
+                        new MarkovGenerator<ObservationVectorTouch>(
+                                this.models.get(interactorIndex).get(behaviourIndex), random)
+                                .observationSequence(sequenceLength);
+                obsSeq = convertTouchObservationVectors(obsSeq, 0, 0,
+                        this.orientation, this.axisMinor, this.axisMajor);
+
+                // 3. Evaluate the sample for each interactor (mean evidence as in the core):
+                for (int k = 0; k < this.evidences.length; k++) {
+                    this.evidences[k] = meanEvidence(k, obsSeq);
+                }
+
+                // 4. Compute the posterior, the decision (i.e. argmax posterior) and the entropy:
+                double[] posterior = computePosterior(null, this.evidences);
+                int decisionIdx = 0;
+                double postEntropy = 0;
+                for (int pi = 0; pi < posterior.length; pi++) {
+                    if (posterior[pi] > posterior[decisionIdx]) {
+                        decisionIdx = pi;
+                    }
+                    double p = Math.exp(posterior[pi]);
+                    if (p > 0) {
+                        postEntropy += -p * posterior[pi];
+                    }
+                }
+
+                trueInteractors[i] = interactorIndex;
+                decisions[i] = decisionIdx;
+                entropies[i] = postEntropy;
+            }
+        }
+
+
+        /**
+         * Computes the evidence of the interactor, divided by the number of observations,
+         * for the given touch sequence (as {@link de.lmu.ifi.medien.probui.gui.ProbInteractorCoreBase}
+         * does when observing the sequence).
+         */
+        private double meanEvidence(int interactorIndex, List<ObservationVectorTouch> obsSeq) {
+
+            List<StaticProbUISnapshot.Behaviour> behaviours = this.snapshot.getBehaviours(interactorIndex);
+            double[] prior = this.snapshot.getBehavioursPrior(interactorIndex);
+
+            double[] lnJoint = new double[behaviours.size()];
+            double max = Double.NEGATIVE_INFINITY;
+            int numObservations = 0;
+            for (int b = 0; b < behaviours.size(); b++) {
+                StaticProbUISnapshot.Behaviour behaviour = behaviours.get(b);
+
+                // The behaviours only consider their last observations:
+                int start = Math.max(0, obsSeq.size() - behaviour.maxObservations);
+                numObservations = Math.max(numObservations, obsSeq.size() - start);
+
+                // Relative gestures are moved to the touch down, i.e. the sample is moved to their origin:
+                this.window.clear();
+                if (behaviour.relativeOrigin != null) {
+                    double dx = behaviour.relativeOrigin[0] - obsSeq.get(0).value(0);
+                    double dy = behaviour.relativeOrigin[1] - obsSeq.get(0).value(1);
+                    this.window.addAll(convertTouchObservationVectors(obsSeq.subList(start, obsSeq.size()),
+                            dx, dy, this.orientation, this.axisMinor, this.axisMajor));
+                } else {
+                    this.window.addAll(obsSeq.subList(start, obsSeq.size()));
+                }
+
+                lnJoint[b] = Math.log(prior[b]) + lnProbability(this.models.get(interactorIndex).get(b), this.window);
+                max = Math.max(max, lnJoint[b]);
+            }
+
+            // Log sum exp trick:
+            if (max == Double.NEGATIVE_INFINITY)
+                return max;
+            double sum = 0;
+            for (int b = 0; b < lnJoint.length; b++) {
+                sum += Math.exp(lnJoint[b] - max);
+            }
+            return (Math.log(sum) + max) / numObservations;
+        }
+
+
+        /**
+         * Computes the log-probability of the sequence with the scaled forward algorithm
+         * (as the ForwardBackwardScaledCalculator does, but with the worker's arrays).
+         */
+        private double lnProbability(Hmm<ObservationVectorTouch> model, List<ObservationVectorTouch> obsSeq) {
+
+            int numStates = model.nbStates();
+            double lnProb = 0;
+            for (int t = 0; t < obsSeq.size(); t++) {
+                ObservationVectorTouch o = obsSeq.get(t);
+                double sum = 0;
+                for (int j = 0; j < numStates; j++) {
+                    double a;
+                    if (t == 0) {
+                        a = model.getPi(j);
+                    } else {
+                        a = 0;
+                        for (int i = 0; i < numStates; i++) {
+                            a += this.alpha[i] * model.getAij(i, j);
+                        }
+                    }
+                    this.nextAlpha[j] = a * model.getOpdf(j).probability(o);
+                    sum += this.nextAlpha[j];
+                }
+                if (sum == 0)
+                    return Double.NEGATIVE_INFINITY;
+                for (int j = 0; j < numStates; j++) {
+                    this.nextAlpha[j] /= sum;
+                }
+                lnProb += Math.log(sum);
+
+                double[] tmp = this.alpha;
+                this.alpha = this.nextAlpha;
+                this.nextAlpha = tmp;
+            }
+            return lnProb;
+        }
+    }
+
+
+    private static double[] computePosterior(double[] prior, double[] evidences) {
+
+        // Default to uniform prior:
+        if (prior == null) {
+            prior = new double[evidences.length];
+            for (int i = 0; i < prior.length; i++) {
+                prior[i] = 1.0 / prior.length;
+            }
+        }
+
+        // Compute posterior:
+        double[] posterior = new double[evidences.length];
+        for (int i = 0; i < evidences.length; i++) {
+            posterior[i] = Math.log(prior[i]) + evidences[i];
+        }
+
+        // Log sum exp trick:
+        // 1. Compute max:
+        double max = posterior[0];
+        for (int i = 1; i < posterior.length; i++) {
+            max = Math.max(max, posterior[i]);
+        }
+        // (if no interactor explains the evidence at all, fall back to the prior:)
+        if (max == Double.NEGATIVE_INFINITY) {
+            for (int i = 0; i < posterior.length; i++) {
+                posterior[i] = Math.log(prior[i]);
+            }
+            return posterior;
+        }
+        // 2. Shift and sum:
+        double sum = 0;
+        for (int i = 0; i < posterior.length; i++) {
+            sum += Math.exp(posterior[i] - max);
+        }
+        //3. Shift back:
+        sum = Math.log(sum) + max;
+        //4. Divide (minus since it's log):
+        for (int i = 0; i < posterior.length; i++) {
+            posterior[i] -= sum;
+        }
+
+        return posterior;
+    }
+
+
+    private static int drawFromPrior(double[] prior, Random random) {
+
+        double p = random.nextDouble();
+        double cumsum = 0;
+        for (int i = 0; i < prior.length - 1; i++) {
+            cumsum += prior[i];
+            if (p < cumsum) {
+                return i;
+            }
+        }
+        return prior.length - 1;
+    }
+
+
+    /**
+     * Converts the given sequence of touch observations (from HMM library extension)
+     * to touch observations as created from ProbUI touch observations, "injecting" the given
+     * additional parameters and moving the positions by the given offset.
+     *
+     * @param obsSeq
+     * @param dx
+     * @param dy
+     * @param orientation
+     * @param axisMinor
+     * @param axisMajor
+     * @return
+     */
+    static List<ObservationVectorTouch> convertTouchObservationVectors(
+            List<ObservationVectorTouch> obsSeq, double dx, double dy,
+            double orientation, double axisMinor, double axisMajor) {
+
+        List<ObservationVectorTouch> result = new ArrayList<ObservationVectorTouch>(obsSeq.size());
+
+        int i = 0;
+        for (ObservationVectorTouch obs : obsSeq) {
+            int touchType = ProbObservationTouch.TYPE_TOUCH_MOVE;
+            if (i == 0) touchType = ProbObservationTouch.TYPE_TOUCH_DOWN;
+            if (i == obsSeq.size() - 1) touchType = ProbObservationTouch.TYPE_TOUCH_UP;
+            int[] touchTypeAndPointerID = {touchType, 0};
+            double[] touchFeatures = {obs.value(0) + dx, obs.value(1) + dy, orientation, axisMinor, axisMajor};
+            ProbObservationTouch obsConverted = new ProbObservationTouch(touchFeatures, touchTypeAndPointerID, -1);//-1 --> no timestamp
+            result.add(new ObservationVectorTouch(obsConverted));
+            i++;
+        }
+        return result;
+    }
+
+
+    /**
+     * Computes mean and std entropy and error rate of the given interface (given via its interactors)
+     * using a Monte-Carlo approach with the given parameters.
+     * This takes a snapshot of the interactors, and evaluates the samples in the calling thread.
+     *
+     * @param interactors    E.g. the interactors of a ProbUIManager.
+     * @param numSamples
+     * @param sequenceLength
+     * @param orientation
+     * @param axisMinor
+     * @param axisMajor
+     * @return
+     */
+    public static double[] analyse(List<? extends ProbInteractorBase> interactors, int numSamples, int sequenceLength, double orientation, double axisMinor, double axisMajor) {
+        return analyse(new StaticProbUISnapshot(interactors), numSamples, sequenceLength,
+                orientation, axisMinor, axisMajor, System.nanoTime(), null, 1).getSummary();
+    }
+
+
+    /**
+     * Analyses the given interface snapshot using a Monte-Carlo approach with the given parameters.
+     *
+     * @param snapshot
+     * @param numSamples
+     * @param sequenceLength
+     * @param orientation
+     * @param axisMinor
+     * @param axisMajor
+     * @param seed           Seed of the random numbers; the result only depends on it (and the other parameters),
+     *                       not on the executor or the number of parts.
+     * @param executor       Evaluates the samples, or null to evaluate them in the calling thread.
+     *                       It is not shut down by this method.
+     * @param numParts       Number of parts the samples are split in when using the executor
+     *                       (each part has its own copies of the models).
+     * @return The entropy of the posterior and the decision for each sample.
+     */
+    public static StaticProbUIAnalysisResult analyse(final StaticProbUISnapshot snapshot, int numSamples,
+                                                     final int sequenceLength,
+                                                     final double orientation, final double axisMinor,
+                                                     final double axisMajor, long seed,
+                                                     ExecutorService executor, int numParts) {
+
+        if (snapshot.getNumInteractors() == 0)
+            throw new IllegalArgumentException("No interactors to analyse");
+
+        // 1. Seed each sample:
+        final long[] seeds = new long[numSamples];
+        SplitRandom random = new SplitRandom(seed);
+        for (int i = 0; i < numSamples; i++) {
+            seeds[i] = random.nextLong();
+        }
+
+        final int[] trueInteractors = new int[numSamples];
+        final int[] decisions = new int[numSamples];
+        final double[] entropies = new double[numSamples];
+
+        // 2. Evaluate the samples (each part writes its own range of the results):
+        if (executor == null || numParts <= 1 || numSamples <= 1) {
+            new Worker(snapshot, orientation, axisMinor, axisMajor)
+                    .run(seeds, 0, numSamples, sequenceLength, trueInteractors, decisions, entropies);
+        } else {
+            numParts = Math.min(numParts, numSamples);
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int p = 0; p < numParts; p++) {
+                final int from = (int) ((long) numSamples * p / numParts);
+                final int to = (int) ((long) numSamples * (p + 1) / numParts);
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        new Worker(snapshot, orientation, axisMinor, axisMajor)
+                                .run(seeds, from, to, sequenceLength, trueInteractors, decisions, entropies);
+                    }
+                }));
+            }
+
+            try {
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                for (Future<?> future : futures) {
+                    future.cancel(true);
+                }
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while analysing", e);
+            } catch (ExecutionException e) {
+                for (Future<?> future : futures) {
+                    future.cancel(true);
+                }
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                if (e.getCause() instanceof Error)
+                    throw (Error) e.getCause();
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        // 3. Collect the results:
+        return new StaticProbUIAnalysisResult(snapshot.getNumInteractors(), trueInteractors, decisions, entropies);
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.analysis;
+
+/**
+ * The result of a Monte-Carlo analysis of an interface (see {@link StaticProbUIAnalysis}):
+ * for each sample, the interactor it was generated from, the interactor with the highest posterior,
+ * and the entropy of the posterior.
+ */
+public class StaticProbUIAnalysisResult {
+
+
+    private final int[] trueInteractors;
+
+    private final int[] decisions;
+
+    private final double[] entropies;
+
+    /**
+     * confusionMatrix[i][j] is the number of samples generated from interactor i
+     * for which interactor j had the highest posterior.
+     */
+    private final int[][] confusionMatrix;
+
+
+    StaticProbUIAnalysisResult(int numInteractors, int[] trueInteractors, int[] decisions, double[] entropies) {
+        this.trueInteractors = trueInteractors;
+        this.decisions = decisions;
+        this.entropies = entropies;
+        this.confusionMatrix = new int[numInteractors][numInteractors];
+        for (int i = 0; i < trueInteractors.length; i++) {
+            this.confusionMatrix[trueInteractors[i]][decisions[i]]++;
+        }
+    }
+
+
+    public int getNumSamples() {
+        return this.entropies.length;
+    }
+
+
+    /**
+     * @param sample
+     * @return The index of the interactor the given sample was generated from.
+     */
+    public int getTrueInteractor(int sample) {
+        return this.trueInteractors[sample];
+    }
+
+
+    /**
+     * @param sample
+     * @return The index of the interactor with the highest posterior for the given sample.
+     */
+    public int getDecision(int sample) {
+        return this.decisions[sample];
+    }
+
+
+    /**
+     * Returns the posterior entropies of all samples, in the order of the samples
+     * (the returned array must not be modified).
+     *
+     * @return
+     */
+    public double[] getEntropies() {
+        return this.entropies;
+    }
+
+
+    /**
+     * Returns the confusion matrix: element [i][j] is the number of samples generated from interactor i
+     * for which interactor j had the highest posterior (the returned array must not be modified).
+     *
+     * @return
+     */
+    public int[][] getConfusionMatrix() {
+        return this.confusionMatrix;
+    }
+
+
+    public double getErrorRate() {
+        int errors = 0;
+        for (int i = 0; i < this.decisions.length; i++) {
+            if (this.decisions[i] != this.trueInteractors[i]) errors++;
+        }
+        return errors * 1.0 / this.decisions.length;
+    }
+
+
+    public double getMeanEntropy() {
+        double sum = 0;
+        for (double entropy : this.entropies) {
+            sum += entropy;
+        }
+        return sum / this.entropies.length;
+    }
+
+
+    public double getStdEntropy() {
+        double mean = getMeanEntropy();
+        double var = 0;
+        for (double entropy : this.entropies) {
+            var += Math.pow(entropy - mean, 2);
+        }
+        var /= this.entropies.length;
+        return Math.sqrt(var);
+    }
+
+
+    /**
+     * Returns a histogram of the posterior entropies, with the given number of bins of equal width
+     * between 0 and the maximum entropy (i.e. the log of the number of interactors).
+     *
+     * @param numBins
+     * @return The number of samples in each bin.
+     */
+    public int[] getEntropyHistogram(int numBins) {
+        int[] histogram = new int[numBins];
+        double maxEntropy = Math.log(this.confusionMatrix.length);
+        for (double entropy : this.entropies) {
+            int bin = maxEntropy > 0 ? (int) (entropy / maxEntropy * numBins) : 0;
+            histogram[Math.max(0, Math.min(numBins - 1, bin))]++;
+        }
+        return histogram;
+    }
+
+
+    /**
+     * @return Mean and std of the posterior entropy, and the error rate.
+     */
+    public double[] getSummary() {
+        return new double[]{getMeanEntropy(), getStdEntropy(), getErrorRate()};
+    }
+}
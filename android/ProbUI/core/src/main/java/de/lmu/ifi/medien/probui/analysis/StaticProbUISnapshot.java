@@ -0,0 +1,199 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.analysis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import be.ac.ulg.montefiore.run.jahmm.Hmm;
+import de.lmu.ifi.medien.probui.behaviours.ProbBehaviourTouch;
+import de.lmu.ifi.medien.probui.gui.ProbInteractorBase;
+import de.lmu.ifi.medien.probui.hmm.ObservationVectorTouch;
+
+/**
+ * An immutable copy of the touch behaviours (models and priors) of all interactors of an interface,
+ * as needed by {@link StaticProbUIAnalysis}.
+ * <p/>
+ * Taking the snapshot is cheap and should be done on the UI thread. Afterwards, the snapshot is
+ * independent of the live interactors, so it can be analysed on other threads (and by several threads
+ * at once), while the UI keeps running.
+ */
+public class StaticProbUISnapshot {
+
+
+    /**
+     * The copy of a touch behaviour.
+     */
+    static class Behaviour {
+
+        final String label;
+
+        /**
+         * Copy of the behaviour's model. Must not be evaluated directly, since the opdfs use
+         * temporary buffers; each thread works on its own clone (see {@link #cloneModel()}).
+         */
+        private final Hmm<ObservationVectorTouch> model;
+
+        final int maxObservations;
+
+        /**
+         * Position of the origin "fake" state, relative to which the model is moved
+         * at the touch down, or null if this is not a relative gesture.
+         */
+        final double[] relativeOrigin;
+
+
+        Behaviour(ProbBehaviourTouch behaviour) {
+            this.label = behaviour.getLabel();
+            this.model = cloneModel(behaviour.getModel());
+            this.maxObservations = behaviour.getMaxObservations();
+            float[] fakeState = behaviour.getRelativeOriginFakeState();
+            this.relativeOrigin = behaviour.isRelativeGesture() && fakeState != null ?
+                    new double[]{fakeState[0], fakeState[1]} : null;
+        }
+
+
+        Hmm<ObservationVectorTouch> cloneModel() {
+            return cloneModel(this.model);
+        }
+
+
+        /**
+         * Gives read access to the model's parameters (e.g. for analytic computations).
+         * The model must neither be modified nor evaluated.
+         *
+         * @return
+         */
+        Hmm<ObservationVectorTouch> getModel() {
+            return this.model;
+        }
+
+
+        private static Hmm<ObservationVectorTouch> cloneModel(Hmm<ObservationVectorTouch> model) {
+            try {
+                return model.clone();
+            } catch (CloneNotSupportedException e) {
+                throw new InternalError();
+            }
+        }
+    }
+
+
+    private final List<List<Behaviour>> behaviours;
+
+    private final List<double[]> behavioursPriors;
+
+
+    /**
+     * Copies the touch behaviours and their priors of the given interactors.
+     *
+     * @param interactors    E.g. the interactors of a ProbUIManager.
+     */
+    public StaticProbUISnapshot(List<? extends ProbInteractorBase> interactors) {
+        this(getBehaviours(interactors), getBehavioursPriors(interactors));
+    }
+
+
+    /**
+     * Copies the given touch behaviours and their priors.
+     *
+     * @param behaviours       The behaviours of each interactor.
+     * @param behavioursPriors The prior over the behaviours of each interactor
+     *                         (or null for uniform priors).
+     */
+    StaticProbUISnapshot(List<List<ProbBehaviourTouch>> behaviours, List<double[]> behavioursPriors) {
+
+        List<List<Behaviour>> copies = new ArrayList<List<Behaviour>>();
+        List<double[]> priors = new ArrayList<double[]>();
+
+        for (int k = 0; k < behaviours.size(); k++) {
+
+            List<Behaviour> interactorBehaviours = new ArrayList<Behaviour>();
+            for (ProbBehaviourTouch behaviour : behaviours.get(k)) {
+                interactorBehaviours.add(new Behaviour(behaviour));
+            }
+            copies.add(Collections.unmodifiableList(interactorBehaviours));
+
+            // Default to uniform prior (e.g. if the behaviour setup has not been finalised yet):
+            double[] prior = behavioursPriors.get(k);
+            if (prior == null || prior.length != interactorBehaviours.size()) {
+                prior = new double[interactorBehaviours.size()];
+                for (int i = 0; i < prior.length; i++) {
+                    prior[i] = 1.0 / prior.length;
+                }
+            }
+            priors.add(prior.clone());
+        }
+
+        this.behaviours = Collections.unmodifiableList(copies);
+        this.behavioursPriors = priors;
+    }
+
+
+    private static List<List<ProbBehaviourTouch>> getBehaviours(List<? extends ProbInteractorBase> interactors) {
+        List<List<ProbBehaviourTouch>> behaviours = new ArrayList<List<ProbBehaviourTouch>>();
+        for (ProbInteractorBase interactor : interactors) {
+            behaviours.add(interactor.getCore().getBehavioursTouch());
+        }
+        return behaviours;
+    }
+
+
+    private static List<double[]> getBehavioursPriors(List<? extends ProbInteractorBase> interactors) {
+        List<double[]> priors = new ArrayList<double[]>();
+        for (ProbInteractorBase interactor : interactors) {
+            priors.add(interactor.getCore().getBehavioursPrior());
+        }
+        return priors;
+    }
+
+
+    public int getNumInteractors() {
+        return this.behaviours.size();
+    }
+
+
+    public int getNumBehaviours(int interactorIndex) {
+        return this.behaviours.get(interactorIndex).size();
+    }
+
+
+    public String getBehaviourLabel(int interactorIndex, int behaviourIndex) {
+        return this.behaviours.get(interactorIndex).get(behaviourIndex).label;
+    }
+
+
+    List<Behaviour> getBehaviours(int interactorIndex) {
+        return this.behaviours.get(interactorIndex);
+    }
+
+
+    /**
+     * Returns the prior over the behaviours of the given interactor
+     * (the returned array must not be modified).
+     *
+     * @param interactorIndex
+     * @return
+     */
+    double[] getBehavioursPrior(int interactorIndex) {
+        return this.behavioursPriors.get(interactorIndex);
+    }
+}
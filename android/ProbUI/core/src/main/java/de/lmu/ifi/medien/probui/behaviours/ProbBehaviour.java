@@ -19,8 +19,6 @@ along with this program. If not, see <http://www.gnu.org/licenses/>.
 
 package de.lmu.ifi.medien.probui.behaviours;
 
-import android.graphics.Canvas;
-
 import de.lmu.ifi.medien.probui.exceptions.WrongObservationDelegationException;
 import de.lmu.ifi.medien.probui.observations.ProbObservation;
 import de.lmu.ifi.medien.probui.pml.PMLBehaviourListener;
@@ -107,13 +105,13 @@ public interface ProbBehaviour extends NotificationProvider {
      * Visualises this behavioural pattern.
      * Intended for debugging only, not meant to be shown to the user.
      *
-     * @param canvas
+     * @param renderer
      * @param translate_x
      * @param translate_y
      * @param screen_x
      * @param screen_y
      */
-    public void drawDebug(Canvas canvas, float translate_x, float translate_y, float screen_x, float screen_y);
+    public void drawDebug(ProbDebugRenderer renderer, float translate_x, float translate_y, float screen_x, float screen_y);
 
 
     /**
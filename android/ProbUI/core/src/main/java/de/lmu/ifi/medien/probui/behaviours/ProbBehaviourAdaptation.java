@@ -0,0 +1,269 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.behaviours;
+
+import java.util.List;
+
+import be.ac.ulg.montefiore.run.jahmm.Hmm;
+import de.lmu.ifi.medien.probui.hmm.ObservationVectorTouch;
+import de.lmu.ifi.medien.probui.hmm.OpdfTouchGaussian;
+import de.lmu.ifi.medien.probui.pml.PMLParserTouchImpl;
+
+/**
+ * Online adaptation of a touch behaviour to the way the user actually performs it.
+ * <p/>
+ * After each determined interaction, the observations are assigned to the states along the
+ * decoded (most likely) state sequence ("hard" EM step). Each state's first and second moments,
+ * the transition rows and the initial distribution are then moved towards those of the gesture,
+ * i.e. they are exponentially weighted statistics over all past gestures, starting from the
+ * geometry-derived model. Since these statistics are exactly the model's parameters, nothing but
+ * the model is stored, and an update costs one pass over the gesture.
+ * <p/>
+ * To keep the model from drifting away, the means are clamped to the interactor's bounding box
+ * (extended to include the state's initial mean, since PML states may lie outside the box,
+ * e.g. for swipes), and the variances to a range around the initial ones.
+ * The transition and initial probabilities are kept above the smallest probability of the
+ * parser's Laplace correction, so that paths not taken by the adapted gestures stay possible.
+ */
+class ProbBehaviourAdaptation {
+
+
+    /**
+     * Bounds of the adapted variances, relative to the initial variances.
+     */
+    static final double MIN_VARIANCE_FACTOR = 0.25;
+    static final double MAX_VARIANCE_FACTOR = 4;
+
+    /**
+     * Bound of the absolute correlation of the adapted covariances (keeps them positive definite).
+     */
+    static final double MAX_CORRELATION = 0.95;
+
+    /**
+     * Lower bound of the adapted transition and initial probabilities
+     * (the smallest probability of the parser's Laplace correction).
+     */
+    private final double minProbability;
+
+
+    /**
+     * Weight of the statistics of a new gesture vs. the existing statistics (in (0, 1]).
+     */
+    private final double rate;
+
+    private final int numStates;
+
+    /**
+     * The means and variances of the initial model (x and y per state).
+     */
+    private final double[][] initialMeans;
+    private final double[][] initialVariances;
+
+    /**
+     * Statistics of the current gesture per state: count, sums of x and y, sums of xx, xy and yy,
+     * and the transition counts (reused to avoid allocations).
+     */
+    private final double[] counts;
+    private final double[][] sums;
+    private final double[][] squares;
+    private final double[][] transitionCounts;
+
+
+    /**
+     * Starts the adaptation from the given model.
+     *
+     * @param model
+     * @param rate  Weight of the statistics of a new gesture vs. the existing ones.
+     *              With a rate of 1, the model is replaced by the statistics of the last gesture
+     *              (within the bounds, and with the minimum probabilities for the other paths).
+     */
+    ProbBehaviourAdaptation(Hmm<ObservationVectorTouch> model, double rate) {
+        if (rate <= 0 || rate > 1)
+            throw new IllegalArgumentException("Adaptation rate must be in (0, 1]: " + rate);
+
+        this.rate = rate;
+        this.numStates = model.nbStates();
+        this.minProbability = PMLParserTouchImpl.LAPLACE_CORRECTION_FACTOR
+                / (1 + this.numStates * PMLParserTouchImpl.LAPLACE_CORRECTION_FACTOR);
+        this.initialMeans = new double[this.numStates][];
+        this.initialVariances = new double[this.numStates][2];
+        for (int i = 0; i < this.numStates; i++) {
+            this.initialMeans[i] = ((OpdfTouchGaussian) model.getOpdf(i)).mean();
+            double[][] cov = ((OpdfTouchGaussian) model.getOpdf(i)).covariance();
+            this.initialVariances[i][0] = cov[0][0];
+            this.initialVariances[i][1] = cov[1][1];
+        }
+        this.counts = new double[this.numStates];
+        this.sums = new double[this.numStates][2];
+        this.squares = new double[this.numStates][3];
+        this.transitionCounts = new double[this.numStates][this.numStates];
+    }
+
+
+    double getRate() {
+        return this.rate;
+    }
+
+
+    /**
+     * Moves the model towards the given gesture.
+     *
+     * @param model        The model to update.
+     * @param observations The observations of the gesture.
+     * @param states       The decoded state of each observation.
+     * @param bounds       The interactor's bounding box (minX, minY, maxX, maxY) in the
+     *                     coordinates of the model.
+     */
+    void adapt(Hmm<ObservationVectorTouch> model, List<ObservationVectorTouch> observations,
+               int[] states, double[] bounds) {
+
+        if (observations.size() != states.length)
+            throw new IllegalArgumentException("Expected one state per observation, but got "
+                    + states.length + " for " + observations.size() + " observations");
+        if (states.length == 0)
+            return;
+
+        // 1. Collect the statistics of the gesture:
+        for (int i = 0; i < this.numStates; i++) {
+            this.counts[i] = 0;
+            this.sums[i][0] = this.sums[i][1] = 0;
+            this.squares[i][0] = this.squares[i][1] = this.squares[i][2] = 0;
+            for (int j = 0; j < this.numStates; j++)
+                this.transitionCounts[i][j] = 0;
+        }
+        for (int t = 0; t < states.length; t++) {
+            int s = states[t];
+            double x = observations.get(t).value[0];
+            double y = observations.get(t).value[1];
+            this.counts[s]++;
+            this.sums[s][0] += x;
+            this.sums[s][1] += y;
+            this.squares[s][0] += x * x;
+            this.squares[s][1] += x * y;
+            this.squares[s][2] += y * y;
+            if (t > 0)
+                this.transitionCounts[states[t - 1]][s]++;
+        }
+
+        // 2. Blend the moments of the visited states, and derive the bounded parameters:
+        for (int i = 0; i < this.numStates; i++) {
+            if (this.counts[i] == 0)
+                continue;
+            OpdfTouchGaussian opdf = (OpdfTouchGaussian) model.getOpdf(i);
+            double[] mean = opdf.mean();
+            double[][] cov = opdf.covariance();
+            double n = this.counts[i];
+
+            double mx = blend(mean[0], this.sums[i][0] / n);
+            double my = blend(mean[1], this.sums[i][1] / n);
+            double vx = blend(cov[0][0] + mean[0] * mean[0], this.squares[i][0] / n) - mx * mx;
+            double cxy = blend(cov[0][1] + mean[0] * mean[1], this.squares[i][1] / n) - mx * my;
+            double vy = blend(cov[1][1] + mean[1] * mean[1], this.squares[i][2] / n) - my * my;
+
+            vx = clamp(vx, MIN_VARIANCE_FACTOR * this.initialVariances[i][0],
+                    MAX_VARIANCE_FACTOR * this.initialVariances[i][0]);
+            vy = clamp(vy, MIN_VARIANCE_FACTOR * this.initialVariances[i][1],
+                    MAX_VARIANCE_FACTOR * this.initialVariances[i][1]);
+            double maxCxy = MAX_CORRELATION * Math.sqrt(vx * vy);
+            cxy = clamp(cxy, -maxCxy, maxCxy);
+
+            double[] m0 = this.initialMeans[i];
+            mx = clamp(mx, Math.min(bounds[0], m0[0]), Math.max(bounds[2], m0[0]));
+            my = clamp(my, Math.min(bounds[1], m0[1]), Math.max(bounds[3], m0[1]));
+
+            model.setOpdf(i, new OpdfTouchGaussian(new double[]{mx, my},
+                    new double[][]{{vx, cxy}, {cxy, vy}}));
+        }
+
+        // 3. Blend the transition rows of the states that were left, and the initial distribution:
+        for (int i = 0; i < this.numStates; i++) {
+            double n = 0;
+            for (int j = 0; j < this.numStates; j++)
+                n += this.transitionCounts[i][j];
+            if (n == 0)
+                continue;
+            double[] row = new double[this.numStates];
+            for (int j = 0; j < this.numStates; j++)
+                row[j] = blend(model.getAij(i, j), this.transitionCounts[i][j] / n);
+            this.applyMinProbability(row);
+            for (int j = 0; j < this.numStates; j++)
+                model.setAij(i, j, row[j]);
+        }
+        double[] pis = new double[this.numStates];
+        for (int i = 0; i < this.numStates; i++)
+            pis[i] = blend(model.getPi(i), i == states[0] ? 1 : 0);
+        this.applyMinProbability(pis);
+        for (int i = 0; i < this.numStates; i++)
+            model.setPi(i, pis[i]);
+    }
+
+
+    /**
+     * Moves the initial means along with the behaviour.
+     *
+     * @param dx
+     * @param dy
+     */
+    void move(double dx, double dy) {
+        for (double[] m0 : this.initialMeans) {
+            m0[0] += dx;
+            m0[1] += dy;
+        }
+    }
+
+
+    /**
+     * Raises the given probabilities to the minimum probability and normalises them,
+     * taking the missing mass from the larger ones (until none of them falls below the minimum).
+     *
+     * @param probabilities
+     */
+    private void applyMinProbability(double[] probabilities) {
+        boolean[] raised = new boolean[probabilities.length];
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            double raisedMass = 0;
+            double rest = 0;
+            for (int i = 0; i < probabilities.length; i++) {
+                if (!raised[i] && probabilities[i] < this.minProbability) {
+                    raised[i] = true;
+                    changed = true;
+                }
+                if (raised[i])
+                    raisedMass += this.minProbability;
+                else
+                    rest += probabilities[i];
+            }
+            for (int i = 0; i < probabilities.length; i++)
+                probabilities[i] = raised[i] ? this.minProbability : probabilities[i] * (1 - raisedMass) / rest;
+        }
+    }
+
+
+    private double blend(double old, double observed) {
+        return (1 - this.rate) * old + this.rate * observed;
+    }
+
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -19,10 +19,9 @@ along with this program. If not, see <http://www.gnu.org/licenses/>.
 
 package de.lmu.ifi.medien.probui.behaviours;
 
-import android.util.Log;
-
 import de.lmu.ifi.medien.probui.pml.PMLParserTouch;
 import de.lmu.ifi.medien.probui.pml.PMLParserTouchImpl;
+import de.lmu.ifi.medien.probui.system.ProbLog;
 
 /**
  * Creates behaviours based on presets (names).
@@ -83,7 +82,7 @@ public class ProbBehaviourFactory {
 
         ProbBehaviourTouch[] behaviours = null;
 
-        Log.d("ProbBehaviourFactory", "in createPresetProbBehaviourTouch with parameters: " + x + ", " + y + ", " + width + ", " + height + ", " + screenWidth + ", " + screenHeight);
+        ProbLog.d("ProbBehaviourFactory", "in createPresetProbBehaviourTouch with parameters: " + x + ", " + y + ", " + width + ", " + height + ", " + screenWidth + ", " + screenHeight);
 
 
         if (preset.equals(BEHAVIOUR_DEBUG_TEST)) {
@@ -92,8 +91,8 @@ public class ProbBehaviourFactory {
 
             PMLParserTouch pmlParser = new PMLParserTouchImpl(ddensity);
             behaviours[0] = pmlParser.parse(BEHAVIOUR_DEBUG_TEST+": N<->C<->S", x, y, width, height, screenWidth, screenHeight);
-            Log.d("PML", "factory created behaviour with PML: " + BEHAVIOUR_DEBUG_TEST);
-            Log.d("PML", behaviours[0].toString());
+            ProbLog.d("PML", "factory created behaviour with PML: " + BEHAVIOUR_DEBUG_TEST);
+            ProbLog.d("PML", behaviours[0].toString());
         }
 
 
@@ -111,8 +110,8 @@ public class ProbBehaviourFactory {
             */
             PMLParserTouch pmlParser = new PMLParserTouchImpl(ddensity);
             behaviours[0] = pmlParser.parse(BEHAVIOUR_TOUCH_CENTRE+": C", x, y, width, height, screenWidth, screenHeight);
-            Log.d("PML", "factory created behaviour with PML: " + BEHAVIOUR_TOUCH_CENTRE);
-            Log.d("PML", behaviours[0].toString());
+            ProbLog.d("PML", "factory created behaviour with PML: " + BEHAVIOUR_TOUCH_CENTRE);
+            ProbLog.d("PML", behaviours[0].toString());
         }
 
 
@@ -130,8 +129,8 @@ public class ProbBehaviourFactory {
 
             PMLParserTouch pmlParser = new PMLParserTouchImpl(ddensity);
             behaviours[0] = pmlParser.parse(BEHAVIOUR_TOUCH_CENTRE_WIDE + ": C(sx=1.5)", x, y, width, height, screenWidth, screenHeight);
-            Log.d("PML", "factory created behaviour with PML: " + BEHAVIOUR_TOUCH_CENTRE_WIDE);
-            Log.d("PML", behaviours[0].toString());
+            ProbLog.d("PML", "factory created behaviour with PML: " + BEHAVIOUR_TOUCH_CENTRE_WIDE);
+            ProbLog.d("PML", behaviours[0].toString());
         }
 
 
@@ -0,0 +1,134 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.behaviours;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.lmu.ifi.medien.probui.exceptions.WrongObservationDelegationException;
+import de.lmu.ifi.medien.probui.observations.ProbObservation;
+
+/**
+ * Two-stage evaluation of the touch behaviours of one interactor.
+ * <p/>
+ * In the first stage, all behaviours only record the new observation and update a cheap upper bound
+ * on their likelihood (see {@link ProbBehaviourTouch#getRunningProbLnBound()}). In the second stage,
+ * the models are evaluated in the order of these bounds (times the prior), until the bounds of the
+ * remaining behaviours are so low that they cannot noticeably contribute to the posterior anymore.
+ * These behaviours keep their bound as a (floor) likelihood, so that the posterior stays well defined.
+ */
+public class ProbBehaviourPrefilter {
+
+
+    /**
+     * Behaviours whose bound is lower than the best evaluated likelihood by more than this
+     * (in log space, incl. the prior) are not evaluated. This corresponds to a factor of about 1e-6.
+     */
+    public static final double LN_TOLERANCE = -14;
+
+
+    private final List<ProbBehaviourTouch> behaviours;
+
+    /**
+     * Index of each touch behaviour in the behaviours (and prior) of the interactor.
+     */
+    private final int[] indices;
+
+    private final double[] lnPriors;
+
+    private final double[] lnBounds;
+    private final int[] order;
+
+    private int numEvaluated;
+
+
+    /**
+     * @param behaviours The behaviours of the interactor.
+     */
+    public ProbBehaviourPrefilter(List<ProbBehaviour> behaviours) {
+        this.behaviours = new ArrayList<ProbBehaviourTouch>();
+        List<Integer> indices = new ArrayList<Integer>();
+        for (int i = 0; i < behaviours.size(); i++)
+            if (behaviours.get(i) instanceof ProbBehaviourTouch) {
+                this.behaviours.add((ProbBehaviourTouch) behaviours.get(i));
+                indices.add(i);
+            }
+        this.indices = new int[indices.size()];
+        for (int i = 0; i < this.indices.length; i++)
+            this.indices[i] = indices.get(i);
+        this.lnPriors = new double[this.behaviours.size()];
+        this.lnBounds = new double[this.behaviours.size()];
+        this.order = new int[this.behaviours.size()];
+    }
+
+
+    /**
+     * Lets all behaviours observe the given observation and evaluates the ones that matter.
+     *
+     * @param obs
+     * @param prior The current prior over the behaviours of the interactor
+     *              (passed for each observation, since the interactor's prior may change at any time).
+     * @throws WrongObservationDelegationException
+     */
+    public void observe(ProbObservation obs, double[] prior) throws WrongObservationDelegationException {
+
+        // 1. Record the observation and collect the bounds:
+        for (int i = 0; i < this.behaviours.size(); i++) {
+            this.behaviours.get(i).observe(obs, false);
+            this.lnPriors[i] = Math.log(prior[this.indices[i]]);
+            this.lnBounds[i] = this.lnPriors[i] + this.behaviours.get(i).getRunningProbLnBound();
+            this.order[i] = i;
+        }
+
+        // 2. Sort by bound (descending, insertion sort since the order rarely changes much):
+        for (int i = 1; i < this.order.length; i++) {
+            int current = this.order[i];
+            int j = i - 1;
+            while (j >= 0 && this.lnBounds[this.order[j]] < this.lnBounds[current]) {
+                this.order[j + 1] = this.order[j];
+                j--;
+            }
+            this.order[j + 1] = current;
+        }
+
+        // 3. Evaluate the models until the remaining bounds are too low to matter:
+        double best = Double.NEGATIVE_INFINITY;
+        this.numEvaluated = 0;
+        for (int k = 0; k < this.order.length; k++) {
+            int i = this.order[k];
+            ProbBehaviourTouch behaviour = this.behaviours.get(i);
+            if (k == 0 || this.lnBounds[i] >= best + LN_TOLERANCE) {
+                behaviour.updateInference();
+                best = Math.max(best, this.lnPriors[i] + behaviour.getRunningProbLn());
+                this.numEvaluated++;
+            } else {
+                behaviour.skipInference();
+            }
+        }
+    }
+
+
+    /**
+     * @return The number of behaviours whose models were evaluated for the last observation.
+     */
+    public int getNumEvaluated() {
+        return this.numEvaluated;
+    }
+}
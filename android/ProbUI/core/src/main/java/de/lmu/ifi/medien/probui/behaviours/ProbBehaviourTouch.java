@@ -0,0 +1,1127 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.behaviours;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import be.ac.ulg.montefiore.run.jahmm.Hmm;
+import be.ac.ulg.montefiore.run.jahmm.io.FileFormatException;
+import be.ac.ulg.montefiore.run.jahmm.io.HmmReader;
+import be.ac.ulg.montefiore.run.jahmm.io.HmmWriter;
+import be.ac.ulg.montefiore.run.jahmm.io.OpdfTouchGaussianReader;
+import be.ac.ulg.montefiore.run.jahmm.io.OpdfTouchGaussianWriter;
+import be.ac.ulg.montefiore.run.jahmm.toolbox.MarkovGenerator;
+import de.lmu.ifi.medien.probui.exceptions.WrongObservationDelegationException;
+import de.lmu.ifi.medien.probui.hmm.EmissionTableCalculator;
+import de.lmu.ifi.medien.probui.hmm.OpdfTouchGaussian;
+import de.lmu.ifi.medien.probui.hmm.OpdfTouchGaussianFactory;
+import de.lmu.ifi.medien.probui.hmm.TouchModelEnvelope;
+import de.lmu.ifi.medien.probui.hmm.ObservationVectorTouch;
+import de.lmu.ifi.medien.probui.observations.ProbObservation;
+import de.lmu.ifi.medien.probui.observations.ProbObservationTouch;
+import de.lmu.ifi.medien.probui.pml.PMLBehaviourListener;
+import de.lmu.ifi.medien.probui.pml.PMLRulePattern;
+import de.lmu.ifi.medien.probui.pml.notifications.AbstractNotificationMarker;
+
+/**
+ * A touch input "bounding behaviour".
+ */
+public class ProbBehaviourTouch implements ProbBehaviour {
+
+
+    /**
+     * Maximum number of observations to consider for inference.
+     * The last MAX_OBSERVATIONS observations are considered at each point in time.
+     * This is a means to ensure fast computations; even if, for example, the user drags around for
+     * a looong time.
+     */
+    public static final int DEFAULT_MAX_OBSERVATIONS = 50;
+    //TODO: move this constant to some manager or settings class?
+
+    /**
+     * Apply a AIC-based correction term to the likelihood to avoid bias against behaviours with more states.
+     */
+    private static final boolean USE_AIC_CORRECTION = false;
+
+    private int maxObservations = ProbBehaviourTouch.DEFAULT_MAX_OBSERVATIONS;
+
+    /**
+     * List to store the current observations.
+     * If the probability of this behavioural pattern is queried/updated, it is computed by
+     * evaluating this sequence of observations with the underlying model.
+     */
+    private List<List<ObservationVectorTouch>> observations = new ArrayList<List<ObservationVectorTouch>>();
+
+    /**
+     * The emission rows of the current observations (parallel to the observations lists),
+     * if this behaviour is part of a vocabulary (see {@link ProbBehaviourVocabulary}).
+     */
+    private List<List<double[]>> emissionRows = new ArrayList<List<double[]>>();
+
+    /**
+     * The vocabulary of the interactor that this behaviour belongs to, or null.
+     */
+    private ProbBehaviourVocabulary vocabulary;
+
+    /**
+     * The vocabulary's row entry for each state of the model.
+     */
+    private int[] vocabularyStates;
+
+    /**
+     * False if the emission rows have to be recomputed (e.g. since this behaviour has been moved).
+     */
+    private boolean emissionRowsValid;
+
+    /**
+     * Spatial envelope of the model's states, used to bound the likelihood cheaply.
+     * Computed on demand, and reset whenever the states change.
+     */
+    private TouchModelEnvelope envelope;
+
+    /**
+     * The envelope's bounds on the log emission probabilities of the current observations
+     * (parallel to the observations lists), and their sums.
+     */
+    private List<List<Double>> lnBounds = new ArrayList<List<Double>>();
+    private double[] lnBoundSums;
+
+    /**
+     * Online adaptation of the model to the user's gestures, or null if disabled
+     * (see {@link #setAdaptationRate(double)}).
+     */
+    private ProbBehaviourAdaptation adaptation;
+
+
+    /**
+     * The underlying model, meaning the formal representation of this behaviour.
+     * We currently use HMMs with mutlivariate Gaussians as states.
+     */
+    private Hmm<ObservationVectorTouch> model;
+
+
+    /**
+     * The number of states for the underlying model (HMM).
+     */
+    private final int numStates;
+
+
+    /**
+     * The number of dimensions of the observations for this behavioural pattern.
+     * Defaults to 2, since most behaviours will be 2D touch input (x,y coordinates).
+     */
+    private int numD = 2;
+
+
+    /**
+     * The current log-probability of this behaviour.
+     * This is the last evaluation of the underlying model (HMM).
+     */
+    private double[] runningProbLn = null;
+
+
+    private int[][] mostLikelySequences = null;
+
+    /**
+     * Marks the most likely state sequences that need to be recomputed for the current observations.
+     * These are computed on demand (e.g. when checking PML rules).
+     */
+    private boolean[] mostLikelySequencesOutdated = null;
+
+
+    /**
+     * A label, that is a name for this behavioural pattern.
+     * This is only useful for debugging, and serves no other purpose.
+     */
+    private final String label;
+
+    /**
+     * Colour (RGB) for rendering debug visualisations.
+     */
+    private static final int DEBUG_COLOR = 0xFFB217; // rgb(255, 178, 23)
+
+    /**
+     * Rectangles (left, top, right, bottom) for rendering debug visualisations.
+     */
+    List<float[][]> debugRects = new ArrayList<float[][]>();
+
+    /**
+     * Angles (of sigma ellipses) for rendering debug visualisations.
+     */
+    double[] debugAngles = null;
+
+
+    private List<Integer> acceptedPointerIDs = new ArrayList<Integer>();
+
+    /**
+     * ID of the pointer that had the highest running prob at the last update.
+     */
+    private int maxProbPID;
+    private double maxRunningProbLn;
+
+    private double behaviourPosteriorProb;
+
+
+    /**
+     * This is set to true in the reasoning process if this behaviour is found to be the currently
+     * most likely behaviour of its interactor.
+     */
+    private boolean isMostLikelyBehaviour;
+
+    /**
+     * The sequence rule that describes the gesture of this behaviour model.
+     * This is only set if this behaviour was created via a PML statement.
+     */
+    private PMLRulePattern sequenceRule;
+
+    /**
+     * The time at which the current observation/reasoning process has started.
+     */
+    private long startTime;
+    private long lastTime;
+    private List<AbstractNotificationMarker> notificationMarkers;
+    private float[] meanTouchPressures;
+    private float[] meanTouchSizes;
+
+    private PMLBehaviourListener listenerForPML;
+    private boolean needsDebugDrawUpdate;
+
+
+    private boolean relativeGesture;
+    private boolean relativeOriginSet;
+    private float[] relativeOriginFakeState;
+
+    private double debugAlpha;
+    private double debugAlpha2;
+
+
+
+    /**
+     * Create a new behavioural pattern.
+     *
+     * @param label     A label for this behavioural pattern; for debugging purposes only.
+     * @param numStates The number of states for the underlying model (HMM).
+     */
+    public ProbBehaviourTouch(String label, int numStates) {
+
+        this.numStates = numStates;
+        OpdfTouchGaussianFactory factory = new OpdfTouchGaussianFactory(this.numD);
+        this.model = new Hmm<ObservationVectorTouch>(this.numStates, factory);
+
+        this.notificationMarkers = new ArrayList<AbstractNotificationMarker>();
+
+        // Currently up to two pointers:
+        this.observations.add(new ArrayList<ObservationVectorTouch>());
+        this.observations.add(new ArrayList<ObservationVectorTouch>());
+        this.emissionRows.add(new ArrayList<double[]>());
+        this.emissionRows.add(new ArrayList<double[]>());
+        this.lnBounds.add(new ArrayList<Double>());
+        this.lnBounds.add(new ArrayList<Double>());
+        //TODO: MULTITOUCH: extend to more than two pointers
+
+        this.reset();
+
+        this.label = label;
+    }
+
+
+    public void setState(int state_id, double[] mean, double[][] mCov, double initial) {
+        OpdfTouchGaussian dist = new OpdfTouchGaussian(mean, mCov);
+        this.model.setOpdf(state_id, dist);
+        this.model.setPi(state_id, initial);
+        this.envelope = null;
+        if (this.vocabulary != null)
+            this.vocabulary.onBehaviourChanged(this);
+        // Restart the adaptation from the new geometry:
+        if (this.adaptation != null)
+            this.adaptation = new ProbBehaviourAdaptation(this.model, this.adaptation.getRate());
+        this.reset();
+    }
+
+    public void setTransitions(double[][] mTrans) {
+        for (int i = 0; i < this.numStates; i++)
+            for (int j = 0; j < this.numStates; j++)
+                this.model.setAij(i, j, mTrans[i][j]);
+    }
+
+
+    /**
+     * Replaces the states and transitions of the model with those read from the given reader,
+     * e.g. a model learnt offline from touch logs (see the "learn-touch" action of the jahmm CLI).
+     * The PML-related parts of this behaviour (sequence rule, notification markers, ...) are kept.
+     * <p/>
+     * The states of a learnt model are absolute positions, so the model is only valid for the geometry
+     * (position and size of the interactor) and the surface size given in the behaviours file it was
+     * learnt with. Load it before this behaviour is moved or resized (or reparse the behaviour and
+     * learn the model again for a new layout). For relative gestures, the states are relative to
+     * the origin of the behaviour at that geometry.
+     *
+     * @param reader A reader for a HMM description with touch gaussian states.
+     * @throws IOException
+     * @throws FileFormatException
+     */
+    public void loadModel(Reader reader) throws IOException, FileFormatException {
+
+        Hmm<ObservationVectorTouch> loaded = HmmReader.read(reader, new OpdfTouchGaussianReader());
+        if (loaded.nbStates() != this.numStates)
+            throw new IllegalArgumentException("Expected a model with " + this.numStates
+                    + " states, but got " + loaded.nbStates());
+
+        for (int i = 0; i < this.numStates; i++) {
+            this.model.setOpdf(i, loaded.getOpdf(i));
+            this.model.setPi(i, loaded.getPi(i));
+            for (int j = 0; j < this.numStates; j++)
+                this.model.setAij(i, j, loaded.getAij(i, j));
+        }
+
+        this.needsDebugDrawUpdate = true;
+        this.envelope = null;
+        if (this.vocabulary != null)
+            this.vocabulary.onBehaviourChanged(this);
+        if (this.adaptation != null)
+            this.adaptation = new ProbBehaviourAdaptation(this.model, this.adaptation.getRate());
+        this.reset();
+    }
+
+
+    /**
+     * Writes the model in the format read by {@link #loadModel(Reader)}.
+     *
+     * @param writer
+     * @throws IOException
+     */
+    public void writeModel(Writer writer) throws IOException {
+        HmmWriter.write(writer, new OpdfTouchGaussianWriter(), this.model);
+    }
+
+
+    /**
+     * Sets the vocabulary that computes the emission probabilities for this behaviour
+     * (called by the vocabulary itself).
+     *
+     * @param vocabulary The vocabulary, or null to evaluate the model directly.
+     * @param states     The vocabulary's row entry for each state of the model.
+     */
+    void setVocabulary(ProbBehaviourVocabulary vocabulary, int[] states) {
+        this.vocabulary = vocabulary;
+        this.vocabularyStates = states;
+        this.emissionRowsValid = false;
+        for (int i = 0; i < this.emissionRows.size(); i++)
+            this.emissionRows.get(i).clear();
+    }
+
+
+    public ProbBehaviourVocabulary getVocabulary() {
+        return this.vocabulary;
+    }
+
+
+    /**
+     * Enables (or disables) the online adaptation of this behaviour to the user's gestures
+     * (see {@link #adapt(double[])}).
+     *
+     * @param rate Weight of each new gesture vs. the model so far, in (0, 1]; or 0 to disable.
+     */
+    public void setAdaptationRate(double rate) {
+        if (rate == 0)
+            this.adaptation = null;
+        else if (this.adaptation == null || this.adaptation.getRate() != rate)
+            this.adaptation = new ProbBehaviourAdaptation(this.model, rate);
+    }
+
+
+    public double getAdaptationRate() {
+        return this.adaptation != null ? this.adaptation.getRate() : 0;
+    }
+
+
+    /**
+     * Adapts the model to the current observations of the most likely pointer, along their
+     * most likely state sequence (usually called by the core once its interactor is determined).
+     * Relative gestures are not adapted, since they are moved to each new touch down anyway.
+     *
+     * @param bounds The interactor's bounding box (minX, minY, maxX, maxY) in the coordinates of
+     *               the model, which the adapted means are clamped to (see ProbBehaviourAdaptation).
+     * @return True if the model has been adapted.
+     */
+    public boolean adapt(double[] bounds) {
+
+        if (this.adaptation == null || this.relativeGesture
+                || this.observations.get(this.maxProbPID).size() == 0)
+            return false;
+
+        int[] states = this.getMostLikelyStateSequence(this.maxProbPID);
+        if (states == null)
+            return false;
+        this.adaptation.adapt(this.model, this.observations.get(this.maxProbPID), states, bounds);
+
+        this.needsDebugDrawUpdate = true;
+        this.envelope = null;
+        for (int pID = 0; pID < this.mostLikelySequencesOutdated.length; pID++)
+            this.mostLikelySequencesOutdated[pID] = true;
+        if (this.vocabulary != null)
+            this.vocabulary.onBehaviourChanged(this);
+        return true;
+    }
+
+
+    public void setAcceptedPointerIDs(int... acceptedPointerIDs) {
+        for (int acceptedPointerID : acceptedPointerIDs)
+            this.acceptedPointerIDs.add(acceptedPointerID);
+
+        this.reset();
+    }
+
+    public boolean isAcceptedPointerID(int pointerID) {
+        for (int acceptedPointerID : this.acceptedPointerIDs)
+            if (pointerID == acceptedPointerID)
+                return true;
+        return false;
+    }
+
+    public void observe(ProbObservation obs) throws WrongObservationDelegationException {
+        this.observe(obs, true);
+    }
+
+
+    /**
+     * Adds the given observation.
+     *
+     * @param obs
+     * @param updateInference If false, the model is not evaluated yet. In this case,
+     *                        either {@link #updateInference()} or {@link #skipInference()}
+     *                        must be called afterwards (see ProbBehaviourPrefilter).
+     * @throws WrongObservationDelegationException
+     */
+    public void observe(ProbObservation obs, boolean updateInference) throws WrongObservationDelegationException {
+
+        if (this.startTime == -1) {
+            this.startTime = obs.getTimestamp();
+            this.lastTime = this.startTime;
+        } else {
+            this.lastTime = obs.getTimestamp();
+        }
+
+        // Relative origin behaviour stuff:
+        if (this.relativeGesture && !this.relativeOriginSet
+                && obs.getNominalFeatures()[0] == ProbObservationTouch.TYPE_TOUCH_DOWN) {
+
+            double x = obs.getRealFeatures()[ProbObservationTouch.FEATURE_X];
+            double y = obs.getRealFeatures()[ProbObservationTouch.FEATURE_Y];
+
+            //double[] originStateMean = ((OpdfTouchGaussian) this.model.getOpdf(0)).mean(); // origin state is always the first state (i.e. index 0)
+            this.move((float) (x - this.relativeOriginFakeState[0]),
+                    (float) (y - this.relativeOriginFakeState[1]));
+
+            this.relativeOriginSet = true;
+        }
+
+        //Log.d("ProbBehaviourTouch", "in observe with: " + obs);
+        //Log.d("ProbBehaviourTouch", "in observe with model: " + this.model);
+
+        if (!(obs instanceof ProbObservationTouch)) {
+            throw new WrongObservationDelegationException(
+                    "Expected touch observation (ProbBehaviourTouch), but received " + obs.getClass().toString());
+        }
+
+        // Check if observed pointer ID is accepted by this behaviour pattern:
+        int pointerID = ((ProbObservationTouch) obs).getNominalFeatures()[1];
+        if (!isAcceptedPointerID(pointerID))
+            return;
+
+
+        ObservationVectorTouch vector = new ObservationVectorTouch((ProbObservationTouch) obs);
+        this.observations.get(pointerID).add(vector);
+        if (this.vocabulary != null && this.emissionRowsValid)
+            this.emissionRows.get(pointerID).add(this.vocabulary.emissions((ProbObservationTouch) obs, vector));
+        if (this.envelope != null)
+            this.addLnBound(pointerID, this.envelope.lnProbabilityBound(vector));
+        while (this.observations.get(pointerID).size() > this.maxObservations) {
+            for (int pID : this.acceptedPointerIDs)
+                if (this.observations.get(pID).size() > 0) {
+                    this.observations.get(pID).remove(0); // if one is full, remove one obs from ALL! (results in "decay" for pointers that already left)
+                    if (this.emissionRows.get(pID).size() > 0)
+                        this.emissionRows.get(pID).remove(0);
+                    if (this.lnBounds.get(pID).size() > 0)
+                        this.lnBoundSums[pID] -= this.lnBounds.get(pID).remove(0);
+                }
+        }
+
+        for (int pID : this.acceptedPointerIDs)
+            if (this.observations.get(pID).size() > 0)
+                this.mostLikelySequencesOutdated[pID] = true;
+
+        if (updateInference)
+            this.updateInference();
+
+        //Log.d("ProbBehaviourTouch", "in observe with runnningProbLn: " + this.runningProbLn);
+
+        // Update mean touch pressures:
+        this.meanTouchPressures[pointerID] =
+                (float) ((this.meanTouchPressures[pointerID] * this.observations.get(pointerID).size()
+                        + obs.getRealFeatures()[ProbObservationTouch.FEATURE_PRESSURE])
+                        / (this.observations.get(pointerID).size() + 1));
+
+        // Update mean touch sizes:
+        this.meanTouchSizes[pointerID] =
+                (float) ((this.meanTouchSizes[pointerID] * this.observations.get(pointerID).size()
+                        + obs.getRealFeatures()[ProbObservationTouch.FEATURE_AXIS_MAJOR])
+                        / (this.observations.get(pointerID).size() + 1));
+
+        //Log.d("PML MEAN TOUCH PRESSURE", this.meanTouchPressures[pointerID]+"");
+
+
+    }
+
+
+    /**
+     * Evaluates the model for the current observations of all pointers.
+     */
+    public void updateInference() {
+
+        // "OR" like combination of pointer-specific sequences (i.e. the max prob is the one that counts):
+        //TODO: allow developers to specify OR, AND etc. combinations? i.e. make this a setting exposed in the API
+        this.maxRunningProbLn = Double.NEGATIVE_INFINITY;
+        this.maxProbPID = 0;
+        for (int pID : this.acceptedPointerIDs)
+            if (this.observations.get(pID).size() > 0) {
+                double lnprob = this.vocabulary != null ?
+                        EmissionTableCalculator.lnProbability(this.model, this.getEmissionRows(pID), this.vocabularyStates)
+                        : this.model.lnProbability(this.observations.get(pID));
+                this.runningProbLn[pID] = lnprob;
+                if (lnprob > this.maxRunningProbLn) {
+                    this.maxRunningProbLn = lnprob;
+                    this.maxProbPID = pID;
+                }
+            }
+    }
+
+
+    /**
+     * Skips the evaluation of the model for the current observations, and uses the upper bound
+     * of the likelihood instead (see {@link #getRunningProbLnBound()}).
+     * Used for behaviours that are too unlikely to matter (see ProbBehaviourPrefilter).
+     */
+    public void skipInference() {
+
+        this.maxRunningProbLn = Double.NEGATIVE_INFINITY;
+        this.maxProbPID = 0;
+        for (int pID : this.acceptedPointerIDs)
+            if (this.observations.get(pID).size() > 0) {
+                double lnBound = this.getRunningProbLnBoundRaw(pID);
+                this.runningProbLn[pID] = lnBound;
+                if (lnBound > this.maxRunningProbLn) {
+                    this.maxRunningProbLn = lnBound;
+                    this.maxProbPID = pID;
+                }
+            }
+    }
+
+
+    /**
+     * Returns an upper bound on the running log-probability, computed from the envelope of the states.
+     * This is cheap to compute, since the bounds are updated incrementally with each observation.
+     *
+     * @return
+     */
+    public double getRunningProbLnBound() {
+        double max = Double.NEGATIVE_INFINITY;
+        for (int pID : this.acceptedPointerIDs)
+            if (this.observations.get(pID).size() > 0)
+                max = Math.max(max, this.getRunningProbLnBoundRaw(pID));
+        return max + (USE_AIC_CORRECTION?2*this.model.nbStates():0);
+    }
+
+
+    private double getRunningProbLnBoundRaw(int pID) {
+        if (this.envelope == null) {
+            // (Re-)compute the envelope and the bounds for all current observations:
+            this.envelope = new TouchModelEnvelope(this.model);
+            this.lnBoundSums = new double[this.lnBounds.size()];
+            for (int i = 0; i < this.lnBounds.size(); i++) {
+                this.lnBounds.get(i).clear();
+                for (ObservationVectorTouch o : this.observations.get(i))
+                    this.addLnBound(i, this.envelope.lnProbabilityBound(o));
+            }
+        }
+        return this.lnBoundSums[pID];
+    }
+
+
+    private void addLnBound(int pID, double lnBound) {
+        this.lnBounds.get(pID).add(lnBound);
+        this.lnBoundSums[pID] += lnBound;
+    }
+
+
+    /**
+     * Returns the emission rows of the current observations of the given pointer.
+     * If this behaviour has changed since the rows were computed (e.g. since it was moved),
+     * the rows for all current observations are recomputed first.
+     *
+     * @param pointerID
+     * @return
+     */
+    private List<double[]> getEmissionRows(int pointerID) {
+
+        if (!this.emissionRowsValid) {
+            for (int pID = 0; pID < this.observations.size(); pID++) {
+                List<double[]> rows = this.emissionRows.get(pID);
+                rows.clear();
+                for (ObservationVectorTouch o : this.observations.get(pID))
+                    rows.add(this.vocabulary.emissions(o, this.vocabularyStates));
+            }
+            this.emissionRowsValid = true;
+        }
+        return this.emissionRows.get(pointerID);
+    }
+
+
+    private void updateMostLikelySequence(int pID) {
+        if (this.mostLikelySequencesOutdated != null && pID < this.mostLikelySequencesOutdated.length
+                && this.mostLikelySequencesOutdated[pID]) {
+            this.mostLikelySequencesOutdated[pID] = false;
+            if (this.observations.get(pID).size() > 0)
+                this.mostLikelySequences[pID] = this.vocabulary != null ?
+                        EmissionTableCalculator.mostLikelyStateSequence(this.model, this.getEmissionRows(pID), this.vocabularyStates)
+                        : this.model.mostLikelyStateSequence(this.observations.get(pID));
+        }
+    }
+
+
+
+
+    public void reset() {
+        this.mostLikelySequences = new int[this.acceptedPointerIDs.size()][];
+        this.mostLikelySequencesOutdated = new boolean[this.acceptedPointerIDs.size()];
+        this.runningProbLn = new double[this.acceptedPointerIDs.size()];
+        this.meanTouchPressures = new float[this.acceptedPointerIDs.size()];
+        this.meanTouchSizes = new float[this.acceptedPointerIDs.size()];
+        for (int i = 0; i < this.observations.size(); i++)
+            this.observations.get(i).clear();
+        for (int i = 0; i < this.emissionRows.size(); i++)
+            this.emissionRows.get(i).clear();
+        for (int i = 0; i < this.lnBounds.size(); i++)
+            this.lnBounds.get(i).clear();
+        this.lnBoundSums = new double[this.lnBounds.size()];
+        this.startTime = -1;
+        this.relativeOriginSet = false;
+    }
+
+
+    /**
+     * Writes the reasoning state of this behaviour, i.e. its current observations and the results
+     * computed from them (see ProbUIManager.saveState()).
+     * The model itself is not included, except for the position of a relative gesture.
+     *
+     * @param out
+     * @throws IOException
+     */
+    public void writeState(DataOutputStream out) throws IOException {
+
+        // 1. Observations of all pointers:
+        out.writeByte(this.observations.size());
+        for (List<ObservationVectorTouch> pointerObservations : this.observations) {
+            out.writeInt(pointerObservations.size());
+            for (ObservationVectorTouch o : pointerObservations)
+                new ProbObservationTouch(o.realFeatures, o.nominalFeatures, 0).write(out);
+        }
+
+        // 2. Per pointer results:
+        out.writeByte(this.runningProbLn.length);
+        for (int i = 0; i < this.runningProbLn.length; i++) {
+            out.writeDouble(this.runningProbLn[i]);
+            out.writeFloat(this.meanTouchPressures[i]);
+            out.writeFloat(this.meanTouchSizes[i]);
+        }
+
+        // 3. Overall results:
+        out.writeDouble(this.maxRunningProbLn);
+        out.writeInt(this.maxProbPID);
+        out.writeLong(this.startTime);
+        out.writeLong(this.lastTime);
+        out.writeBoolean(this.relativeOriginSet);
+        out.writeBoolean(this.relativeOriginFakeState != null);
+        if (this.relativeOriginFakeState != null) {
+            out.writeFloat(this.relativeOriginFakeState[0]);
+            out.writeFloat(this.relativeOriginFakeState[1]);
+            for (int i = 0; i < this.model.nbStates(); i++) {
+                double[] mean = ((OpdfTouchGaussian) this.model.getOpdf(i)).mean();
+                out.writeDouble(mean[0]);
+                out.writeDouble(mean[1]);
+            }
+        }
+        out.writeDouble(this.behaviourPosteriorProb);
+        out.writeBoolean(this.isMostLikelyBehaviour);
+
+        // 4. Notification markers:
+        List<AbstractNotificationMarker> markers = this.sequenceRule == null ?
+                new ArrayList<AbstractNotificationMarker>() : this.sequenceRule.getNotificationMarkers();
+        out.writeShort(markers.size());
+        for (AbstractNotificationMarker marker : markers) {
+            out.writeBoolean(marker.isReached());
+            out.writeBoolean(marker.isJustReached());
+        }
+    }
+
+
+    /**
+     * Reads a state written by {@link #writeState(DataOutputStream)} of a behaviour with the same model.
+     * Everything derived from the observations (most likely state sequences, emissions, bounds)
+     * is recomputed when needed.
+     *
+     * @param in
+     * @throws IOException
+     */
+    public void readState(DataInputStream in) throws IOException {
+
+        this.reset();
+
+        // 1. Observations of all pointers:
+        int numPointers = in.readUnsignedByte();
+        if (numPointers != this.observations.size())
+            throw new IOException("State for " + numPointers + " pointers instead of " + this.observations.size());
+        for (List<ObservationVectorTouch> pointerObservations : this.observations) {
+            int numObservations = in.readInt();
+            for (int i = 0; i < numObservations; i++)
+                pointerObservations.add(new ObservationVectorTouch(ProbObservationTouch.read(in)));
+        }
+
+        // 2. Per pointer results:
+        int numAccepted = in.readUnsignedByte();
+        if (numAccepted != this.runningProbLn.length)
+            throw new IOException("State for " + numAccepted + " accepted pointers instead of "
+                    + this.runningProbLn.length);
+        for (int i = 0; i < numAccepted; i++) {
+            this.runningProbLn[i] = in.readDouble();
+            this.meanTouchPressures[i] = in.readFloat();
+            this.meanTouchSizes[i] = in.readFloat();
+        }
+
+        // 3. Overall results:
+        this.maxRunningProbLn = in.readDouble();
+        this.maxProbPID = in.readInt();
+        this.startTime = in.readLong();
+        this.lastTime = in.readLong();
+        this.relativeOriginSet = in.readBoolean();
+        if (in.readBoolean()) {
+            float originX = in.readFloat();
+            float originY = in.readFloat();
+            if (this.relativeOriginFakeState == null)
+                throw new IOException("State for a relative gesture: " + this.getLabel());
+
+            // A relative gesture is moved to where it was started (e.g. if its model was parsed again),
+            // with the exact means (moving accumulates rounding errors):
+            this.move(originX - this.relativeOriginFakeState[0], originY - this.relativeOriginFakeState[1]);
+            for (int i = 0; i < this.model.nbStates(); i++)
+                ((OpdfTouchGaussian) this.model.getOpdf(i)).setMean(in.readDouble(), in.readDouble());
+            if (this.vocabulary != null)
+                this.vocabulary.onBehaviourChanged(this);
+        }
+        this.behaviourPosteriorProb = in.readDouble();
+        this.isMostLikelyBehaviour = in.readBoolean();
+
+        // 4. Notification markers:
+        int numMarkers = in.readShort();
+        for (int i = 0; i < numMarkers; i++) {
+            boolean reached = in.readBoolean();
+            boolean justReached = in.readBoolean();
+            if (this.sequenceRule != null && i < this.sequenceRule.getNotificationMarkers().size()) {
+                this.sequenceRule.getNotificationMarkers().get(i).setReached(reached);
+                this.sequenceRule.getNotificationMarkers().get(i).setJustReached(justReached);
+            }
+        }
+
+        // 5. Recompute the derived values lazily:
+        for (int pID : this.acceptedPointerIDs)
+            if (pID < this.mostLikelySequencesOutdated.length && this.observations.get(pID).size() > 0)
+                this.mostLikelySequencesOutdated[pID] = true;
+        this.emissionRowsValid = false;
+        this.envelope = null;
+    }
+
+
+    public double getRunningProbLn(int pID) {
+        return this.runningProbLn[pID] + (USE_AIC_CORRECTION?2*this.model.nbStates():0);//+ (USE_AIC_CORRECTION?2*Math.pow(this.model.nbStates(),2):0);
+    }
+
+    public double getRunningProbLn() {
+        return this.maxRunningProbLn + (USE_AIC_CORRECTION?2*this.model.nbStates():0);
+    }
+
+    @Override
+    public void setProbLn(double behaviourPosteriorProb) {
+        this.behaviourPosteriorProb = behaviourPosteriorProb;
+    }
+
+    @Override
+    public double getProbLn() {
+        return this.behaviourPosteriorProb;
+    }
+
+    @Override
+    public double getProb() {
+        return Math.exp(this.behaviourPosteriorProb);
+    }
+
+    public int getMostLikelyState(int pointerID) {
+        this.updateMostLikelySequence(pointerID);
+        if (this.mostLikelySequences != null && this.mostLikelySequences[pointerID] != null)
+            return this.mostLikelySequences[pointerID][this.mostLikelySequences[pointerID].length - 1];
+        else return -1;
+    }
+
+    public int[] getMostLikelyStateSequence(int pointerID) {
+        this.updateMostLikelySequence(pointerID);
+        if (this.mostLikelySequences != null && this.mostLikelySequences[pointerID] != null)
+            return this.mostLikelySequences[pointerID];
+        else return null;
+    }
+
+
+    /**
+     * Generates a sequence of observations from this behavioural model.
+     *
+     * @param numSamples Length of the sequence to generate.
+     * @return The generated sequence.
+     */
+    public List<ObservationVectorTouch> sample(int numSamples) {
+
+        MarkovGenerator<ObservationVectorTouch> mg = new MarkovGenerator<ObservationVectorTouch>(this.model);
+        List<ObservationVectorTouch> samples = mg.observationSequence(numSamples);
+        return samples;
+    }
+
+
+    /**
+     * Generates a sequence of observations from this behavioural model,
+     * drawing all random numbers from the given generator (e.g. for reproducible samples).
+     *
+     * @param numSamples Length of the sequence to generate.
+     * @param random
+     * @return The generated sequence.
+     */
+    public List<ObservationVectorTouch> sample(int numSamples, Random random) {
+
+        MarkovGenerator<ObservationVectorTouch> mg = new MarkovGenerator<ObservationVectorTouch>(this.model, random);
+        return mg.observationSequence(numSamples);
+    }
+
+
+    public int getNumObservations() {
+        int numObs = -1;
+        for (int i = 0; i < this.observations.size(); i++)
+            numObs = Math.max(numObs, this.observations.get(i).size());
+        return numObs;
+    }
+
+
+    public int getObservedNumPointers() {
+        int numPointers = 0;
+        for (int i = 0; i < this.observations.size(); i++)
+            if (this.observations.get(i).size() > 0)
+                numPointers++;
+        return numPointers;
+    }
+
+
+    public int getMaxProbPID() {
+        return this.maxProbPID;
+    }
+
+    /**
+     * Visualises this behavioural pattern as sigma ellipses and transition lines.
+     * Intended for debugging only, not meant to be shown to the user.
+     *
+     * @param renderer
+     * @param translate_x
+     * @param translate_y
+     * @param screen_x
+     * @param screen_y
+     */
+    public void drawDebug(ProbDebugRenderer renderer, float translate_x, float translate_y, float screen_x, float screen_y) {
+
+        if (this.debugRects.size() == 0 || this.needsDebugDrawUpdate) {
+            this.needsDebugDrawUpdate = false;
+            this.debugRects.clear();
+            this.debugAngles = new double[this.numStates];
+            for (int i = 0; i < this.numStates; i++) {
+                OpdfTouchGaussian dist = (OpdfTouchGaussian) this.model.getOpdf(i);
+
+                double[] mean = dist.mean();
+                double[][] mCov = dist.covariance();
+
+                //Log.d("DEBUGDRAW", "mCov:\n" + mCov[0][0] + ", " + mCov[1][0] + "\n" + mCov[0][1] + ", " + mCov[1][1]);
+
+                // Compute angle of covariance ellipse:
+                double trace = mCov[0][0] + mCov[1][1];
+                double det = mCov[0][0] * mCov[1][1] - mCov[0][1] * mCov[1][0];
+                double eig1 = trace / 2 + Math.sqrt(trace * trace / 4 - det);
+                double eig2 = trace / 2 - Math.sqrt(trace * trace / 4 - det);
+                double[] eigvec1 = new double[2];
+                double[] eigvec2 = new double[2];
+                if (mCov[1][0] != 0) {
+                    eigvec1[0] = eig1 - mCov[1][1];
+                    eigvec1[1] = mCov[1][0];
+                    eigvec2[0] = eig2 - mCov[1][1];
+                    eigvec2[1] = mCov[1][0];
+                } else if (mCov[0][1] != 0) {
+                    eigvec1[0] = mCov[0][1];
+                    eigvec1[1] = eig1 - mCov[0][0];
+                    eigvec2[0] = mCov[0][1];
+                    eigvec2[1] = eig2 - mCov[0][0];
+                } else {
+                    eigvec1[0] = 1;
+                    eigvec1[1] = 0;
+                    eigvec2[0] = 0;
+                    eigvec2[1] = 1;
+                }
+
+                double angle = 0;
+                double eig_max = 0;
+                double eig_min = 0;
+                if (eig1 > eig2) {
+                    angle = Math.toDegrees(Math.atan2(eigvec1[1], eigvec1[0]));
+                    eig_max = eig1;
+                    eig_min = eig2;
+                    if (mCov[1][1] > mCov[0][0]) {// "mCov[1][1] > mCov[0][0]" added to fix the bug when it's higher than wide...
+                        eig_max = eig2;
+                        eig_min = eig1;
+                    }
+                } else {
+                    angle = Math.toDegrees(Math.atan2(eigvec2[1], eigvec2[0]));
+                    eig_max = eig2;
+                    eig_min = eig1;
+                }
+                this.debugAngles[i] = angle;
+
+                // Compute rectangles for drawing the ellipses:
+                float[][] rects = new float[2][];
+                rects[0] = new float[]{(float) mean[0] * screen_x - translate_x - 2 * (float) Math.sqrt(eig_max) * screen_x,
+                        (float) mean[1] * screen_y - translate_y - 2 * (float) Math.sqrt(eig_min) * screen_y,
+                        (float) mean[0] * screen_x - translate_x + 2 * (float) Math.sqrt(eig_max) * screen_x,
+                        (float) mean[1] * screen_y - translate_y + 2 * (float) Math.sqrt(eig_min) * screen_y};
+                rects[1] = new float[]{(float) mean[0] * screen_x - translate_x - 3 * (float) Math.sqrt(eig_max) * screen_x,
+                        (float) mean[1] * screen_y - translate_y - 3 * (float) Math.sqrt(eig_min) * screen_y,
+                        (float) mean[0] * screen_x - translate_x + 3 * (float) Math.sqrt(eig_max) * screen_x,
+                        (float) mean[1] * screen_y - translate_y + 3 * (float) Math.sqrt(eig_min) * screen_y};
+
+                this.debugRects.add(rects);
+            }
+        }
+
+
+
+        for (int i = 0; i < this.numStates; i++) {
+
+            //int color = ((int) (this.debugAlpha * 255) << 24) | DEBUG_COLOR;
+            int color = ((int) (this.debugAlpha2 * 255) << 24) | DEBUG_COLOR;
+
+            OpdfTouchGaussian dist = (OpdfTouchGaussian) this.model.getOpdf(i);
+            float cx = (float) dist.mean()[0] * screen_x - translate_x;
+            float cy = (float) dist.mean()[1] * screen_y - translate_y;
+            renderer.drawCircle(cx, cy, 10, color);
+
+            // (the rectangles are centred on the state, so they are rotated around it)
+            for (float[] rect : this.debugRects.get(i)) {
+                renderer.drawOval(rect[0], rect[1], rect[2], rect[3], (float) this.debugAngles[i], color);
+            }
+
+            for (int j = 0; j < this.numStates; j++) {
+                if (i == j) continue;
+                OpdfTouchGaussian dist2 = (OpdfTouchGaussian) this.model.getOpdf(j);
+                renderer.drawLine(cx, cy,
+                        (float) dist2.mean()[0] * screen_x - translate_x, (float) dist2.mean()[1] * screen_y - translate_y, color);
+            }
+        }
+    }
+
+
+    public String getLabel() {
+        return this.label;
+    }
+
+
+    public String toString() {
+
+        String str = "ProbBehaviourTouch: ";
+        if (this.label != null && this.label.length() > 0)
+            str += this.label + ", ";
+        str += "   num states: " + this.numStates + "\n";
+        for (int i = 0; i < this.numStates; i++) {
+            str += "      state " + i + ":\n";
+            str += "      pi: " + this.model.getPi(i) + "\n";
+            str += "      dist: " + this.model.getOpdf(i).toString() + "\n";
+        }
+        str += "   transitions:\n";
+        for (int i = 0; i < this.numStates; i++) {
+            for (int j = 0; j < this.numStates; j++) {
+                str += "      " + i + " to " + j + ": " + this.model.getAij(i, j);
+            }
+            str += "\n";
+        }
+
+        return str;
+    }
+
+    @Override
+    public void setSequenceRule(PMLRulePattern sequenceRule) {
+        this.sequenceRule = sequenceRule;
+    }
+
+    @Override
+    public PMLRulePattern getSequenceRule() {
+        return sequenceRule;
+    }
+
+    @Override
+    public void setMostLikelyBehaviour(boolean isMostLikely) {
+        this.isMostLikelyBehaviour = isMostLikely;
+    }
+
+    @Override
+    public boolean isMostLikelyBehaviour() {
+        return this.isMostLikelyBehaviour;
+    }
+
+    @Override
+    public long getTimeTaken() {
+        return this.lastTime - this.startTime;
+    }
+
+
+    @Override
+    public AbstractNotificationMarker getNotificationMarker(int index) {
+        return this.sequenceRule.getNotificationMarkers().get(index);
+    }
+
+    @Override
+    public int[] getEventTypes(int pointerID) {
+
+        int[] result = new int[this.observations.get(pointerID).size()];
+        int i = 0;
+        for (ObservationVectorTouch obs : this.observations.get(pointerID)) {
+            result[i] = obs.nominalFeatures[0];
+            i++;
+        }
+        return result;
+    }
+
+    public float getMeanTouchPressures(int pID) {
+        return this.meanTouchPressures[pID];
+    }
+
+    public float getMeanTouchSize(int pID) {
+        return this.meanTouchSizes[pID];
+    }
+
+    public void setListenerForPML(PMLBehaviourListener PMLBehaviourListener) {
+        this.listenerForPML = PMLBehaviourListener;
+    }
+
+    @Override
+    public PMLBehaviourListener getListenerForPML() {
+        return this.listenerForPML;
+    }
+
+    @Override
+    public void move(float dx, float dy) {
+        for (int i = 0; i < this.model.nbStates(); i++) {
+            OpdfTouchGaussian opdf = (OpdfTouchGaussian) this.model.getOpdf(i);
+            opdf.updateMean(dx, dy);
+        }
+
+        if(this.relativeOriginFakeState != null){
+            this.relativeOriginFakeState[0] += dx;
+            this.relativeOriginFakeState[1] += dy;
+        }
+        if (this.adaptation != null)
+            this.adaptation.move(dx, dy);
+        this.needsDebugDrawUpdate = true;
+        this.envelope = null;
+
+        if (this.vocabulary != null)
+            this.vocabulary.onBehaviourChanged(this);
+    }
+
+    private void moveTo(float x, float y) {
+
+        for (int i = 0; i < this.model.nbStates(); i++) {
+            OpdfTouchGaussian opdf = (OpdfTouchGaussian) this.model.getOpdf(i);
+            opdf.setMean(x, y);
+        }
+        if (this.adaptation != null)
+            this.adaptation = new ProbBehaviourAdaptation(this.model, this.adaptation.getRate());
+
+        this.needsDebugDrawUpdate = true;
+        this.envelope = null;
+
+        if (this.vocabulary != null)
+            this.vocabulary.onBehaviourChanged(this);
+    }
+
+
+    public boolean isRelativeGesture() {
+        return relativeGesture;
+    }
+
+    public void setRelativeGesture(boolean relativeGesture) {
+        this.relativeGesture = relativeGesture;
+    }
+
+    public float[] getRelativeOriginFakeState() {
+        return relativeOriginFakeState;
+    }
+
+    public void setRelativeOriginFakeState(float[] relativeOriginFakeState) {
+        this.relativeOriginFakeState = relativeOriginFakeState;
+    }
+
+    public double getDebugAlpha() {
+        return debugAlpha;
+    }
+
+    public void setDebugAlpha(double debugAlpha) {
+        this.debugAlpha = debugAlpha;
+    }
+
+    public void setDebugAlpha2(double debugAlpha2) {
+        this.debugAlpha2 = debugAlpha2;
+    }
+
+    public void setMaxObservations(int maxObservations){
+        this.maxObservations = maxObservations;
+    }
+
+    public int getMaxObservations() {
+        return this.maxObservations;
+    }
+
+    public Hmm<ObservationVectorTouch> getModel() {
+        return this.model;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,279 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.behaviours;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import be.ac.ulg.montefiore.run.jahmm.Hmm;
+import de.lmu.ifi.medien.probui.hmm.ObservationVectorTouch;
+import de.lmu.ifi.medien.probui.hmm.OpdfTouchGaussian;
+import de.lmu.ifi.medien.probui.observations.ProbObservationTouch;
+
+/**
+ * The touch behaviours of one interactor, with identical Gaussians of their states merged into
+ * shared entries of the emission rows.
+ * <p/>
+ * The Gaussians are deduplicated by hashing their means and covariances, so states with the same
+ * Gaussian (e.g. the start state at the centre of several swipes, in any position of their models)
+ * use the same entry. For each observation, the emission probability is then computed once per entry
+ * and shared by all behaviours (see {@link #emissions(ProbObservationTouch, ObservationVectorTouch)}),
+ * so that the cost of evaluating the emissions scales with the number of distinct Gaussians,
+ * not with the number of behaviours. The behaviours keep these rows for their observation windows,
+ * so that each observation is only evaluated once, instead of once per update.
+ * <p/>
+ * If a behaviour changes (e.g. a relative gesture is moved to the touch down location),
+ * only the entries of its own states are updated. The rows of the other behaviours stay valid.
+ * <p/>
+ * The forward and Viterbi recursions still run per behaviour, i.e. only the emissions are shared,
+ * not the recursions over common state prefixes (e.g. of "C->N" and "C->N->E"):
+ * The PML transition matrices are smoothed, so all states of a behaviour (including the ones after
+ * the prefix) contribute to the forward variables of each of its states, and a recursion shared
+ * by several behaviours would change their likelihoods.
+ */
+public class ProbBehaviourVocabulary {
+
+
+    /**
+     * A distinct Gaussian, i.e. one entry of the emission rows.
+     */
+    private static class Emission {
+
+        private final double[] mean;
+        private final double[][] covariance;
+        private final int hash;
+
+        /**
+         * Distribution used to compute the emission probabilities (a copy, since the behaviours
+         * change the means of their own distributions when they are moved).
+         */
+        private OpdfTouchGaussian opdf;
+
+        /**
+         * Index of this entry in the emission rows.
+         */
+        private int index;
+
+        /**
+         * Number of behaviour states that use this entry.
+         */
+        private int users;
+
+        private Emission(OpdfTouchGaussian opdf) {
+            this.mean = opdf.mean();
+            this.covariance = opdf.covariance();
+            this.hash = 31 * Arrays.hashCode(this.mean) + Arrays.deepHashCode(this.covariance);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Emission))
+                return false;
+            Emission other = (Emission) o;
+            return this.hash == other.hash && Arrays.equals(this.mean, other.mean)
+                    && Arrays.deepEquals(this.covariance, other.covariance);
+        }
+    }
+
+
+    private final List<ProbBehaviourTouch> behaviours;
+
+    /**
+     * The entry index of each state of each behaviour.
+     */
+    private final Map<ProbBehaviourTouch, int[]> states;
+
+    /**
+     * All distinct Gaussians.
+     */
+    private final Map<Emission, Emission> emissions;
+
+    /**
+     * The entries in the order of their row indices (null if an entry is not used anymore).
+     */
+    private final List<Emission> entries;
+
+    /**
+     * Indices of unused entries, which are reused for new Gaussians.
+     */
+    private final List<Integer> freeIndices;
+
+    private ProbObservationTouch lastObservation;
+    private double[] lastRow;
+
+
+
+    /**
+     * Creates a vocabulary for the given behaviours and attaches it to all touch behaviours among them.
+     *
+     * @param behaviours
+     */
+    public ProbBehaviourVocabulary(List<ProbBehaviour> behaviours) {
+        this.behaviours = new ArrayList<ProbBehaviourTouch>();
+        this.states = new IdentityHashMap<ProbBehaviourTouch, int[]>();
+        this.emissions = new HashMap<Emission, Emission>();
+        this.entries = new ArrayList<Emission>();
+        this.freeIndices = new ArrayList<Integer>();
+        for (ProbBehaviour behaviour : behaviours) {
+            if (behaviour instanceof ProbBehaviourTouch) {
+                ProbBehaviourTouch behaviourTouch = (ProbBehaviourTouch) behaviour;
+                this.behaviours.add(behaviourTouch);
+                this.assign(behaviourTouch);
+            }
+        }
+    }
+
+
+    /**
+     * Looks up (or adds) the entries for the current states of the given behaviour
+     * and passes them to the behaviour.
+     *
+     * @param behaviour
+     */
+    private void assign(ProbBehaviourTouch behaviour) {
+
+        // 1. Find the entry of each state:
+        Hmm<ObservationVectorTouch> model = behaviour.getModel();
+        int[] states = new int[model.nbStates()];
+        for (int i = 0; i < states.length; i++) {
+            OpdfTouchGaussian opdf = (OpdfTouchGaussian) model.getOpdf(i);
+            Emission key = new Emission(opdf);
+            Emission emission = this.emissions.get(key);
+            if (emission == null) {
+                emission = key;
+                emission.opdf = new OpdfTouchGaussian(key.mean, key.covariance);
+                if (this.freeIndices.isEmpty()) {
+                    emission.index = this.entries.size();
+                    this.entries.add(emission);
+                } else {
+                    emission.index = this.freeIndices.remove(this.freeIndices.size() - 1);
+                    this.entries.set(emission.index, emission);
+                }
+                this.emissions.put(emission, emission);
+            }
+            emission.users++;
+            states[i] = emission.index;
+        }
+
+        // 2. Release the previous entries (after the lookup, so that unchanged ones are kept):
+        int[] previous = this.states.put(behaviour, states);
+        if (previous != null) {
+            for (int index : previous) {
+                Emission emission = this.entries.get(index);
+                if (--emission.users == 0) {
+                    this.emissions.remove(emission);
+                    this.entries.set(index, null);
+                    this.freeIndices.add(index);
+                }
+            }
+        }
+
+        behaviour.setVocabulary(this, states);
+    }
+
+
+    /**
+     * Called by the behaviours if their states have changed (e.g. moved).
+     *
+     * @param behaviour
+     */
+    void onBehaviourChanged(ProbBehaviourTouch behaviour) {
+        this.assign(behaviour);
+        this.lastObservation = null;
+        this.lastRow = null;
+    }
+
+
+    /**
+     * Returns the emission probabilities of all entries for the given observation.
+     * The row is computed once and then shared by all behaviours observing the same observation.
+     *
+     * @param obs
+     * @param vector The observation as passed to the models.
+     * @return The row (must not be modified).
+     */
+    double[] emissions(ProbObservationTouch obs, ObservationVectorTouch vector) {
+        if (obs != this.lastObservation) {
+            double[] row = new double[this.entries.size()];
+            for (int i = 0; i < row.length; i++) {
+                Emission emission = this.entries.get(i);
+                if (emission != null)
+                    row[i] = emission.opdf.probability(vector);
+            }
+            this.lastObservation = obs;
+            this.lastRow = row;
+        }
+        return this.lastRow;
+    }
+
+
+    /**
+     * Returns the emission probabilities of the given entries only
+     * (e.g. used to recompute a single behaviour's rows).
+     *
+     * @param vector
+     * @param states The entries to evaluate.
+     * @return The row, with all other entries set to zero.
+     */
+    double[] emissions(ObservationVectorTouch vector, int[] states) {
+        double[] row = new double[this.entries.size()];
+        for (int state : states)
+            row[state] = this.entries.get(state).opdf.probability(vector);
+        return row;
+    }
+
+
+    /**
+     * Detaches this vocabulary from its behaviours, which then evaluate their models directly again.
+     */
+    public void release() {
+        for (ProbBehaviourTouch behaviour : this.behaviours)
+            behaviour.setVocabulary(null, null);
+        this.behaviours.clear();
+        this.states.clear();
+        this.emissions.clear();
+        this.entries.clear();
+        this.freeIndices.clear();
+        this.lastObservation = null;
+        this.lastRow = null;
+    }
+
+
+    /**
+     * @return The number of distinct Gaussians (i.e. used entries of the emission rows) of this vocabulary.
+     */
+    public int getNumEmissions() {
+        return this.emissions.size();
+    }
+
+
+    public int getNumBehaviours() {
+        return this.behaviours.size();
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.behaviours;
+
+/**
+ * Draws the debug visualisations of behaviours (see {@link ProbBehaviour#drawDebug}),
+ * so that they do not depend on a particular graphics API (e.g. the Android canvas, as adapted by the app library).
+ * Colours are ARGB values, as used by android.graphics.Color; all shapes are drawn as outlines.
+ */
+public interface ProbDebugRenderer {
+
+    void drawCircle(float cx, float cy, float radius, int color);
+
+    /**
+     * Draws an oval, rotated around its centre.
+     *
+     * @param left
+     * @param top
+     * @param right
+     * @param bottom
+     * @param degrees The rotation.
+     * @param color
+     */
+    void drawOval(float left, float top, float right, float bottom, float degrees, int color);
+
+    void drawLine(float startX, float startY, float stopX, float stopY, int color);
+}
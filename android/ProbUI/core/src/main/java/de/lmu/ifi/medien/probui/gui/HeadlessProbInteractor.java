@@ -0,0 +1,196 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.gui;
+
+import de.lmu.ifi.medien.probui.behaviours.ProbBehaviourTouch;
+import de.lmu.ifi.medien.probui.observations.ProbObservation;
+import de.lmu.ifi.medien.probui.observations.ProbObservationTouch;
+import de.lmu.ifi.medien.probui.pml.PMLBehaviourListener;
+
+/**
+ * An interactor without a view, e.g. to replay touch traces
+ * (see {@link de.lmu.ifi.medien.probui.system.TouchTraceReplay}): Its bounding box is given explicitly.
+ * <p/>
+ * By default, it acts like a ProbUIButton: It excludes itself when the last pointer is released,
+ * unless it claims determination, and is undetermined right after having been determined
+ * (i.e. "clicked"), which is counted.
+ * The self-exclusion is not posted to a handler, but requested from the replay after the touch event.
+ */
+public class HeadlessProbInteractor implements ProbInteractorBase {
+
+
+    protected ProbInteractorCoreBase core;
+
+    private final float x;
+    private final float y;
+    private final float width;
+    private final float height;
+    private final float density;
+
+    private boolean buttonLike = true;
+
+    private boolean selfExcludeRequested;
+
+    private int numDeterminations;
+
+
+    /**
+     * Creates an interactor with the given bounding box (in pixels, as for views).
+     *
+     * @param x
+     * @param y
+     * @param width
+     * @param height
+     * @param surfaceWidth
+     * @param surfaceHeight
+     * @param density       Display density (as used for the PML sizes).
+     */
+    public HeadlessProbInteractor(float x, float y, float width, float height,
+                                  int surfaceWidth, int surfaceHeight, float density) {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+        this.density = density;
+        this.core = new ProbInteractorCoreBase(this) {
+            @Override
+            protected float[] getBodyBounds() {
+                return new float[]{HeadlessProbInteractor.this.x, HeadlessProbInteractor.this.y,
+                        HeadlessProbInteractor.this.width, HeadlessProbInteractor.this.height};
+            }
+
+            @Override
+            protected float getBodyDensity() {
+                return HeadlessProbInteractor.this.density;
+            }
+        };
+        this.core.init();
+        this.core.updateSurfaceSize(surfaceWidth, surfaceHeight);
+    }
+
+
+    /**
+     * Adds the touch behaviour given as a PML statement, relative to the bounding box of this interactor
+     * (via {@link ProbInteractorCoreBase#addBehaviour(String, PMLBehaviourListener)}, which takes the behaviour
+     * from the core's restored state or library, if set).
+     * Call {@link ProbInteractorCoreBase#setReady()} or {@link ProbInteractorCoreBase#finaliseBehaviourSetup(double[])}
+     * after adding the last behaviour.
+     *
+     * @param pmlStatement
+     * @param listener     Can be null.
+     * @return
+     */
+    public ProbBehaviourTouch addBehaviour(String pmlStatement, PMLBehaviourListener listener) {
+        return (ProbBehaviourTouch) this.core.addBehaviour(pmlStatement, listener);
+    }
+
+
+    /**
+     * @param buttonLike If false, this interactor neither excludes itself on touch up,
+     *                   nor is it undetermined after having been determined.
+     */
+    public void setButtonLike(boolean buttonLike) {
+        this.buttonLike = buttonLike;
+    }
+
+
+    /**
+     * Returns (and resets) whether this interactor wants to exclude itself after the current touch event.
+     *
+     * @return
+     */
+    public boolean consumeSelfExcludeRequest() {
+        boolean requested = this.selfExcludeRequested;
+        this.selfExcludeRequested = false;
+        return requested;
+    }
+
+
+    /**
+     * @return How often this interactor has been determined.
+     */
+    public int getNumDeterminations() {
+        return this.numDeterminations;
+    }
+
+
+    @Override
+    public ProbInteractorCoreBase getCore() {
+        return this.core;
+    }
+
+    @Override
+    public void onTouchDown(ProbObservationTouch obs) {
+    }
+
+    @Override
+    public void onTouchMove(ProbObservationTouch obs) {
+    }
+
+    @Override
+    public void onTouchUp(ProbObservationTouch obs, int numRemainingPointers) {
+        if (this.buttonLike && this.core.isCandidate() && numRemainingPointers == 0)
+            this.selfExcludeRequested = true;
+    }
+
+    @Override
+    public void onTouchDownPost(ProbObservationTouch obs) {
+    }
+
+    @Override
+    public void onTouchMovePost(ProbObservationTouch obs) {
+    }
+
+    @Override
+    public void onTouchUpPost(ProbObservationTouch obs, int numRemainingPointers) {
+    }
+
+    @Override
+    public String[] getDefaultBehaviours() {
+        return null;
+    }
+
+    @Override
+    public void onCoreObserve(ProbObservation obs) {
+    }
+
+    @Override
+    public void onCoreFinaliseBehaviourSetup() {
+    }
+
+    @Override
+    public void onProbSetup() {
+    }
+
+    @Override
+    public void onExclude() {
+    }
+
+    @Override
+    public void onSelfExclude() {
+    }
+
+    @Override
+    public void onDetermined() {
+        this.numDeterminations++;
+        if (this.buttonLike)
+            this.core.undetermine();
+    }
+}
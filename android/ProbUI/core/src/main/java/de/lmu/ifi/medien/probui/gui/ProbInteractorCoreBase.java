@@ -0,0 +1,1121 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.gui;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import be.ac.ulg.montefiore.run.jahmm.io.FileFormatException;
+import de.lmu.ifi.medien.probui.behaviours.ProbBehaviour;
+import de.lmu.ifi.medien.probui.behaviours.ProbBehaviourPrefilter;
+import de.lmu.ifi.medien.probui.behaviours.ProbBehaviourTouch;
+import de.lmu.ifi.medien.probui.behaviours.ProbBehaviourVocabulary;
+import de.lmu.ifi.medien.probui.exceptions.WrongObservationDelegationException;
+import de.lmu.ifi.medien.probui.observations.ProbObservation;
+import de.lmu.ifi.medien.probui.observations.ProbObservationTouch;
+import de.lmu.ifi.medien.probui.pml.PMLAssetLibrary;
+import de.lmu.ifi.medien.probui.pml.PMLBehaviourLibrary;
+import de.lmu.ifi.medien.probui.pml.PMLBehaviourListener;
+import de.lmu.ifi.medien.probui.pml.PMLParserTouch;
+import de.lmu.ifi.medien.probui.pml.PMLParserTouchImpl;
+import de.lmu.ifi.medien.probui.pml.PMLRuleListener;
+import de.lmu.ifi.medien.probui.pml.PMLRulebook;
+import de.lmu.ifi.medien.probui.pml.PMLRulebookImpl;
+import de.lmu.ifi.medien.probui.system.MediationRequestListener;
+import de.lmu.ifi.medien.probui.system.ProbLog;
+
+
+/**
+ * The reasoning of an interactor: its behaviours, their posterior and its state in the mediation.
+ * <p/>
+ * The geometry of the body is accessed via the protected hooks {@link #getBodyBounds()},
+ * {@link #getBodyDensity()} and {@link #isBodyVisible()}, which an interactor without a view
+ * (see {@link HeadlessProbInteractor}) overrides with its explicit bounding box.
+ * The interactors of the Android library use the ProbInteractorCore, which takes these from the view
+ * and also renders the probabilistic feedback.
+ */
+public class ProbInteractorCoreBase {
+
+    /**
+     * The interactor that is managed by this core.
+     */
+    protected ProbInteractorBase body;
+
+
+    /**
+     * List of the behavioural patterns attached to this core.
+     */
+    protected List<ProbBehaviour> behaviours;
+
+    /**
+     * Map of the behavioural patterns attached to this core.
+     * Enables accessing behaviours by their labels/names.
+     */
+    private Map<String, ProbBehaviour> behaviourMap;
+
+    /**
+     * The emissions of the behavioural patterns, deduplicated to evaluate shared states only once.
+     * Created when finalising the behaviour setup.
+     */
+    private ProbBehaviourVocabulary vocabulary;
+
+    /**
+     * Skips the evaluation of behaviours that are too unlikely to matter.
+     * Created when finalising the behaviour setup.
+     */
+    private ProbBehaviourPrefilter prefilter;
+
+
+    /**
+     * Prior over the behavioural patterns of this core,
+     * i. e. relative "weights" of the patterns.
+     */
+    public double[] behavioursPrior;
+
+
+    /**
+     * Posterior over the behavioural patterns of this core,
+     * i. e. the probability of each behaviour given the observations.
+     */
+    protected double[] behavioursPosterior;
+
+
+    /**
+     * The current evidence (from Bayes formula) of this core.
+     * "Current" here means as after the last evaluation, that was triggered by the manager.
+     */
+    protected double evidence;
+
+
+    /**
+     * Number of observations since the last reset,
+     * i. e. number of "current" observations.
+     * This is used to compute the mean evidence of a sequence of observations.
+     */
+    //protected int numObservations;
+    // TODO: maybe the mean computation has to go to ProbBehaviour when we introduce multiple modalities?
+
+
+    /**
+     * Flag to indicate whether is core is determined.
+     * In most scenarios, "determined" means that the mediator has selected this core "to be active".
+     */
+    protected boolean determined = false;
+
+
+    /**
+     * Flag to indiciate whether is core is (still) a candidate for determination in the current
+     * reasoning process of the mediator.
+     */
+    protected boolean candidate = false;
+
+
+    /**
+     * Flag to indicate whether this core requests to be determined.
+     */
+    protected boolean claimsDetermination;
+
+
+    /**
+     * The probability of this interactor being the one to activate.
+     * This is part  of the mediation process, and is thus always set by the mediator,
+     * never by the core itself.
+     */
+    protected double candidateProb;
+
+
+    /**
+     * Flag to indicate whether this core should draw debug information when rendering the body.
+     */
+    public boolean debugDraw = false;
+
+    protected int surfaceWidth;
+    protected int surfaceHeight;
+
+
+    protected PMLRulebook rulebook;
+
+
+    private int indexPosteriorMax;
+
+
+    /**
+     * Holds the time of the last observed touch down event.
+     * Useful for measuring time taken for the current touch interactions.
+     */
+    private long lastTouchDownTime;
+
+    /**
+     * Hold the time of the last obseverd toouch event.
+     * Useful for measuring time taken for the current touch interactions.
+     */
+    private long lastTouchEventTime;
+
+    /**
+     * Flag to indicate that this interactor has excluded itself in the current reasoning process.
+     */
+    private boolean hasSelfExcluded;
+    private MediationRequestListener mediationRequestListener;
+    private boolean delayedSelfExcludeCancelled;
+    private int maxObservations = ProbBehaviourTouch.DEFAULT_MAX_OBSERVATIONS;
+
+    /**
+     * Rate of the online adaptation of the touch behaviours, or 0 if disabled
+     * (see {@link #setBehavioursAdaptationRate(double)}).
+     */
+    private double adaptationRate = 0;
+
+    /**
+     * Behaviours of a saved state, which are used instead of parsing the PML statements again
+     * (see {@link #setRestoredBehaviours(PMLBehaviourLibrary)}).
+     */
+    private PMLBehaviourLibrary restoredBehaviours;
+
+    /**
+     * Named behaviours and rules, which can be added by their labels
+     * (see {@link #setBehaviourLibrary(PMLAssetLibrary)}).
+     */
+    private PMLAssetLibrary behaviourLibrary;
+
+
+    public ProbInteractorCoreBase(ProbInteractorBase body) {
+
+        this.body = body;
+    }
+
+
+    /**
+     * Initialises this core. Should be called after creating the object.
+     */
+    public void init() {
+
+        // init behaviour list:
+        behaviours = new ArrayList<ProbBehaviour>();
+        behaviourMap = new HashMap<String, ProbBehaviour>();
+
+        // init rulebook:
+        this.rulebook = new PMLRulebookImpl();
+    }
+
+
+    /**
+     * Adds a behavioural pattern to this core.
+     *
+     * @param behaviour
+     */
+    public void addBehaviour(ProbBehaviourTouch behaviour) {
+        ProbLog.d("PROBMENU", "core add behaviour --> label: " + behaviour.getLabel());
+        this.behaviours.add(behaviour);
+        this.behaviourMap.put(behaviour.getLabel(), behaviour);
+        this.rulebook.addBehaviour(behaviour);
+        ProbLog.d("PROBMENU", "core add behaviour --> behaviours.size(): " + this.behaviours.size());
+    }
+
+    public ProbBehaviour addBehaviour(String pmlStatement) {
+        return addBehaviour(pmlStatement, null);
+    }
+
+    public ProbBehaviour addBehaviour(String pmlStatement, PMLBehaviourListener listener) {
+
+        // Take the behaviour from a restored state, if it has one with this label:
+        ProbBehaviourTouch restored = this.createRestoredBehaviour(PMLParserTouchImpl.parseLabel(pmlStatement));
+        if (restored != null) {
+            if (listener != null)
+                restored.setListenerForPML(listener);
+            this.addBehaviour(restored);
+            return restored;
+        }
+
+        float[] bounds = this.getBodyBounds();
+        if (bounds == null)
+            throw new IllegalStateException("The body has no bounding box to place behaviour " + pmlStatement);
+
+        // Take the behaviour from the library, if it has one for this statement:
+        ProbBehaviourTouch behaviour = null;
+        int index = this.indexOfLibraryBehaviour(pmlStatement);
+        if (index >= 0) {
+            try {
+                behaviour = this.behaviourLibrary.createBehaviour(index, bounds[0], bounds[1], bounds[2], bounds[3],
+                        this.surfaceWidth, this.surfaceHeight, this.getBodyDensity());
+            } catch (FileFormatException e) {
+                ProbLog.e("ProbInteractorCoreBase", "Could not create library behaviour " + pmlStatement + ": " + e.getMessage());
+            }
+        }
+
+        // Otherwise, parse the statement:
+        if (behaviour == null) {
+            PMLParserTouch parser = new PMLParserTouchImpl(this.getBodyDensity());
+            behaviour = parser.parse(pmlStatement, bounds[0], bounds[1], bounds[2], bounds[3],
+                    this.surfaceWidth, this.surfaceHeight);
+        }
+
+        if (listener != null)
+            behaviour.setListenerForPML(listener);
+        this.addBehaviour(behaviour);
+        return behaviour;
+    }
+
+
+    /**
+     * Returns the bounding box of the body, which places the behaviours added as PML statements.
+     * The default has none, so that only behaviours created elsewhere can be added.
+     *
+     * @return {x, y, width, height} in pixels (as for views), or null if the body has no bounding box.
+     */
+    protected float[] getBodyBounds() {
+        return null;
+    }
+
+
+    /**
+     * Returns the display density of the body, which scales the PML sizes.
+     *
+     * @return
+     */
+    protected float getBodyDensity() {
+        return 1;
+    }
+
+
+    /**
+     * Checks whether the body is visible. Invisible bodies ignore observations.
+     *
+     * @return true by default.
+     */
+    protected boolean isBodyVisible() {
+        return true;
+    }
+
+
+    /**
+     * Redraws the body. Does nothing by default.
+     */
+    protected void invalidateBody() {
+    }
+
+
+    /**
+     * Runs the given task after the given delay (see {@link #selfExclude(long)}).
+     * By default, it is run right away, since there is no event loop to post it to.
+     *
+     * @param task
+     * @param delay In milliseconds.
+     */
+    protected void postDelayed(Runnable task, long delay) {
+        task.run();
+    }
+
+
+    /**
+     * Sets the behaviours of a saved state (see ProbUIManager.restoreState(byte[])).
+     * While set, {@link #addBehaviour(String, PMLBehaviourListener)} takes the behaviours with matching labels
+     * from these instead of parsing the statements.
+     *
+     * @param restoredBehaviours The behaviours, or null to parse all statements again.
+     */
+    public void setRestoredBehaviours(PMLBehaviourLibrary restoredBehaviours) {
+        this.restoredBehaviours = restoredBehaviours;
+    }
+
+
+    /**
+     * Creates the restored behaviour with the given label.
+     *
+     * @param label
+     * @return The behaviour, or null if there is no restored behaviour with this label.
+     */
+    public ProbBehaviourTouch createRestoredBehaviour(String label) {
+        if (this.restoredBehaviours == null || label == null)
+            return null;
+        try {
+            return this.restoredBehaviours.createBehaviour(label);
+        } catch (FileFormatException e) {
+            ProbLog.e("ProbInteractorCoreBase", "Could not restore behaviour " + label + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Sets a library of named behaviours and rules. While set, {@link #addBehaviour(String, PMLBehaviourListener)}
+     * and {@link #addRule(String, PMLRuleListener)} also accept the label of a behaviour or rule in the library
+     * instead of its statement, and behaviours whose statements are in the library are created from it.
+     *
+     * @param behaviourLibrary The library, or null to parse all statements.
+     */
+    public void setBehaviourLibrary(PMLAssetLibrary behaviourLibrary) {
+        this.behaviourLibrary = behaviourLibrary;
+    }
+
+
+    public PMLAssetLibrary getBehaviourLibrary() {
+        return this.behaviourLibrary;
+    }
+
+
+    /**
+     * Finds the library behaviour for the given PML statement, which is either the label of the behaviour
+     * or its statement (ignoring spaces).
+     *
+     * @param pmlStatement
+     * @return The index of the behaviour in the library, or -1 if there is none (or no library).
+     */
+    public int indexOfLibraryBehaviour(String pmlStatement) {
+        if (this.behaviourLibrary == null)
+            return -1;
+        String label = PMLParserTouchImpl.parseLabel(pmlStatement);
+        try {
+            if (label == null)
+                return this.behaviourLibrary.indexOfBehaviour(pmlStatement.trim());
+            int index = this.behaviourLibrary.indexOfBehaviour(label);
+            if (index >= 0 && this.behaviourLibrary.getBehaviourStatement(index).replace(" ", "")
+                    .equals(pmlStatement.replace(" ", "")))
+                return index;
+        } catch (FileFormatException e) {
+            ProbLog.e("ProbInteractorCoreBase", "Could not look up library behaviour " + pmlStatement + ": " + e.getMessage());
+        }
+        return -1;
+    }
+
+
+    public void addRule(String pmlStatement, PMLRuleListener listener) {
+
+        // Resolve the label of a library rule:
+        if (this.behaviourLibrary != null && PMLParserTouchImpl.parseLabel(pmlStatement) == null) {
+            try {
+                int index = this.behaviourLibrary.indexOfRule(pmlStatement.trim());
+                if (index >= 0)
+                    pmlStatement = this.behaviourLibrary.getRuleStatement(index);
+            } catch (FileFormatException e) {
+                ProbLog.e("ProbInteractorCoreBase", "Could not look up library rule " + pmlStatement + ": " + e.getMessage());
+            }
+        }
+
+        this.rulebook.addRule(pmlStatement, listener);
+    }
+
+    /**
+     * Wrapper for finalising the behaviour setup with a default prior.
+     */
+    public void setReady() {
+        this.finaliseBehaviourSetup(null);
+    }
+
+    /**
+     * Finalises the setup of the behavioural patterns.
+     * Must be called after adding the last behavioural pattern to this core.
+     *
+     * @param prior Prior over behavioural patterns, or null for a uniform prior.
+     */
+    public void finaliseBehaviourSetup(double[] prior) {
+
+        // set a uniform prior, if prior-parameter == null:
+        if (prior == null) {
+            prior = new double[this.behaviours.size()];
+            for (int i = 0; i < prior.length; i++) {
+                prior[i] = 1. / this.behaviours.size();
+            }
+        }
+        this.behavioursPrior = prior;
+
+        // init array to hold posterior:
+        this.behavioursPosterior = new double[this.behaviours.size()];
+        this.setPosteriorMinusInfinity();
+
+
+        // Set the max observations for the behaviours:
+        for(ProbBehaviour b : this.behaviours)
+            b.setMaxObservations(this.maxObservations);
+
+        // Set the adaptation rate for the touch behaviours:
+        for (ProbBehaviourTouch b : this.getBehavioursTouch())
+            b.setAdaptationRate(this.adaptationRate);
+
+        // Merge the behaviours into a vocabulary to share the evaluations of their states' Gaussians:
+        if (this.vocabulary != null)
+            this.vocabulary.release();
+        this.vocabulary = new ProbBehaviourVocabulary(this.behaviours);
+        this.prefilter = new ProbBehaviourPrefilter(this.behaviours);
+
+        // call the specific method:
+        this.body.onCoreFinaliseBehaviourSetup();
+    }
+
+
+    /**
+     * Reset the observations. After calling this, all behavioural patterns
+     * of this core will have been reset.
+     */
+    public void resetObservations() {
+        for (ProbBehaviour behaviour : this.behaviours) {
+            behaviour.reset();
+        }
+        //this.numObservations = 0;
+        this.evidence = 0;
+    }
+
+
+    /**
+     * Updates the posterior over the behavioral pattern attached to this core, and the evidence,
+     * given the new observation. This should usually be called when new input events are coming in,
+     * for example a touch move event (called by mediator, no need to call yourself).
+     *
+     * @param obs
+     * @throws WrongObservationDelegationException
+     */
+    public void observe(ProbObservation obs) throws WrongObservationDelegationException {
+
+
+        // Check if interactor invisible
+        // -> if so, we ignore observations and cancel any current "involvements"
+        if (!this.isBodyVisible()) {
+            if (this.isCandidate())
+                this.selfExclude();
+            else
+                this.resetReasoning();
+            return;
+        }
+
+        //Log.d("ProbInteractorCoreBase", "in observe method with observation: " + obs);
+
+        // Update some general values:
+        updateTimeInformation(obs);
+
+        // Let all patterns observe this observation, if they want it:
+        delegateObservationToBehaviours(obs);
+
+        // Compute the posterior over the behavioural patterns (in log space):
+        updateBehaviourPosterior();
+
+        // Update the index of the posterior max and the most likely behaviour:
+        updatePosteriorMaxValues();
+
+        // Update the rulebook:
+
+
+        // Call the body's related method,
+        // which is often overwritten by developers to implement their custom functionality:
+        this.body.onCoreObserve(obs);
+
+        //Log.d("ProbInteractorCoreBase", "in observe method with evidence: " + this.evidence);
+    }
+
+
+    private void updateBehaviourPosterior() {
+
+        // Prior * likelihood (in log space) for all behaviours:
+        for (int i = 0; i < this.behavioursPrior.length; i++) {
+            this.behavioursPosterior[i] =
+                    Math.log(this.behavioursPrior[i]) + this.behaviours.get(i).getRunningProbLn();
+        }
+
+        // Log sum exp trick:
+        // 1. Compute max:
+        double max = this.behavioursPosterior[0];
+        for (int i = 1; i < this.behavioursPosterior.length; i++) {
+            max = Math.max(max, this.behavioursPosterior[i]);
+        }
+        // 2. Shift and sum:
+        double sum = 0;
+        for (int i = 0; i < this.behavioursPosterior.length; i++) {
+            sum += Math.exp(this.behavioursPosterior[i] - max);
+        }
+        //3. Shift back:
+        sum = Math.log(sum) + max;
+        //4. Divide (minus since it's log):
+        for (int i = 0; i < this.behavioursPosterior.length; i++) {
+            this.behavioursPosterior[i] -= sum;
+        }
+        this.evidence = sum;
+
+        // 16.09.16: Set posterior prob in behaviour object so that it can be assessed
+        // via the behaviour object as well, not just via the core (based on study feedback):
+        for (int i = 0; i < this.behavioursPosterior.length; i++) {
+            this.behaviours.get(i).setProbLn(this.behavioursPosterior[i]);
+        }
+
+        // for debug drawing:
+        if (this.debugDraw) {
+            for (int i = 0; i < this.behavioursPosterior.length; i++) {
+                //Log.d("DEBUG DRAW", "updateBehaviourPosterior --> debug alpha2: " + this.behavioursPosterior[i] + ", exp: " + Math.exp(this.behavioursPosterior[i]));
+                ((ProbBehaviourTouch) this.behaviours.get(i)).setDebugAlpha2(Math.exp(this.behavioursPosterior[i]));
+            }
+            this.invalidateBody();
+        }
+    }
+
+
+    private void delegateObservationToBehaviours(ProbObservation obs) throws WrongObservationDelegationException {
+
+        // Touch - delegate touch observations to touch behavioural patterns
+        // (via the prefilter, which only evaluates the ones that matter):
+        if (this.prefilter != null && obs instanceof ProbObservationTouch) {
+            this.prefilter.observe(obs, this.behavioursPrior);
+            return;
+        }
+
+        for (ProbBehaviour behaviour : this.behaviours) {
+
+            // Touch - delegate touch observations to touch behavioural patterns:
+            if (behaviour instanceof ProbBehaviourTouch
+                    && obs instanceof ProbObservationTouch) {
+                behaviour.observe(obs);
+            }
+
+            //TODO: add delegations for other modalities here
+        }
+    }
+
+
+    private void updateTimeInformation(ProbObservation obs) {
+
+        // Measure time of ongoing touch interaction:
+        if (obs instanceof ProbObservationTouch) {
+            if (obs.getNominalFeatures()[0] == ProbObservationTouch.TYPE_TOUCH_DOWN) {
+                this.lastTouchDownTime = obs.getTimestamp();
+            }
+            this.lastTouchEventTime = obs.getTimestamp();
+        }
+    }
+
+
+    private void updatePosteriorMaxValues() {
+
+        this.behaviours.get(0).setMostLikelyBehaviour(false);
+        double max = this.behavioursPosterior[0];
+        int index = 0;
+        for (int i = 1; i < this.behavioursPosterior.length; i++) {
+            this.behaviours.get(i).setMostLikelyBehaviour(false);
+            if (this.behavioursPosterior[i] > max) {
+                max = this.behavioursPosterior[i];
+                index = i;
+            }
+        }
+        this.indexPosteriorMax = index;
+        this.behaviours.get(this.indexPosteriorMax).setMostLikelyBehaviour(true);
+    }
+
+    /**
+     * Returns the index of the behavioural pattern with the highes
+     * probability mass in the posterior.
+     *
+     * @return
+     */
+    public int getIndexPosteriorMax() {
+
+        return this.indexPosteriorMax;
+    }
+
+
+    /**
+     * Returns the current evidence (from Bayes formula) of this core.
+     *
+     * @return
+     */
+    public double getEvidence() {
+        return this.evidence;
+    }
+
+
+    /**
+     * Returns the current evidence (from Bayes formula) of this core,
+     * divided by the number of observations in the current sequence.
+     *
+     * @return
+     */
+    public double getMeanEvidence() {
+
+
+        int numObservations = 0;
+        for (ProbBehaviour b : this.behaviours) {
+            numObservations = Math.max(numObservations, b.getNumObservations());
+        }
+
+        ProbLog.d("ProbInteractorCoreBase", "getMeanEvidence: " + this.evidence + " / " + numObservations);
+        return this.evidence / numObservations; //this.numObservations;
+    }
+
+
+    /**
+     * Sets this interactor as a candidate for the current reasoning process.
+     * Called by the mediator.
+     */
+    public void makeCandidate() {
+        this.candidate = true;
+        //this.setCandidateProb(0);
+        //this.resetObservations();
+    }
+
+
+    /**
+     * Removes this interactor from the candidates for the current reasoning process.
+     * Called by the mediator.
+     */
+    public void dropCandidate() {
+        this.candidate = false;
+        this.resetObservations();
+    }
+
+
+    /**
+     * "Determines" this interactor.
+     * In most scenarios, "determined" means that the mediator has selected this core "to be active".
+     * Called by the mediator.
+     */
+    public void determine() {
+        this.candidate = true;
+        this.determined = true;
+        this.adaptMostLikelyBehaviour();
+        this.invalidateBody();
+        this.body.onDetermined();
+    }
+
+
+    /**
+     * Adapts the most likely behaviour to the just determined interaction,
+     * if adaptation is enabled (see {@link #setBehavioursAdaptationRate(double)}).
+     */
+    private void adaptMostLikelyBehaviour() {
+
+        float[] box = this.getBodyBounds();
+        if (this.adaptationRate == 0 || this.behaviours.isEmpty() || box == null
+                || !(this.behaviours.get(this.indexPosteriorMax) instanceof ProbBehaviourTouch))
+            return;
+
+        // Bounding box of the interactor, in the (relative) coordinates of the behaviours:
+        double[] bounds = {
+                box[0] / this.surfaceWidth,
+                box[1] / this.surfaceHeight,
+                (box[0] + box[2]) / this.surfaceWidth,
+                (box[1] + box[3]) / this.surfaceHeight};
+        ((ProbBehaviourTouch) this.behaviours.get(this.indexPosteriorMax)).adapt(bounds);
+    }
+
+
+    public void exclude() {
+        ProbLog.d("ProbInteractorCoreBase", "called exclude()!");
+        resetReasoning();
+        this.body.onExclude();
+    }
+
+
+    public void selfExclude() {
+        ProbLog.d("ProbInteractorCoreBase", "called selfExclude()!");
+        this.hasSelfExcluded = true;
+    }
+
+    public void selfExclude(long delay) {
+        this.delayedSelfExcludeCancelled = false;
+        ProbLog.d("ProbInteractorCoreBase", "called selfExclude(long delay) with delay: " + delay);
+        this.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                if (!ProbInteractorCoreBase.this.delayedSelfExcludeCancelled) {
+                    ProbInteractorCoreBase.this.selfExclude();
+                    if (ProbInteractorCoreBase.this.mediationRequestListener != null)
+                        ProbInteractorCoreBase.this.mediationRequestListener.onRequestMediation(ProbInteractorCoreBase.this.body);
+                }
+                ProbInteractorCoreBase.this.delayedSelfExcludeCancelled = false;
+            }
+        }, delay);
+    }
+
+
+    public void grantSelfExclude() {
+        ProbLog.d("ProbInteractorCoreBase", "granted self exclude!");
+        resetReasoning();
+        this.body.onSelfExclude();
+    }
+
+    private void resetReasoning() {
+        this.candidate = false;
+        this.determined = false;
+        this.resetClaim();
+        this.setCandidateProb(0);
+        this.resetObservations();
+        this.rulebook.reset();
+        this.setPosteriorMinusInfinity();
+    }
+
+    private void setPosteriorMinusInfinity(){
+        for (int i = 0; i < this.behavioursPosterior.length; i++) {
+            this.behavioursPosterior[i] = -999999;
+            this.behaviours.get(i).setProbLn(this.behavioursPosterior[i]);
+        }
+    }
+
+
+    public List<ProbBehaviour> getBehaviours() {
+        return this.behaviours;
+    }
+
+    public ProbBehaviour getBehaviour(int index) {
+        return this.behaviours.get(index);
+    }
+
+    public ProbBehaviour getBehaviour(String label) {
+        return this.behaviourMap.get(label);
+    }
+
+    public List<ProbBehaviourTouch> getBehavioursTouch() {
+        List<ProbBehaviourTouch> result = new ArrayList<ProbBehaviourTouch>();
+        for (ProbBehaviour behaviour : this.behaviours) {
+            if (behaviour instanceof ProbBehaviourTouch) {
+                result.add((ProbBehaviourTouch) behaviour);
+            }
+        }
+        return result;
+    }
+
+
+    public double[] getBehavioursPrior() {
+        return this.behavioursPrior;
+    }
+
+    /**
+     * Sets probability of this interactor being the one to activate in the current reasoning process.
+     * Called by the mediator.
+     *
+     * @param candidateProb
+     */
+    public void setCandidateProb(double candidateProb) {
+        this.candidateProb = candidateProb;
+
+        // for debug drawing:
+        for (int i = 0; i < this.behavioursPosterior.length; i++) {
+            ((ProbBehaviourTouch) this.behaviours.get(i)).setDebugAlpha(this.candidateProb);
+        }
+
+        //TODO: playing around with alpha feedback:
+        /*if(this.candidate && ! this.isDetermined())
+            this.body.getView().setAlpha((float)this.candidateProb);
+        else
+            this.body.getView().setAlpha(1);
+        //-
+        */
+        this.invalidateBody();
+    }
+
+
+    /**
+     * Returns the probability of this interactor being the one to activate in the current reasoning process.
+     *
+     * @return
+     */
+    public double getCandidateProb() {
+        return candidateProb;
+    }
+
+
+    /**
+     * Lets this interactor observe (and react to) a touch observation.
+     * Called by the manager.
+     *
+     * @param obs
+     * @throws WrongObservationDelegationException
+     */
+    public void onTouchObservation(ProbObservationTouch obs) throws WrongObservationDelegationException {
+
+        // decide what to do based on type of touch observation:
+        switch (obs.getNominalFeatures()[0]) {
+
+            case ProbObservationTouch.TYPE_TOUCH_DOWN:
+                this.observe(obs);
+                break;
+
+            case ProbObservationTouch.TYPE_TOUCH_MOVE:
+                this.observe(obs);
+                break;
+
+            case ProbObservationTouch.TYPE_TOUCH_UP:
+                this.observe(obs);
+                break;
+            default:
+                break;
+        }
+    }
+
+
+    public boolean isDetermined() {
+        return determined;
+    }
+
+    /**
+     * Removes all behaviours attached to this core.
+     * Usually called by the ProbBehaviourLinker before setting up new patterns.
+     */
+    public void clearBehaviours() {
+        if (this.vocabulary != null) {
+            this.vocabulary.release();
+            this.vocabulary = null;
+        }
+        this.prefilter = null;
+        this.behaviours.clear();
+    }
+
+    public boolean isCandidate() {
+        return candidate;
+    }
+
+
+    public void updateSurfaceSize(int width, int height) {
+        this.surfaceWidth = width;
+        this.surfaceHeight = height;
+    }
+
+    public int getSurfaceWidth() {
+        return surfaceWidth;
+    }
+
+    public int getSurfaceHeight() {
+        return surfaceHeight;
+    }
+
+    public PMLRulebook getRulebook() {
+        return this.rulebook;
+    }
+
+    public double[] getBehavioursPosterior() {
+        return behavioursPosterior;
+    }
+
+    public double getBehaviourProbLn(String behaviour) {
+        int bIndex = this.behaviours.indexOf(this.behaviourMap.get(behaviour));
+        return this.behavioursPosterior[bIndex];
+    }
+
+    public double getBehaviourProb(String behaviour) {
+        int bIndex = this.behaviours.indexOf(this.behaviourMap.get(behaviour));
+        return Math.exp(this.behavioursPosterior[bIndex]);
+    }
+
+
+    public int getNumPointers() {
+
+        for (ProbBehaviour b : this.behaviours) {
+            if (b instanceof ProbBehaviourTouch) {
+                return ((ProbBehaviourTouch) b).getObservedNumPointers();
+            }
+        }
+        return 0;
+    }
+
+
+    /**
+     * Returns the time taken for the current/last touch interaction.
+     * This is the time measured since the last touch event and the last touch down event.
+     *
+     * @return
+     */
+    public long getTimeTakenForTouchInteraction() {
+        return this.lastTouchEventTime - this.lastTouchDownTime;
+    }
+
+
+    public boolean isClaimingDetermination() {
+        return claimsDetermination;
+    }
+
+    public void claimDetermination() {
+        this.claimsDetermination = true;
+        this.hasSelfExcluded = false;
+    }
+
+    public void resetClaim() {
+        this.claimsDetermination = false;
+    }
+
+
+    public boolean checkNotificationMarkerReached(String behaviourLabel, int markerIndex) {
+        return this.checkNotificationMarkerReached(this.behaviourMap.get(behaviourLabel), markerIndex);
+    }
+
+    public boolean checkNotificationMarkerReached(int behaviourIndex, int markerIndex) {
+        return this.checkNotificationMarkerReached(this.behaviours.get(behaviourIndex), markerIndex);
+    }
+
+    public boolean checkNotificationMarkerReached(ProbBehaviour behaviour, int markerIndex) {
+        return behaviour.getNotificationMarker(markerIndex).isReached();
+    }
+
+    public boolean checkNotificationMarkerJustReached(String behaviourLabel, int markerIndex) {
+        return this.checkNotificationMarkerJustReached(this.behaviourMap.get(behaviourLabel), markerIndex);
+    }
+
+    public boolean checkNotificationMarkerJustReached(int behaviourIndex, int markerIndex) {
+        return this.checkNotificationMarkerJustReached(this.behaviours.get(behaviourIndex), markerIndex);
+    }
+
+    public boolean checkNotificationMarkerJustReached(ProbBehaviour behaviour, int markerIndex) {
+        return behaviour.getNotificationMarker(markerIndex).isJustReached();
+    }
+
+    public void updateRulebook() {
+        this.rulebook.update();
+    }
+
+    public void resetRulebook() {
+        this.rulebook.reset();
+    }
+
+    public boolean hasSelfExcluded() {
+        return this.hasSelfExcluded;
+    }
+
+    public void resetSelfExcluded() {
+        this.delayedSelfExcludeCancelled = true;
+        this.hasSelfExcluded = false;
+    }
+
+
+    public void undetermine() {
+        ProbLog.d("ProbInteractorCoreBase", "called undetermine()!");
+        this.selfExclude();
+        this.grantSelfExclude();
+        this.resetSelfExcluded();
+    }
+
+
+    public void move(float dx, float dy) {
+        for (ProbBehaviour behaviour : this.behaviours) {
+            behaviour.move(dx, dy);
+        }
+    }
+
+    public void setMediationRequestListener(MediationRequestListener mediationRequestListener) {
+        this.mediationRequestListener = mediationRequestListener;
+    }
+
+    public ProbBehaviourVocabulary getVocabulary() {
+        return this.vocabulary;
+    }
+
+    /**
+     * Enables the online adaptation of the touch behaviours: each time this interactor is determined,
+     * its most likely behaviour is adapted to the observed gesture (bounded to the interactor's box).
+     *
+     * @param rate Weight of each new gesture vs. the model so far, in (0, 1]; or 0 to disable.
+     */
+    public void setBehavioursAdaptationRate(double rate) {
+        if (rate < 0 || rate > 1)
+            throw new IllegalArgumentException("Adaptation rate must be in [0, 1]: " + rate);
+        this.adaptationRate = rate;
+        for (ProbBehaviourTouch b : this.getBehavioursTouch())
+            b.setAdaptationRate(rate);
+    }
+
+    public double getBehavioursAdaptationRate() {
+        return this.adaptationRate;
+    }
+
+    public void setBehavioursMaxObservations(int maxObservations) {
+
+       this.maxObservations = maxObservations;
+    }
+
+
+    /**
+     * Writes the reasoning state of this core, i.e. its flags, its posterior, the states of its behaviours
+     * and the states of its rules (see ProbUIManager.saveState()).
+     * The behaviours' models and the prior are not included.
+     *
+     * @param out
+     * @throws IOException
+     */
+    public void writeState(DataOutputStream out) throws IOException {
+
+        // 1. Labels of the behaviours (to check that the state fits when reading it):
+        out.writeInt(this.behaviours.size());
+        for (ProbBehaviour behaviour : this.behaviours)
+            out.writeUTF(behaviour.getLabel());
+
+        // 2. Core:
+        for (double p : this.behavioursPosterior)
+            out.writeDouble(p);
+        out.writeDouble(this.evidence);
+        out.writeBoolean(this.determined);
+        out.writeBoolean(this.candidate);
+        out.writeBoolean(this.claimsDetermination);
+        out.writeBoolean(this.hasSelfExcluded);
+        out.writeDouble(this.candidateProb);
+        out.writeInt(this.indexPosteriorMax);
+        out.writeLong(this.lastTouchDownTime);
+        out.writeLong(this.lastTouchEventTime);
+
+        // 3. Behaviours and rules:
+        for (ProbBehaviour behaviour : this.behaviours)
+            ((ProbBehaviourTouch) behaviour).writeState(out);
+        this.rulebook.writeState(out);
+    }
+
+
+    /**
+     * Reads a state written by {@link #writeState(DataOutputStream)} of a core with the same behaviours.
+     * Must be called after finalising the behaviour setup.
+     *
+     * @param in
+     * @throws IOException If the state does not fit to the behaviours of this core, or is corrupt.
+     *                     In this case, the reasoning of this core is reset.
+     */
+    public void readState(DataInputStream in) throws IOException {
+
+        // 1. Check the labels of the behaviours:
+        int numBehaviours = in.readInt();
+        if (numBehaviours != this.behaviours.size())
+            throw new IOException("State for " + numBehaviours + " behaviours instead of " + this.behaviours.size());
+        for (ProbBehaviour behaviour : this.behaviours) {
+            String label = in.readUTF();
+            if (!label.equals(behaviour.getLabel()))
+                throw new IOException("State for behaviour " + label + " instead of " + behaviour.getLabel());
+        }
+
+        try {
+            // 2. Core:
+            for (int i = 0; i < this.behavioursPosterior.length; i++)
+                this.behavioursPosterior[i] = in.readDouble();
+            this.evidence = in.readDouble();
+            this.determined = in.readBoolean();
+            this.candidate = in.readBoolean();
+            this.claimsDetermination = in.readBoolean();
+            this.hasSelfExcluded = in.readBoolean();
+            double candidateProb = in.readDouble();
+            this.indexPosteriorMax = in.readInt();
+            this.lastTouchDownTime = in.readLong();
+            this.lastTouchEventTime = in.readLong();
+
+            // 3. Behaviours and rules:
+            for (ProbBehaviour behaviour : this.behaviours)
+                ((ProbBehaviourTouch) behaviour).readState(in);
+            this.rulebook.readState(in);
+
+            this.setCandidateProb(candidateProb);
+        } catch (IOException e) {
+            this.resetReasoning();
+            throw e;
+        } catch (RuntimeException e) {
+            this.resetReasoning();
+            throw new IOException("Corrupt state: " + e);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.hmm;
+
+import java.util.List;
+
+import be.ac.ulg.montefiore.run.jahmm.Hmm;
+
+/**
+ * Forward and Viterbi computations on precomputed emission probabilities.
+ * <p/>
+ * The emissions of each observation are given as a row, and the states of the model are mapped
+ * to entries of these rows. This allows several models to share rows (see ProbBehaviourVocabulary).
+ * The arithmetic follows the jahmm ForwardBackwardScaledCalculator and ViterbiCalculator,
+ * so that the results are the same as when evaluating the model directly.
+ */
+public class EmissionTableCalculator {
+
+
+    /**
+     * Computes the log-probability of an observation sequence (scaled forward algorithm).
+     *
+     * @param hmm    The model.
+     * @param rows   The emission rows, one per observation.
+     * @param states The row entry of each state of the model.
+     * @return
+     */
+    public static double lnProbability(Hmm<?> hmm, List<double[]> rows, int[] states) {
+
+        if (rows.isEmpty())
+            throw new IllegalArgumentException("Invalid empty sequence");
+
+        int numStates = hmm.nbStates();
+        double[] alpha = new double[numStates];
+        double[] next = new double[numStates];
+
+        // 1. Init:
+        double[] row = rows.get(0);
+        for (int i = 0; i < numStates; i++)
+            alpha[i] = hmm.getPi(i) * row[states[i]];
+        double lnProbability = Math.log(scale(alpha));
+
+        // 2. Induction:
+        for (int t = 1; t < rows.size(); t++) {
+            row = rows.get(t);
+            for (int j = 0; j < numStates; j++) {
+                double sum = 0.;
+                for (int i = 0; i < numStates; i++)
+                    sum += alpha[i] * hmm.getAij(i, j);
+                next[j] = sum * row[states[j]];
+            }
+            double[] tmp = alpha;
+            alpha = next;
+            next = tmp;
+            lnProbability += Math.log(scale(alpha));
+        }
+        return lnProbability;
+    }
+
+
+    /**
+     * Computes the most likely state sequence (Viterbi algorithm).
+     *
+     * @param hmm    The model.
+     * @param rows   The emission rows, one per observation.
+     * @param states The row entry of each state of the model.
+     * @return
+     */
+    public static int[] mostLikelyStateSequence(Hmm<?> hmm, List<double[]> rows, int[] states) {
+
+        if (rows.isEmpty())
+            throw new IllegalArgumentException("Invalid empty sequence");
+
+        int numStates = hmm.nbStates();
+        int numObs = rows.size();
+        double[] delta = new double[numStates];
+        double[] next = new double[numStates];
+        int[][] psy = new int[numObs][numStates];
+
+        // 1. Init (negative log space, as in jahmm):
+        double[] row = rows.get(0);
+        for (int i = 0; i < numStates; i++)
+            delta[i] = -Math.log(hmm.getPi(i)) - Math.log(row[states[i]]);
+
+        // 2. Induction:
+        for (int t = 1; t < numObs; t++) {
+            row = rows.get(t);
+            for (int j = 0; j < numStates; j++) {
+                double minDelta = Double.MAX_VALUE;
+                int minPsy = 0;
+                for (int i = 0; i < numStates; i++) {
+                    double thisDelta = delta[i] - Math.log(hmm.getAij(i, j));
+                    if (minDelta > thisDelta) {
+                        minDelta = thisDelta;
+                        minPsy = i;
+                    }
+                }
+                next[j] = minDelta - Math.log(row[states[j]]);
+                psy[t][j] = minPsy;
+            }
+            double[] tmp = delta;
+            delta = next;
+            next = tmp;
+        }
+
+        // 3. Backtracking:
+        int[] stateSequence = new int[numObs];
+        double minDelta = Double.MAX_VALUE;
+        for (int i = 0; i < numStates; i++) {
+            if (minDelta > delta[i]) {
+                minDelta = delta[i];
+                stateSequence[numObs - 1] = i;
+            }
+        }
+        for (int t = numObs - 2; t >= 0; t--)
+            stateSequence[t] = psy[t + 1][stateSequence[t + 1]];
+        return stateSequence;
+    }
+
+
+    private static double scale(double[] alpha) {
+        double sum = 0.;
+        for (int i = 0; i < alpha.length; i++)
+            sum += alpha[i];
+        for (int i = 0; i < alpha.length; i++)
+            alpha[i] /= sum;
+        return sum;
+    }
+}
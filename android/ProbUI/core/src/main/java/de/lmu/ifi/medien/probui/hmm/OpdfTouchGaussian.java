@@ -19,20 +19,31 @@ along with this program. If not, see <http://www.gnu.org/licenses/>.
 
 package de.lmu.ifi.medien.probui.hmm;
 
-import android.util.Log;
-
 import java.text.NumberFormat;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Random;
 
 import be.ac.ulg.montefiore.run.distributions.MultiGaussianDistribution;
 import be.ac.ulg.montefiore.run.jahmm.ObservationVector;
 import be.ac.ulg.montefiore.run.jahmm.Opdf;
+import be.ac.ulg.montefiore.run.jahmm.OpdfFitter;
+import be.ac.ulg.montefiore.run.jahmm.RandomGenerable;
+import be.ac.ulg.montefiore.run.jahmm.StreamFittable;
+import be.ac.ulg.montefiore.run.jahmm.WeightedMoments;
 import be.ac.ulg.montefiore.run.distributions.SimpleMatrix;
 import de.lmu.ifi.medien.probui.observations.ProbObservationTouch;
 import de.lmu.ifi.medien.probui.system.SystemSetup;
 
-public class OpdfTouchGaussian implements Opdf<ObservationVectorTouch> {
+public class OpdfTouchGaussian implements Opdf<ObservationVectorTouch>, StreamFittable<ObservationVectorTouch>,
+        RandomGenerable<ObservationVectorTouch> {
+
+    /**
+     * Added to the variances of fitted distributions, so that they cannot collapse.
+     * This is added once per fit, not per observation, since the coordinates are relative to the
+     * screen size (so that the variances are small) and logs can contain millions of observations.
+     */
+    public static final double REGULARISATION = 0.00001;
 
     protected MultiGaussianDistribution distribution;
 
@@ -226,7 +237,7 @@ public class OpdfTouchGaussian implements Opdf<ObservationVectorTouch> {
                     T[r][c] += R[r][i] * mCovTouch[i][c];
         mCovTouch = SimpleMatrix.times(T, SimpleMatrix.transpose(T));
         //String debugStr = mCovTouch[0][0] + ", " + mCovTouch[0][1] + "; " + mCovTouch[1][0] + ", " + mCovTouch[1][1];
-        //Log.d("ProbUI Matrix", "mCovTouch: " + debugStr + "   |||   " + orientation + ", " + axisMinor + ", " + axisMajor);
+        //ProbLog.d("ProbUI Matrix", "mCovTouch: " + debugStr + "   |||   " + orientation + ", " + axisMinor + ", " + axisMajor);
     }
 
 
@@ -255,6 +266,11 @@ public class OpdfTouchGaussian implements Opdf<ObservationVectorTouch> {
     }
 
 
+    public ObservationVectorTouch generate(Random random) {
+        return new ObservationVectorTouch(distribution.generate(random, new double[distribution.dimension()]));
+    }
+
+
     public void fit(ObservationVectorTouch... oa) {
         fit(Arrays.asList(oa));
     }
@@ -301,23 +317,67 @@ public class OpdfTouchGaussian implements Opdf<ObservationVectorTouch> {
                 omm[j] = obs[j] - mean[j];
 
             for (int r = 0; r < dimension(); r++)
-                for (int c = 0; c < dimension(); c++) {
+                for (int c = 0; c < dimension(); c++)
                     covariance[r][c] += omm[r] * omm[c] * weights[i];
-                    //TODO: my hack! -> regularisation:
-                    if (r == c)
-                        covariance[r][c] += 0.00001;
-                }
 
             i++;
         }
 
+        for (int r = 0; r < dimension(); r++)
+            covariance[r][r] += REGULARISATION;
+
         distribution = new MultiGaussianDistribution(mean, covariance);
     }
 
 
+    public OpdfFitter<ObservationVectorTouch> fitter() {
+        return new Fitter();
+    }
+
+
+    /**
+     * Fits the distribution to a stream of weighted observations (e.g. for memory-bounded learning).
+     * Uses the same regularisation as the fit methods above.
+     */
+    private class Fitter implements OpdfFitter<ObservationVectorTouch> {
+
+        private final WeightedMoments moments = new WeightedMoments(dimension());
+
+        public void add(ObservationVectorTouch o, double weight) {
+            this.moments.add(o.value, weight);
+        }
+
+        public void add(OpdfFitter<ObservationVectorTouch> fitter) {
+            this.moments.add(((Fitter) fitter).moments);
+        }
+
+        public void fit() {
+            if (this.moments.weight() == 0)
+                return;
+            double[][] covariance = this.moments.covariance();
+            for (int r = 0; r < dimension(); r++)
+                covariance[r][r] += REGULARISATION;
+            distribution = new MultiGaussianDistribution(this.moments.mean(), covariance);
+        }
+    }
+
+
     public OpdfTouchGaussian clone() {
         try {
-            return (OpdfTouchGaussian) super.clone();
+            // Deep copy, so that the clone can be moved and evaluated independently (e.g. in another thread):
+            OpdfTouchGaussian opdf = (OpdfTouchGaussian) super.clone();
+            opdf.distribution = new MultiGaussianDistribution(this.distribution.mean(), this.distribution.covariance());
+            opdf.muTouch = new double[2];
+            opdf.mCovTouch = new double[2][2];
+            opdf.P = new double[2][2];
+            opdf.PL = new double[2][2];
+            opdf.lj = new double[2];
+            opdf.lk = new double[2];
+            opdf.muDiffAsMatrix = new double[1][2];
+            opdf.mCovTouchL = new double[2][2];
+            opdf.R = new double[2][2];
+            opdf.T = new double[2][2];
+            return opdf;
         } catch (CloneNotSupportedException e) {
             throw new AssertionError(e);
         }
@@ -0,0 +1,99 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.hmm;
+
+import be.ac.ulg.montefiore.run.jahmm.Hmm;
+import de.lmu.ifi.medien.probui.observations.ProbObservationTouch;
+import de.lmu.ifi.medien.probui.system.SystemSetup;
+
+/**
+ * A spatial envelope around all states of a touch model, used to cheaply bound its likelihood.
+ * <p/>
+ * The envelope is the bounding box of the state means, together with the largest variances
+ * along x and y. An observation outside of this box has at least the corresponding Mahalanobis
+ * distance to every state, which gives an upper bound on its emission probability
+ * (see {@link #lnProbabilityBound(ObservationVectorTouch)}). Since the initial and transition
+ * probabilities sum to one, the sum of these bounds over a sequence also bounds
+ * the log-likelihood of the whole sequence.
+ */
+public class TouchModelEnvelope {
+
+
+    private double minX = Double.POSITIVE_INFINITY;
+    private double maxX = Double.NEGATIVE_INFINITY;
+    private double minY = Double.POSITIVE_INFINITY;
+    private double maxY = Double.NEGATIVE_INFINITY;
+
+    private double maxVarX;
+    private double maxVarY;
+
+    /**
+     * The log of the highest density of all states (at their means).
+     */
+    private double lnPeak = Double.NEGATIVE_INFINITY;
+
+
+    public TouchModelEnvelope(Hmm<ObservationVectorTouch> model) {
+
+        for (int i = 0; i < model.nbStates(); i++) {
+            OpdfTouchGaussian opdf = (OpdfTouchGaussian) model.getOpdf(i);
+            double[] mean = opdf.mean();
+            double[][] covariance = opdf.covariance();
+            this.minX = Math.min(this.minX, mean[0]);
+            this.maxX = Math.max(this.maxX, mean[0]);
+            this.minY = Math.min(this.minY, mean[1]);
+            this.maxY = Math.max(this.maxY, mean[1]);
+            this.maxVarX = Math.max(this.maxVarX, covariance[0][0]);
+            this.maxVarY = Math.max(this.maxVarY, covariance[1][1]);
+            double det = covariance[0][0] * covariance[1][1] - covariance[0][1] * covariance[1][0];
+            this.lnPeak = Math.max(this.lnPeak, -Math.log(2 * Math.PI) - 0.5 * Math.log(det));
+        }
+    }
+
+
+    /**
+     * Computes an upper bound on the log emission probability of the given observation,
+     * for all states of the model.
+     *
+     * @param o
+     * @return
+     */
+    public double lnProbabilityBound(ObservationVectorTouch o) {
+
+        double x = o.value[0];
+        double y = o.value[1];
+        double dx = x < this.minX ? this.minX - x : (x > this.maxX ? x - this.maxX : 0);
+        double dy = y < this.minY ? this.minY - y : (y > this.maxY ? y - this.maxY : 0);
+
+        if (SystemSetup.TOUCH_PROBABILITY_MODE == SystemSetup.TOUCH_PROBABILITY_MODE_BC) {
+            // The coefficient is at most one, and decays with the distance w.r.t. the averaged covariance
+            // of state and touch (the touch covariance is bounded by its largest eigenvalue):
+            double axis = Math.max(o.realFeatures[ProbObservationTouch.FEATURE_AXIS_MINOR],
+                    o.realFeatures[ProbObservationTouch.FEATURE_AXIS_MAJOR]) / 6;
+            double touchVar = axis * axis * axis * axis;
+            double dist2 = Math.max(dx * dx / ((this.maxVarX + touchVar) / 2),
+                    dy * dy / ((this.maxVarY + touchVar) / 2));
+            return -dist2 / 8;
+        } else {
+            double dist2 = Math.max(dx * dx / this.maxVarX, dy * dy / this.maxVarY);
+            return this.lnPeak - dist2 / 2;
+        }
+    }
+}
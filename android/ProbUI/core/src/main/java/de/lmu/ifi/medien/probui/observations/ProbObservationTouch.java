@@ -0,0 +1,135 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.observations;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+public class ProbObservationTouch extends AbstractProbObservation {
+
+    public static final int TYPE_TOUCH_DOWN = 0;
+    public static final int TYPE_TOUCH_MOVE = 1;
+    public static final int TYPE_TOUCH_UP = 2;
+
+
+    public static final int FEATURE_X = 0;
+    public static final int FEATURE_Y = 1;
+    public static final int FEATURE_ORIENTATION = 2;
+    public static final int FEATURE_AXIS_MINOR = 3;
+    public static final int FEATURE_AXIS_MAJOR = 4;
+    public static final int FEATURE_PRESSURE = 5;
+    public static final int FEATURE_RAW_X = 6;
+    public static final int FEATURE_RAW_Y = 7;
+
+
+    public ProbObservationTouch(double[] touchFeatures, int[] touchTypeAndPointerID, long timestamp) {
+        super(touchFeatures, touchTypeAndPointerID, timestamp);
+    }
+
+
+    /**
+     * Writes this observation (features and timestamp), e.g. as part of a saved reasoning state
+     * (see ProbUIManager.saveState()).
+     *
+     * @param out
+     * @throws IOException
+     */
+    public void write(DataOutputStream out) throws IOException {
+        double[] realFeatures = this.getRealFeatures();
+        int[] nominalFeatures = this.getNominalFeatures();
+        out.writeByte(realFeatures.length);
+        for (double feature : realFeatures)
+            out.writeDouble(feature);
+        out.writeByte(nominalFeatures.length);
+        for (int feature : nominalFeatures)
+            out.writeInt(feature);
+        out.writeLong(this.getTimestamp());
+    }
+
+
+    /**
+     * Reads an observation written by {@link #write(DataOutputStream)}.
+     *
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    public static ProbObservationTouch read(DataInputStream in) throws IOException {
+        double[] realFeatures = new double[in.readUnsignedByte()];
+        for (int i = 0; i < realFeatures.length; i++)
+            realFeatures[i] = in.readDouble();
+        int[] nominalFeatures = new int[in.readUnsignedByte()];
+        for (int i = 0; i < nominalFeatures.length; i++)
+            nominalFeatures[i] = in.readInt();
+        return new ProbObservationTouch(realFeatures, nominalFeatures, in.readLong());
+    }
+
+
+    /**
+     * Checks whether the (non-null) observation at the given index of the current observations
+     * is passed on to the interactors: This filters out move events that moved very little
+     * (potentially improves performance). Used by the ProbUIManager and the TouchTraceReplay.
+     *
+     * @param current
+     * @param previous The observations of the last event that was passed on.
+     * @param index
+     * @return
+     */
+    public static boolean isPassedOn(List<ProbObservationTouch> current, List<ProbObservationTouch> previous, int index) {
+        double dist = getMoveDistance(current, previous, index);
+        return Double.isNaN(dist) || dist > 0.0125; // TODO: movement threshold currently hardcoded: 0.0125
+    }
+
+
+    /**
+     * Computes the distance checked by {@link #isPassedOn(List, List, int)}, i.e. how far the (non-null)
+     * observation at the given index moved since the last event that was passed on.
+     *
+     * @param current
+     * @param previous
+     * @param index
+     * @return The distance (relative to the container), or NaN if the observation is not a move to compare
+     * (these are always passed on).
+     */
+    public static double getMoveDistance(List<ProbObservationTouch> current, List<ProbObservationTouch> previous, int index) {
+        if (current.get(index).getNominalFeatures()[0] != ProbObservationTouch.TYPE_TOUCH_MOVE
+                || current.size() != previous.size()) {
+            return Double.NaN;
+        }
+        double[] obsXY = current.get(index).getRealFeatures();
+        double[] obsPrevXY = previous.get(index).getRealFeatures();
+        double dx = obsXY[0] - obsPrevXY[0];
+        double dy = obsXY[1] - obsPrevXY[1];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+
+    public String toString() {
+
+        return "ProbObservationTouch [type: " + this.getNominalFeatures()[0]
+                + ", pointer ID: " + this.getNominalFeatures()[1]
+                + ", x: " + this.getRealFeatures()[FEATURE_X]
+                + ", y: " + this.getRealFeatures()[FEATURE_Y]
+                + ", minorAxis: " + this.getRealFeatures()[FEATURE_AXIS_MINOR]
+                + ", majorAxis: " + this.getRealFeatures()[FEATURE_AXIS_MAJOR] + "]";
+    }
+}
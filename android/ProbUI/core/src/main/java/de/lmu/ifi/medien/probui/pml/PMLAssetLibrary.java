@@ -0,0 +1,539 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.pml;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+import be.ac.ulg.montefiore.run.jahmm.io.FileFormatException;
+import de.lmu.ifi.medien.probui.behaviours.ProbBehaviourTouch;
+
+/**
+ * A library of named PML behaviours and rules (written by {@link PMLAssetLibraryWriter}),
+ * e.g. shipped in the assets of an app, so that interactors can refer to behaviours by their labels
+ * (see ProbBehaviourLinker.linkLibraryBehaviourTouch in the app library).
+ * <p/>
+ * In contrast to a {@link PMLBehaviourLibrary}, which holds behaviours for one layout,
+ * the models are stored relative to the geometry of the interactors: The states' positions and sizes
+ * are affine in the interactor's position and size and the display density. Opening a library only
+ * checks its header; each model is decoded when its behaviour is first created (and then cached),
+ * and behaviours that could not be compiled are parsed from their PML statement instead.
+ * <p/>
+ * Format (version 1, big-endian):
+ * <pre>
+ * Header:    int magic ("PALB"), short version, short reserved (0),
+ *            int number of behaviours nb, int number of rules nr
+ * Index:     nb + nr entries of (int offset, int length) of the records,
+ *            the behaviours followed by the rules, each sorted by their labels
+ * Behaviour: short label length, label (UTF-8), short statement length, PML statement (UTF-8)
+ *            byte flags (1: compiled, 2: relative gesture)
+ *            if compiled:
+ *              short number of states s
+ *              s states of (double pi, 4 * 6 doubles of the geometry of the state)
+ *              if relative: 2 * 6 doubles of the geometry of the relative origin
+ *              s * s doubles of the transition matrix (row by row)
+ *              sequence rule (as in {@link PMLBehaviourLibrary})
+ * Rule:      short label length, label (UTF-8), short statement length, PML statement (UTF-8)
+ * </pre>
+ * The geometry of a state consists of the centre x, centre y, width and height (in pixels) of the state,
+ * each given as the coefficients (c, per x, per y, per width, per height, per density) of the interactor's
+ * geometry, from which the mean and covariance are computed as by the PML parser.
+ * <p/>
+ * Assets should be stored uncompressed (e.g. with aaptOptions { noCompress "pml" }),
+ * so that the library can be memory-mapped instead of read completely (see PMLAssetLibraryLoader in the app library).
+ */
+public class PMLAssetLibrary {
+
+
+    public static final int MAGIC = 0x50414C42; // "PALB"
+
+    public static final short VERSION = 1;
+
+    public static final int HEADER_SIZE = 16;
+
+    public static final int INDEX_ENTRY_SIZE = 8;
+
+    public static final int FLAG_COMPILED = 1;
+
+    public static final int FLAG_RELATIVE_GESTURE = 2;
+
+    public static final int GEOMETRY_COEFFICIENTS = 6;
+
+    static final Charset UTF8 = PMLBehaviourLibrary.UTF8;
+
+
+    private final ByteBuffer buffer;
+
+    private final int numBehaviours;
+
+    private final int numRules;
+
+    /**
+     * The models decoded so far (by index).
+     */
+    private final Model[] models;
+
+
+    /**
+     * Opens the library in the given buffer (e.g. a memory-mapped file).
+     * The buffer is not modified (the library works on a duplicate of it).
+     *
+     * @param buffer
+     * @throws FileFormatException If the buffer does not hold a library of a supported version.
+     */
+    public PMLAssetLibrary(ByteBuffer buffer) throws FileFormatException {
+
+        this.buffer = buffer.duplicate();
+        this.buffer.position(0);
+
+        if (this.buffer.limit() < HEADER_SIZE || this.buffer.getInt(0) != MAGIC)
+            throw new FileFormatException("Not a PML asset library");
+        short version = this.buffer.getShort(4);
+        if (version != VERSION)
+            throw new FileFormatException("Unsupported PML asset library version: " + version);
+        this.numBehaviours = this.buffer.getInt(8);
+        this.numRules = this.buffer.getInt(12);
+        if (this.numBehaviours < 0 || this.numRules < 0
+                || HEADER_SIZE + ((long) this.numBehaviours + this.numRules) * INDEX_ENTRY_SIZE > this.buffer.limit())
+            throw new FileFormatException("Truncated PML asset library index");
+        this.models = new Model[this.numBehaviours];
+    }
+
+
+    /**
+     * Maps the given file into memory and opens the library in it.
+     *
+     * @param file
+     * @return
+     * @throws IOException
+     * @throws FileFormatException
+     */
+    public static PMLAssetLibrary open(File file) throws IOException, FileFormatException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            return open(channel, 0, channel.size());
+        } finally {
+            raf.close(); // the mapping stays valid
+        }
+    }
+
+
+    /**
+     * Maps the given part of a file into memory and opens the library in it
+     * (e.g. an uncompressed asset in an apk). The channel can be closed afterwards.
+     *
+     * @param channel
+     * @param position
+     * @param size
+     * @return
+     * @throws IOException
+     * @throws FileFormatException
+     */
+    public static PMLAssetLibrary open(FileChannel channel, long position, long size)
+            throws IOException, FileFormatException {
+        return new PMLAssetLibrary(channel.map(FileChannel.MapMode.READ_ONLY, position, size));
+    }
+
+
+    /**
+     * Reads the library from the given stream completely (e.g. a compressed asset).
+     * The stream is not closed.
+     *
+     * @param stream
+     * @return
+     * @throws IOException
+     * @throws FileFormatException
+     */
+    public static PMLAssetLibrary read(InputStream stream) throws IOException, FileFormatException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        int n;
+        while ((n = stream.read(chunk)) != -1) {
+            bytes.write(chunk, 0, n);
+        }
+        return new PMLAssetLibrary(ByteBuffer.wrap(bytes.toByteArray()));
+    }
+
+
+    /**
+     * @return The number of behaviours in this library.
+     */
+    public int getNumBehaviours() {
+        return this.numBehaviours;
+    }
+
+
+    /**
+     * @return The number of rules in this library.
+     */
+    public int getNumRules() {
+        return this.numRules;
+    }
+
+
+    /**
+     * @param index
+     * @return The label of the behaviour with the given index (the behaviours are sorted by their labels).
+     * @throws FileFormatException
+     */
+    public String getBehaviourLabel(int index) throws FileFormatException {
+        return readString(recordOffset(checkBehaviourIndex(index)));
+    }
+
+
+    /**
+     * @param index
+     * @return The PML statement of the behaviour with the given index.
+     * @throws FileFormatException
+     */
+    public String getBehaviourStatement(int index) throws FileFormatException {
+        int offset = recordOffset(checkBehaviourIndex(index));
+        return readString(skipString(offset));
+    }
+
+
+    /**
+     * @param index
+     * @return The label of the rule with the given index (the rules are sorted by their labels).
+     * @throws FileFormatException
+     */
+    public String getRuleLabel(int index) throws FileFormatException {
+        return readString(recordOffset(checkRuleIndex(index) + this.numBehaviours));
+    }
+
+
+    /**
+     * @param index
+     * @return The PML statement of the rule with the given index.
+     * @throws FileFormatException
+     */
+    public String getRuleStatement(int index) throws FileFormatException {
+        int offset = recordOffset(checkRuleIndex(index) + this.numBehaviours);
+        return readString(skipString(offset));
+    }
+
+
+    /**
+     * Finds a behaviour by its label (with a binary search over the index).
+     *
+     * @param label
+     * @return The index of the behaviour, or -1 if there is none with the given label.
+     * @throws FileFormatException
+     */
+    public int indexOfBehaviour(String label) throws FileFormatException {
+        return indexOf(label, 0, this.numBehaviours);
+    }
+
+
+    /**
+     * Finds a rule by its label (with a binary search over the index).
+     *
+     * @param label
+     * @return The index of the rule, or -1 if there is none with the given label.
+     * @throws FileFormatException
+     */
+    public int indexOfRule(String label) throws FileFormatException {
+        int index = indexOf(label, this.numBehaviours, this.numRules);
+        return index < 0 ? -1 : index - this.numBehaviours;
+    }
+
+
+    /**
+     * Creates the behaviour with the given label for an interactor with the given geometry
+     * (as the PML parser would for the behaviour's statement).
+     *
+     * @param label
+     * @param x
+     * @param y
+     * @param width
+     * @param height
+     * @param screenWidth
+     * @param screenHeight
+     * @param density      Display density (as used for the PML sizes).
+     * @return A new behaviour, or null if there is none with the given label.
+     * @throws FileFormatException
+     */
+    public ProbBehaviourTouch createBehaviour(String label, double x, double y, double width, double height,
+                                              double screenWidth, double screenHeight, float density)
+            throws FileFormatException {
+        int index = indexOfBehaviour(label);
+        return index < 0 ? null : createBehaviour(index, x, y, width, height, screenWidth, screenHeight, density);
+    }
+
+
+    /**
+     * Creates the behaviour with the given index for an interactor with the given geometry.
+     * Each call creates a new behaviour, which can be added to an interactor.
+     *
+     * @param index
+     * @param x
+     * @param y
+     * @param width
+     * @param height
+     * @param screenWidth
+     * @param screenHeight
+     * @param density
+     * @return
+     * @throws FileFormatException
+     */
+    public ProbBehaviourTouch createBehaviour(int index, double x, double y, double width, double height,
+                                              double screenWidth, double screenHeight, float density)
+            throws FileFormatException {
+
+        // 1. Behaviours that are not compiled are parsed:
+        Model model = getModel(index);
+        if (model.statement != null)
+            return new PMLParserTouchImpl(density).parse(model.statement, x, y, width, height,
+                    screenWidth, screenHeight);
+
+        // 2. States and transitions:
+        ProbBehaviourTouch behaviour = new ProbBehaviourTouch(model.label, model.numStates);
+        for (int i = 0; i < model.numStates; i++) {
+            double[][] geometry = model.geometry[i];
+            double[] mean = {evaluate(geometry[0], x, y, width, height, density) / screenWidth,
+                    evaluate(geometry[1], x, y, width, height, density) / screenHeight};
+            double w = evaluate(geometry[2], x, y, width, height, density);
+            double h = evaluate(geometry[3], x, y, width, height, density);
+            double[][] covariance = {{Math.pow(w / screenWidth / 4, 2), 0}, {0, Math.pow(h / screenHeight / 4, 2)}};
+            behaviour.setState(i, mean, covariance, model.pis[i]);
+        }
+        double[][] transitions = new double[model.numStates][];
+        for (int i = 0; i < model.numStates; i++) {
+            transitions[i] = model.transitions[i].clone();
+        }
+        behaviour.setTransitions(transitions);
+        behaviour.setAcceptedPointerIDs(0, 1); // as set by the parser
+
+        // 3. Sequence rule (decoded for each behaviour, as its markers are updated while reasoning):
+        ByteBuffer record = this.buffer.duplicate();
+        record.limit(model.recordEnd);
+        record.position(model.ruleOffset);
+        try {
+            behaviour.setSequenceRule(PMLBehaviourLibrary.readSequenceRule(record, model.numStates, model.label));
+        } catch (RuntimeException e) { // BufferUnderflowException
+            FileFormatException ffe = new FileFormatException("Corrupt sequence rule of behaviour " + model.label);
+            ffe.initCause(e);
+            throw ffe;
+        }
+
+        // 4. Relative gesture:
+        if (model.origin != null) {
+            behaviour.setRelativeGesture(true);
+            behaviour.setRelativeOriginFakeState(new float[]{
+                    (float) (evaluate(model.origin[0], x, y, width, height, density) / screenWidth),
+                    (float) (evaluate(model.origin[1], x, y, width, height, density) / screenHeight)});
+        }
+
+        return behaviour;
+    }
+
+
+    /**
+     * Evaluates the given geometry coefficients for the given interactor geometry.
+     *
+     * @param coefficients
+     * @param x
+     * @param y
+     * @param width
+     * @param height
+     * @param density
+     * @return
+     */
+    static double evaluate(double[] coefficients, double x, double y, double width, double height, float density) {
+        return coefficients[0] + coefficients[1] * x + coefficients[2] * y
+                + coefficients[3] * width + coefficients[4] * height + coefficients[5] * density;
+    }
+
+
+    /**
+     * Returns the model of the behaviour with the given index, which is decoded on first use.
+     *
+     * @param index
+     * @return
+     * @throws FileFormatException
+     */
+    private synchronized Model getModel(int index) throws FileFormatException {
+        Model model = this.models[checkBehaviourIndex(index)];
+        if (model == null) {
+            model = decodeModel(index);
+            this.models[index] = model;
+        }
+        return model;
+    }
+
+
+    private Model decodeModel(int index) throws FileFormatException {
+
+        int offset = recordOffset(index);
+        ByteBuffer record = this.buffer.duplicate();
+        record.limit(offset + this.buffer.getInt(HEADER_SIZE + index * INDEX_ENTRY_SIZE + 4));
+
+        Model model = new Model();
+        model.label = readString(offset);
+        try {
+            // 1. Statement and flags:
+            int statementOffset = skipString(offset);
+            record.position(skipString(statementOffset));
+            byte flags = record.get();
+            if ((flags & FLAG_COMPILED) == 0) {
+                model.statement = readString(statementOffset);
+                return model;
+            }
+
+            // 2. States:
+            model.numStates = record.getShort();
+            if (model.numStates <= 0)
+                throw new FileFormatException("Invalid number of states of behaviour " + model.label
+                        + ": " + model.numStates);
+            model.pis = new double[model.numStates];
+            model.geometry = new double[model.numStates][][];
+            for (int i = 0; i < model.numStates; i++) {
+                model.pis[i] = record.getDouble();
+                model.geometry[i] = readGeometry(record, 4);
+            }
+            if ((flags & FLAG_RELATIVE_GESTURE) != 0)
+                model.origin = readGeometry(record, 2);
+
+            // 3. Transitions:
+            model.transitions = new double[model.numStates][model.numStates];
+            for (int i = 0; i < model.numStates; i++) {
+                for (int j = 0; j < model.numStates; j++) {
+                    model.transitions[i][j] = record.getDouble();
+                }
+            }
+
+            // 4. The sequence rule follows:
+            model.ruleOffset = record.position();
+            model.recordEnd = record.limit();
+            return model;
+
+        } catch (RuntimeException e) { // BufferUnderflowException, IndexOutOfBoundsException
+            FileFormatException ffe = new FileFormatException("Corrupt record of behaviour " + model.label);
+            ffe.initCause(e);
+            throw ffe;
+        }
+    }
+
+
+    private static double[][] readGeometry(ByteBuffer record, int numValues) {
+        double[][] geometry = new double[numValues][GEOMETRY_COEFFICIENTS];
+        for (int q = 0; q < numValues; q++) {
+            for (int c = 0; c < GEOMETRY_COEFFICIENTS; c++) {
+                geometry[q][c] = record.getDouble();
+            }
+        }
+        return geometry;
+    }
+
+
+    private int indexOf(String label, int from, int count) throws FileFormatException {
+        int low = from;
+        int high = from + count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = readString(recordOffset(mid)).compareTo(label);
+            if (cmp < 0)
+                low = mid + 1;
+            else if (cmp > 0)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+
+    private int checkBehaviourIndex(int index) {
+        if (index < 0 || index >= this.numBehaviours)
+            throw new IndexOutOfBoundsException("Behaviour " + index + " of " + this.numBehaviours);
+        return index;
+    }
+
+
+    private int checkRuleIndex(int index) {
+        if (index < 0 || index >= this.numRules)
+            throw new IndexOutOfBoundsException("Rule " + index + " of " + this.numRules);
+        return index;
+    }
+
+
+    /**
+     * @param entry The index of the entry (the rules follow the behaviours).
+     * @return The offset of the record.
+     * @throws FileFormatException
+     */
+    private int recordOffset(int entry) throws FileFormatException {
+        int position = HEADER_SIZE + entry * INDEX_ENTRY_SIZE;
+        int offset = this.buffer.getInt(position);
+        int length = this.buffer.getInt(position + 4);
+        if (offset < HEADER_SIZE || length < 4 || (long) offset + length > this.buffer.limit())
+            throw new FileFormatException("Invalid index entry " + entry);
+        return offset;
+    }
+
+
+    private int skipString(int offset) throws FileFormatException {
+        if (offset + 2 > this.buffer.limit())
+            throw new FileFormatException("Truncated string at " + offset);
+        return offset + 2 + (this.buffer.getShort(offset) & 0xFFFF);
+    }
+
+
+    private String readString(int offset) throws FileFormatException {
+        int end = skipString(offset);
+        if (end > this.buffer.limit())
+            throw new FileFormatException("Truncated string at " + offset);
+        byte[] bytes = new byte[end - offset - 2];
+        ByteBuffer string = this.buffer.duplicate();
+        string.position(offset + 2);
+        string.get(bytes);
+        return new String(bytes, UTF8);
+    }
+
+
+    /**
+     * A decoded behaviour record.
+     */
+    private static class Model {
+
+        String label;
+
+        /**
+         * The PML statement if the behaviour is not compiled (and null otherwise).
+         */
+        String statement;
+
+        int numStates;
+        double[] pis;
+        double[][][] geometry;
+        double[][] origin;
+        double[][] transitions;
+
+        int ruleOffset;
+        int recordEnd;
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.pml;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+import be.ac.ulg.montefiore.run.jahmm.Hmm;
+import de.lmu.ifi.medien.probui.behaviours.ProbBehaviourTouch;
+import de.lmu.ifi.medien.probui.hmm.ObservationVectorTouch;
+import de.lmu.ifi.medien.probui.hmm.OpdfTouchGaussian;
+
+/**
+ * Compiles labelled PML behaviours and rules into a library in the format read by {@link PMLAssetLibrary}.
+ * <p/>
+ * The models of the behaviours are precompiled relative to the geometry they are created for:
+ * The PML parser places and sizes the states linearly in the interactor's position and size
+ * and the display density, so each behaviour is parsed for a few probe geometries, from which the
+ * coefficients of the states' positions and sizes are derived. The result is checked against
+ * another parse for an unrelated geometry; behaviours that do not pass this check are only stored
+ * as PML (and parsed when they are first created).
+ */
+public class PMLAssetLibraryWriter {
+
+
+    /**
+     * The probe geometries (x, y, width, height, density): a base geometry followed by
+     * one geometry per variable, which differs from the base in this variable only.
+     */
+    private static final double[][] PROBES = {
+            {0, 0, 100, 100, 1},
+            {100, 0, 100, 100, 1},
+            {0, 100, 100, 100, 1},
+            {0, 0, 200, 100, 1},
+            {0, 0, 100, 200, 1},
+            {0, 0, 100, 100, 2}};
+
+    /**
+     * The geometry the compiled model is checked against.
+     */
+    private static final double[] CHECK = {37, 53, 171, 89, 2.625};
+
+
+    /**
+     * Compiles the given behaviours and rules and writes the library to the given stream (which is not closed).
+     *
+     * @param stream
+     * @param behaviourStatements Labelled PML behaviours (e.g. "tap: Cd*u").
+     * @param ruleStatements      Labelled PML rules (e.g. "activated: tap on complete").
+     * @throws IOException
+     */
+    public static void write(OutputStream stream, List<String> behaviourStatements,
+                             List<String> ruleStatements) throws IOException {
+
+        // 1. Sort by label (for the binary search when reading):
+        TreeMap<String, String> behaviours = sortByLabel(behaviourStatements);
+        TreeMap<String, String> rules = sortByLabel(ruleStatements);
+
+        // 2. Encode the records:
+        List<byte[]> records = new ArrayList<byte[]>();
+        for (String label : behaviours.keySet()) {
+            records.add(encodeBehaviour(label, behaviours.get(label)));
+        }
+        for (String label : rules.keySet()) {
+            records.add(encodeRule(label, rules.get(label)));
+        }
+
+        // 3. Header, index and records:
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(PMLAssetLibrary.MAGIC);
+        out.writeShort(PMLAssetLibrary.VERSION);
+        out.writeShort(0);
+        out.writeInt(behaviours.size());
+        out.writeInt(rules.size());
+        long offset = PMLAssetLibrary.HEADER_SIZE + (long) records.size() * PMLAssetLibrary.INDEX_ENTRY_SIZE;
+        for (byte[] record : records) {
+            if (offset + record.length > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("Behaviour library too large");
+            out.writeInt((int) offset);
+            out.writeInt(record.length);
+            offset += record.length;
+        }
+        for (byte[] record : records) {
+            out.write(record);
+        }
+        out.flush();
+    }
+
+
+    private static TreeMap<String, String> sortByLabel(List<String> statements) {
+        TreeMap<String, String> sorted = new TreeMap<String, String>();
+        for (String statement : statements) {
+            String label = PMLParserTouchImpl.parseLabel(statement);
+            if (label == null || label.length() == 0)
+                throw new IllegalArgumentException("Statement without label: " + statement);
+            if (sorted.put(label, statement.trim()) != null)
+                throw new IllegalArgumentException("Duplicate label: " + label);
+        }
+        return sorted;
+    }
+
+
+    private static byte[] encodeRule(String label, String statement) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeString(out, label);
+        writeString(out, statement);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+
+    private static byte[] encodeBehaviour(String label, String statement) throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        // 1. Label and statement:
+        writeString(out, label);
+        writeString(out, statement);
+
+        // 2. Compile:
+        Probe[] probes = new Probe[PROBES.length];
+        for (int i = 0; i < PROBES.length; i++) {
+            probes[i] = new Probe(statement, PROBES[i]);
+        }
+        double[][][] geometry = fitGeometry(probes, false);
+        double[][][] origin = probes[0].origin == null ? null : fitGeometry(probes, true);
+        Probe check = new Probe(statement, CHECK);
+        if (!isCompiled(probes, geometry, origin, check)) {
+            out.writeByte(0);
+            out.flush();
+            return bytes.toByteArray();
+        }
+
+        // 3. Model:
+        Probe base = probes[0];
+        out.writeByte(PMLAssetLibrary.FLAG_COMPILED | (origin != null ? PMLAssetLibrary.FLAG_RELATIVE_GESTURE : 0));
+        out.writeShort(base.numStates);
+        for (int i = 0; i < base.numStates; i++) {
+            out.writeDouble(base.pis[i]);
+            for (double[] coefficients : geometry[i]) {
+                for (double c : coefficients)
+                    out.writeDouble(c);
+            }
+        }
+        if (origin != null) {
+            for (int q = 0; q < 2; q++) {
+                for (double c : origin[0][q])
+                    out.writeDouble(c);
+            }
+        }
+        for (int i = 0; i < base.numStates; i++) {
+            for (int j = 0; j < base.numStates; j++) {
+                out.writeDouble(base.transitions[i][j]);
+            }
+        }
+        out.write(base.rule);
+
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+
+    /**
+     * Derives the coefficients of the states' (or the relative origin's) geometries from the probes.
+     *
+     * @return For each state, for each of x, y, width and height, the coefficients
+     * (see {@link PMLAssetLibrary#GEOMETRY_COEFFICIENTS}).
+     */
+    private static double[][][] fitGeometry(Probe[] probes, boolean origin) {
+        Probe base = probes[0];
+        int numStates = origin ? 1 : base.numStates;
+        double[][][] geometry = new double[numStates][4][PMLAssetLibrary.GEOMETRY_COEFFICIENTS];
+        for (int i = 0; i < numStates; i++) {
+            for (int q = 0; q < (origin ? 2 : 4); q++) {
+                double[] coefficients = geometry[i][q];
+                double baseValue = origin ? base.origin[q] : base.geometry[i][q];
+                coefficients[0] = baseValue;
+                for (int v = 1; v < probes.length; v++) {
+                    if (probes[v].numStates != base.numStates || (probes[v].origin == null) != (base.origin == null))
+                        return geometry; // rejected by isCompiled
+                    double value = origin ? probes[v].origin[q] : probes[v].geometry[i][q];
+                    coefficients[v] = (value - baseValue) / (PROBES[v][v - 1] - PROBES[0][v - 1]);
+                    coefficients[0] -= coefficients[v] * PROBES[0][v - 1];
+                }
+            }
+        }
+        return geometry;
+    }
+
+
+    private static boolean isCompiled(Probe[] probes, double[][][] geometry, double[][][] origin, Probe check) {
+
+        // 1. Everything but the geometry must not depend on it:
+        Probe base = probes[0];
+        for (Probe probe : probes) {
+            if (probe.numStates != base.numStates || !Arrays.equals(probe.pis, base.pis)
+                    || !Arrays.deepEquals(probe.transitions, base.transitions) || !Arrays.equals(probe.rule, base.rule)
+                    || (probe.origin == null) != (base.origin == null) || !probe.diagonal)
+                return false;
+        }
+
+        // 2. The geometry must be predicted for another geometry:
+        if (check.numStates != base.numStates || !Arrays.equals(check.rule, base.rule) || !check.diagonal)
+            return false;
+        for (int i = 0; i < base.numStates; i++) {
+            for (int q = 0; q < 4; q++) {
+                double predicted = PMLAssetLibrary.evaluate(geometry[i][q], CHECK[0], CHECK[1], CHECK[2], CHECK[3],
+                        (float) CHECK[4]);
+                if (Math.abs(predicted - check.geometry[i][q]) > 1e-9 * (1 + Math.abs(check.geometry[i][q])))
+                    return false;
+            }
+        }
+        if (origin != null) {
+            if (check.origin == null)
+                return false;
+            for (int q = 0; q < 2; q++) {
+                double predicted = PMLAssetLibrary.evaluate(origin[0][q], CHECK[0], CHECK[1], CHECK[2], CHECK[3],
+                        (float) CHECK[4]);
+                if (Math.abs(predicted - check.origin[q]) > 1e-5 * (1 + Math.abs(check.origin[q])))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(PMLAssetLibrary.UTF8);
+        if (bytes.length > 0xFFFF)
+            throw new IllegalArgumentException("Statement too long: " + string);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+
+    /**
+     * A behaviour as parsed for a probe geometry (on a surface of size 1, i.e. in pixels).
+     */
+    private static class Probe {
+
+        int numStates;
+        double[] pis;
+        double[][] transitions;
+        byte[] rule;
+
+        /**
+         * x, y, width and height of each state.
+         */
+        double[][] geometry;
+
+        /**
+         * Whether all covariances are diagonal (as created by the parser).
+         */
+        boolean diagonal = true;
+
+        /**
+         * x and y of the relative origin, or null if the behaviour is not relative.
+         */
+        double[] origin;
+
+
+        Probe(String statement, double[] probe) throws IOException {
+            ProbBehaviourTouch behaviour = new PMLParserTouchImpl((float) probe[4]).parse(statement,
+                    probe[0], probe[1], probe[2], probe[3], 1, 1);
+            Hmm<ObservationVectorTouch> model = behaviour.getModel();
+            this.numStates = model.nbStates();
+            this.pis = new double[this.numStates];
+            this.transitions = new double[this.numStates][this.numStates];
+            this.geometry = new double[this.numStates][];
+            for (int i = 0; i < this.numStates; i++) {
+                OpdfTouchGaussian opdf = (OpdfTouchGaussian) model.getOpdf(i);
+                double[] mean = opdf.mean();
+                double[][] covariance = opdf.covariance();
+                this.pis[i] = model.getPi(i);
+                this.geometry[i] = new double[]{mean[0], mean[1],
+                        4 * Math.sqrt(covariance[0][0]), 4 * Math.sqrt(covariance[1][1])};
+                this.diagonal &= covariance[0][1] == 0 && covariance[1][0] == 0;
+                for (int j = 0; j < this.numStates; j++) {
+                    this.transitions[i][j] = model.getAij(i, j);
+                }
+            }
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            PMLBehaviourLibraryWriter.writeSequenceRule(out, behaviour.getSequenceRule(), this.numStates);
+            out.flush();
+            this.rule = bytes.toByteArray();
+
+            float[] fakeState = behaviour.getRelativeOriginFakeState();
+            if (behaviour.isRelativeGesture() && fakeState != null)
+                this.origin = new double[]{fakeState[0], fakeState[1]};
+        }
+    }
+}
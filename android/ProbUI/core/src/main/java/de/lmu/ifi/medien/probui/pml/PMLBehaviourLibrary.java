@@ -0,0 +1,328 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.pml;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+
+import be.ac.ulg.montefiore.run.jahmm.io.FileFormatException;
+import de.lmu.ifi.medien.probui.behaviours.ProbBehaviourTouch;
+
+/**
+ * A library of touch behaviours in a compact binary format (written by {@link PMLBehaviourLibraryWriter}),
+ * e.g. to ship many predefined or learnt behaviours with an app.
+ * <p/>
+ * Opening a library only checks its header, and each behaviour is only decoded when it is created,
+ * so opening a (memory-mapped) library takes constant time regardless of its size.
+ * <p/>
+ * Format (version 1, big-endian):
+ * <pre>
+ * Header:    int magic ("PBLB"), short version, short reserved (0), int number of behaviours n
+ * Index:     n entries of (int offset, int length) of the records, sorted by the behaviours' labels
+ * Records:   for each behaviour:
+ *            short label length, label (UTF-8)
+ *            byte flags (1: relative gesture), [float x, float y of the relative origin, if relative]
+ *            short number of states s
+ *            s states of (double pi, double mean x, double mean y,
+ *                         double covariance xx, double covariance xy, double covariance yy)
+ *            s * s doubles of the transition matrix (row by row)
+ *            sequence rule:
+ *              s bytes of pis, s bytes of ends, s * s bytes of mT (row by row)
+ *              short length of the state mapping (-1 if none), ints of the state mapping
+ *              short number of token lists, for each: short number of tokens, (byte type, byte modifier) each
+ *              short number of markers, for each: byte kind (0: state, 1: touch event),
+ *                                                 short state, short touch event index
+ * </pre>
+ * The positions are normalised screen coordinates, as set by the PML parser for the layout
+ * the behaviours were created with (see {@link ProbBehaviourTouch#move(float, float)}).
+ */
+public class PMLBehaviourLibrary {
+
+
+    public static final int MAGIC = 0x50424C42; // "PBLB"
+
+    public static final short VERSION = 1;
+
+    public static final int HEADER_SIZE = 12;
+
+    public static final int INDEX_ENTRY_SIZE = 8;
+
+    public static final int FLAG_RELATIVE_GESTURE = 1;
+
+    public static final byte MARKER_STATE = 0;
+
+    public static final byte MARKER_TOUCH_EVENT = 1;
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+
+    private final ByteBuffer buffer;
+
+    private final int size;
+
+
+    /**
+     * Opens the library in the given buffer (e.g. a memory-mapped file).
+     * The buffer is not modified (the library works on a duplicate of it).
+     *
+     * @param buffer
+     * @throws FileFormatException If the buffer does not hold a library of a supported version.
+     */
+    public PMLBehaviourLibrary(ByteBuffer buffer) throws FileFormatException {
+
+        this.buffer = buffer.duplicate();
+        this.buffer.position(0);
+
+        if (this.buffer.limit() < HEADER_SIZE || this.buffer.getInt(0) != MAGIC)
+            throw new FileFormatException("Not a behaviour library");
+        short version = this.buffer.getShort(4);
+        if (version != VERSION)
+            throw new FileFormatException("Unsupported behaviour library version: " + version);
+        this.size = this.buffer.getInt(8);
+        if (this.size < 0 || HEADER_SIZE + (long) this.size * INDEX_ENTRY_SIZE > this.buffer.limit())
+            throw new FileFormatException("Truncated behaviour library index");
+    }
+
+
+    /**
+     * Maps the given file into memory and opens the library in it.
+     *
+     * @param file
+     * @return
+     * @throws IOException
+     * @throws FileFormatException
+     */
+    public static PMLBehaviourLibrary open(File file) throws IOException, FileFormatException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            return new PMLBehaviourLibrary(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            raf.close(); // the mapping stays valid
+        }
+    }
+
+
+    /**
+     * @return The number of behaviours in this library.
+     */
+    public int size() {
+        return this.size;
+    }
+
+
+    /**
+     * @param index
+     * @return The label of the behaviour with the given index (the behaviours are sorted by their labels).
+     * @throws FileFormatException
+     */
+    public String getLabel(int index) throws FileFormatException {
+        return readLabel(recordOffset(index));
+    }
+
+
+    /**
+     * Finds a behaviour by its label (with a binary search over the index).
+     *
+     * @param label
+     * @return The index of the behaviour, or -1 if there is none with the given label.
+     * @throws FileFormatException
+     */
+    public int indexOf(String label) throws FileFormatException {
+        int low = 0;
+        int high = this.size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = getLabel(mid).compareTo(label);
+            if (cmp < 0)
+                low = mid + 1;
+            else if (cmp > 0)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+
+    /**
+     * Decodes the behaviour with the given label.
+     *
+     * @param label
+     * @return A new behaviour, or null if there is none with the given label.
+     * @throws FileFormatException
+     */
+    public ProbBehaviourTouch createBehaviour(String label) throws FileFormatException {
+        int index = indexOf(label);
+        return index < 0 ? null : createBehaviour(index);
+    }
+
+
+    /**
+     * Decodes the behaviour with the given index. Each call creates a new behaviour
+     * (as the PML parser does), which can be added to an interactor.
+     *
+     * @param index
+     * @return
+     * @throws FileFormatException
+     */
+    public ProbBehaviourTouch createBehaviour(int index) throws FileFormatException {
+
+        int offset = recordOffset(index);
+        ByteBuffer record = this.buffer.duplicate();
+        record.limit(offset + this.buffer.getInt(HEADER_SIZE + index * INDEX_ENTRY_SIZE + 4));
+        record.position(offset);
+
+        try {
+            // 1. Label and flags:
+            String label = readLabel(offset);
+            record.position(offset + 2 + (record.getShort(offset) & 0xFFFF));
+            byte flags = record.get();
+            float[] relativeOrigin = null;
+            if ((flags & FLAG_RELATIVE_GESTURE) != 0) {
+                relativeOrigin = new float[]{record.getFloat(), record.getFloat()};
+            }
+
+            // 2. States and transitions:
+            int numStates = record.getShort();
+            if (numStates <= 0)
+                throw new FileFormatException("Invalid number of states of behaviour " + label + ": " + numStates);
+            ProbBehaviourTouch behaviour = new ProbBehaviourTouch(label, numStates);
+            for (int i = 0; i < numStates; i++) {
+                double pi = record.getDouble();
+                double[] mean = {record.getDouble(), record.getDouble()};
+                double xx = record.getDouble();
+                double xy = record.getDouble();
+                double yy = record.getDouble();
+                behaviour.setState(i, mean, new double[][]{{xx, xy}, {xy, yy}}, pi);
+            }
+            double[][] transitions = new double[numStates][numStates];
+            for (int i = 0; i < numStates; i++) {
+                for (int j = 0; j < numStates; j++) {
+                    transitions[i][j] = record.getDouble();
+                }
+            }
+            behaviour.setTransitions(transitions);
+            behaviour.setAcceptedPointerIDs(0, 1); // as set by the parser
+
+            // 3. Sequence rule:
+            PMLRulePattern rule = readSequenceRule(record, numStates, label);
+            behaviour.setSequenceRule(rule);
+
+            // 4. Relative gesture:
+            behaviour.setRelativeGesture(relativeOrigin != null);
+            behaviour.setRelativeOriginFakeState(relativeOrigin);
+
+            return behaviour;
+
+        } catch (RuntimeException e) { // BufferUnderflowException, IndexOutOfBoundsException
+            FileFormatException ffe = new FileFormatException("Corrupt record of behaviour " + index);
+            ffe.initCause(e);
+            throw ffe;
+        }
+    }
+
+
+    /**
+     * Reads a sequence rule (in the format of the records) at the position of the given buffer.
+     *
+     * @param record
+     * @param numStates
+     * @param label     The label of the behaviour (for error messages).
+     * @return
+     * @throws FileFormatException
+     */
+    static PMLRulePattern readSequenceRule(ByteBuffer record, int numStates, String label) throws FileFormatException {
+        PMLRulePattern rule = new PMLRulePattern();
+        rule.pis = new int[numStates];
+        rule.ends = new int[numStates];
+        rule.mT = new int[numStates][numStates];
+        for (int i = 0; i < numStates; i++) {
+            rule.pis[i] = record.get();
+        }
+        for (int i = 0; i < numStates; i++) {
+            rule.ends[i] = record.get();
+        }
+        for (int i = 0; i < numStates; i++) {
+            for (int j = 0; j < numStates; j++) {
+                rule.mT[i][j] = record.get();
+            }
+        }
+        int mappingLength = record.getShort();
+        if (mappingLength >= 0) {
+            rule.stateMapping = new int[mappingLength];
+            for (int i = 0; i < mappingLength; i++) {
+                rule.stateMapping[i] = record.getInt();
+            }
+        }
+        int numTokenLists = record.getShort();
+        for (int i = 0; i < numTokenLists; i++) {
+            int numTokens = record.getShort();
+            for (int t = 0; t < numTokens; t++) {
+                rule.addTouchEventToken(i, record.get(), record.get());
+            }
+        }
+        while (rule.touchEventTokens.size() < numTokenLists) {
+            rule.touchEventTokens.add(new ArrayList<PMLRulePattern.TouchEventToken>());
+        }
+        int numMarkers = record.getShort();
+        for (int i = 0; i < numMarkers; i++) {
+            byte kind = record.get();
+            int state = record.getShort();
+            int touchEvent = record.getShort();
+            if (kind == MARKER_STATE)
+                rule.addStateMarker(state);
+            else if (kind == MARKER_TOUCH_EVENT)
+                rule.addTouchEventMarker(state, touchEvent);
+            else
+                throw new FileFormatException("Unknown marker kind of behaviour " + label + ": " + kind);
+        }
+        return rule;
+    }
+
+
+    private int recordOffset(int index) throws FileFormatException {
+        if (index < 0 || index >= this.size)
+            throw new IndexOutOfBoundsException("Behaviour " + index + " of " + this.size);
+        int entry = HEADER_SIZE + index * INDEX_ENTRY_SIZE;
+        int offset = this.buffer.getInt(entry);
+        int length = this.buffer.getInt(entry + 4);
+        if (offset < HEADER_SIZE || length < 2 || (long) offset + length > this.buffer.limit())
+            throw new FileFormatException("Invalid index entry of behaviour " + index);
+        return offset;
+    }
+
+
+    private String readLabel(int offset) throws FileFormatException {
+        int length = this.buffer.getShort(offset) & 0xFFFF;
+        if (offset + 2 + length > this.buffer.limit())
+            throw new FileFormatException("Truncated label at " + offset);
+        byte[] bytes = new byte[length];
+        ByteBuffer label = this.buffer.duplicate();
+        label.position(offset + 2);
+        label.get(bytes);
+        return new String(bytes, UTF8);
+    }
+}
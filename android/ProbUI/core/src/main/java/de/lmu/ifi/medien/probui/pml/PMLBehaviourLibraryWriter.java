@@ -0,0 +1,201 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.pml;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import be.ac.ulg.montefiore.run.jahmm.Hmm;
+import de.lmu.ifi.medien.probui.behaviours.ProbBehaviourTouch;
+import de.lmu.ifi.medien.probui.hmm.ObservationVectorTouch;
+import de.lmu.ifi.medien.probui.hmm.OpdfTouchGaussian;
+import de.lmu.ifi.medien.probui.pml.notifications.AbstractNotificationMarker;
+import de.lmu.ifi.medien.probui.pml.notifications.NotificationMarkerStateReached;
+import de.lmu.ifi.medien.probui.pml.notifications.NotificationMarkerTouchEventReached;
+
+/**
+ * Writes touch behaviours (models and sequence rules) to a library in the format
+ * read by {@link PMLBehaviourLibrary}.
+ */
+public class PMLBehaviourLibraryWriter {
+
+
+    /**
+     * Writes the given behaviours to the given stream (which is not closed).
+     *
+     * @param stream
+     * @param behaviours Behaviours with unique labels and sequence rules (e.g. as created by the PML parser).
+     * @throws IOException
+     */
+    public static void write(OutputStream stream, List<ProbBehaviourTouch> behaviours) throws IOException {
+
+        // 1. Sort by label (for the binary search when reading):
+        List<ProbBehaviourTouch> sorted = new ArrayList<ProbBehaviourTouch>(behaviours);
+        Collections.sort(sorted, new Comparator<ProbBehaviourTouch>() {
+            @Override
+            public int compare(ProbBehaviourTouch a, ProbBehaviourTouch b) {
+                return a.getLabel().compareTo(b.getLabel());
+            }
+        });
+        for (int i = 1; i < sorted.size(); i++) {
+            if (sorted.get(i).getLabel().equals(sorted.get(i - 1).getLabel()))
+                throw new IllegalArgumentException("Duplicate behaviour label: " + sorted.get(i).getLabel());
+        }
+
+        // 2. Encode the records:
+        List<byte[]> records = new ArrayList<byte[]>();
+        for (ProbBehaviourTouch behaviour : sorted) {
+            records.add(encode(behaviour));
+        }
+
+        // 3. Header, index and records:
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(PMLBehaviourLibrary.MAGIC);
+        out.writeShort(PMLBehaviourLibrary.VERSION);
+        out.writeShort(0);
+        out.writeInt(records.size());
+        long offset = PMLBehaviourLibrary.HEADER_SIZE + (long) records.size() * PMLBehaviourLibrary.INDEX_ENTRY_SIZE;
+        for (byte[] record : records) {
+            if (offset + record.length > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("Behaviour library too large");
+            out.writeInt((int) offset);
+            out.writeInt(record.length);
+            offset += record.length;
+        }
+        for (byte[] record : records) {
+            out.write(record);
+        }
+        out.flush();
+    }
+
+
+    private static byte[] encode(ProbBehaviourTouch behaviour) throws IOException {
+
+        PMLRulePattern rule = behaviour.getSequenceRule();
+        if (rule == null)
+            throw new IllegalArgumentException("Behaviour without sequence rule: " + behaviour.getLabel());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        // 1. Label and flags:
+        byte[] label = behaviour.getLabel().getBytes(PMLBehaviourLibrary.UTF8);
+        if (label.length > 0xFFFF)
+            throw new IllegalArgumentException("Label too long: " + behaviour.getLabel());
+        out.writeShort(label.length);
+        out.write(label);
+        float[] relativeOrigin = behaviour.getRelativeOriginFakeState();
+        boolean relative = behaviour.isRelativeGesture() && relativeOrigin != null;
+        out.writeByte(relative ? PMLBehaviourLibrary.FLAG_RELATIVE_GESTURE : 0);
+        if (relative) {
+            out.writeFloat(relativeOrigin[0]);
+            out.writeFloat(relativeOrigin[1]);
+        }
+
+        // 2. States and transitions:
+        Hmm<ObservationVectorTouch> model = behaviour.getModel();
+        int numStates = model.nbStates();
+        if (numStates > Short.MAX_VALUE)
+            throw new IllegalArgumentException("Too many states: " + behaviour.getLabel());
+        out.writeShort(numStates);
+        for (int i = 0; i < numStates; i++) {
+            OpdfTouchGaussian opdf = (OpdfTouchGaussian) model.getOpdf(i);
+            double[] mean = opdf.mean();
+            double[][] covariance = opdf.covariance();
+            out.writeDouble(model.getPi(i));
+            out.writeDouble(mean[0]);
+            out.writeDouble(mean[1]);
+            out.writeDouble(covariance[0][0]);
+            out.writeDouble(covariance[0][1]);
+            out.writeDouble(covariance[1][1]);
+        }
+        for (int i = 0; i < numStates; i++) {
+            for (int j = 0; j < numStates; j++) {
+                out.writeDouble(model.getAij(i, j));
+            }
+        }
+
+        // 3. Sequence rule:
+        writeSequenceRule(out, rule, numStates);
+
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+
+    /**
+     * Writes a sequence rule in the format of the records.
+     *
+     * @param out
+     * @param rule
+     * @param numStates
+     * @throws IOException
+     */
+    static void writeSequenceRule(DataOutputStream out, PMLRulePattern rule, int numStates) throws IOException {
+        for (int i = 0; i < numStates; i++) {
+            out.writeByte(rule.pis[i]);
+        }
+        for (int i = 0; i < numStates; i++) {
+            out.writeByte(rule.ends[i]);
+        }
+        for (int i = 0; i < numStates; i++) {
+            for (int j = 0; j < numStates; j++) {
+                out.writeByte(rule.mT[i][j]);
+            }
+        }
+        if (rule.stateMapping == null) {
+            out.writeShort(-1);
+        } else {
+            out.writeShort(rule.stateMapping.length);
+            for (int m : rule.stateMapping) {
+                out.writeInt(m);
+            }
+        }
+        out.writeShort(rule.touchEventTokens.size());
+        for (List<PMLRulePattern.TouchEventToken> tokens : rule.touchEventTokens) {
+            out.writeShort(tokens.size());
+            for (PMLRulePattern.TouchEventToken token : tokens) {
+                out.writeByte(token.type);
+                out.writeByte(token.modifier);
+            }
+        }
+        out.writeShort(rule.notificationMarkers.size());
+        for (AbstractNotificationMarker marker : rule.notificationMarkers) {
+            if (marker instanceof NotificationMarkerTouchEventReached) {
+                NotificationMarkerTouchEventReached touchEventMarker = (NotificationMarkerTouchEventReached) marker;
+                out.writeByte(PMLBehaviourLibrary.MARKER_TOUCH_EVENT);
+                out.writeShort(touchEventMarker.getStateIndex());
+                out.writeShort(touchEventMarker.getTouchEventIndex());
+            } else if (marker instanceof NotificationMarkerStateReached) {
+                out.writeByte(PMLBehaviourLibrary.MARKER_STATE);
+                out.writeShort(((NotificationMarkerStateReached) marker).getStateIndex());
+                out.writeShort(0);
+            } else {
+                throw new IllegalArgumentException("Unknown marker: " + marker);
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.pml;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimises the state structure of a parsed PML behaviour before its HMM is created.
+ * <p/>
+ * 1. States that cannot be reached from any initial state are removed.
+ * 2. Equivalent states are merged: States are equivalent if they have the same Gaussian,
+ * the same sequence rule properties and the same outgoing transition probabilities into each group
+ * of equivalent states (i.e. the states are "lumpable", so merging them does not change
+ * the likelihood of any observation sequence).
+ * 3. Transitions within a group of merged states are folded into the self-loop of the merged state.
+ * <p/>
+ * The result is a mapping from the parsed state indices to the model state indices,
+ * which is used to create the behaviour's HMM and sequence rule.
+ * Note that merged states count as one state for the "all covered" check of the sequence rule.
+ */
+public class PMLModelOptimiser {
+
+
+    /**
+     * Transition probabilities are compared with this precision.
+     */
+    private static final double PRECISION = 1e9;
+
+
+    /**
+     * Computes the optimised state mapping.
+     *
+     * @param pis         Initial state weights of the parsed states (> 0 if a state can be an initial state).
+     * @param transitions Transition probabilities between the parsed states (before any Laplace correction).
+     * @param means       State means.
+     * @param variances   State variances (i.e. the diagonals of the covariance matrices).
+     * @param keys        Description of the sequence rule properties of each state (e.g. end state, touch events).
+     *                    States are only merged if their keys are equal. If a key is null,
+     *                    the state is kept as it is (e.g. since it has a notification marker).
+     * @return For each parsed state the index of its model state, or -1 if it was removed.
+     * States keep their order, so that the mapping is the identity if nothing could be optimised.
+     */
+    public static int[] optimise(double[] pis, double[][] transitions,
+                                 double[][] means, double[][] variances, String[] keys) {
+
+        int numStates = pis.length;
+
+        // 1. Find reachable states:
+        boolean[] reachable = new boolean[numStates];
+        LinkedList<Integer> queue = new LinkedList<Integer>();
+        for (int i = 0; i < numStates; i++) {
+            if (pis[i] > 0 || keys[i] == null) {
+                reachable[i] = true;
+                queue.add(i);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int i = queue.removeFirst();
+            for (int j = 0; j < numStates; j++) {
+                if (transitions[i][j] > 0 && !reachable[j]) {
+                    reachable[j] = true;
+                    queue.add(j);
+                }
+            }
+        }
+
+        // 2. Initial grouping by Gaussians and sequence rule properties:
+        int[] blocks = new int[numStates];
+        Map<String, Integer> blockIds = new HashMap<String, Integer>();
+        for (int i = 0; i < numStates; i++) {
+            if (!reachable[i]) {
+                blocks[i] = -1;
+                continue;
+            }
+            String signature = keys[i] == null ? "fixed" + i
+                    : keys[i] + "|" + (pis[i] > 0) + "|" + Arrays.toString(means[i])
+                    + "|" + Arrays.toString(variances[i]);
+            blocks[i] = getBlockId(blockIds, signature);
+        }
+        int numBlocks = blockIds.size();
+
+        // 3. Refine the groups until all states in a group have the same outgoing transitions:
+        while (true) {
+            blockIds.clear();
+            int[] refined = new int[numStates];
+            for (int i = 0; i < numStates; i++) {
+                if (blocks[i] < 0) {
+                    refined[i] = -1;
+                    continue;
+                }
+                double[] blockWeights = new double[numBlocks];
+                for (int j = 0; j < numStates; j++) {
+                    if (blocks[j] >= 0)
+                        blockWeights[blocks[j]] += transitions[i][j];
+                }
+                StringBuilder signature = new StringBuilder();
+                signature.append(blocks[i]);
+                for (int b = 0; b < numBlocks; b++) {
+                    if (blockWeights[b] > 0)
+                        signature.append(';').append(b).append(':').append(Math.round(blockWeights[b] * PRECISION));
+                }
+                refined[i] = getBlockId(blockIds, signature.toString());
+            }
+            blocks = refined;
+            if (blockIds.size() == numBlocks)
+                break;
+            numBlocks = blockIds.size();
+        }
+
+        // 4. Number the model states in order of the parsed states:
+        int[] mapping = new int[numStates];
+        List<Integer> blockOrder = new ArrayList<Integer>();
+        for (int i = 0; i < numStates; i++) {
+            if (blocks[i] < 0) {
+                mapping[i] = -1;
+                continue;
+            }
+            int index = blockOrder.indexOf(blocks[i]);
+            if (index < 0) {
+                index = blockOrder.size();
+                blockOrder.add(blocks[i]);
+            }
+            mapping[i] = index;
+        }
+        return mapping;
+    }
+
+
+    /**
+     * Returns the number of model states of the given mapping.
+     *
+     * @param mapping
+     * @return
+     */
+    public static int getNumStates(int[] mapping) {
+        int max = -1;
+        for (int m : mapping)
+            max = Math.max(max, m);
+        return max + 1;
+    }
+
+
+    private static int getBlockId(Map<String, Integer> blockIds, String signature) {
+        Integer id = blockIds.get(signature);
+        if (id == null) {
+            id = blockIds.size();
+            blockIds.put(signature, id);
+        }
+        return id;
+    }
+}
@@ -19,8 +19,6 @@ along with this program. If not, see <http://www.gnu.org/licenses/>.
 
 package de.lmu.ifi.medien.probui.pml;
 
-import android.util.Log;
-
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -28,6 +26,7 @@ import java.util.Map;
 
 import de.lmu.ifi.medien.probui.behaviours.ProbBehaviourTouch;
 import de.lmu.ifi.medien.probui.observations.ProbObservationTouch;
+import de.lmu.ifi.medien.probui.system.ProbLog;
 
 /**
  * A parser for creating touch behaviours from statements written in PML (ProbUI Modelling Language).
@@ -167,6 +166,11 @@ public class PMLParserTouchImpl implements PMLParserTouch {
      */
     private float displayDensity;
 
+    /**
+     * Whether the state structure is optimised (see PMLModelOptimiser).
+     */
+    private boolean optimiseStates = true;
+
     /**
      * Constructor.
      *
@@ -186,6 +190,33 @@ public class PMLParserTouchImpl implements PMLParserTouch {
     }
 
 
+    /**
+     * Sets whether the parsed state structure is optimised before the behaviour's model is created
+     * (see PMLModelOptimiser). This is the default; without it, the model has one state per parsed state
+     * (e.g. to compare the likelihoods of both models).
+     *
+     * @param optimiseStates
+     */
+    public void setOptimiseStates(boolean optimiseStates) {
+        this.optimiseStates = optimiseStates;
+    }
+
+
+    /**
+     * Returns the label of the given statement without parsing it
+     * (e.g. "mylabel" for "mylabel: N->S"), as set by the parser.
+     *
+     * @param pmlStatement
+     * @return The label, or null if the statement has none.
+     */
+    public static String parseLabel(String pmlStatement) {
+        int separator = pmlStatement.indexOf(PMLTokens.BEHAVIOUR_LABEL_SEPARATOR);
+        if (separator < 0)
+            return null;
+        return pmlStatement.substring(0, separator).replace(" ", "");
+    }
+
+
     @Override
     public ProbBehaviourTouch parse(String pmlStatement,
                                     double x, double y,
@@ -205,6 +236,7 @@ public class PMLParserTouchImpl implements PMLParserTouch {
         lastToken = "";
         String currentTokenConsumeSafe;
         char currentChar;
+        int labelEnd = pmlStatement.indexOf(PMLTokens.BEHAVIOUR_LABEL_SEPARATOR);
         for (int i = 0; i < pmlStatement.length(); i++) {
             currentChar = pmlStatement.charAt(i);
 
@@ -212,9 +244,14 @@ public class PMLParserTouchImpl implements PMLParserTouch {
             if (currentChar != ' ') { // ignore spaces:
                 currentToken += currentChar;
             }
+
+            // the label is taken as it is (e.g. the "z" in "zoom: C->Z" is not a state token),
+            // so that it matches parseLabel():
+            if (i < labelEnd)
+                continue;
             currentTokenConsumeSafe = currentToken;
 
-            Log.d("PML", "parser iteration " + i + ": " + currentChar + ", " + currentToken);
+            ProbLog.d("PML", "parser iteration " + i + ": " + currentChar + ", " + currentToken);
 
             // -------------------------------------------------------------------------------------
             // BEHAVIOUR_LABEL : set the label for the behaviour
@@ -358,7 +395,7 @@ public class PMLParserTouchImpl implements PMLParserTouch {
             commitCurrentState();
         }
 
-        Log.d("PML", "num states parsed: " + this.statesList.size());
+        ProbLog.d("PML", "num states parsed: " + this.statesList.size());
 
         // Sets list of outgoing transitions for each state and calculates transition probabilities
         // from the transition weights:
@@ -478,29 +515,86 @@ public class PMLParserTouchImpl implements PMLParserTouch {
         */
 
 
-        ProbBehaviourTouch behaviour = new ProbBehaviourTouch(this.behaviourLabel, this.statesList.size());
-
-
         // 1. Set initial state probabilities
         setInitialStateProbabilities();
 
-        // 2. Check for any end states and setup sequence rule:
-        this.sequenceRule.pis = new int[this.statesList.size()];
-        this.sequenceRule.ends = new int[this.statesList.size()];
-        this.sequenceRule.touchEventTokens.clear();
+        // 2. Check for any end states:
+        int numParsedStates = this.statesList.size();
+        boolean[] parsedEnds = new boolean[numParsedStates];
         boolean anyEndStates = false;
-        for (ParsedState ps : this.statesMap.values()) {
-            // see if we can find an end state:
+        for (ParsedState ps : this.statesList) {
+            parsedEnds[ps.index] = ps.endState;
             anyEndStates = anyEndStates || ps.endState;
+        }
+        // if no end states at all (i.e. no "." used), make the last state an end state:
+        if (!anyEndStates) {
+            parsedEnds[numParsedStates - 1] = true;
+
+            // if also only two-way transitions, set first state as end state as well:
+            if (this.onlyTwoWayTransitions)
+                parsedEnds[0] = true;
+        }
+
+        // 3. Optimise the state structure (see PMLModelOptimiser):
+        double[][] parsedTransitions = new double[numParsedStates][numParsedStates];
+        for (ParsedTransition pt : this.transitions) {
+            parsedTransitions[pt.from][pt.to] = pt.weight;
+        }
+        int[] stateMapping = optimiseStates(parsedEnds, parsedTransitions);
+        int numStates = PMLModelOptimiser.getNumStates(stateMapping);
+        ParsedState[] modelStates = new ParsedState[numStates]; // first parsed state of each model state
+        boolean[] initialStates = new boolean[numStates];
+        for (ParsedState ps : this.statesList) {
+            int m = stateMapping[ps.index];
+            if (m < 0)
+                continue;
+            if (modelStates[m] == null)
+                modelStates[m] = ps;
+            initialStates[m] |= ps.pi > 0;
+        }
+
+        // The Laplace correction is applied to the parsed states, before merging them, so that the merged
+        // model has the same likelihoods as the parsed one (only removed unreachable states lose their share):
+        double[] parsedPis = new double[numParsedStates];
+        double[][] correctedTransitions = new double[numParsedStates][];
+        for (ParsedState ps : this.statesList) {
+            parsedPis[ps.index] = ps.pi;
+            correctedTransitions[ps.index] = parsedTransitions[ps.index].clone();
+        }
+        applyLaplaceCorrectionToInitialStateProbs(parsedPis);
+        //this also normalises the pis, which until this point are weights, not probabilities
+        applyLaplaceCorrectionToTransitionMatrix(correctedTransitions);
+        double[] pis = new double[numStates];
+        for (int i = 0; i < numParsedStates; i++) {
+            if (stateMapping[i] >= 0)
+                pis[stateMapping[i]] += parsedPis[i];
+        }
+        normalise(pis);
+        ProbLog.d("PML", "num states after optimisation: " + numStates);
+
+
+        ProbBehaviourTouch behaviour = new ProbBehaviourTouch(this.behaviourLabel, numStates);
+
+
+        // 4. Setup sequence rule:
+        this.sequenceRule.pis = new int[numStates];
+        this.sequenceRule.ends = new int[numStates];
+        this.sequenceRule.touchEventTokens.clear();
+        this.sequenceRule.stateMapping = stateMapping;
+        for (ParsedState ps : this.statesMap.values()) {
+            int m = stateMapping[ps.index];
+            // skip removed states and further states merged into the same model state:
+            if (m < 0 || modelStates[m] != ps)
+                continue;
 
             // Add a notification marker if one was parsed for this state:
             if (ps.notificationMarker != null) {
-                this.sequenceRule.addStateMarker(ps.index);
+                this.sequenceRule.addStateMarker(m);
             }
 
             // sequence rule stuff:
-            this.sequenceRule.pis[ps.index] = ps.pi > 0 ? 1 : 0;
-            this.sequenceRule.ends[ps.index] = ps.endState ? 1 : 0;
+            this.sequenceRule.pis[m] = initialStates[m] ? 1 : 0;
+            this.sequenceRule.ends[m] = parsedEnds[ps.index] ? 1 : 0;
             int teIndex = 0;
             for (ParsedRequiredTouchEvent te : ps.requiredTouchEvents) {
                 int type = ProbObservationTouch.TYPE_TOUCH_DOWN;
@@ -513,56 +607,51 @@ public class PMLParserTouchImpl implements PMLParserTouch {
                     modifier = PMLRulePattern.TOUCH_EVENT_TOKEN_MODIFIER_MIN_ONE;
                 else if (te.modifier.equals(PMLTokens.STATE_TOUCH_EVENT_MOD_ZERO_OR_MORE))
                     modifier = PMLRulePattern.TOUCH_EVENT_TOKEN_MODIFIER_ZERO_OR_MORE;
-                this.sequenceRule.addTouchEventToken(ps.index, type, modifier);
+                this.sequenceRule.addTouchEventToken(m, type, modifier);
 
                 // Add a notification marker if one was parsed for this touch event:
                 if (te.notificationMarker != null) {
-                    this.sequenceRule.addTouchEventMarker(ps.index, teIndex);
+                    this.sequenceRule.addTouchEventMarker(m, teIndex);
                 }
                 teIndex++;
             }
         }
-        // if no end states at all (i.e. no "." used), make the last state an end state:
-        if (!anyEndStates) {
-            this.sequenceRule.ends[this.sequenceRule.ends.length - 1] = 1;
-
-            // if also only two-way transitions, set first state as end state as well:
-            if (this.onlyTwoWayTransitions)
-                this.sequenceRule.ends[0] = 1;
-        }
-
-
-        applyLaplaceCorrectionToInitialStateProbs();
-        //this also normalises the pis, which until this point are weights, not probabilities
 
 
-        // 2. Create states:
-        for (ParsedState ps : this.statesMap.values()) {
+        // 5. Create states:
+        for (int m = 0; m < numStates; m++) {
+            ParsedState ps = modelStates[m];
             double[] mean = {ps.cx / screenWidth, ps.cy / screenHeight};
             double[][] mCov = {{Math.pow(ps.w / screenWidth / 4, 2), 0}, {0, Math.pow(ps.h / screenHeight / 4, 2)}};
-            behaviour.setState(ps.index, mean, mCov, ps.pi);
+            behaviour.setState(m, mean, mCov, pis[m]);
         }
 
 
-        // 3. Create transitions:
-        this.sequenceRule.mT = new int[this.statesList.size()][this.statesList.size()];
-        double[][] transitions = new double[this.statesList.size()][this.statesList.size()];
-        for (ParsedTransition pt : this.transitions) {
-            transitions[pt.from][pt.to] = pt.weight;
-            this.sequenceRule.mT[pt.from][pt.to] = pt.weight > 0 ? 1 : 0;
+        // 6. Create transitions (transitions within merged states are folded into their self-loops):
+        this.sequenceRule.mT = new int[numStates][numStates];
+        double[][] transitions = new double[numStates][numStates];
+        for (int m = 0; m < numStates; m++) {
+            int from = modelStates[m].index;
+            for (int to = 0; to < numParsedStates; to++) {
+                if (stateMapping[to] >= 0) {
+                    transitions[m][stateMapping[to]] += correctedTransitions[from][to];
+                    if (parsedTransitions[from][to] > 0)
+                        this.sequenceRule.mT[m][stateMapping[to]] = 1;
+                }
+            }
+            normalise(transitions[m]);
         }
-        applyLaplaceCorrectionToTransitionMatrix(transitions);
         behaviour.setTransitions(transitions);
 
 
-        // 4. Set accepted pointer IDs:
+        // 7. Set accepted pointer IDs:
         behaviour.setAcceptedPointerIDs(0, 1); //TODO: should this be settable in PML? How?
 
 
-        // 5. Create the sequence rule:
+        // 8. Create the sequence rule:
         behaviour.setSequenceRule(this.sequenceRule);
 
-        // 6. Set as relative if defined as such:
+        // 9. Set as relative if defined as such:
         behaviour.setRelativeGesture(this.relativeGesture);
         if (this.relativeGesture) {
             float[] fakeState = {(float) ((interactorX + interactorW / 2f) / screenWidth),
@@ -573,6 +662,47 @@ public class PMLParserTouchImpl implements PMLParserTouch {
         return behaviour;
     }
 
+
+    /**
+     * Computes which parsed states are kept, merged or removed in the behaviour's model.
+     *
+     * @param parsedEnds        end state flags of the parsed states
+     * @param parsedTransitions transition probabilities between the parsed states
+     * @return for each parsed state the index of its model state, or -1 if it was removed
+     */
+    private int[] optimiseStates(boolean[] parsedEnds, double[][] parsedTransitions) {
+
+        int numParsedStates = this.statesList.size();
+        if (!this.optimiseStates) {
+            int[] identity = new int[numParsedStates];
+            for (int i = 0; i < numParsedStates; i++) {
+                identity[i] = i;
+            }
+            return identity;
+        }
+        double[] pis = new double[numParsedStates];
+        double[][] means = new double[numParsedStates][];
+        double[][] variances = new double[numParsedStates][];
+        String[] keys = new String[numParsedStates];
+        for (ParsedState ps : this.statesList) {
+            pis[ps.index] = ps.pi;
+            means[ps.index] = new double[]{ps.cx, ps.cy};
+            variances[ps.index] = new double[]{ps.w, ps.h};
+
+            // States with notification markers are always kept as they are.
+            // States with required touch events are not merged, since the sequence rule
+            // checks these events per visit of a state:
+            if (ps.notificationMarker != null)
+                keys[ps.index] = null;
+            else if (!ps.requiredTouchEvents.isEmpty())
+                keys[ps.index] = "touch_events_of_state_" + ps.index;
+            else
+                keys[ps.index] = "end=" + parsedEnds[ps.index];
+        }
+        return PMLModelOptimiser.optimise(pis, parsedTransitions, means, variances, keys);
+    }
+
+
     /**
      * Applies a Laplace corretion to the state transitions. See the paper for more details.
      *
@@ -592,6 +722,17 @@ public class PMLParserTouchImpl implements PMLParserTouch {
     }
 
 
+    private static void normalise(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        for (int i = 0; i < values.length; i++) {
+            values[i] /= sum;
+        }
+    }
+
+
     /**
      * Sets the state location and size variables to
      * the initial location (GUI element visual centre)
@@ -675,7 +816,7 @@ public class PMLParserTouchImpl implements PMLParserTouch {
                     ps.h = pp.numericValue * this.displayDensity;
                 }
             }
-            /*Log.d("RELATIVE GAUDI", this.currentStateName + ", " + this.currentStateName.equals(PMLTokens.STATE_LOCATION_RELATIVE_ORIGIN));
+            /*ProbLog.d("RELATIVE GAUDI", this.currentStateName + ", " + this.currentStateName.equals(PMLTokens.STATE_LOCATION_RELATIVE_ORIGIN));
             // Special stuff for relative origin state -> scale "interactor" to the given size:
             if (this.currentStateName.startsWith(PMLTokens.STATE_LOCATION_RELATIVE_ORIGIN)) {
                 this.interactorW = ps.w;
@@ -693,7 +834,7 @@ public class PMLParserTouchImpl implements PMLParserTouch {
 
             // Add a notification marker if one was parsed for this state:
             if (this.currentNotificationMarkerState != null) {
-                Log.d("PML", "added a notification marker to state: " + ps.index);
+                ProbLog.d("PML", "added a notification marker to state: " + ps.index);
                 ps.setNotificationMarker(this.currentNotificationMarkerState);
                 this.currentNotificationMarkerState = null;
             }
@@ -757,7 +898,7 @@ public class PMLParserTouchImpl implements PMLParserTouch {
         //Store the param:
         this.stateParams.add(pp);
 
-        Log.d("RELATIVE", this.currentStateName + ", " + this.currentStateName.equals(PMLTokens.STATE_LOCATION_RELATIVE_ORIGIN));
+        ProbLog.d("RELATIVE", this.currentStateName + ", " + this.currentStateName.equals(PMLTokens.STATE_LOCATION_RELATIVE_ORIGIN));
         // Special stuff for relative origin state -> scale "interactor" to the given size:
         if (this.currentStateName.equals(PMLTokens.STATE_LOCATION_RELATIVE_ORIGIN)) {
             if (paramType.equals(PMLTokens.STATE_DETAILS_SIZE_W))
@@ -888,15 +1029,17 @@ public class PMLParserTouchImpl implements PMLParserTouch {
      * This is needed, otherwise it will not be possible for the model to output anything but
      * one hypothesis (i.e. the same starting state, if only one starting state is possible),
      * even if that hypothesis is very unlikely.
+     *
+     * @param pis the initial state weights to which the Laplace correction is applied
      */
-    private void applyLaplaceCorrectionToInitialStateProbs() {
+    private void applyLaplaceCorrectionToInitialStateProbs(double[] pis) {
         double piSum = 0;
-        for (ParsedState ps : this.statesList) {
-            ps.pi += LAPLACE_CORRECTION_FACTOR;
-            piSum += ps.pi;
+        for (int i = 0; i < pis.length; i++) {
+            pis[i] += LAPLACE_CORRECTION_FACTOR;
+            piSum += pis[i];
         }
-        for (ParsedState ps : this.statesList) {
-            ps.pi /= piSum;
+        for (int i = 0; i < pis.length; i++) {
+            pis[i] /= piSum;
         }
     }
 
@@ -1091,7 +1234,7 @@ public class PMLParserTouchImpl implements PMLParserTouch {
         public ParsedParam(String type, double numericValue) {
             this.type = type;
             this.numericValue = numericValue;
-            Log.d("PML", "created a ParsedParam object with type: " + type + " and value: " + numericValue);
+            ProbLog.d("PML", "created a ParsedParam object with type: " + type + " and value: " + numericValue);
             //this.stringValue = null;
         }
         /*public ParsedParam(String type, String stringValue){
@@ -19,10 +19,8 @@ along with this program. If not, see <http://www.gnu.org/licenses/>.
 
 package de.lmu.ifi.medien.probui.pml;
 
-import android.support.annotation.NonNull;
-import android.util.Log;
-
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -40,8 +38,10 @@ import de.lmu.ifi.medien.probui.pml.rules.PMLRuleQualifierNumFingers;
 import de.lmu.ifi.medien.probui.pml.rules.PMLRuleQualifierTimeTaken;
 import de.lmu.ifi.medien.probui.pml.rules.PMLRuleQualifierTouchPressure;
 import de.lmu.ifi.medien.probui.pml.rules.PMLRuleQualifierTouchSize;
+import de.lmu.ifi.medien.probui.pml.rules.PMLRuleReference;
 import de.lmu.ifi.medien.probui.pml.rules.PMLRuleSet;
 import de.lmu.ifi.medien.probui.pml.rules.PMLRuleUnary;
+import de.lmu.ifi.medien.probui.system.ProbLog;
 
 
 public class PMLRuleParserImpl implements PMLRuleParser {
@@ -51,13 +51,34 @@ public class PMLRuleParserImpl implements PMLRuleParser {
     private Map<String, ProbBehaviour> behaviourMap;
     private String ruleLabel;
 
+    /**
+     * If true, the parser creates a rule template (see PMLRuleTemplate):
+     * Identifiers of unknown rules are kept as references, the behaviour identifiers used by
+     * the behaviour rules are recorded, and the root rule keeps its generated label.
+     */
+    private boolean templateMode;
+    private Map<PMLRule, String> behaviourIdentifiers;
+
+    /**
+     * False if the parsed statement cannot be expressed as a template (see isTemplatable()).
+     */
+    private boolean templatable = true;
+
 
     private int debug_counter;
 
 
     public PMLRuleParserImpl(PMLRuleSet ruleset, Map<String, ProbBehaviour> behaviourMap) {
+        this(ruleset, behaviourMap, false);
+    }
+
+
+    public PMLRuleParserImpl(PMLRuleSet ruleset, Map<String, ProbBehaviour> behaviourMap,
+                             boolean templateMode) {
         this.ruleset = ruleset;
         this.behaviourMap = behaviourMap;
+        this.templateMode = templateMode;
+        this.behaviourIdentifiers = new IdentityHashMap<PMLRule, String>();
     }
 
 
@@ -74,12 +95,13 @@ public class PMLRuleParserImpl implements PMLRuleParser {
         parseRuleLabel(tokens);
 
         for (ParsedToken token : tokens) {
-            Log.d("PML RULE PARSER", token.value + ", " + token.type);
+            ProbLog.d("PML RULE PARSER", token.value + ", " + token.type);
         }
 
         // 4. Parse rule:
         PMLRule rootRule = recursiveTreeParse(tokens, 0, tokens.size());
-        rootRule.label = this.ruleLabel;
+        if (!this.templateMode)
+            rootRule.label = this.ruleLabel;
         this.ruleset.addRule(this.ruleLabel, rootRule);
 
         return rootRule;
@@ -88,11 +110,10 @@ public class PMLRuleParserImpl implements PMLRuleParser {
     private void parseRuleLabel(List<ParsedToken> tokens) {
         if (tokens.get(0).type == ParsedToken.TOKEN_TYPE_LABEL) {
             this.ruleLabel = tokens.remove(0).value.replace(PMLTokens.RULE_LABEL_SEPARATOR, ""); // remove and store label
-            Log.d("PML RULE PARSER", "parsed label: " + this.ruleLabel);
+            ProbLog.d("PML RULE PARSER", "parsed label: " + this.ruleLabel);
         }
     }
 
-    @NonNull
     private List<ParsedToken> createTokens(String pmlStatement) {
         String[] parts = pmlStatement.split(" ");
         List<ParsedToken> tokens = new ArrayList<ParsedToken>();
@@ -107,7 +128,6 @@ public class PMLRuleParserImpl implements PMLRuleParser {
         return tokens;
     }
 
-    @NonNull
     private String preprocessStatement(String pmlStatement) {
         pmlStatement = pmlStatement.replaceAll("\\s*\\(\\s*", " ( "); // ensure whitespace around opening brackets
         pmlStatement = pmlStatement.replaceAll("\\s*\\)\\s*", " ) "); // ensure whitespace around closing brackets
@@ -126,7 +146,7 @@ public class PMLRuleParserImpl implements PMLRuleParser {
     private PMLRule recursiveTreeParse(List<ParsedToken> tokens, int start, int end) {
 
 
-        Log.d("PML RULE PARSER", "recursiveTreeParse -> # tokens: " + tokens.size()
+        ProbLog.d("PML RULE PARSER", "recursiveTreeParse -> # tokens: " + tokens.size()
                 + ", start: " + start + ", end: " + end);
 
 
@@ -154,7 +174,10 @@ public class PMLRuleParserImpl implements PMLRuleParser {
         // 3. Handle single identifier
         // This is a termination case of the recursion, so no recursive calls in here.
         if (end - start == 1 && tokens.get(start).type == ParsedToken.TOKEN_TYPE_IDENTIFIER) {
-            return this.ruleset.getRule(tokens.get(start).value);
+            PMLRule rule = this.ruleset.getRule(tokens.get(start).value);
+            if (rule == null && this.templateMode)
+                rule = new PMLRuleReference(tokens.get(start).value);
+            return rule;
         }
 
 
@@ -228,7 +251,7 @@ public class PMLRuleParserImpl implements PMLRuleParser {
             }
         }
 
-        Log.d("PML RULE PARSER", "recursiveTreeParse -> recStartLeft: " + recStartLeft
+        ProbLog.d("PML RULE PARSER", "recursiveTreeParse -> recStartLeft: " + recStartLeft
                 + ", recEndLeft: " + recEndLeft + ", recStartRight: " + recStartRight + ", end: " + end);
 
         // Recursion: parse left part of tree:
@@ -268,7 +291,7 @@ public class PMLRuleParserImpl implements PMLRuleParser {
     private PMLRule createQualifierRule(String qualifier, String value, String unit, PMLRule subrule) {
 
 
-        Log.d("PML RULE PARSER", "createQualifierRule: " + qualifier + ", " + value + ", " + unit + ", " + subrule.label);
+        ProbLog.d("PML RULE PARSER", "createQualifierRule: " + qualifier + ", " + value + ", " + unit + ", " + subrule.label);
 
 
         // Create a label: [operator]_[name]
@@ -280,6 +303,14 @@ public class PMLRuleParserImpl implements PMLRuleParser {
         if(ruleset.getRule(label)!=null)
             return ruleset.getRule(label);
 
+        // The type of referenced rules is not known in a template, so the statement cannot be a template
+        // (the reference is returned as a placeholder, the parsed rule is discarded anyway):
+        if (subrule instanceof PMLRuleReference) {
+            ProbLog.d("PML RULE PARSER", "qualifier on referenced rule, not templatable: " + subrule.label);
+            this.templatable = false;
+            return subrule;
+        }
+
         // Is it a "time taken" rule?
         if (qualifier.equals(PMLTokens.RULE_QUALIFIER_TIME_TAKEN)) {
 
@@ -385,7 +416,7 @@ public class PMLRuleParserImpl implements PMLRuleParser {
         // Store the new rule under the generated label:
         this.ruleset.addRule(rule.label, rule);
 
-        Log.d("PML RULE PARSER", "createBinaryOperatorRule: " + operator + ", " + subrule + ", " + subrule2 + ", " + rule.label);
+        ProbLog.d("PML RULE PARSER", "createBinaryOperatorRule: " + operator + ", " + subrule + ", " + subrule2 + ", " + rule.label);
 
         return rule;
     }
@@ -412,8 +443,9 @@ public class PMLRuleParserImpl implements PMLRuleParser {
                 rule = new PMLRuleBehaviourIsMostLikely(this.behaviourMap.get(identifier), label);
         }
         this.ruleset.addRule(label, rule);
+        this.behaviourIdentifiers.put(rule, identifier);
 
-        Log.d("PML RULE PARSER", "createEventRule: " + identifier + ", " + operator + ", " + event + ", " + rule.label);
+        ProbLog.d("PML RULE PARSER", "createEventRule: " + identifier + ", " + operator + ", " + event + ", " + rule.label);
         return rule;
     }
 
@@ -423,7 +455,7 @@ public class PMLRuleParserImpl implements PMLRuleParser {
         if (end - start >= 3 && tokens.get(start).type == ParsedToken.TOKEN_TYPE_BRACKET_OPEN
                 && tokens.get(end - 1).type == ParsedToken.TOKEN_TYPE_BRACKET_CLOSE) {
 
-            //Log.d("PML RULE PARSER", "checkIfSurroundedByPairOfBrackets -> start: " + start + ", end: " + end);
+            //ProbLog.d("PML RULE PARSER", "checkIfSurroundedByPairOfBrackets -> start: " + start + ", end: " + end);
 
             // We need to check if the two outermost brackets actually are one pair
             // e.g. "(...)" and not something like "(...)...(...)"
@@ -516,6 +548,29 @@ public class PMLRuleParserImpl implements PMLRuleParser {
     }
 
 
+    /**
+     * Returns whether the parsed statement can be expressed as a rule template
+     * (only relevant in template mode): Qualifiers on rules referenced by their label are not supported,
+     * since the type of the referenced rule is not known in a template.
+     *
+     * @return
+     */
+    public boolean isTemplatable() {
+        return this.templatable;
+    }
+
+
+    /**
+     * Returns the identifier of the behaviour used by the given (parsed) behaviour rule.
+     *
+     * @param rule
+     * @return
+     */
+    public String getBehaviourIdentifier(PMLRule rule) {
+        return this.behaviourIdentifiers.get(rule);
+    }
+
+
     private class ParsedToken {
 
         public static final int TOKEN_TYPE_UNARY_OPERATOR = 8;
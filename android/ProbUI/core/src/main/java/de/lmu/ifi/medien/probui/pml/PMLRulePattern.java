@@ -42,6 +42,13 @@ public class PMLRulePattern {
     public int[] pis;
     public int[] ends;
 
+    /**
+     * Maps the index of each parsed state to the index of its state in the behaviour's model
+     * (-1 if the state was removed). See PMLModelOptimiser.
+     * Set by the parser and the behaviour library only.
+     */
+    int[] stateMapping;
+
     //TODO: just counting will only be enough as long as we only have touch up and down.
     // Otherwise, we might need a list per state to store them in order.
     //public int[] touchDownCounts;
@@ -71,6 +78,15 @@ public class PMLRulePattern {
     }
 
 
+    /**
+     * @return For each parsed state the index of its state in the behaviour's model, or -1 if it was removed
+     * (null if unknown, e.g. for sequence rules created without the parser).
+     */
+    public int[] getStateMapping() {
+        return this.stateMapping;
+    }
+
+
     public List<TouchEventToken> getTouchEventTokens(int stateIndex) {
 
         if (stateIndex < this.touchEventTokens.size())
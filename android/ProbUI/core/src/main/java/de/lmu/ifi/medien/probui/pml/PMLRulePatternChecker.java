@@ -19,13 +19,12 @@ along with this program. If not, see <http://www.gnu.org/licenses/>.
 
 package de.lmu.ifi.medien.probui.pml;
 
-import android.util.Log;
-
 import java.util.List;
 
 import de.lmu.ifi.medien.probui.observations.ProbObservationTouch;
 import de.lmu.ifi.medien.probui.pml.notifications.NotificationMarkerStateReached;
 import de.lmu.ifi.medien.probui.pml.notifications.NotificationMarkerTouchEventReached;
+import de.lmu.ifi.medien.probui.system.ProbLog;
 
 
 public class PMLRulePatternChecker {
@@ -40,17 +39,19 @@ public class PMLRulePatternChecker {
             return null;
 
 
-        String debug_str = "";
-        for (int i = 0; i < stateSequence.length; i++) {
-            debug_str += stateSequence[i] + ", ";
-        }
-        Log.d("PML RULEBOOK", "stateSequence in PMLRulePatternChecker.checkRulePattern: " + debug_str);
+        if (ProbLog.isLoggable("PML RULEBOOK", ProbLog.DEBUG)) { // skip building the strings otherwise
+            String debug_str = "";
+            for (int i = 0; i < stateSequence.length; i++) {
+                debug_str += stateSequence[i] + ", ";
+            }
+            ProbLog.d("PML RULEBOOK", "stateSequence in PMLRulePatternChecker.checkRulePattern: " + debug_str);
 
-        debug_str = "";
-        for (int i = 0; i < sequenceRule.pis.length; i++) {
-            debug_str += sequenceRule.pis[i] + ", ";
+            debug_str = "";
+            for (int i = 0; i < sequenceRule.pis.length; i++) {
+                debug_str += sequenceRule.pis[i] + ", ";
+            }
+            ProbLog.d("PML RULEBOOK", "sequenceRule.pis.length in PMLRulePatternChecker.checkRulePattern: " + debug_str);
         }
-        Log.d("PML RULEBOOK", "sequenceRule.pis.length in PMLRulePatternChecker.checkRulePattern: " + debug_str);
 
 
         PMLRulePatternResult result = new PMLRulePatternResult();
@@ -90,7 +91,7 @@ public class PMLRulePatternChecker {
 
             // if first state already breaks the sequence:
             /*if (i == 0 && sequenceRule.pis[nextState] == 0) {
-                //Log.d("PML RULEBOOK", "started in state with pi=0 -->  result.setSequenceBroken(true)");
+                //ProbLog.d("PML RULEBOOK", "started in state with pi=0 -->  result.setSequenceBroken(true)");
                 result.setSequenceBroken(true);
             }*/
 
@@ -103,7 +104,7 @@ public class PMLRulePatternChecker {
             }
             // else - invalid transition:
             else if (i > 0 || i == 0 && sequenceRule.pis[nextState] == 0) {
-                Log.d("PML RULEBOOK", "invalid transition -->  result.setSequenceBroken(true); result.setAllCovered(false)");
+                ProbLog.d("PML RULEBOOK", "invalid transition -->  result.setSequenceBroken(true); result.setAllCovered(false)");
                 result.setSequenceBroken(true);
                 result.setAllCovered(false); // if the move broke the pattern, then it cannot be currently covered
                 resetCover(cover); // and so we have to reset the current cover state
@@ -117,7 +118,7 @@ public class PMLRulePatternChecker {
         boolean touchEventPatternOK = checkTouchEventPattern(stateStartPointer, stateSequence.length,
                 stateSequenceTypes, sequenceRule.getTouchEventTokens(currentState),
                 sequenceRule.getTouchEventReachedMarkers(currentState), true /* isFinalStateInSequence */);
-        //Log.d("PML RULEBOOK", "checkRulePattern --> final touchEventPatternOK: " + touchEventPatternOK);
+        //ProbLog.d("PML RULEBOOK", "checkRulePattern --> final touchEventPatternOK: " + touchEventPatternOK);
         if (touchEventPatternOK) {
             cover[currentState]++;
         }
@@ -173,7 +174,7 @@ public class PMLRulePatternChecker {
             else
                 stateReachedMarker.setReached(false);
 
-            Log.d("PML RULEBOOK", "checkRulePattern --> stateReachedMarker.getStateIndex() == result.getFinalState(): "
+            ProbLog.d("PML RULEBOOK", "checkRulePattern --> stateReachedMarker.getStateIndex() == result.getFinalState(): "
                     + stateReachedMarker.getStateIndex() + " ==? " + result.getFinalState());
             if (stateReachedMarker.getStateIndex() == result.getFinalState() // is marker for currently final state
                     && reachedCover[stateReachedMarker.getStateIndex()] > 0 // this state is reached
@@ -184,17 +185,19 @@ public class PMLRulePatternChecker {
         }
 
 
-        String cover_str = "";
-        String reached_cover_str = "";
-        for (int i = 0; i < cover.length; i++) {
-            cover_str += cover[i] + ", ";
-            reached_cover_str += reachedCover[i] + ", ";
+        if (ProbLog.isLoggable("PML RULEBOOK", ProbLog.DEBUG)) {
+            String cover_str = "";
+            String reached_cover_str = "";
+            for (int i = 0; i < cover.length; i++) {
+                cover_str += cover[i] + ", ";
+                reached_cover_str += reachedCover[i] + ", ";
+            }
+            ProbLog.d("PML RULEBOOK", "checkRulePattern --> final cover array: " + cover_str);
+            ProbLog.d("PML RULEBOOK", "checkRulePattern --> final reached_cover array: " + reached_cover_str);
+            ProbLog.d("PML RULEBOOK", "checkRulePattern --> result.isJustCoveredNewState: " + result.isJustCoveredNewState());
+            ProbLog.d("PML RULEBOOK", "checkRulePattern --> result.isAllCovered: " + result.isAllCovered());
+            ProbLog.d("PML RULEBOOK", "checkRulePattern --> result.isEndsInEndState: " + result.isEndsInEndState());
         }
-        Log.d("PML RULEBOOK", "checkRulePattern --> final cover array: " + cover_str);
-        Log.d("PML RULEBOOK", "checkRulePattern --> final reached_cover array: " + reached_cover_str);
-        Log.d("PML RULEBOOK", "checkRulePattern --> result.isJustCoveredNewState: " + result.isJustCoveredNewState());
-        Log.d("PML RULEBOOK", "checkRulePattern --> result.isAllCovered: " + result.isAllCovered());
-        Log.d("PML RULEBOOK", "checkRulePattern --> result.isEndsInEndState: " + result.isEndsInEndState());
 
         return result;
     }
@@ -215,16 +218,18 @@ public class PMLRulePatternChecker {
             return false;
 
         /*
-        Log.d("PML RULEBOOK", "checkTouchEventPattern --> stateStartPointer: "
+        ProbLog.d("PML RULEBOOK", "checkTouchEventPattern --> stateStartPointer: "
                 + stateStartPointer + ", stateEndPointer: " + stateEndPointer
                 + ", touchEventTokens.size: " + touchEventTokens.size());
         */
 
-        String debug_str = "";
-        for (int i = 0; i < stateSequenceTypes.length; i++) {
-            debug_str += stateSequenceTypes[i] + ", ";
+        if (ProbLog.isLoggable("Prob PML RULEBOOK", ProbLog.DEBUG)) {
+            String debug_str = "";
+            for (int i = 0; i < stateSequenceTypes.length; i++) {
+                debug_str += stateSequenceTypes[i] + ", ";
+            }
+            ProbLog.d("Prob PML RULEBOOK", "checkTouchEventPattern --> seq types: " + debug_str);
         }
-        Log.d("Prob PML RULEBOOK", "checkTouchEventPattern --> seq types: " + debug_str);
 
 
         int[] matches = new int[touchEventTokens.size()];
@@ -247,7 +252,7 @@ public class PMLRulePatternChecker {
             // This ensures that tiny movements do not have to be considered.
             if (seqi == ProbObservationTouch.TYPE_TOUCH_MOVE && token.type != ProbObservationTouch.TYPE_TOUCH_MOVE) {
                 seqIdx++;
-                //Log.d("PML RULEBOOK", "checkTouchEventPattern --> skipped touch move event");
+                //ProbLog.d("PML RULEBOOK", "checkTouchEventPattern --> skipped touch move event");
                 continue;
             }
 
@@ -268,7 +273,7 @@ public class PMLRulePatternChecker {
             else {
                 // If we have a normal token and failed to match, we failed to match the pattern:
                 if (token.modifier == PMLRulePattern.TOUCH_EVENT_TOKEN_MODIFIER_NORMAL) {
-                    //Log.d("PML RULEBOOK", "checkTouchEventPattern --> failed to match normal token: token.type=" + token.type + ", seqi=" + seqi);
+                    //ProbLog.d("PML RULEBOOK", "checkTouchEventPattern --> failed to match normal token: token.type=" + token.type + ", seqi=" + seqi);
                     updateTouchEventMarkers(touchEventMarkers, matches, isFinalStateInSequence);
                     return false;
                 }
@@ -283,7 +288,7 @@ public class PMLRulePatternChecker {
                     // If we failed to match and the "min one" token has not yet been satisfied
                     // then that means that we failed to match the pattern:
                     else {
-                        //Log.d("PML RULEBOOK", "checkTouchEventPattern --> failed to match min one token");
+                        //ProbLog.d("PML RULEBOOK", "checkTouchEventPattern --> failed to match min one token");
                         updateTouchEventMarkers(touchEventMarkers, matches, isFinalStateInSequence);
                         return false;
                     }
@@ -303,7 +308,7 @@ public class PMLRulePatternChecker {
         for (int i = 0; i < matches.length; i++) {
             // If not matched, but a required token -> we failed to match the whole pattern:
             if (matches[i] == 0 && touchEventTokens.get(i).modifier != PMLRulePattern.TOUCH_EVENT_TOKEN_MODIFIER_ZERO_OR_MORE) {
-                //Log.d("PML RULEBOOK", "checkTouchEventPattern --> failed to match all necessary tokens");
+                //ProbLog.d("PML RULEBOOK", "checkTouchEventPattern --> failed to match all necessary tokens");
                 updateTouchEventMarkers(touchEventMarkers, matches, isFinalStateInSequence);
                 return false;
             }
@@ -0,0 +1,173 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.pml;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import de.lmu.ifi.medien.probui.behaviours.ProbBehaviour;
+import de.lmu.ifi.medien.probui.pml.rules.PMLRule;
+import de.lmu.ifi.medien.probui.pml.rules.PMLRuleBehaviour;
+import de.lmu.ifi.medien.probui.pml.rules.PMLRuleBehaviourQualifier;
+import de.lmu.ifi.medien.probui.pml.rules.PMLRuleCompiled;
+import de.lmu.ifi.medien.probui.pml.rules.PMLRuleCompiler;
+import de.lmu.ifi.medien.probui.pml.rules.PMLRuleProgram;
+import de.lmu.ifi.medien.probui.pml.rules.PMLRuleReference;
+import de.lmu.ifi.medien.probui.pml.rules.PMLRuleSet;
+import de.lmu.ifi.medien.probui.system.ProbLog;
+
+/**
+ * A PML rule statement that is parsed and compiled only once and then shared by all rulebooks
+ * that use the same statement (e.g. "activated: tap on complete and tap is most_likely"
+ * for every ProbUIButton).
+ * <p/>
+ * The template refers to behaviours and other rules only by their identifiers. Each rulebook
+ * instantiates it by binding these to its own behaviours and rules.
+ */
+public class PMLRuleTemplate {
+
+
+    /**
+     * Maximum number of cached templates.
+     */
+    private static final int MAX_TEMPLATES = 256;
+
+    /**
+     * Cache of the most recently used templates, by PML statement.
+     */
+    private static final Map<String, PMLRuleTemplate> templates =
+            new LinkedHashMap<String, PMLRuleTemplate>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PMLRuleTemplate> eldest) {
+                    return size() > MAX_TEMPLATES;
+                }
+            };
+
+
+    private String label;
+
+    /**
+     * The parsed root rule (only used if it is a behaviour rule itself).
+     */
+    private PMLRule root;
+
+    /**
+     * The compiled program (null if the root is a behaviour rule).
+     */
+    private PMLRuleProgram program;
+
+    private PMLRuleParserImpl parser;
+
+
+    private PMLRuleTemplate(PMLRuleParserImpl parser, PMLRule root) {
+        this.parser = parser;
+        this.root = root;
+        this.label = parser.getRuleLabel();
+        this.program = PMLRuleCompiler.compile(root);
+    }
+
+
+    /**
+     * Returns the template for the given statement, parsing it if it has not been seen before.
+     *
+     * @param pmlStatement
+     * @return The template, or null if the statement cannot be expressed as a template
+     * (i.e. if it applies a qualifier to a rule referenced by its label). Such statements are not cached.
+     */
+    public static PMLRuleTemplate forStatement(String pmlStatement) {
+        synchronized (templates) {
+            PMLRuleTemplate template = templates.get(pmlStatement);
+            if (template != null)
+                return template;
+            PMLRuleParserImpl parser = new PMLRuleParserImpl(new PMLRuleSet(), new HashMap<String, ProbBehaviour>(), true);
+            PMLRule root = parser.parse(pmlStatement);
+            if (!parser.isTemplatable()) {
+                ProbLog.d("PML RULE TEMPLATE", "no template for statement: " + pmlStatement);
+                return null;
+            }
+            template = new PMLRuleTemplate(parser, root);
+            templates.put(pmlStatement, template);
+            return template;
+        }
+    }
+
+    /**
+     * Creates the rule described by this template for the given behaviours and rules.
+     * Behaviour rules that already exist in the ruleset are reused. The new rules are added to it.
+     *
+     * @param ruleset      The ruleset of the rulebook (used to find referenced rules).
+     * @param behaviourMap The behaviours of the rulebook.
+     * @return The root rule of the statement (stored in the ruleset under the statement label).
+     */
+    public PMLRule instantiate(PMLRuleSet ruleset, Map<String, ProbBehaviour> behaviourMap) {
+
+        PMLRule rule;
+        if (this.program == null) {
+            rule = this.bind(this.root, ruleset, behaviourMap);
+            rule.label = this.label;
+        } else {
+            PMLRule[] templateSlots = this.program.getSlots();
+            PMLRule[] slots = new PMLRule[templateSlots.length];
+            for (int i = 0; i < slots.length; i++) {
+                slots[i] = this.bind(templateSlots[i], ruleset, behaviourMap);
+            }
+            rule = new PMLRuleCompiled(this.label, this.program.withSlots(slots));
+        }
+        ruleset.addRule(this.label, rule);
+        return rule;
+    }
+
+
+    private PMLRule bind(PMLRule templateRule, PMLRuleSet ruleset, Map<String, ProbBehaviour> behaviourMap) {
+
+        // References must point to a rule that has been added before:
+        if (templateRule instanceof PMLRuleReference) {
+            PMLRule rule = ruleset.getRule(templateRule.label);
+            if (rule == null)
+                throw new IllegalArgumentException("Unknown PML rule: " + templateRule.label);
+            return rule;
+        }
+
+        // Reuse existing behaviour rules (as the parser does):
+        PMLRule rule = ruleset.getRule(templateRule.label);
+        if (rule != null)
+            return rule;
+
+        // Else: create the behaviour rule for the behaviours of this rulebook:
+        PMLRuleBehaviour templateBehaviourRule = (PMLRuleBehaviour) templateRule;
+        PMLRuleBehaviour boundRule;
+        if (templateBehaviourRule instanceof PMLRuleBehaviourQualifier) {
+            PMLRuleBehaviour innerRule = (PMLRuleBehaviour) this.bind(
+                    ((PMLRuleBehaviourQualifier) templateBehaviourRule).getRule(), ruleset, behaviourMap);
+            boundRule = templateBehaviourRule.copyFor(innerRule.behaviour, innerRule);
+        } else {
+            String identifier = this.parser.getBehaviourIdentifier(templateBehaviourRule);
+            boundRule = templateBehaviourRule.copyFor(behaviourMap.get(identifier), null);
+        }
+        ruleset.addRule(boundRule.label, boundRule);
+        return boundRule;
+    }
+
+
+    public String getLabel() {
+        return label;
+    }
+}
@@ -19,10 +19,14 @@ along with this program. If not, see <http://www.gnu.org/licenses/>.
 
 package de.lmu.ifi.medien.probui.pml;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.List;
 
 import de.lmu.ifi.medien.probui.behaviours.ProbBehaviour;
 import de.lmu.ifi.medien.probui.behaviours.ProbBehaviourTouch;
+import de.lmu.ifi.medien.probui.pml.rules.PMLRule;
 
 /**
  * The rulebook stores and evaluates a set of rules.
@@ -78,4 +82,28 @@ public interface PMLRulebook {
      * Should be called when the rules should forget about their last states, if they have one.
      */
     void reset();
+
+    /**
+     * Returns the root rules of all statements added to this rulebook (in the order they were added).
+     *
+     * @return
+     */
+    List<PMLRule> getStatementRules();
+
+    /**
+     * Writes the states of all rules (see ProbUIManager.saveState()).
+     *
+     * @param out
+     * @throws IOException
+     */
+    void writeState(DataOutputStream out) throws IOException;
+
+    /**
+     * Reads the states written by {@link #writeState(DataOutputStream)} into the rules with the same labels.
+     * States of rules that this rulebook does not have are skipped.
+     *
+     * @param in
+     * @throws IOException
+     */
+    void readState(DataInputStream in) throws IOException;
 }
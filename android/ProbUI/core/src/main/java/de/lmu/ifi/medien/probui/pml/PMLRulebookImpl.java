@@ -0,0 +1,195 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.pml;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.lmu.ifi.medien.probui.behaviours.ProbBehaviour;
+import de.lmu.ifi.medien.probui.behaviours.ProbBehaviourTouch;
+import de.lmu.ifi.medien.probui.pml.rules.PMLRule;
+import de.lmu.ifi.medien.probui.pml.rules.PMLRuleBehaviour;
+import de.lmu.ifi.medien.probui.pml.rules.PMLRuleCompiler;
+import de.lmu.ifi.medien.probui.pml.rules.PMLRuleSet;
+import de.lmu.ifi.medien.probui.system.ProbLog;
+
+public class PMLRulebookImpl implements PMLRulebook {
+
+
+    private PMLRuleSet ruleset;
+
+    private Map<String, ProbBehaviour> behaviourMap;
+
+    /**
+     * The root rules of all added statements (in the order they were added).
+     * These are run as compiled programs on update.
+     */
+    private List<PMLRule> statementRules;
+
+    /**
+     * All behaviour rules (incl. qualifiers) of the ruleset.
+     */
+    private List<PMLRule> behaviourRules;
+
+
+
+    /**
+     * Example:
+     * swipe_left: C->W
+     * swipe_right: C->E
+     * zoom: swipe_left & swipe_right
+     */
+
+
+    public PMLRulebookImpl() {
+
+        this.ruleset = new PMLRuleSet();
+        this.behaviourMap = new HashMap<String, ProbBehaviour>();
+        this.statementRules = new ArrayList<PMLRule>();
+        this.behaviourRules = new ArrayList<PMLRule>();
+    }
+
+    @Override
+    public void addBehaviour(ProbBehaviourTouch behaviour) {
+
+        this.behaviourMap.put(behaviour.getLabel(), behaviour);
+        if(behaviour.getListenerForPML() != null){
+            this.addRule(behaviour.getLabel() + "_notification_dummy: " + behaviour.getLabel() + " is complete", null);
+        }
+    }
+
+    @Override
+    public void reset() {
+        for(PMLRule rule : this.ruleset.getRules()){
+            rule.reset();
+        }
+    }
+
+    @Override
+    public List<PMLRule> getStatementRules() {
+        return this.statementRules;
+    }
+
+
+    @Override
+    public void addRule(String pmlStatement, PMLRuleListener listener) {
+
+        // Instantiate the shared template for this statement (only parsed once for all rulebooks):
+        PMLRule rule;
+        PMLRuleTemplate template = PMLRuleTemplate.forStatement(pmlStatement);
+        if (template != null) {
+            rule = template.instantiate(this.ruleset, this.behaviourMap);
+        }
+        // Not expressible as a template, so parse and compile it just for this rulebook:
+        else {
+            PMLRuleParser parser = new PMLRuleParserImpl(this.ruleset, this.behaviourMap);
+            rule = parser.parse(pmlStatement);
+            rule.setProgram(PMLRuleCompiler.compile(rule));
+        }
+        if (listener != null)
+            rule.addListener(listener);
+
+        if (!this.statementRules.contains(rule))
+            this.statementRules.add(rule);
+
+        // Collect all behaviour rules (the statement might have added new ones):
+        this.behaviourRules.clear();
+        for (PMLRule r : this.ruleset.getRules()) {
+            if (r instanceof PMLRuleBehaviour && !this.behaviourRules.contains(r))
+                this.behaviourRules.add(r);
+        }
+    }
+
+
+
+    @Override
+    public boolean evaluate(String label) {
+
+        return this.ruleset.getRule(label).check();
+    }
+
+    @Override
+    public void update() {
+
+        ProbLog.d("Prob PML RULEBOOK", "rulebook update!");
+
+        // reset all "already checked in this update" states:
+        for (PMLRule rule : this.ruleset.getRules()) {
+            rule.checkedThisUpdate = false;
+        }
+        // check all statements (their programs short-circuit the and/or/not parts):
+        for (PMLRule rule : this.statementRules) {
+            rule.check();
+        }
+        // check remaining behaviour rules, so that they keep track of their results in every update
+        // (e.g. to detect "just completed"), even if skipped by short-circuiting:
+        for (PMLRule rule : this.behaviourRules) {
+            rule.check();
+        }
+    }
+
+
+    @Override
+    public PMLRulePatternResult getLastResultForBehaviourRule(String label) {
+        return ((PMLRuleBehaviour) this.ruleset.getRule(label)).lastResult;
+    }
+
+
+    @Override
+    public void writeState(DataOutputStream out) throws IOException {
+
+        // Each state is prefixed with its length, so that states of unknown rules can be skipped:
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream state = new DataOutputStream(bytes);
+        out.writeInt(this.ruleset.getRules().size());
+        for (PMLRule rule : this.ruleset.getRules()) {
+            bytes.reset();
+            rule.writeState(state);
+            state.flush();
+            out.writeUTF(rule.label);
+            out.writeInt(bytes.size());
+            bytes.writeTo(out);
+        }
+    }
+
+
+    @Override
+    public void readState(DataInputStream in) throws IOException {
+
+        int numRules = in.readInt();
+        for (int i = 0; i < numRules; i++) {
+            String label = in.readUTF();
+            byte[] state = new byte[in.readInt()];
+            in.readFully(state);
+            PMLRule rule = this.ruleset.getRule(label);
+            if (rule != null)
+                rule.readState(new DataInputStream(new ByteArrayInputStream(state)));
+        }
+    }
+
+
+}
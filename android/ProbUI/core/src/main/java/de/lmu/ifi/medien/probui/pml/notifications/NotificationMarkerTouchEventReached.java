@@ -31,6 +31,10 @@ public class NotificationMarkerTouchEventReached extends AbstractNotificationMar
         this.touchEventIndex = touchEventIndex;
     }
 
+    public int getStateIndex() {
+        return stateIndex;
+    }
+
     public int getTouchEventIndex() {
         return touchEventIndex;
     }
@@ -19,6 +19,9 @@ along with this program. If not, see <http://www.gnu.org/licenses/>.
 
 package de.lmu.ifi.medien.probui.pml.rules;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -35,6 +38,11 @@ public abstract class PMLRule {
     public int subsequentChecksTrue;
     private int subsequentChecksFalse;
 
+    /**
+     * If set, the rule is checked by running this program instead of calling checkSpecific.
+     */
+    private PMLRuleProgram program;
+
 
 
     public PMLRule(String label) {
@@ -51,7 +59,7 @@ public abstract class PMLRule {
             this.onFirstCheckSpecific();
 
             // 1. Check according to implemented rule:
-            boolean checkedNow = this.checkSpecific();
+            boolean checkedNow = this.program != null ? this.program.run() : this.checkSpecific();
 
             // 2. Update number of subsequent positive check results:
             if (checkedNow && this.currentCheckResult)
@@ -85,6 +93,21 @@ public abstract class PMLRule {
         this.listeners.add(listener);
     }
 
+    public boolean hasListeners() {
+        return !this.listeners.isEmpty();
+    }
+
+
+    public PMLRuleProgram getProgram() {
+        return program;
+    }
+
+
+    public void setProgram(PMLRuleProgram program) {
+        this.program = program;
+    }
+
+
     public void notifyRuleListeners() {
         for (PMLRuleListener l : this.listeners) {
             if (this.currentCheckResult) {
@@ -99,4 +122,31 @@ public abstract class PMLRule {
     public void reset() {
 
     }
+
+
+    /**
+     * Writes the state of this rule (i.e. its last check results), e.g. to save the reasoning state
+     * of an interactor (see ProbUIManager.saveState()).
+     *
+     * @param out
+     * @throws IOException
+     */
+    public void writeState(DataOutputStream out) throws IOException {
+        out.writeBoolean(this.currentCheckResult);
+        out.writeInt(this.subsequentChecksTrue);
+        out.writeInt(this.subsequentChecksFalse);
+    }
+
+
+    /**
+     * Reads a state written by {@link #writeState(DataOutputStream)} of an equivalent rule.
+     *
+     * @param in
+     * @throws IOException
+     */
+    public void readState(DataInputStream in) throws IOException {
+        this.currentCheckResult = in.readBoolean();
+        this.subsequentChecksTrue = in.readInt();
+        this.subsequentChecksFalse = in.readInt();
+    }
 }
\ No newline at end of file
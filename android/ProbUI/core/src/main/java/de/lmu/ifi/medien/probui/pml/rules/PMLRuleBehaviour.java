@@ -0,0 +1,144 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.pml.rules;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import de.lmu.ifi.medien.probui.behaviours.ProbBehaviour;
+import de.lmu.ifi.medien.probui.pml.PMLRulePatternChecker;
+import de.lmu.ifi.medien.probui.pml.PMLRulePatternResult;
+import de.lmu.ifi.medien.probui.system.ProbLog;
+
+
+public abstract class PMLRuleBehaviour extends PMLRule {
+
+    public ProbBehaviour behaviour;
+    public PMLRulePatternResult lastResult;
+
+    public PMLRuleBehaviour(ProbBehaviour behaviour, String label) {
+        super(label==null?behaviour.getLabel():label);
+        this.behaviour = behaviour;
+    }
+
+
+    public boolean checkSpecific() {
+        boolean wasMostLikelyBehaviourBefore =
+                this.lastResult != null && this.lastResult.isMostLikelyBehaviour();
+
+        ProbLog.d("PML RULE", "PMLRuleBehaviour -> checkSpecific: " + this.label + " #########################");
+        this.lastResult = PMLRulePatternChecker.checkRulePattern(
+                this.behaviour.getMostLikelyStateSequence(this.behaviour.getMaxProbPID()), //TODO: should it always use the max PID?
+                this.behaviour.getEventTypes(this.behaviour.getMaxProbPID()),
+                this.behaviour.getSequenceRule(),
+                this.lastResult);
+        ProbLog.d("PML RULE", "#################################################################");
+
+
+        if (this.behaviour.getListenerForPML() != null)
+            this.behaviour.getListenerForPML().onBehaviourUpdate(this.behaviour);
+
+
+        if (this.lastResult == null)
+            return false;
+
+        this.lastResult.setIsMostLikelyBehaviour(this.behaviour.isMostLikelyBehaviour());
+        this.lastResult.setHasJustBecomeMostLikelyBehaviour(
+                this.behaviour.isMostLikelyBehaviour() && !wasMostLikelyBehaviourBefore);
+
+
+        return this.checkBehaviourRuleSpecific();
+    }
+
+    protected abstract boolean checkBehaviourRuleSpecific();
+
+
+    /**
+     * Creates a fresh copy of this rule that works on the given behaviour.
+     * Used to instantiate shared rule templates (see PMLRuleTemplate) for each rulebook.
+     *
+     * @param behaviour The behaviour to use in the copy.
+     * @param rule      The (already copied) inner rule, used by qualifiers only.
+     * @return
+     */
+    public abstract PMLRuleBehaviour copyFor(ProbBehaviour behaviour, PMLRuleBehaviour rule);
+
+
+    public void reset() {
+        this.lastResult = null;
+    }
+
+
+    @Override
+    public void writeState(DataOutputStream out) throws IOException {
+        super.writeState(out);
+
+        out.writeBoolean(this.lastResult != null);
+        if (this.lastResult == null)
+            return;
+        out.writeBoolean(this.lastResult.isSequenceBroken());
+        out.writeBoolean(this.lastResult.isAllCovered());
+        out.writeBoolean(this.lastResult.isAllCoveredOnce());
+        out.writeInt(this.lastResult.getFinalState());
+        out.writeBoolean(this.lastResult.isJustCoveredNewState());
+        out.writeBoolean(this.lastResult.isEndsInEndState());
+        out.writeBoolean(this.lastResult.hasBeenCompleted());
+        out.writeBoolean(this.lastResult.isMostLikelyBehaviour());
+        out.writeBoolean(this.lastResult.hasJustBecomeMostLikelyBehaviour());
+        int[] cover = this.lastResult.getCover();
+        out.writeInt(cover == null ? -1 : cover.length);
+        if (cover != null)
+            for (int c : cover)
+                out.writeInt(c);
+    }
+
+
+    @Override
+    public void readState(DataInputStream in) throws IOException {
+        super.readState(in);
+
+        if (!in.readBoolean()) {
+            this.lastResult = null;
+            return;
+        }
+        PMLRulePatternResult result = new PMLRulePatternResult();
+        result.setSequenceBroken(in.readBoolean());
+        result.setAllCovered(in.readBoolean());
+        result.setAllCoveredOnce(in.readBoolean());
+        result.setFinalState(in.readInt());
+        result.setJustCoveredNewState(in.readBoolean());
+        result.setEndsInEndState(in.readBoolean());
+        result.setHasBeenCompleted(in.readBoolean());
+        result.setIsMostLikelyBehaviour(in.readBoolean());
+        result.setHasJustBecomeMostLikelyBehaviour(in.readBoolean());
+        int coverLength = in.readInt();
+        if (coverLength >= 0) {
+            int[] cover = new int[coverLength];
+            for (int i = 0; i < coverLength; i++)
+                cover[i] = in.readInt();
+            result.setCover(cover);
+        }
+        this.lastResult = result;
+    }
+
+
+}
+
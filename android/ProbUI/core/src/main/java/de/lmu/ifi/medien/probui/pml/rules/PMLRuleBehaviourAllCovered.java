@@ -32,4 +32,10 @@ public class PMLRuleBehaviourAllCovered extends PMLRuleBehaviour {
     protected boolean checkBehaviourRuleSpecific() {
         return super.lastResult.isAllCovered();
     }
-}
\ No newline at end of file
+
+
+    @Override
+    public PMLRuleBehaviour copyFor(ProbBehaviour behaviour, PMLRuleBehaviour rule) {
+        return new PMLRuleBehaviourAllCovered(behaviour, this.label);
+    }
+}
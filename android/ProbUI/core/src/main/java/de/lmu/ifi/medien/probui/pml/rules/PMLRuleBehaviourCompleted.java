@@ -19,9 +19,8 @@ along with this program. If not, see <http://www.gnu.org/licenses/>.
 
 package de.lmu.ifi.medien.probui.pml.rules;
 
-import android.util.Log;
-
 import de.lmu.ifi.medien.probui.behaviours.ProbBehaviour;
+import de.lmu.ifi.medien.probui.system.ProbLog;
 
 
 public class PMLRuleBehaviourCompleted extends PMLRuleBehaviour {
@@ -33,8 +32,14 @@ public class PMLRuleBehaviourCompleted extends PMLRuleBehaviour {
     @Override
     public boolean checkBehaviourRuleSpecific() {
 
-        Log.d("PML RULE", "PMLRuleBehaviourCompleted -> checkBehaviourRuleSpecific:" + super.lastResult.hasBeenCompleted());
+        ProbLog.d("PML RULE", "PMLRuleBehaviourCompleted -> checkBehaviourRuleSpecific:" + super.lastResult.hasBeenCompleted());
 
         return super.lastResult.hasBeenCompleted();
     }
-}
\ No newline at end of file
+
+
+    @Override
+    public PMLRuleBehaviour copyFor(ProbBehaviour behaviour, PMLRuleBehaviour rule) {
+        return new PMLRuleBehaviourCompleted(behaviour, this.label);
+    }
+}
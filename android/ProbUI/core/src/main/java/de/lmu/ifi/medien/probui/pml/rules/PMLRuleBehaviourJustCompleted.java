@@ -19,9 +19,8 @@ along with this program. If not, see <http://www.gnu.org/licenses/>.
 
 package de.lmu.ifi.medien.probui.pml.rules;
 
-import android.util.Log;
-
 import de.lmu.ifi.medien.probui.behaviours.ProbBehaviour;
+import de.lmu.ifi.medien.probui.system.ProbLog;
 
 
 public class PMLRuleBehaviourJustCompleted extends PMLRuleBehaviour {
@@ -33,8 +32,14 @@ public class PMLRuleBehaviourJustCompleted extends PMLRuleBehaviour {
     @Override
     public boolean checkBehaviourRuleSpecific() {
 
-        Log.d("PML RULE", "PMLRuleBehaviourJustCompleted -> checkBehaviourRuleSpecific: " + this.label + ": " + super.lastResult.hasJustBeenCompleted());
+        ProbLog.d("PML RULE", "PMLRuleBehaviourJustCompleted -> checkBehaviourRuleSpecific: " + this.label + ": " + super.lastResult.hasJustBeenCompleted());
 
         return super.lastResult.hasJustBeenCompleted();
     }
-}
\ No newline at end of file
+
+
+    @Override
+    public PMLRuleBehaviour copyFor(ProbBehaviour behaviour, PMLRuleBehaviour rule) {
+        return new PMLRuleBehaviourJustCompleted(behaviour, this.label);
+    }
+}
@@ -31,4 +31,8 @@ public abstract class PMLRuleBehaviourQualifier extends PMLRuleBehaviour {
         this.label = label;
     }
 
+
+    public PMLRuleBehaviour getRule() {
+        return rule;
+    }
 }
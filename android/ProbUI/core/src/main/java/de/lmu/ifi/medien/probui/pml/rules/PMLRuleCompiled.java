@@ -17,19 +17,22 @@ You should have received a copy of the GNU General Public License
 along with this program. If not, see <http://www.gnu.org/licenses/>.
 */
 
-package de.lmu.ifi.medien.probui.system;
+package de.lmu.ifi.medien.probui.pml.rules;
 
-import de.lmu.ifi.medien.probui.gui.ProbInteractor;
 
-public interface ProbUIMediator extends MediationRequestListener {
+/**
+ * Root of a rule statement that was instantiated from a rule template.
+ * It does not keep the parsed and/or/not nodes, but only the compiled program.
+ */
+public class PMLRuleCompiled extends PMLRule {
 
-
-    double RULE_OUT_MEAN_EVIDENCE = -15; //TODO: currently hardcoded
-
-    void addInteractor(ProbInteractor interactor);
-
-    void mediate(boolean forceDecision);
+    public PMLRuleCompiled(String label, PMLRuleProgram program) {
+        super(label);
+        this.setProgram(program);
+    }
 
     @Override
-    void onRequestMediation(ProbInteractor source);
+    public boolean checkSpecific() {
+        return this.getProgram().run();
+    }
 }
@@ -0,0 +1,164 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.pml.rules;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Lowers a parsed rule tree (as created by the PMLRuleParserImpl) to a {@link PMLRuleProgram}.
+ * <p/>
+ * The "and", "or" and "not" nodes are inlined into the program, so that they do not need
+ * their own check and bookkeeping anymore. Behaviour rules (incl. qualifiers) become slots
+ * of the program, as do all inner rules that need to keep their own state,
+ * e.g. rules with listeners and references to other statements (see {@link PMLRuleReference}).
+ */
+public class PMLRuleCompiler {
+
+
+    private PMLRule root;
+
+    private int[] code;
+    private int size;
+
+    private List<PMLRule> slots;
+    private Map<PMLRule, Integer> slotIndices;
+
+
+    private PMLRuleCompiler(PMLRule root) {
+        this.root = root;
+        this.code = new int[16];
+        this.slots = new ArrayList<PMLRule>();
+        this.slotIndices = new IdentityHashMap<PMLRule, Integer>();
+    }
+
+
+    /**
+     * Compiles the given rule.
+     *
+     * @param root
+     * @return The program, or null if the rule is neither a "not", "and" or "or" rule
+     * nor a reference (e.g. behaviour rules are checked directly and do not profit from a program;
+     * for such a rule, the program would just check the rule itself).
+     */
+    public static PMLRuleProgram compile(PMLRule root) {
+        if (!(root instanceof PMLRuleNOT || root instanceof PMLRuleAND || root instanceof PMLRuleOR
+                || root instanceof PMLRuleReference))
+            return null;
+        PMLRuleCompiler compiler = new PMLRuleCompiler(root);
+        compiler.emitRule(root);
+        compiler.threadJumps();
+        int[] code = new int[compiler.size];
+        System.arraycopy(compiler.code, 0, code, 0, compiler.size);
+        return new PMLRuleProgram(code, compiler.slots.toArray(new PMLRule[compiler.slots.size()]));
+    }
+
+
+    private void emitRule(PMLRule rule) {
+
+        // Rules that keep their own state are only referenced:
+        if (rule != this.root && (rule.hasListeners() || rule.getProgram() != null)) {
+            emitCheck(rule);
+        }
+        // Inline "not":
+        else if (rule instanceof PMLRuleNOT) {
+            emitRule(((PMLRuleNOT) rule).rule);
+            emit(PMLRuleProgram.OP_NOT);
+        }
+        // Inline "and" / "or" with short-circuiting:
+        else if (rule instanceof PMLRuleAND || rule instanceof PMLRuleOR) {
+            List<PMLRule> subrules = ((PMLRuleBinary) rule).subrules;
+            int jumpOp = rule instanceof PMLRuleAND ?
+                    PMLRuleProgram.OP_JUMP_IF_FALSE : PMLRuleProgram.OP_JUMP_IF_TRUE;
+            int[] jumps = new int[subrules.size()];
+            for (int i = 0; i < subrules.size(); i++) {
+                emitRule(subrules.get(i));
+                if (i < subrules.size() - 1) {
+                    emit(jumpOp);
+                    jumps[i] = this.size;
+                    emit(-1); // patched below
+                }
+            }
+            for (int i = 0; i < subrules.size() - 1; i++) {
+                this.code[jumps[i]] = this.size;
+            }
+        }
+        // Everything else (behaviour rules and qualifiers) is checked via a slot:
+        else {
+            emitCheck(rule);
+        }
+    }
+
+
+    private void emitCheck(PMLRule rule) {
+        Integer slot = this.slotIndices.get(rule);
+        if (slot == null) {
+            slot = this.slots.size();
+            this.slots.add(rule);
+            this.slotIndices.put(rule, slot);
+        }
+        emit(PMLRuleProgram.OP_CHECK);
+        emit(slot);
+    }
+
+
+    private void emit(int value) {
+        if (this.size == this.code.length) {
+            int[] grown = new int[this.code.length * 2];
+            System.arraycopy(this.code, 0, grown, 0, this.size);
+            this.code = grown;
+        }
+        this.code[this.size++] = value;
+    }
+
+
+    /**
+     * Lets jumps skip over further jumps whose outcome is already known
+     * (e.g. nested "and" rules jump directly to the end of the outermost one).
+     */
+    private void threadJumps() {
+        int pc = 0;
+        while (pc < this.size) {
+            int op = this.code[pc];
+            if (op == PMLRuleProgram.OP_JUMP_IF_FALSE || op == PMLRuleProgram.OP_JUMP_IF_TRUE) {
+                int target = this.code[pc + 1];
+                while (target < this.size) {
+                    int targetOp = this.code[target];
+                    if (targetOp == op)
+                        target = this.code[target + 1]; // same condition -> will jump as well
+                    else if (targetOp == PMLRuleProgram.OP_JUMP_IF_FALSE
+                            || targetOp == PMLRuleProgram.OP_JUMP_IF_TRUE)
+                        target += 2; // opposite condition -> will not jump
+                    else
+                        break;
+                }
+                this.code[pc + 1] = target;
+                pc += 2;
+            } else if (op == PMLRuleProgram.OP_CHECK) {
+                pc += 2;
+            } else {
+                pc++;
+            }
+        }
+    }
+}
@@ -19,11 +19,11 @@ along with this program. If not, see <http://www.gnu.org/licenses/>.
 
 package de.lmu.ifi.medien.probui.pml.rules;
 
-import android.util.Log;
-
 import java.util.ArrayList;
 import java.util.List;
 
+import de.lmu.ifi.medien.probui.system.ProbLog;
+
 
 public class PMLRuleOR extends PMLRuleBinary {
 
@@ -37,7 +37,7 @@ public class PMLRuleOR extends PMLRuleBinary {
         for (PMLRule rule : this.subrules) {
             checked = checked || rule.check();
         }
-        Log.d("PML RULE", "PMLRuleOR -> checkSpecific: " + this.label + ": " + checked + " | " + this.subrules.get(0));
+        ProbLog.d("PML RULE", "PMLRuleOR -> checkSpecific: " + this.label + ": " + checked + " | " + this.subrules.get(0));
 
         return checked;
     }
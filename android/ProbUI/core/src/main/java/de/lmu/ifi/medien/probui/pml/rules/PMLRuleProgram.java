@@ -0,0 +1,154 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.pml.rules;
+
+
+/**
+ * A PML rule lowered to a flat program (see {@link PMLRuleCompiler}).
+ * The program only consists of slot checks, negations and conditional jumps
+ * (used for the short-circuiting of "and" / "or"), so a single boolean register is enough
+ * to evaluate it.
+ */
+public class PMLRuleProgram {
+
+
+    /**
+     * Checks the rule in the slot given by the next int and stores its result in the register.
+     */
+    public static final int OP_CHECK = 0;
+
+    /**
+     * Negates the register.
+     */
+    public static final int OP_NOT = 1;
+
+    /**
+     * Jumps to the position given by the next int if the register is false.
+     */
+    public static final int OP_JUMP_IF_FALSE = 2;
+
+    /**
+     * Jumps to the position given by the next int if the register is true.
+     */
+    public static final int OP_JUMP_IF_TRUE = 3;
+
+
+    private final int[] code;
+
+    /**
+     * The rules whose results the program reads, i.e. the behaviour rules at the leaves
+     * and all other rules that need their own bookkeeping (e.g. since they have listeners).
+     */
+    private final PMLRule[] slots;
+
+
+    public PMLRuleProgram(int[] code, PMLRule[] slots) {
+        this.code = code;
+        this.slots = slots;
+    }
+
+
+    /**
+     * Runs the program.
+     *
+     * @return The result of the compiled rule.
+     */
+    public boolean run() {
+        final int[] code = this.code;
+        final PMLRule[] slots = this.slots;
+        boolean register = false;
+        int pc = 0;
+        while (pc < code.length) {
+            switch (code[pc]) {
+                case OP_CHECK:
+                    register = slots[code[pc + 1]].check();
+                    pc += 2;
+                    break;
+                case OP_NOT:
+                    register = !register;
+                    pc++;
+                    break;
+                case OP_JUMP_IF_FALSE:
+                    pc = register ? pc + 2 : code[pc + 1];
+                    break;
+                case OP_JUMP_IF_TRUE:
+                    pc = register ? code[pc + 1] : pc + 2;
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown PML rule opcode: " + code[pc]);
+            }
+        }
+        return register;
+    }
+
+
+    /**
+     * Creates a program with the same code that works on the given slots.
+     *
+     * @param slots Must match the slots of this program in number and order.
+     * @return
+     */
+    public PMLRuleProgram withSlots(PMLRule[] slots) {
+        if (slots.length != this.slots.length)
+            throw new IllegalArgumentException("Wrong number of slots: " + slots.length
+                    + " instead of " + this.slots.length);
+        return new PMLRuleProgram(this.code, slots);
+    }
+
+
+    public int[] getCode() {
+        return code;
+    }
+
+
+    public PMLRule[] getSlots() {
+        return slots;
+    }
+
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        int pc = 0;
+        while (pc < this.code.length) {
+            sb.append(pc).append(": ");
+            switch (this.code[pc]) {
+                case OP_CHECK:
+                    sb.append("CHECK ").append(this.slots[this.code[pc + 1]].label);
+                    pc += 2;
+                    break;
+                case OP_NOT:
+                    sb.append("NOT");
+                    pc++;
+                    break;
+                case OP_JUMP_IF_FALSE:
+                    sb.append("JUMP_IF_FALSE ").append(this.code[pc + 1]);
+                    pc += 2;
+                    break;
+                default:
+                    sb.append("JUMP_IF_TRUE ").append(this.code[pc + 1]);
+                    pc += 2;
+                    break;
+            }
+            sb.append("\n");
+        }
+        return sb.toString();
+    }
+}
@@ -19,7 +19,9 @@ along with this program. If not, see <http://www.gnu.org/licenses/>.
 
 package de.lmu.ifi.medien.probui.pml.rules;
 
+import de.lmu.ifi.medien.probui.behaviours.ProbBehaviour;
 import de.lmu.ifi.medien.probui.behaviours.ProbBehaviourTouch;
+import de.lmu.ifi.medien.probui.pml.PMLTokens;
 
 
 public class PMLRuleQualifierNumFingers extends PMLRuleBehaviourQualifier {
@@ -38,4 +40,11 @@ public class PMLRuleQualifierNumFingers extends PMLRuleBehaviourQualifier {
                 ((ProbBehaviourTouch) (this.rule).behaviour)
                         .getObservedNumPointers() == this.numFingers;
     }
+
+
+    @Override
+    public PMLRuleBehaviour copyFor(ProbBehaviour behaviour, PMLRuleBehaviour rule) {
+        return new PMLRuleQualifierNumFingers(this.label, rule, this.numFingers,
+                PMLTokens.RULE_QUALIFIER_UNIT_FINGERS);
+    }
 }
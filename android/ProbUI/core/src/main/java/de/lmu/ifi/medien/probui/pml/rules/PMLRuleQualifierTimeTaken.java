@@ -19,8 +19,7 @@ along with this program. If not, see <http://www.gnu.org/licenses/>.
 
 package de.lmu.ifi.medien.probui.pml.rules;
 
-import android.util.Log;
-
+import de.lmu.ifi.medien.probui.behaviours.ProbBehaviour;
 import de.lmu.ifi.medien.probui.pml.PMLTokens;
 
 
@@ -38,7 +37,7 @@ public class PMLRuleQualifierTimeTaken extends PMLRuleBehaviourQualifier {
             this.timeMin *= 1000; // since we want to work with milliseconds
             this.timeMax *= 1000;
         }
-        //Log.d("PML RULEBOOK TIMETAKEN", this.timeMin + " - " + this.timeMax);
+        //ProbLog.d("PML RULEBOOK TIMETAKEN", this.timeMin + " - " + this.timeMax);
     }
 
 
@@ -52,4 +51,11 @@ public class PMLRuleQualifierTimeTaken extends PMLRuleBehaviourQualifier {
         // if we want the time from the core (i.e. time since last touch down),
         // the core could "inject" it into its behaviours in its observe method.
     }
+
+
+    @Override
+    public PMLRuleBehaviour copyFor(ProbBehaviour behaviour, PMLRuleBehaviour rule) {
+        return new PMLRuleQualifierTimeTaken(this.label, rule, this.timeMin, this.timeMax,
+                PMLTokens.RULE_QUALIFIER_UNIT_MILLISECONDS); // times are already stored in ms
+    }
 }
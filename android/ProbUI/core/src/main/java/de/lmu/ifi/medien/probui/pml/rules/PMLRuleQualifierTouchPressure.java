@@ -19,7 +19,9 @@ along with this program. If not, see <http://www.gnu.org/licenses/>.
 
 package de.lmu.ifi.medien.probui.pml.rules;
 
+import de.lmu.ifi.medien.probui.behaviours.ProbBehaviour;
 import de.lmu.ifi.medien.probui.behaviours.ProbBehaviourTouch;
+import de.lmu.ifi.medien.probui.pml.PMLTokens;
 
 
 public class PMLRuleQualifierTouchPressure extends PMLRuleBehaviourQualifier {
@@ -43,4 +45,11 @@ public class PMLRuleQualifierTouchPressure extends PMLRuleBehaviourQualifier {
                 && (this.pressureMax < 0 || meanPressure < this.pressureMax);
                 //this.pressureMax < 0 since we set it to -1 if not used
     }
+
+
+    @Override
+    public PMLRuleBehaviour copyFor(ProbBehaviour behaviour, PMLRuleBehaviour rule) {
+        return new PMLRuleQualifierTouchPressure(this.label, rule, this.pressureMin, this.pressureMax,
+                PMLTokens.RULE_QUALIFIER_UNIT_TOUCH_PRESSURE);
+    }
 }
@@ -19,9 +19,9 @@ along with this program. If not, see <http://www.gnu.org/licenses/>.
 
 package de.lmu.ifi.medien.probui.pml.rules;
 
-import android.util.Log;
-
+import de.lmu.ifi.medien.probui.behaviours.ProbBehaviour;
 import de.lmu.ifi.medien.probui.behaviours.ProbBehaviourTouch;
+import de.lmu.ifi.medien.probui.pml.PMLTokens;
 
 
 public class PMLRuleQualifierTouchSize extends PMLRuleBehaviourQualifier {
@@ -46,4 +46,11 @@ public class PMLRuleQualifierTouchSize extends PMLRuleBehaviourQualifier {
                 && (this.sizeMin < 0 || meanSize < this.sizeMin);
                 //this.sizeMin < 0 since we set it to -1 if not used
     }
+
+
+    @Override
+    public PMLRuleBehaviour copyFor(ProbBehaviour behaviour, PMLRuleBehaviour rule) {
+        return new PMLRuleQualifierTouchSize(this.label, rule, this.sizeMax, this.sizeMin,
+                PMLTokens.RULE_QUALIFIER_UNIT_TOUCH_SIZE); // note: the constructor swaps min and max
+    }
 }
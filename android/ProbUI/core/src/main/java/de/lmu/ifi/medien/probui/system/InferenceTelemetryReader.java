@@ -0,0 +1,380 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.system;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the blocks of a telemetry file written by an {@link InferenceTelemetrySink}, one after the other:
+ * <pre>
+ * InferenceTelemetryReader reader = new InferenceTelemetryReader(file);
+ * while (reader.nextBlock()) {
+ *     float[] meanEvidences = reader.getMeanEvidences();
+ *     for (int i = 0; i < reader.getNumInteractorRows(); i++)
+ *         ... reader.getLabel(reader.getInteractors()[i]) ... meanEvidences[i] ...
+ * }
+ * </pre>
+ * The column arrays are reused for all blocks, i.e. they are only valid until the next call of
+ * {@link #nextBlock()}, and they might be longer than the number of rows of the current block.
+ * The file is memory-mapped, so that large telemetries are not copied to the heap at once.
+ */
+public class InferenceTelemetryReader {
+
+
+    private final ByteBuffer buffer;
+
+    private final Map<Integer, String> labels = new HashMap<Integer, String>();
+
+    private int numEvents;
+    private long[] timestamps = new long[0];
+    private byte[] types = new byte[0];
+    private byte[] numObservations = new byte[0];
+    private byte[] passedOn = new byte[0];
+    private float[] moveDistances = new float[0];
+    private int[] observeTimes = new int[0];
+    private int[] mediateTimes = new int[0];
+    private int[] totalTimes = new int[0];
+    private short[] determined = new short[0];
+    private short[] numCandidates = new short[0];
+
+    private int numInteractorRows;
+    private int[] interactorEvents = new int[0];
+    private int[] interactors = new int[0];
+    private byte[] flags = new byte[0];
+    private float[] meanEvidences = new float[0];
+    private float[] candidateProbs = new float[0];
+    private float[] entropies = new float[0];
+    private short[] indicesPosteriorMax = new short[0];
+    private int[] mostLikelyBehaviours = new int[0];
+
+    private int numRuleRows;
+    private int[] ruleEvents = new int[0];
+    private int[] ruleInteractors = new int[0];
+    private int[] rules = new int[0];
+    private byte[] ruleResults = new byte[0];
+
+
+    public InferenceTelemetryReader(File file) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = in.getChannel();
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            in.close();
+        }
+        if (this.buffer.remaining() < InferenceTelemetrySink.FILE_HEADER_SIZE
+                || this.buffer.getInt() != InferenceTelemetrySink.MAGIC)
+            throw new IOException("Not an inference telemetry: " + file);
+        short version = this.buffer.getShort();
+        if (version != InferenceTelemetrySink.VERSION)
+            throw new IOException("Unsupported inference telemetry version: " + version);
+    }
+
+
+    /**
+     * Reads the next block.
+     *
+     * @return False if there are no more blocks.
+     * @throws IOException If the telemetry is truncated or corrupt.
+     */
+    public boolean nextBlock() throws IOException {
+        if (!this.buffer.hasRemaining())
+            return false;
+        try {
+            // 1. Header and dictionary:
+            int length = this.buffer.getInt();
+            int blockEnd = this.buffer.position() + length;
+            if (length < 16 || blockEnd > this.buffer.limit())
+                throw new IOException("Truncated inference telemetry block");
+            this.numEvents = this.buffer.getInt();
+            this.numInteractorRows = this.buffer.getInt();
+            this.numRuleRows = this.buffer.getInt();
+            int numLabels = this.buffer.getInt();
+            if (this.numEvents < 0 || this.numInteractorRows < 0 || this.numRuleRows < 0 || numLabels < 0)
+                throw new IOException("Corrupt inference telemetry block");
+            for (int i = 0; i < numLabels; i++) {
+                int id = this.buffer.getInt();
+                byte[] label = new byte[this.buffer.getShort() & 0xFFFF];
+                this.buffer.get(label);
+                this.labels.put(id, new String(label, InferenceTelemetrySink.UTF8));
+            }
+            if (blockEnd - this.buffer.position() != this.numEvents * InferenceTelemetrySink.EVENT_ROW_SIZE
+                    + this.numInteractorRows * InferenceTelemetrySink.INTERACTOR_ROW_SIZE
+                    + this.numRuleRows * InferenceTelemetrySink.RULE_ROW_SIZE)
+                throw new IOException("Corrupt inference telemetry block: wrong size");
+
+            // 2. Event columns:
+            int n = this.numEvents;
+            if (this.timestamps.length < n) {
+                this.timestamps = new long[n];
+                this.types = new byte[n];
+                this.numObservations = new byte[n];
+                this.passedOn = new byte[n];
+                this.moveDistances = new float[n];
+                this.observeTimes = new int[n];
+                this.mediateTimes = new int[n];
+                this.totalTimes = new int[n];
+                this.determined = new short[n];
+                this.numCandidates = new short[n];
+            }
+            this.buffer.asLongBuffer().get(this.timestamps, 0, n);
+            this.buffer.position(this.buffer.position() + 8 * n);
+            this.buffer.get(this.types, 0, n);
+            this.buffer.get(this.numObservations, 0, n);
+            this.buffer.get(this.passedOn, 0, n);
+            getFloats(this.buffer, this.moveDistances, n);
+            getInts(this.buffer, this.observeTimes, n);
+            getInts(this.buffer, this.mediateTimes, n);
+            getInts(this.buffer, this.totalTimes, n);
+            getShorts(this.buffer, this.determined, n);
+            getShorts(this.buffer, this.numCandidates, n);
+
+            // 3. Interactor columns:
+            n = this.numInteractorRows;
+            if (this.interactors.length < n) {
+                this.interactorEvents = new int[n];
+                this.interactors = new int[n];
+                this.flags = new byte[n];
+                this.meanEvidences = new float[n];
+                this.candidateProbs = new float[n];
+                this.entropies = new float[n];
+                this.indicesPosteriorMax = new short[n];
+                this.mostLikelyBehaviours = new int[n];
+            }
+            getInts(this.buffer, this.interactorEvents, n);
+            getInts(this.buffer, this.interactors, n);
+            this.buffer.get(this.flags, 0, n);
+            getFloats(this.buffer, this.meanEvidences, n);
+            getFloats(this.buffer, this.candidateProbs, n);
+            getFloats(this.buffer, this.entropies, n);
+            getShorts(this.buffer, this.indicesPosteriorMax, n);
+            getInts(this.buffer, this.mostLikelyBehaviours, n);
+
+            // 4. Rule columns:
+            n = this.numRuleRows;
+            if (this.rules.length < n) {
+                this.ruleEvents = new int[n];
+                this.ruleInteractors = new int[n];
+                this.rules = new int[n];
+                this.ruleResults = new byte[n];
+            }
+            getInts(this.buffer, this.ruleEvents, n);
+            getInts(this.buffer, this.ruleInteractors, n);
+            getInts(this.buffer, this.rules, n);
+            this.buffer.get(this.ruleResults, 0, n);
+        } catch (RuntimeException e) { // BufferUnderflowException
+            throw new IOException("Corrupt inference telemetry", e);
+        }
+        return true;
+    }
+
+
+    /**
+     * Returns the label (of an interactor, behaviour or rule) with the given id.
+     *
+     * @param id
+     * @return The label, or null if the id is unknown (e.g. -1 for "no behaviour").
+     */
+    public String getLabel(int id) {
+        return this.labels.get(id);
+    }
+
+
+    public int getNumEvents() {
+        return this.numEvents;
+    }
+
+
+    public long[] getTimestamps() {
+        return this.timestamps;
+    }
+
+
+    /**
+     * @return The touch types (see {@link de.lmu.ifi.medien.probui.observations.ProbObservationTouch#TYPE_TOUCH_DOWN} etc.).
+     */
+    public byte[] getTypes() {
+        return this.types;
+    }
+
+
+    public byte[] getNumObservations() {
+        return this.numObservations;
+    }
+
+
+    /**
+     * @return 1 if the event was passed on to the interactors, 0 if it was filtered out.
+     */
+    public byte[] getPassedOn() {
+        return this.passedOn;
+    }
+
+
+    /**
+     * @return The distances checked by the move filter (NaN for events that were not checked).
+     */
+    public float[] getMoveDistances() {
+        return this.moveDistances;
+    }
+
+
+    public int[] getObserveTimes() {
+        return this.observeTimes;
+    }
+
+
+    public int[] getMediateTimes() {
+        return this.mediateTimes;
+    }
+
+
+    public int[] getTotalTimes() {
+        return this.totalTimes;
+    }
+
+
+    /**
+     * @return The indices of the determined interactors, or -1 if none was determined.
+     */
+    public short[] getDetermined() {
+        return this.determined;
+    }
+
+
+    public short[] getNumCandidates() {
+        return this.numCandidates;
+    }
+
+
+    public int getNumInteractorRows() {
+        return this.numInteractorRows;
+    }
+
+
+    /**
+     * @return The events (indices in the current block) of the interactor rows.
+     */
+    public int[] getInteractorEvents() {
+        return this.interactorEvents;
+    }
+
+
+    /**
+     * @return The label ids of the interactors (see {@link #getLabel(int)}).
+     */
+    public int[] getInteractors() {
+        return this.interactors;
+    }
+
+
+    /**
+     * @return The flags of the interactors (see {@link InferenceTelemetrySink#FLAG_CANDIDATE} etc.).
+     */
+    public byte[] getFlags() {
+        return this.flags;
+    }
+
+
+    public float[] getMeanEvidences() {
+        return this.meanEvidences;
+    }
+
+
+    public float[] getCandidateProbs() {
+        return this.candidateProbs;
+    }
+
+
+    /**
+     * @return The entropies (in nats) of the posteriors over the behaviours of the interactors.
+     */
+    public float[] getEntropies() {
+        return this.entropies;
+    }
+
+
+    public short[] getIndicesPosteriorMax() {
+        return this.indicesPosteriorMax;
+    }
+
+
+    /**
+     * @return The label ids of the most likely behaviours (-1 if the interactor has none).
+     */
+    public int[] getMostLikelyBehaviours() {
+        return this.mostLikelyBehaviours;
+    }
+
+
+    public int getNumRuleRows() {
+        return this.numRuleRows;
+    }
+
+
+    public int[] getRuleEvents() {
+        return this.ruleEvents;
+    }
+
+
+    public int[] getRuleInteractors() {
+        return this.ruleInteractors;
+    }
+
+
+    /**
+     * @return The label ids of the rules.
+     */
+    public int[] getRules() {
+        return this.rules;
+    }
+
+
+    /**
+     * @return 1 if the rule was fulfilled, 0 otherwise.
+     */
+    public byte[] getRuleResults() {
+        return this.ruleResults;
+    }
+
+
+    private static void getInts(ByteBuffer buffer, int[] values, int n) {
+        buffer.asIntBuffer().get(values, 0, n);
+        buffer.position(buffer.position() + 4 * n);
+    }
+
+
+    private static void getFloats(ByteBuffer buffer, float[] values, int n) {
+        buffer.asFloatBuffer().get(values, 0, n);
+        buffer.position(buffer.position() + 4 * n);
+    }
+
+
+    private static void getShorts(ByteBuffer buffer, short[] values, int n) {
+        buffer.asShortBuffer().get(values, 0, n);
+        buffer.position(buffer.position() + 2 * n);
+    }
+}
@@ -0,0 +1,690 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.system;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import de.lmu.ifi.medien.probui.gui.ProbInteractorBase;
+import de.lmu.ifi.medien.probui.gui.ProbInteractorCoreBase;
+import de.lmu.ifi.medien.probui.observations.ProbObservationTouch;
+import de.lmu.ifi.medien.probui.pml.rules.PMLRule;
+
+/**
+ * Records the reasoning of a ProbUIManager per touch event (see ProbUIManager.setTelemetrySink),
+ * e.g. to tune thresholds like {@link ProbUIMediator#RULE_OUT_MEAN_EVIDENCE} or the move filter offline.
+ * The telemetry can be read with an {@link InferenceTelemetryReader}.
+ * <p/>
+ * The telemetry consists of three tables, which are stored column by column in self-contained blocks:
+ * <ul>
+ * <li>Events: timestamp, touch type, number of observations, whether the event was passed on to the interactors,
+ * the move distance checked by the move filter (NaN if none), the time taken by the observation,
+ * mediation and overall stages (in nanoseconds), the determined interactor and the number of candidates.</li>
+ * <li>Interactors (one row per managed interactor and event): event, interactor, flags (candidate, determined,
+ * claiming determination, self-excluded), mean evidence, candidate probability, entropy of the posterior
+ * over the behaviours, index of the most likely behaviour and its label.</li>
+ * <li>Rules (one row per rule checked for a candidate in an event): event, interactor, rule and its result.</li>
+ * </ul>
+ * Interactor, behaviour and rule labels are dictionary encoded: the columns hold ids, and each block holds
+ * the labels of the ids it uses.
+ * <p/>
+ * Format: Each file starts with a header (magic number and version), followed by blocks of
+ * <pre>
+ * int length (of the rest of the block), int number of events, int number of interactor rows,
+ * int number of rule rows, int number of dictionary entries, for each: int id, short length, label (UTF-8)
+ * event columns:      long timestamp, byte type, byte number of observations, byte passed on,
+ *                     float move distance, int observation time, int mediation time, int total time,
+ *                     short determined interactor (index, -1 if none), short number of candidates
+ * interactor columns: int event (index in the block), int interactor (id), byte flags, float mean evidence,
+ *                     float candidate probability, float posterior entropy, short index of the most likely
+ *                     behaviour, int most likely behaviour (id)
+ * rule columns:       int event, int interactor (id), int rule (id), byte result
+ * </pre>
+ * where each column holds the values of all rows of its table (big-endian).
+ * <p/>
+ * The rows are collected in preallocated blocks on the UI thread; full blocks (and the block at the end of each
+ * touch interaction) are written to the files by a background thread. If the background thread falls behind,
+ * events are dropped instead of blocking the UI thread (see {@link #getNumDroppedEvents()}).
+ * Once a file reaches its maximum size, the next one is started and the oldest ones are deleted.
+ * <p/>
+ * The recording methods must be called from the UI thread (as done by the manager).
+ */
+public class InferenceTelemetrySink {
+
+
+    public static final int MAGIC = 0x5055544C; // "PUTL"
+
+    public static final short VERSION = 1;
+
+    public static final int FILE_HEADER_SIZE = 6;
+
+    public static final String FILE_EXTENSION = ".telemetry";
+
+    public static final int FLAG_CANDIDATE = 1;
+    public static final int FLAG_DETERMINED = 2;
+    public static final int FLAG_CLAIMS_DETERMINATION = 4;
+    public static final int FLAG_SELF_EXCLUDED = 8;
+
+    /**
+     * Sizes of a row of each table, in bytes.
+     */
+    static final int EVENT_ROW_SIZE = 8 + 1 + 1 + 1 + 4 + 4 + 4 + 4 + 2 + 2;
+    static final int INTERACTOR_ROW_SIZE = 4 + 4 + 1 + 4 + 4 + 4 + 2 + 4;
+    static final int RULE_ROW_SIZE = 4 + 4 + 4 + 1;
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+
+    private final File directory;
+    private final String prefix;
+    private final long maxFileSize;
+    private final int maxFiles;
+
+    private final BlockingQueue<Block> freeBlocks;
+    private final ExecutorService writer;
+
+    // UI thread:
+    private Block block;
+    private final Map<ProbInteractorBase, Integer> interactorIds = new IdentityHashMap<ProbInteractorBase, Integer>();
+    private final Map<String, Integer> labelIds = new HashMap<String, Integer>();
+    private final List<String> labels = new ArrayList<String>();
+    private volatile int numDroppedEvents;
+    private boolean closed;
+
+    // Writer thread:
+    private FileChannel channel;
+    private int fileIndex;
+    private ByteBuffer encoded;
+    private volatile IOException error;
+
+
+    /**
+     * Creates a sink that writes the files "[prefix]-[index].telemetry" to the given directory
+     * (continuing after the highest existing index).
+     *
+     * @param directory
+     * @param prefix
+     * @param eventsPerBlock Number of events per block (a few hundred are enough).
+     * @param rowsPerBlock   Number of interactor rows and of rule rows per block
+     *                       (e.g. the events per block times the number of interactors).
+     * @param numBlocks      Number of blocks, i.e. how far the background thread might fall behind.
+     * @param maxFileSize    Size in bytes after which the next file is started.
+     * @param maxFiles       Number of files to keep.
+     */
+    public InferenceTelemetrySink(File directory, String prefix, int eventsPerBlock, int rowsPerBlock,
+                                  int numBlocks, long maxFileSize, int maxFiles) {
+
+        if (eventsPerBlock < 1 || rowsPerBlock < 1)
+            throw new IllegalArgumentException("At least one event and row per block needed");
+        if (numBlocks < 1 || maxFiles < 1)
+            throw new IllegalArgumentException("At least one block and file needed");
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IllegalArgumentException("Cannot create directory: " + directory);
+
+        this.directory = directory;
+        this.prefix = prefix;
+        this.maxFileSize = maxFileSize;
+        this.maxFiles = maxFiles;
+
+        this.freeBlocks = new ArrayBlockingQueue<Block>(numBlocks);
+        for (int i = 0; i < numBlocks; i++) {
+            this.freeBlocks.add(new Block(eventsPerBlock, rowsPerBlock));
+        }
+        this.block = this.freeBlocks.poll();
+
+        this.fileIndex = findLastFileIndex(directory, prefix);
+
+        this.writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "InferenceTelemetrySink");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+
+    /**
+     * Sets the label of the given interactor in the telemetry
+     * (by default, the class name and the index of the interactor in the manager).
+     *
+     * @param interactor
+     * @param label
+     */
+    public void setInteractorLabel(ProbInteractorBase interactor, String label) {
+        this.interactorIds.put(interactor, this.getLabelId(label));
+    }
+
+
+    /**
+     * Records the reasoning of a touch event.
+     *
+     * @param observations The observations created from the touch event (might contain null entries).
+     * @param passedOn     Whether the observations were passed on to the interactors (see the move filter).
+     * @param moveDistance The distance checked by the move filter, or NaN if the event was not checked.
+     * @param interactors
+     * @param observeTime  Time taken by the interactors to observe the event (in nanoseconds).
+     * @param mediateTime  Time taken by the mediation (in nanoseconds).
+     * @param totalTime    Time taken to manage the whole event (in nanoseconds).
+     */
+    public void record(List<ProbObservationTouch> observations, boolean passedOn, double moveDistance,
+                       List<? extends ProbInteractorBase> interactors, long observeTime, long mediateTime, long totalTime) {
+
+        if (this.closed)
+            return;
+
+        // 1. Find the first observation and count the rule rows:
+        ProbObservationTouch first = null;
+        int numObservations = 0;
+        for (int i = 0; i < observations.size(); i++) {
+            if (observations.get(i) == null) continue;
+            if (first == null) first = observations.get(i);
+            numObservations++;
+        }
+        if (first == null)
+            return;
+        int numRules = 0;
+        for (ProbInteractorBase interactor : interactors) {
+            if (interactor.getCore().isCandidate())
+                numRules += interactor.getCore().getRulebook().getStatementRules().size();
+        }
+
+        // 2. Make sure there is a block with enough space:
+        if (this.block != null && this.block.numEvents > 0
+                && !this.block.fits(interactors.size(), numRules)) {
+            flush();
+        }
+        if (this.block == null) {
+            this.block = this.freeBlocks.poll();
+        }
+        if (this.block == null || !this.block.fits(interactors.size(), numRules)) {
+            this.numDroppedEvents++;
+            return;
+        }
+        Block block = this.block;
+
+        // 3. Event:
+        int event = block.numEvents++;
+        block.timestamps[event] = first.getTimestamp();
+        block.types[event] = (byte) first.getNominalFeatures()[0];
+        block.numObservations[event] = (byte) Math.min(numObservations, Byte.MAX_VALUE);
+        block.passedOn[event] = (byte) (passedOn ? 1 : 0);
+        block.moveDistances[event] = (float) moveDistance;
+        block.observeTimes[event] = (int) Math.min(observeTime, Integer.MAX_VALUE);
+        block.mediateTimes[event] = (int) Math.min(mediateTime, Integer.MAX_VALUE);
+        block.totalTimes[event] = (int) Math.min(totalTime, Integer.MAX_VALUE);
+        int determined = -1;
+        int numCandidates = 0;
+
+        // 4. Interactors and rules:
+        for (int k = 0; k < interactors.size(); k++) {
+            ProbInteractorBase interactor = interactors.get(k);
+            ProbInteractorCoreBase core = interactor.getCore();
+            int interactorId = this.getInteractorId(interactor, k);
+            if (core.isDetermined() && determined == -1)
+                determined = k;
+            if (core.isCandidate())
+                numCandidates++;
+
+            int row = block.numInteractorRows++;
+            block.interactorEvents[row] = event;
+            block.interactors[row] = block.use(interactorId);
+            block.flags[row] = (byte) ((core.isCandidate() ? FLAG_CANDIDATE : 0)
+                    | (core.isDetermined() ? FLAG_DETERMINED : 0)
+                    | (core.isClaimingDetermination() ? FLAG_CLAIMS_DETERMINATION : 0)
+                    | (core.hasSelfExcluded() ? FLAG_SELF_EXCLUDED : 0));
+            block.meanEvidences[row] = (float) core.getMeanEvidence();
+            block.candidateProbs[row] = (float) core.getCandidateProb();
+            block.entropies[row] = (float) getEntropy(core.getBehavioursPosterior());
+            int indexMax = core.getBehaviours().isEmpty() ? -1 : core.getIndexPosteriorMax();
+            block.indicesPosteriorMax[row] = (short) indexMax;
+            block.mostLikelyBehaviours[row] = indexMax < 0 ? -1 :
+                    block.use(this.getLabelId(core.getBehaviour(indexMax).getLabel()));
+
+            // Rules (only checked for candidates):
+            if (!core.isCandidate())
+                continue;
+            for (PMLRule rule : core.getRulebook().getStatementRules()) {
+                if (!rule.checkedThisUpdate)
+                    continue;
+                int ruleRow = block.numRuleRows++;
+                block.ruleEvents[ruleRow] = event;
+                block.ruleInteractors[ruleRow] = block.interactors[row];
+                block.rules[ruleRow] = block.use(this.getLabelId(rule.label));
+                block.ruleResults[ruleRow] = (byte) (rule.currentCheckResult ? 1 : 0);
+            }
+        }
+        block.determined[event] = (short) determined;
+        block.numCandidates[event] = (short) numCandidates;
+
+        if (first.getNominalFeatures()[0] == ProbObservationTouch.TYPE_TOUCH_UP || block.numEvents == block.timestamps.length) {
+            flush();
+        }
+    }
+
+
+    /**
+     * Hands the current block over to the background thread.
+     */
+    public void flush() {
+        final Block block = this.block;
+        if (block == null || block.numEvents == 0)
+            return;
+        final String[] dictionary = new String[block.dictionarySize];
+        for (int i = 0; i < block.dictionarySize; i++) {
+            dictionary[i] = this.labels.get(block.dictionary[i]);
+        }
+        this.block = this.freeBlocks.poll();
+        this.writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                write(block, dictionary);
+            }
+        });
+    }
+
+
+    /**
+     * Flushes, waits until everything is written and closes the current file.
+     * Afterwards, nothing is recorded anymore.
+     *
+     * @throws IOException If writing failed (at any time).
+     */
+    public void close() throws IOException {
+        if (this.closed)
+            return;
+        flush();
+        this.closed = true;
+        this.writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                closeChannel();
+            }
+        });
+        this.writer.shutdown();
+        try {
+            this.writer.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (this.error != null)
+            throw this.error;
+    }
+
+
+    /**
+     * @return The number of events that were not recorded since no block was free.
+     */
+    public int getNumDroppedEvents() {
+        return this.numDroppedEvents;
+    }
+
+
+    /**
+     * @return The first error of the background thread (which stops writing), or null.
+     */
+    public IOException getError() {
+        return this.error;
+    }
+
+
+    /**
+     * Returns the telemetry file with the given index.
+     *
+     * @param directory
+     * @param prefix
+     * @param index
+     * @return
+     */
+    public static File getFile(File directory, String prefix, int index) {
+        return new File(directory, prefix + "-" + index + FILE_EXTENSION);
+    }
+
+
+    /**
+     * Computes the entropy (in nats) of the given posterior (in log space).
+     *
+     * @param posteriorLn
+     * @return
+     */
+    public static double getEntropy(double[] posteriorLn) {
+        double entropy = 0;
+        if (posteriorLn == null)
+            return entropy;
+        for (double lnp : posteriorLn) {
+            double p = Math.exp(lnp);
+            if (p > 0)
+                entropy -= p * lnp;
+        }
+        return entropy;
+    }
+
+
+    private int getInteractorId(ProbInteractorBase interactor, int index) {
+        Integer id = this.interactorIds.get(interactor);
+        if (id == null) {
+            id = this.getLabelId(interactor.getClass().getSimpleName() + "#" + index);
+            this.interactorIds.put(interactor, id);
+        }
+        return id;
+    }
+
+
+    private int getLabelId(String label) {
+        if (label == null)
+            label = "";
+        Integer id = this.labelIds.get(label);
+        if (id == null) {
+            id = this.labels.size();
+            this.labels.add(label);
+            this.labelIds.put(label, id);
+        }
+        return id;
+    }
+
+
+    private static int findLastFileIndex(File directory, String prefix) {
+        int last = 0;
+        String[] names = directory.list();
+        if (names == null)
+            return last;
+        for (String name : names) {
+            if (name.startsWith(prefix + "-") && name.endsWith(FILE_EXTENSION)) {
+                try {
+                    last = Math.max(last, Integer.parseInt(
+                            name.substring(prefix.length() + 1, name.length() - FILE_EXTENSION.length())));
+                } catch (NumberFormatException e) {
+                    // not one of ours
+                }
+            }
+        }
+        return last;
+    }
+
+
+    // Writer thread:
+
+    private void write(Block block, String[] dictionary) {
+        try {
+            if (this.error != null)
+                return;
+            ByteBuffer buffer = this.encode(block, dictionary);
+            if (this.channel == null || (this.channel.position() > FILE_HEADER_SIZE
+                    && this.channel.position() + buffer.remaining() > this.maxFileSize)) {
+                nextFile();
+            }
+            while (buffer.hasRemaining()) {
+                this.channel.write(buffer);
+            }
+        } catch (IOException e) {
+            ProbLog.e("InferenceTelemetrySink", "Writing the telemetry failed, stopped recording", e);
+            this.error = e;
+        } finally {
+            block.clear();
+            this.freeBlocks.offer(block);
+        }
+    }
+
+
+    private ByteBuffer encode(Block block, String[] dictionary) {
+
+        // 1. Size:
+        byte[][] labels = new byte[dictionary.length][];
+        int size = 4 * 5;
+        for (int i = 0; i < dictionary.length; i++) {
+            labels[i] = dictionary[i].getBytes(UTF8);
+            size += 4 + 2 + labels[i].length;
+        }
+        size += block.numEvents * EVENT_ROW_SIZE + block.numInteractorRows * INTERACTOR_ROW_SIZE
+                + block.numRuleRows * RULE_ROW_SIZE;
+        if (this.encoded == null || this.encoded.capacity() < size)
+            this.encoded = ByteBuffer.allocateDirect(Math.max(size, 2 * (this.encoded == null ? 0 : this.encoded.capacity())));
+        ByteBuffer buffer = this.encoded;
+        buffer.clear();
+
+        // 2. Header and dictionary:
+        buffer.putInt(size - 4);
+        buffer.putInt(block.numEvents);
+        buffer.putInt(block.numInteractorRows);
+        buffer.putInt(block.numRuleRows);
+        buffer.putInt(dictionary.length);
+        for (int i = 0; i < dictionary.length; i++) {
+            buffer.putInt(block.dictionary[i]);
+            buffer.putShort((short) labels[i].length);
+            buffer.put(labels[i]);
+        }
+
+        // 3. Event columns:
+        int n = block.numEvents;
+        buffer.asLongBuffer().put(block.timestamps, 0, n);
+        buffer.position(buffer.position() + 8 * n);
+        buffer.put(block.types, 0, n);
+        buffer.put(block.numObservations, 0, n);
+        buffer.put(block.passedOn, 0, n);
+        putFloats(buffer, block.moveDistances, n);
+        putInts(buffer, block.observeTimes, n);
+        putInts(buffer, block.mediateTimes, n);
+        putInts(buffer, block.totalTimes, n);
+        putShorts(buffer, block.determined, n);
+        putShorts(buffer, block.numCandidates, n);
+
+        // 4. Interactor columns:
+        n = block.numInteractorRows;
+        putInts(buffer, block.interactorEvents, n);
+        putInts(buffer, block.interactors, n);
+        buffer.put(block.flags, 0, n);
+        putFloats(buffer, block.meanEvidences, n);
+        putFloats(buffer, block.candidateProbs, n);
+        putFloats(buffer, block.entropies, n);
+        putShorts(buffer, block.indicesPosteriorMax, n);
+        putInts(buffer, block.mostLikelyBehaviours, n);
+
+        // 5. Rule columns:
+        n = block.numRuleRows;
+        putInts(buffer, block.ruleEvents, n);
+        putInts(buffer, block.ruleInteractors, n);
+        putInts(buffer, block.rules, n);
+        buffer.put(block.ruleResults, 0, n);
+
+        buffer.flip();
+        return buffer;
+    }
+
+
+    private static void putInts(ByteBuffer buffer, int[] values, int n) {
+        buffer.asIntBuffer().put(values, 0, n);
+        buffer.position(buffer.position() + 4 * n);
+    }
+
+
+    private static void putFloats(ByteBuffer buffer, float[] values, int n) {
+        buffer.asFloatBuffer().put(values, 0, n);
+        buffer.position(buffer.position() + 4 * n);
+    }
+
+
+    private static void putShorts(ByteBuffer buffer, short[] values, int n) {
+        buffer.asShortBuffer().put(values, 0, n);
+        buffer.position(buffer.position() + 2 * n);
+    }
+
+
+    private void nextFile() throws IOException {
+        closeChannel();
+        this.fileIndex++;
+        RandomAccessFile file = new RandomAccessFile(getFile(this.directory, this.prefix, this.fileIndex), "rw");
+        file.setLength(0);
+        this.channel = file.getChannel();
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putShort(VERSION);
+        header.flip();
+        while (header.hasRemaining()) {
+            this.channel.write(header);
+        }
+
+        // Rotation:
+        File oldest = getFile(this.directory, this.prefix, this.fileIndex - this.maxFiles);
+        if (oldest.exists() && !oldest.delete()) {
+            ProbLog.w("InferenceTelemetrySink", "Could not delete old telemetry " + oldest);
+        }
+    }
+
+
+    private void closeChannel() {
+        if (this.channel == null)
+            return;
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            if (this.error == null)
+                this.error = e;
+        }
+        this.channel = null;
+    }
+
+
+    /**
+     * The columns of a block, preallocated for a fixed number of rows.
+     */
+    private static class Block {
+
+        int numEvents;
+        final long[] timestamps;
+        final byte[] types;
+        final byte[] numObservations;
+        final byte[] passedOn;
+        final float[] moveDistances;
+        final int[] observeTimes;
+        final int[] mediateTimes;
+        final int[] totalTimes;
+        final short[] determined;
+        final short[] numCandidates;
+
+        int numInteractorRows;
+        final int[] interactorEvents;
+        final int[] interactors;
+        final byte[] flags;
+        final float[] meanEvidences;
+        final float[] candidateProbs;
+        final float[] entropies;
+        final short[] indicesPosteriorMax;
+        final int[] mostLikelyBehaviours;
+
+        int numRuleRows;
+        final int[] ruleEvents;
+        final int[] ruleInteractors;
+        final int[] rules;
+        final byte[] ruleResults;
+
+        /**
+         * The label ids used in this block, and whether each id is used (indexed by id).
+         */
+        int[] dictionary = new int[16];
+        int dictionarySize;
+        boolean[] used = new boolean[16];
+
+
+        Block(int numEvents, int numRows) {
+            this.timestamps = new long[numEvents];
+            this.types = new byte[numEvents];
+            this.numObservations = new byte[numEvents];
+            this.passedOn = new byte[numEvents];
+            this.moveDistances = new float[numEvents];
+            this.observeTimes = new int[numEvents];
+            this.mediateTimes = new int[numEvents];
+            this.totalTimes = new int[numEvents];
+            this.determined = new short[numEvents];
+            this.numCandidates = new short[numEvents];
+
+            this.interactorEvents = new int[numRows];
+            this.interactors = new int[numRows];
+            this.flags = new byte[numRows];
+            this.meanEvidences = new float[numRows];
+            this.candidateProbs = new float[numRows];
+            this.entropies = new float[numRows];
+            this.indicesPosteriorMax = new short[numRows];
+            this.mostLikelyBehaviours = new int[numRows];
+
+            this.ruleEvents = new int[numRows];
+            this.ruleInteractors = new int[numRows];
+            this.rules = new int[numRows];
+            this.ruleResults = new byte[numRows];
+        }
+
+
+        boolean fits(int numInteractorRows, int numRuleRows) {
+            return this.numEvents < this.timestamps.length
+                    && this.numInteractorRows + numInteractorRows <= this.interactors.length
+                    && this.numRuleRows + numRuleRows <= this.rules.length;
+        }
+
+
+        /**
+         * Adds the given label id to the dictionary of this block (if not yet in it).
+         *
+         * @param id
+         * @return The id.
+         */
+        int use(int id) {
+            if (id >= this.used.length) {
+                boolean[] used = new boolean[Math.max(id + 1, 2 * this.used.length)];
+                System.arraycopy(this.used, 0, used, 0, this.used.length);
+                this.used = used;
+            }
+            if (!this.used[id]) {
+                this.used[id] = true;
+                if (this.dictionarySize == this.dictionary.length) {
+                    int[] dictionary = new int[2 * this.dictionary.length];
+                    System.arraycopy(this.dictionary, 0, dictionary, 0, this.dictionarySize);
+                    this.dictionary = dictionary;
+                }
+                this.dictionary[this.dictionarySize++] = id;
+            }
+            return id;
+        }
+
+
+        void clear() {
+            for (int i = 0; i < this.dictionarySize; i++)
+                this.used[this.dictionary[i]] = false;
+            this.dictionarySize = 0;
+            this.numEvents = 0;
+            this.numInteractorRows = 0;
+            this.numRuleRows = 0;
+        }
+    }
+}
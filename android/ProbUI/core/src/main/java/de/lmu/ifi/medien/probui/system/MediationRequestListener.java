@@ -19,10 +19,10 @@ along with this program. If not, see <http://www.gnu.org/licenses/>.
 
 package de.lmu.ifi.medien.probui.system;
 
-import de.lmu.ifi.medien.probui.gui.ProbInteractor;
+import de.lmu.ifi.medien.probui.gui.ProbInteractorBase;
 
 
 public interface MediationRequestListener {
 
-    void onRequestMediation(ProbInteractor source);
+    void onRequestMediation(ProbInteractorBase source);
 }
@@ -0,0 +1,133 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.system;
+
+/**
+ * Logging of the reasoning core, with the methods of android.util.Log, which is not available on a plain JVM.
+ * The messages are passed to a pluggable {@link ProbLogger}: By default, warnings and errors are
+ * written to the standard error stream and debug messages are dropped
+ * (the ProbUIManager of the app library installs a logger that forwards everything to the Android log).
+ */
+public final class ProbLog {
+
+
+    /**
+     * The levels (with the priorities of android.util.Log).
+     */
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+
+    /**
+     * Writes warnings and errors to the standard error stream.
+     */
+    public static final ProbLogger STANDARD_ERROR = new ProbLogger() {
+        @Override
+        public boolean isLoggable(String tag, int level) {
+            return level >= WARN;
+        }
+
+        @Override
+        public void log(int level, String tag, String message, Throwable throwable) {
+            System.err.println((level >= ERROR ? "E/" : "W/") + tag + ": " + message);
+            if (throwable != null)
+                throwable.printStackTrace();
+        }
+    };
+
+    /**
+     * Drops all messages.
+     */
+    public static final ProbLogger NONE = new ProbLogger() {
+        @Override
+        public boolean isLoggable(String tag, int level) {
+            return false;
+        }
+
+        @Override
+        public void log(int level, String tag, String message, Throwable throwable) {
+        }
+    };
+
+
+    private static volatile ProbLogger logger = STANDARD_ERROR;
+
+
+    private ProbLog() {
+    }
+
+
+    /**
+     * Sets the logger all messages are passed to.
+     *
+     * @param logger The logger, or null for {@link #NONE}.
+     */
+    public static void setLogger(ProbLogger logger) {
+        ProbLog.logger = logger != null ? logger : NONE;
+    }
+
+
+    public static ProbLogger getLogger() {
+        return logger;
+    }
+
+
+    public static boolean isLoggable(String tag, int level) {
+        return logger.isLoggable(tag, level);
+    }
+
+
+    public static void d(String tag, String message) {
+        log(DEBUG, tag, message, null);
+    }
+
+
+    public static void i(String tag, String message) {
+        log(INFO, tag, message, null);
+    }
+
+
+    public static void w(String tag, String message) {
+        log(WARN, tag, message, null);
+    }
+
+
+    public static void w(String tag, String message, Throwable throwable) {
+        log(WARN, tag, message, throwable);
+    }
+
+
+    public static void e(String tag, String message) {
+        log(ERROR, tag, message, null);
+    }
+
+
+    public static void e(String tag, String message, Throwable throwable) {
+        log(ERROR, tag, message, throwable);
+    }
+
+
+    private static void log(int level, String tag, String message, Throwable throwable) {
+        ProbLogger logger = ProbLog.logger;
+        if (logger.isLoggable(tag, level))
+            logger.log(level, tag, message, throwable);
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.system;
+
+/**
+ * Receives the log messages of the reasoning core (see {@link ProbLog}).
+ * On Android, the app library installs a logger that forwards to the Android log;
+ * elsewhere (e.g. benchmarks and offline evaluations on a server) any logging framework can be plugged in.
+ */
+public interface ProbLogger {
+
+    /**
+     * Checks whether messages of the given level and tag are logged at all,
+     * so that callers can skip building expensive messages.
+     *
+     * @param tag
+     * @param level One of {@link ProbLog#DEBUG}, {@link ProbLog#INFO}, {@link ProbLog#WARN} and {@link ProbLog#ERROR}.
+     * @return
+     */
+    boolean isLoggable(String tag, int level);
+
+    /**
+     * Logs a message.
+     *
+     * @param level
+     * @param tag
+     * @param message
+     * @param throwable Can be null.
+     */
+    void log(int level, String tag, String message, Throwable throwable);
+}
@@ -0,0 +1,51 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.system;
+
+import java.util.List;
+
+import de.lmu.ifi.medien.probui.gui.ProbInteractorBase;
+
+public interface ProbUIMediator extends MediationRequestListener {
+
+
+    double RULE_OUT_MEAN_EVIDENCE = -15; //TODO: currently hardcoded
+
+    void addInteractor(ProbInteractorBase interactor);
+
+    void mediate(boolean forceDecision);
+
+    @Override
+    void onRequestMediation(ProbInteractorBase source);
+
+    /**
+     * Returns the candidates of the current reasoning process (e.g. to save the reasoning state).
+     *
+     * @return
+     */
+    List<ProbInteractorBase> getCandidates();
+
+    /**
+     * Replaces the candidates of the current reasoning process (e.g. to restore a saved reasoning state).
+     *
+     * @param candidates
+     */
+    void setCandidates(List<ProbInteractorBase> candidates);
+}
@@ -19,12 +19,10 @@ along with this program. If not, see <http://www.gnu.org/licenses/>.
 
 package de.lmu.ifi.medien.probui.system;
 
-import android.util.Log;
-
 import java.util.ArrayList;
 import java.util.List;
 
-import de.lmu.ifi.medien.probui.gui.ProbInteractor;
+import de.lmu.ifi.medien.probui.gui.ProbInteractorBase;
 
 public class ProbUIMediatorImpl implements ProbUIMediator {
 
@@ -32,27 +30,27 @@ public class ProbUIMediatorImpl implements ProbUIMediator {
     /**
      * List of the probInteractors known to this mediator.
      */
-    protected List<ProbInteractor> interactors;
+    protected List<ProbInteractorBase> interactors;
 
 
     /**
      * List of the candidates in the current reasoning process.
      */
-    protected List<ProbInteractor> candidates;
+    protected List<ProbInteractorBase> candidates;
 
 
     /**
      * Trash list to hold excluded candidates that should be removed from the candidates list.
      * Just used internally to avoid concurrent list iteration and removal.
      */
-    protected List<ProbInteractor> trash;
+    protected List<ProbInteractorBase> trash;
 
 
     /**
      * Cradle list to hold all probInteractors that should be added to the candidates list.
      * Just used internally to avoid concurrent list iteration and removal.
      */
-    protected List<ProbInteractor> cradle;
+    protected List<ProbInteractorBase> cradle;
 
 
     /**
@@ -62,7 +60,7 @@ public class ProbUIMediatorImpl implements ProbUIMediator {
      * is allowed to act upon the just observed user interaction (e.g. a determined button would
      * trigger its associated action).
      */
-    protected List<ProbInteractor> claimers;
+    protected List<ProbInteractorBase> claimers;
 
 
     /**
@@ -71,16 +69,16 @@ public class ProbUIMediatorImpl implements ProbUIMediator {
      */
     private double[] candidatesPosterior;
     private double max_evidence;
-    private ProbInteractor mostLikelyInteractor;
+    private ProbInteractorBase mostLikelyInteractor;
 
 
     public ProbUIMediatorImpl() {
 
-        this.interactors = new ArrayList<ProbInteractor>();
-        this.candidates = new ArrayList<ProbInteractor>();
-        this.trash = new ArrayList<ProbInteractor>();
-        this.cradle = new ArrayList<ProbInteractor>();
-        this.claimers = new ArrayList<ProbInteractor>();
+        this.interactors = new ArrayList<ProbInteractorBase>();
+        this.candidates = new ArrayList<ProbInteractorBase>();
+        this.trash = new ArrayList<ProbInteractorBase>();
+        this.cradle = new ArrayList<ProbInteractorBase>();
+        this.claimers = new ArrayList<ProbInteractorBase>();
     }
 
 
@@ -104,7 +102,7 @@ public class ProbUIMediatorImpl implements ProbUIMediator {
         }
 
         // Update the rulebook:
-        for (ProbInteractor interactor : this.candidates) { //TODO: do I really only want to trigger rules for candidates?
+        for (ProbInteractorBase interactor : this.candidates) { //TODO: do I really only want to trigger rules for candidates?
             interactor.getCore().updateRulebook();
         }
 
@@ -127,7 +125,7 @@ public class ProbUIMediatorImpl implements ProbUIMediator {
     private void updateInteractorStates(boolean considerSelfExclusion) {
         max_evidence = Double.NEGATIVE_INFINITY;
         mostLikelyInteractor = null;
-        for (ProbInteractor interactor : this.interactors) {
+        for (ProbInteractorBase interactor : this.interactors) {
             double evidence = interactor.getCore().getMeanEvidence();
             // Remove if it has excluded itself:
             if (considerSelfExclusion && interactor.getCore().hasSelfExcluded()) {
@@ -153,7 +151,7 @@ public class ProbUIMediatorImpl implements ProbUIMediator {
             }
             // DEBUG: print candidate:
             //if (interactor.getCore().isCandidate())
-            //    Log.d("ProbUIMediatorImpl", "(still) candidate: " + k + ": " + evidence);
+            //    ProbLog.d("ProbUIMediatorImpl", "(still) candidate: " + k + ": " + evidence);
 
             // Find most likely interactor and its evidence:
             if (interactor.getCore().isCandidate() && evidence > max_evidence) {
@@ -175,7 +173,7 @@ public class ProbUIMediatorImpl implements ProbUIMediator {
      * @param max_evidence         The evidence of the currently most likely interactor.
      * @param mostLikelyInteractor The currently most likely interactor.
      */
-    private void handleClaims(double max_evidence, ProbInteractor mostLikelyInteractor) {
+    private void handleClaims(double max_evidence, ProbInteractorBase mostLikelyInteractor) {
 
         // A) If only one interactor has a claim, then determine that one, and exclude all others:
         if (this.claimers.size() == 1) {
@@ -184,7 +182,7 @@ public class ProbUIMediatorImpl implements ProbUIMediator {
                 this.claimers.get(0).getCore().determine();
                 determined = true;
             }
-            for (ProbInteractor interactor : this.candidates) {
+            for (ProbInteractorBase interactor : this.candidates) {
                 if (!determined || interactor != this.claimers.get(0)) // if -> only skip that one claimer if it was good enough
                     interactor.getCore().exclude();
             }
@@ -192,7 +190,7 @@ public class ProbUIMediatorImpl implements ProbUIMediator {
         }
         // B) If more than one interactor has a claim, choose the most likely one:
         else if (this.claimers.size() > 1) {
-            for (ProbInteractor interactor : this.interactors) {
+            for (ProbInteractorBase interactor : this.interactors) {
                 if (interactor == mostLikelyInteractor
                         && max_evidence > ProbUIMediator.RULE_OUT_MEAN_EVIDENCE) {
                     interactor.getCore().determine();
@@ -209,7 +207,7 @@ public class ProbUIMediatorImpl implements ProbUIMediator {
      */
     private void updateClaimersList() {
         this.claimers.clear();
-        for (ProbInteractor interactor : this.candidates) {
+        for (ProbInteractorBase interactor : this.candidates) {
             if (interactor.getCore().isClaimingDetermination()) {
                 this.claimers.add(interactor);
             }
@@ -220,7 +218,7 @@ public class ProbUIMediatorImpl implements ProbUIMediator {
      * Adds all those probInteractors to the candidates list that are currently in the cradle list.
      */
     private void addCradledCandidates() {
-        for (ProbInteractor interactor : this.cradle) {
+        for (ProbInteractorBase interactor : this.cradle) {
             this.candidates.add(interactor);
         }
         this.cradle.clear();
@@ -230,7 +228,7 @@ public class ProbUIMediatorImpl implements ProbUIMediator {
      * Removes all those probInteractors from the candidates list that are currently in the trash list.
      */
     private void removeTrashedCandidates() {
-        for (ProbInteractor interactor : this.trash) {
+        for (ProbInteractorBase interactor : this.trash) {
             this.candidates.remove(interactor);
         }
         this.trash.clear();
@@ -267,7 +265,7 @@ public class ProbUIMediatorImpl implements ProbUIMediator {
         for (int i = 0; i < this.candidatesPosterior.length; i++) {
             this.candidates.get(i).getCore().setCandidateProb(this.candidatesPosterior[i]);
         }
-        Log.d("ProbUIMediatorImpl", "candidate posterior (v2): " + this.candidatesPosterior[0]
+        ProbLog.d("ProbUIMediatorImpl", "candidate posterior (v2): " + this.candidatesPosterior[0]
                 + (this.candidatesPosterior.length > 1 ? (", " + this.candidatesPosterior[1]) : "")
                 + (this.candidatesPosterior.length > 2 ? (", " + this.candidatesPosterior[2]) : ""));
     }
@@ -275,18 +273,31 @@ public class ProbUIMediatorImpl implements ProbUIMediator {
 
 
     @Override
-    public void onRequestMediation(ProbInteractor source) {
+    public void onRequestMediation(ProbInteractorBase source) {
         this.mediate(false);
     }
 
 
 
     @Override
-    public void addInteractor(ProbInteractor interactor) {
+    public void addInteractor(ProbInteractorBase interactor) {
         this.interactors.add(interactor);
     }
 
 
+    @Override
+    public List<ProbInteractorBase> getCandidates() {
+        return this.candidates;
+    }
+
+
+    @Override
+    public void setCandidates(List<ProbInteractorBase> candidates) {
+        this.candidates.clear();
+        this.candidates.addAll(candidates);
+    }
+
+
 
 
 
@@ -0,0 +1,182 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.system;
+
+import java.util.List;
+
+import de.lmu.ifi.medien.probui.exceptions.WrongObservationDelegationException;
+import de.lmu.ifi.medien.probui.gui.ProbInteractorBase;
+import de.lmu.ifi.medien.probui.observations.ProbObservationTouch;
+
+/**
+ * Passes the observations of one touch event through the reasoning pipeline:
+ * The observations are distributed to the interactor cores (small moves are filtered out),
+ * the interactors are notified, the mediator is updated and the interactors are notified again
+ * after the mediation.
+ * <p/>
+ * Used by ProbUIManager for the touch events of its container and by {@link TouchTraceReplay}
+ * for recorded or synthetic events, so that both run the same code.
+ */
+public class TouchEventDispatcher {
+
+
+    /**
+     * The interactors (a live view, e.g. the manager's list, to which interactors may be added).
+     */
+    private final List<? extends ProbInteractorBase> interactors;
+
+    private final ProbUIMediator mediator;
+
+    /**
+     * Whether the stages are timed (e.g. for the telemetry).
+     */
+    private boolean timed;
+
+    private long observeTime;
+    private long mediateTime;
+
+
+    public TouchEventDispatcher(List<? extends ProbInteractorBase> interactors, ProbUIMediator mediator) {
+        this.interactors = interactors;
+        this.mediator = mediator;
+    }
+
+
+    public void setTimed(boolean timed) {
+        this.timed = timed;
+    }
+
+
+    /**
+     * Dispatches the observations of one touch event.
+     *
+     * @param observations              The observations of the event (null entries are skipped).
+     * @param previousObservations      The observations last passed on to the cores,
+     *                                  which are replaced by the given ones if they are passed on.
+     * @param numRemainingPointers      Number of pointers still down after the event (for touch up).
+     * @return True if the observations have been passed on to the cores (i.e. were not filtered out).
+     * @throws WrongObservationDelegationException
+     */
+    public boolean dispatch(List<ProbObservationTouch> observations, List<ProbObservationTouch> previousObservations,
+                            int numRemainingPointers) throws WrongObservationDelegationException {
+
+        // 1. Distribute the observations to the cores of all interactors
+        // (for reasoning by these interactor cores, not for visual feedback etc. - that comes below):
+        boolean passedOn = false;
+        long observeStartTime = this.timed ? System.nanoTime() : 0;
+        for (ProbInteractorBase interactor : this.interactors) {
+            for (int i = 0; i < observations.size(); i++) {
+                ProbObservationTouch obs = observations.get(i);
+                if (obs == null) continue;
+                if (ProbObservationTouch.isPassedOn(observations, previousObservations, i)) {
+                    interactor.getCore().onTouchObservation(obs);
+                    passedOn = true;
+                }
+            }
+        }
+        this.observeTime = this.timed ? System.nanoTime() - observeStartTime : 0;
+
+        if (passedOn) {
+            previousObservations.clear();
+            previousObservations.addAll(observations);
+        }
+
+        // 2. Notify the interactors to react (e.g. visual feedback, nothing to do with the mediation):
+        this.notifyInteractors(observations, numRemainingPointers, false);
+
+        // 3. If no interactor is determined yet (i.e. no decision yet), update the reasoning process:
+        long mediateStartTime = this.timed ? System.nanoTime() : 0;
+        if (!this.isOneDetermined() && passedOn) {
+            this.mediator.mediate(false);
+        }
+        this.mediateTime = this.timed ? System.nanoTime() - mediateStartTime : 0;
+
+        // 4. Post mediation: notify the interactors again:
+        this.notifyInteractors(observations, numRemainingPointers, true);
+
+        return passedOn;
+    }
+
+
+    private void notifyInteractors(List<ProbObservationTouch> observations, int numRemainingPointers,
+                                   boolean postMediation) {
+        for (ProbInteractorBase interactor : this.interactors) {
+            for (ProbObservationTouch obs : observations) {
+                if (obs == null) continue;
+                switch (obs.getNominalFeatures()[0]) {
+
+                    case ProbObservationTouch.TYPE_TOUCH_DOWN:
+                        if (postMediation)
+                            interactor.onTouchDownPost(obs);
+                        else
+                            interactor.onTouchDown(obs);
+                        break;
+
+                    case ProbObservationTouch.TYPE_TOUCH_MOVE:
+                        if (postMediation)
+                            interactor.onTouchMovePost(obs);
+                        else
+                            interactor.onTouchMove(obs);
+                        break;
+
+                    case ProbObservationTouch.TYPE_TOUCH_UP:
+                        if (postMediation)
+                            interactor.onTouchUpPost(obs, numRemainingPointers);
+                        else
+                            interactor.onTouchUp(obs, numRemainingPointers);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Checks whether one of the interactors is determined.
+     *
+     * @return
+     */
+    public boolean isOneDetermined() {
+        for (ProbInteractorBase interactor : this.interactors) {
+            if (interactor.getCore().isDetermined()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * @return The time taken to distribute the observations of the last event to the cores (in ns, if timed).
+     */
+    public long getObserveTime() {
+        return this.observeTime;
+    }
+
+
+    /**
+     * @return The time taken by the mediation of the last event (in ns, if timed).
+     */
+    public long getMediateTime() {
+        return this.mediateTime;
+    }
+}
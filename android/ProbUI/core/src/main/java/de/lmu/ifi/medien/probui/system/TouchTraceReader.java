@@ -0,0 +1,205 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.system;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import de.lmu.ifi.medien.probui.observations.ProbObservationFactory;
+import de.lmu.ifi.medien.probui.observations.ProbObservationTouch;
+
+/**
+ * Reads the events of a trace file written by a {@link TouchTraceRecorder}, one after the other:
+ * <pre>
+ * TouchTraceReader reader = new TouchTraceReader(file);
+ * while (reader.next()) {
+ *     for (int i = 0; i < reader.getNumObservations(); i++)
+ *         ... reader.getObservation(i) ...
+ * }
+ * </pre>
+ * The observations are decoded as created by the manager, i.e. with the (quantised) features
+ * and the raw coordinates computed from the surface size.
+ */
+public class TouchTraceReader {
+
+
+    private final ByteBuffer buffer;
+
+    private int chunkEnd;
+    private long timestamp;
+    private int surfaceWidth;
+    private int surfaceHeight;
+
+    private ProbObservationTouch[] observations = new ProbObservationTouch[2];
+    private int numObservations;
+    private int determinedInteractor;
+    private int numCandidates;
+    private int mostLikelyInteractor;
+    private double mostLikelyPosterior;
+
+
+    public TouchTraceReader(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            this.buffer = ByteBuffer.allocate((int) channel.size());
+            while (this.buffer.hasRemaining() && channel.read(this.buffer) >= 0) {
+                // read all
+            }
+            this.buffer.flip();
+        } finally {
+            in.close();
+        }
+        if (this.buffer.remaining() < TouchTraceRecorder.FILE_HEADER_SIZE
+                || this.buffer.getInt() != TouchTraceRecorder.MAGIC)
+            throw new IOException("Not a touch trace: " + file);
+        short version = this.buffer.getShort();
+        if (version != TouchTraceRecorder.VERSION)
+            throw new IOException("Unsupported touch trace version: " + version);
+        this.chunkEnd = this.buffer.position();
+    }
+
+
+    /**
+     * Reads the next event.
+     *
+     * @return False if there are no more events.
+     * @throws IOException If the trace is truncated or corrupt.
+     */
+    public boolean next() throws IOException {
+        try {
+            // 1. Next chunk, if needed:
+            if (this.buffer.position() >= this.chunkEnd) {
+                if (!this.buffer.hasRemaining())
+                    return false;
+                int length = this.buffer.getInt();
+                this.chunkEnd = this.buffer.position() + length;
+                if (length < TouchTraceRecorder.CHUNK_HEADER_SIZE - 4 || this.chunkEnd > this.buffer.limit())
+                    throw new IOException("Truncated touch trace chunk");
+                this.timestamp = this.buffer.getLong();
+                this.surfaceWidth = this.buffer.getShort() & 0xFFFF;
+                this.surfaceHeight = this.buffer.getShort() & 0xFFFF;
+                if (this.buffer.position() >= this.chunkEnd)
+                    return next();
+            }
+
+            // 2. Event:
+            long delta = getVarLong(this.buffer);
+            this.timestamp += (delta >>> 1) ^ -(delta & 1);
+            this.numObservations = this.buffer.get() & 0xFF;
+            if (this.observations.length < this.numObservations) {
+                this.observations = new ProbObservationTouch[this.numObservations];
+            }
+            for (int i = 0; i < this.numObservations; i++) {
+                int typeAndPointer = this.buffer.get() & 0xFF;
+                double x = dequantise(this.buffer.getShort());
+                double y = dequantise(this.buffer.getShort());
+                double orientation = this.buffer.getShort() * Math.PI / TouchTraceRecorder.QUANTISATION_ORIENTATION;
+                double axisMinor = dequantise(this.buffer.getShort());
+                double axisMajor = dequantise(this.buffer.getShort());
+                double pressure = dequantise(this.buffer.getShort());
+                this.observations[i] = ProbObservationFactory.createTouchObservation(
+                        x * this.surfaceWidth, y * this.surfaceHeight, x, y,
+                        orientation, axisMinor, axisMajor, pressure,
+                        (typeAndPointer >>> 6) - 1, typeAndPointer & 0x3F, this.timestamp);
+            }
+            this.determinedInteractor = this.buffer.getShort();
+            this.numCandidates = this.buffer.get() & 0xFF;
+            this.mostLikelyInteractor = this.buffer.getShort();
+            this.mostLikelyPosterior = dequantise(this.buffer.getShort());
+        } catch (RuntimeException e) { // BufferUnderflowException
+            throw new IOException("Corrupt touch trace", e);
+        }
+        if (this.buffer.position() > this.chunkEnd)
+            throw new IOException("Corrupt touch trace: event exceeds its chunk");
+        return true;
+    }
+
+
+    public long getTimestamp() {
+        return this.timestamp;
+    }
+
+
+    public int getSurfaceWidth() {
+        return this.surfaceWidth;
+    }
+
+
+    public int getSurfaceHeight() {
+        return this.surfaceHeight;
+    }
+
+
+    public int getNumObservations() {
+        return this.numObservations;
+    }
+
+
+    public ProbObservationTouch getObservation(int index) {
+        return this.observations[index];
+    }
+
+
+    /**
+     * @return The index of the determined interactor after this event, or -1 if none was determined.
+     */
+    public int getDeterminedInteractor() {
+        return this.determinedInteractor;
+    }
+
+
+    public int getNumCandidates() {
+        return this.numCandidates;
+    }
+
+
+    /**
+     * @return The index of the candidate with the highest posterior after this event, or -1 if there was none.
+     */
+    public int getMostLikelyInteractor() {
+        return this.mostLikelyInteractor;
+    }
+
+
+    public double getMostLikelyPosterior() {
+        return this.mostLikelyPosterior;
+    }
+
+
+    private static double dequantise(short value) {
+        return (value & 0xFFFF) * 1.0 / TouchTraceRecorder.QUANTISATION;
+    }
+
+
+    private static long getVarLong(ByteBuffer buffer) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Corrupt touch trace: varint too long");
+    }
+}
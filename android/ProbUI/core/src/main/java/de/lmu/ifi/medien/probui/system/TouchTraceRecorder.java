@@ -0,0 +1,429 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.system;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import de.lmu.ifi.medien.probui.gui.ProbInteractorBase;
+import de.lmu.ifi.medien.probui.gui.ProbInteractorCoreBase;
+import de.lmu.ifi.medien.probui.observations.ProbObservationTouch;
+
+/**
+ * Records the touch observations managed by a ProbUIManager (see ProbUIManager.setTraceRecorder)
+ * to compact binary trace files, e.g. to diagnose mis-triggers in the field. The traces can be read with
+ * a {@link TouchTraceReader}.
+ * <p/>
+ * Format: Each file starts with a header (magic number and version), followed by chunks.
+ * Each chunk is self-contained: its length, the timestamp of its first event and the surface size,
+ * followed by the event records. An event record holds the delta of its timestamp (zig-zag varint),
+ * its touch observations (type and pointer ID in one byte, the features quantised to 16 bit)
+ * and a summary of the resulting mediation state (determined interactor, number of candidates,
+ * and the most likely candidate with its posterior).
+ * <p/>
+ * The records are written to preallocated direct buffers on the UI thread; full buffers (and the buffer
+ * at the end of each touch interaction) are written to the files by a background thread.
+ * If the background thread falls behind, events are dropped instead of blocking the UI thread
+ * (see {@link #getNumDroppedEvents()}). Once a file reaches its maximum size, the next one is started
+ * and the oldest ones are deleted.
+ * <p/>
+ * The recording methods must be called from the UI thread (as done by the manager).
+ */
+public class TouchTraceRecorder {
+
+
+    public static final int MAGIC = 0x50555452; // "PUTR"
+
+    public static final short VERSION = 1;
+
+    public static final int FILE_HEADER_SIZE = 6;
+
+    public static final int CHUNK_HEADER_SIZE = 16;
+
+    public static final String FILE_EXTENSION = ".trace";
+
+    /**
+     * Features in [0,1] (position, touch ellipse axes, pressure) are stored as multiples of 1/QUANTISATION;
+     * the orientation in [-PI,PI] as multiples of PI/QUANTISATION_ORIENTATION.
+     */
+    public static final int QUANTISATION = 0xFFFF;
+
+    public static final int QUANTISATION_ORIENTATION = Short.MAX_VALUE;
+
+    private static final int OBSERVATION_SIZE = 13;
+
+    private static final int MAX_RECORD_OVERHEAD = 10 + 1 + 7;
+
+
+    private final File directory;
+    private final String prefix;
+    private final long maxFileSize;
+    private final int maxFiles;
+
+    private final BlockingQueue<ByteBuffer> freeBuffers;
+    private final ExecutorService writer;
+
+    // UI thread:
+    private ByteBuffer buffer;
+    private long previousTimestamp;
+    private int surfaceWidth;
+    private int surfaceHeight;
+    private volatile int numDroppedEvents;
+    private boolean closed;
+
+    // Writer thread:
+    private FileChannel channel;
+    private int fileIndex;
+    private volatile IOException error;
+
+
+    /**
+     * Creates a recorder that writes the files "[prefix]-[index].trace" to the given directory
+     * (continuing after the highest existing index).
+     *
+     * @param directory
+     * @param prefix
+     * @param bufferSize  Size of each buffer in bytes (a few kilobytes are enough).
+     * @param numBuffers  Number of buffers, i.e. how far the background thread might fall behind.
+     * @param maxFileSize Size in bytes after which the next file is started.
+     * @param maxFiles    Number of files to keep.
+     */
+    public TouchTraceRecorder(File directory, String prefix, int bufferSize, int numBuffers,
+                              long maxFileSize, int maxFiles) {
+
+        if (bufferSize < CHUNK_HEADER_SIZE + MAX_RECORD_OVERHEAD + 2 * OBSERVATION_SIZE)
+            throw new IllegalArgumentException("Buffer size too small: " + bufferSize);
+        if (numBuffers < 1 || maxFiles < 1)
+            throw new IllegalArgumentException("At least one buffer and file needed");
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IllegalArgumentException("Cannot create directory: " + directory);
+
+        this.directory = directory;
+        this.prefix = prefix;
+        this.maxFileSize = maxFileSize;
+        this.maxFiles = maxFiles;
+
+        this.freeBuffers = new ArrayBlockingQueue<ByteBuffer>(numBuffers);
+        for (int i = 0; i < numBuffers; i++) {
+            this.freeBuffers.add(ByteBuffer.allocateDirect(bufferSize));
+        }
+        this.buffer = this.freeBuffers.poll();
+
+        this.fileIndex = findLastFileIndex(directory, prefix);
+
+        this.writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "TouchTraceRecorder");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+
+    /**
+     * Records the given observations of a touch event, together with the resulting state
+     * of the given interactors. Flushes at the end of a touch interaction (i.e. on touch up).
+     *
+     * @param observations  The observations created from the touch event (might contain null entries).
+     * @param interactors
+     * @param surfaceWidth
+     * @param surfaceHeight
+     */
+    public void record(List<ProbObservationTouch> observations, List<? extends ProbInteractorBase> interactors,
+                       int surfaceWidth, int surfaceHeight) {
+
+        if (this.closed)
+            return;
+
+        // 1. Count the observations and check if the interaction ends:
+        int numObservations = 0;
+        long timestamp = 0;
+        boolean touchUp = false;
+        for (int i = 0; i < observations.size(); i++) {
+            ProbObservationTouch obs = observations.get(i);
+            if (obs == null) continue;
+            if (numObservations == 0) timestamp = obs.getTimestamp();
+            touchUp |= obs.getNominalFeatures()[0] == ProbObservationTouch.TYPE_TOUCH_UP;
+            numObservations++;
+        }
+        if (numObservations == 0)
+            return;
+        numObservations = Math.min(numObservations, 0xFF);
+        int recordSize = MAX_RECORD_OVERHEAD + numObservations * OBSERVATION_SIZE;
+
+        // 2. Make sure there is a buffer with enough space, in the same chunk only if the surface is the same:
+        if (this.buffer != null && this.buffer.position() > 0
+                && (this.buffer.remaining() < recordSize
+                || surfaceWidth != this.surfaceWidth || surfaceHeight != this.surfaceHeight)) {
+            flush();
+        }
+        if (this.buffer == null) {
+            this.buffer = this.freeBuffers.poll();
+        }
+        if (this.buffer == null || this.buffer.capacity() < CHUNK_HEADER_SIZE + recordSize) {
+            this.numDroppedEvents++;
+            return;
+        }
+        ByteBuffer buffer = this.buffer;
+        if (buffer.position() == 0) {
+            buffer.putInt(0); // length, set on flush
+            buffer.putLong(timestamp);
+            buffer.putShort((short) surfaceWidth);
+            buffer.putShort((short) surfaceHeight);
+            this.previousTimestamp = timestamp;
+            this.surfaceWidth = surfaceWidth;
+            this.surfaceHeight = surfaceHeight;
+        }
+
+        // 3. Event:
+        putVarLong(buffer, zigZag(timestamp - this.previousTimestamp));
+        this.previousTimestamp = timestamp;
+        buffer.put((byte) numObservations);
+        int written = 0;
+        for (int i = 0; i < observations.size() && written < numObservations; i++) {
+            ProbObservationTouch obs = observations.get(i);
+            if (obs == null) continue;
+            int[] nominal = obs.getNominalFeatures();
+            double[] real = obs.getRealFeatures();
+            buffer.put((byte) (((nominal[0] + 1) & 0x3) << 6 | (nominal[1] & 0x3F)));
+            buffer.putShort(quantise(real[ProbObservationTouch.FEATURE_X]));
+            buffer.putShort(quantise(real[ProbObservationTouch.FEATURE_Y]));
+            buffer.putShort((short) Math.round(Math.max(-1, Math.min(1, real[ProbObservationTouch.FEATURE_ORIENTATION] / Math.PI))
+                    * QUANTISATION_ORIENTATION));
+            buffer.putShort(quantise(real[ProbObservationTouch.FEATURE_AXIS_MINOR]));
+            buffer.putShort(quantise(real[ProbObservationTouch.FEATURE_AXIS_MAJOR]));
+            buffer.putShort(quantise(real[ProbObservationTouch.FEATURE_PRESSURE]));
+            written++;
+        }
+
+        // 4. Mediation summary:
+        int determined = -1;
+        int numCandidates = 0;
+        int mostLikely = -1;
+        double mostLikelyProb = 0;
+        for (int k = 0; k < interactors.size(); k++) {
+            ProbInteractorCoreBase core = interactors.get(k).getCore();
+            if (determined == -1 && core.isDetermined()) {
+                determined = k;
+            }
+            if (core.isCandidate()) {
+                numCandidates++;
+                if (mostLikely == -1 || core.getCandidateProb() > mostLikelyProb) {
+                    mostLikely = k;
+                    mostLikelyProb = core.getCandidateProb();
+                }
+            }
+        }
+        buffer.putShort((short) determined);
+        buffer.put((byte) Math.min(numCandidates, 0xFF));
+        buffer.putShort((short) mostLikely);
+        buffer.putShort(quantise(mostLikelyProb));
+
+        if (touchUp) {
+            flush();
+        }
+    }
+
+
+    /**
+     * Hands the current chunk over to the background thread.
+     */
+    public void flush() {
+        final ByteBuffer buffer = this.buffer;
+        if (buffer == null || buffer.position() == 0)
+            return;
+        buffer.putInt(0, buffer.position() - 4);
+        buffer.flip();
+        this.buffer = this.freeBuffers.poll();
+        this.writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                write(buffer);
+            }
+        });
+    }
+
+
+    /**
+     * Flushes, waits until everything is written and closes the current file.
+     * Afterwards, nothing is recorded anymore.
+     *
+     * @throws IOException If writing failed (at any time).
+     */
+    public void close() throws IOException {
+        if (this.closed)
+            return;
+        flush();
+        this.closed = true;
+        this.writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                closeChannel();
+            }
+        });
+        this.writer.shutdown();
+        try {
+            this.writer.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (this.error != null)
+            throw this.error;
+    }
+
+
+    /**
+     * @return The number of events that were not recorded since no buffer was free.
+     */
+    public int getNumDroppedEvents() {
+        return this.numDroppedEvents;
+    }
+
+
+    /**
+     * @return The first error of the background thread (which stops writing), or null.
+     */
+    public IOException getError() {
+        return this.error;
+    }
+
+
+    /**
+     * Returns the trace file with the given index.
+     *
+     * @param directory
+     * @param prefix
+     * @param index
+     * @return
+     */
+    public static File getFile(File directory, String prefix, int index) {
+        return new File(directory, prefix + "-" + index + FILE_EXTENSION);
+    }
+
+
+    private static int findLastFileIndex(File directory, String prefix) {
+        int last = 0;
+        String[] names = directory.list();
+        if (names == null)
+            return last;
+        for (String name : names) {
+            if (name.startsWith(prefix + "-") && name.endsWith(FILE_EXTENSION)) {
+                try {
+                    last = Math.max(last, Integer.parseInt(
+                            name.substring(prefix.length() + 1, name.length() - FILE_EXTENSION.length())));
+                } catch (NumberFormatException e) {
+                    // not one of ours
+                }
+            }
+        }
+        return last;
+    }
+
+
+    // Writer thread:
+
+    private void write(ByteBuffer buffer) {
+        try {
+            if (this.error != null)
+                return;
+            if (this.channel == null || (this.channel.position() > FILE_HEADER_SIZE
+                    && this.channel.position() + buffer.remaining() > this.maxFileSize)) {
+                nextFile();
+            }
+            while (buffer.hasRemaining()) {
+                this.channel.write(buffer);
+            }
+        } catch (IOException e) {
+            ProbLog.e("TouchTraceRecorder", "Writing the trace failed, stopped recording", e);
+            this.error = e;
+        } finally {
+            buffer.clear();
+            this.freeBuffers.offer(buffer);
+        }
+    }
+
+
+    private void nextFile() throws IOException {
+        closeChannel();
+        this.fileIndex++;
+        RandomAccessFile file = new RandomAccessFile(getFile(this.directory, this.prefix, this.fileIndex), "rw");
+        file.setLength(0);
+        this.channel = file.getChannel();
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putShort(VERSION);
+        header.flip();
+        while (header.hasRemaining()) {
+            this.channel.write(header);
+        }
+
+        // Rotation:
+        File oldest = getFile(this.directory, this.prefix, this.fileIndex - this.maxFiles);
+        if (oldest.exists() && !oldest.delete()) {
+            ProbLog.w("TouchTraceRecorder", "Could not delete old trace " + oldest);
+        }
+    }
+
+
+    private void closeChannel() {
+        if (this.channel == null)
+            return;
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            if (this.error == null)
+                this.error = e;
+        }
+        this.channel = null;
+    }
+
+
+    // Encoding:
+
+    private static short quantise(double value) {
+        return (short) Math.round(Math.max(0, Math.min(1, value)) * QUANTISATION);
+    }
+
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+
+    private static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.system;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.lmu.ifi.medien.probui.exceptions.WrongObservationDelegationException;
+import de.lmu.ifi.medien.probui.gui.HeadlessProbInteractor;
+import de.lmu.ifi.medien.probui.gui.ProbInteractorBase;
+import de.lmu.ifi.medien.probui.observations.ProbObservationTouch;
+
+/**
+ * Replays touch observations (recorded with a {@link TouchTraceRecorder}, or synthetic ones)
+ * to interactors and a {@link ProbUIMediatorImpl}, without a ProbUIManager and its views:
+ * Each event is handled by the same {@link TouchEventDispatcher} as in ProbUIManager.manageTouchEvent,
+ * i.e. the observations are distributed to the interactor cores (with the same filtering of small moves),
+ * the interactors are notified and the mediator is updated.
+ * <p/>
+ * The replay measures the latency of each event and records the decisions and the posterior
+ * over the interactors (see {@link TouchTraceReplayResult}), so that performance and results can be compared
+ * between versions. The interactors are usually {@link HeadlessProbInteractor}s.
+ * <p/>
+ * The events are either replayed as fast as possible (deterministic, e.g. for benchmarks)
+ * or paced in real time according to their timestamps.
+ */
+public class TouchTraceReplay {
+
+
+    public static final int PACING_AS_FAST_AS_POSSIBLE = 0;
+
+    public static final int PACING_REAL_TIME = 1;
+
+
+    private final List<ProbInteractorBase> interactors;
+
+    private final ProbUIMediator mediator;
+
+    private final TouchEventDispatcher dispatcher;
+
+    private int pacing = PACING_AS_FAST_AS_POSSIBLE;
+
+    private final List<ProbObservationTouch> previousTouchObservations = new ArrayList<ProbObservationTouch>();
+
+    private final List<Integer> activePointers = new ArrayList<Integer>();
+
+    /**
+     * The state of each interactor before the current event (to find the decision).
+     */
+    private final int[] numDeterminations;
+    private final boolean[] determined;
+
+
+    /**
+     * Creates a replay for the given interactors (whose behaviour setup must have been finalised).
+     *
+     * @param interactors
+     */
+    public TouchTraceReplay(List<? extends ProbInteractorBase> interactors) {
+        this.interactors = new ArrayList<ProbInteractorBase>(interactors);
+        this.mediator = new ProbUIMediatorImpl();
+        for (ProbInteractorBase interactor : this.interactors) {
+            this.mediator.addInteractor(interactor);
+            interactor.getCore().setMediationRequestListener(this.mediator);
+        }
+        this.dispatcher = new TouchEventDispatcher(this.interactors, this.mediator);
+        this.numDeterminations = new int[this.interactors.size()];
+        this.determined = new boolean[this.interactors.size()];
+    }
+
+
+    /**
+     * @param pacing PACING_AS_FAST_AS_POSSIBLE or PACING_REAL_TIME.
+     */
+    public void setPacing(int pacing) {
+        if (pacing != PACING_AS_FAST_AS_POSSIBLE && pacing != PACING_REAL_TIME)
+            throw new IllegalArgumentException("Unknown pacing: " + pacing);
+        this.pacing = pacing;
+    }
+
+
+    public List<ProbInteractorBase> getInteractors() {
+        return this.interactors;
+    }
+
+
+    /**
+     * Replays all events of the given trace.
+     *
+     * @param reader
+     * @return
+     * @throws IOException
+     * @throws WrongObservationDelegationException
+     */
+    public TouchTraceReplayResult replay(TouchTraceReader reader)
+            throws IOException, WrongObservationDelegationException {
+
+        TouchTraceReplayResult result = new TouchTraceReplayResult(this.interactors.size());
+        List<ProbObservationTouch> observations = new ArrayList<ProbObservationTouch>();
+        Pacer pacer = new Pacer();
+        while (reader.next()) {
+            observations.clear();
+            for (int i = 0; i < reader.getNumObservations(); i++) {
+                observations.add(reader.getObservation(i));
+            }
+            pacer.await(reader.getTimestamp());
+            replayEvent(observations, result);
+            result.setRecorded(reader.getDeterminedInteractor(), reader.getMostLikelyInteractor());
+        }
+        return result;
+    }
+
+
+    /**
+     * Replays the given events.
+     *
+     * @param events The observations of each event (as created by the manager from a touch event).
+     * @return
+     * @throws WrongObservationDelegationException
+     */
+    public TouchTraceReplayResult replay(List<? extends List<ProbObservationTouch>> events)
+            throws WrongObservationDelegationException {
+
+        TouchTraceReplayResult result = new TouchTraceReplayResult(this.interactors.size());
+        Pacer pacer = new Pacer();
+        for (List<ProbObservationTouch> observations : events) {
+            if (!observations.isEmpty() && observations.get(0) != null)
+                pacer.await(observations.get(0).getTimestamp());
+            replayEvent(observations, result);
+        }
+        return result;
+    }
+
+
+    private void replayEvent(List<ProbObservationTouch> observations, TouchTraceReplayResult result)
+            throws WrongObservationDelegationException {
+
+        for (int k = 0; k < this.numDeterminations.length; k++) {
+            ProbInteractorBase interactor = this.interactors.get(k);
+            this.numDeterminations[k] = interactor instanceof HeadlessProbInteractor ?
+                    ((HeadlessProbInteractor) interactor).getNumDeterminations() : 0;
+            this.determined[k] = interactor.getCore().isDetermined();
+        }
+
+        long start = System.nanoTime();
+        handleEvent(observations);
+        long latency = System.nanoTime() - start;
+
+        // The decision is the interactor that was determined during the event (if any);
+        // headless interactors count their determinations, since they might be undetermined right away:
+        int decision = -1;
+        for (int k = 0; k < this.numDeterminations.length && decision == -1; k++) {
+            ProbInteractorBase interactor = this.interactors.get(k);
+            if (interactor instanceof HeadlessProbInteractor ?
+                    ((HeadlessProbInteractor) interactor).getNumDeterminations() > this.numDeterminations[k]
+                    : !this.determined[k] && interactor.getCore().isDetermined())
+                decision = k;
+        }
+        long timestamp = observations.isEmpty() || observations.get(0) == null ?
+                -1 : observations.get(0).getTimestamp();
+        result.add(timestamp, latency, decision, this.interactors);
+    }
+
+
+    /**
+     * Handles the observations of one touch event (see ProbUIManager.manageTouchEvent).
+     */
+    private void handleEvent(List<ProbObservationTouch> observations) throws WrongObservationDelegationException {
+
+        // 1. Track the pointers (for the number of remaining pointers on touch up):
+        for (ProbObservationTouch obs : observations) {
+            if (obs == null) continue;
+            Integer pointerID = obs.getNominalFeatures()[1];
+            if (obs.getNominalFeatures()[0] == ProbObservationTouch.TYPE_TOUCH_DOWN
+                    && !this.activePointers.contains(pointerID))
+                this.activePointers.add(pointerID);
+            else if (obs.getNominalFeatures()[0] == ProbObservationTouch.TYPE_TOUCH_UP)
+                this.activePointers.remove(pointerID);
+        }
+        int numRemainingPointers = this.activePointers.size();
+
+        // 2. Distribute the observations, notify the interactors and mediate (as the manager does):
+        this.dispatcher.dispatch(observations, this.previousTouchObservations, numRemainingPointers);
+
+        // 3. Self-exclusions requested during the event (posted to a handler on the device):
+        for (ProbInteractorBase interactor : this.interactors) {
+            if (interactor instanceof HeadlessProbInteractor
+                    && ((HeadlessProbInteractor) interactor).consumeSelfExcludeRequest()) {
+                interactor.getCore().selfExclude();
+                this.mediator.onRequestMediation(interactor);
+            }
+        }
+    }
+
+
+    /**
+     * Waits until an event is due, when pacing in real time.
+     */
+    private class Pacer {
+
+        private long firstTimestamp = -1;
+        private long startTime;
+
+        void await(long timestamp) {
+            if (pacing != PACING_REAL_TIME || timestamp < 0)
+                return;
+            if (this.firstTimestamp < 0) {
+                this.firstTimestamp = timestamp;
+                this.startTime = System.nanoTime();
+                return;
+            }
+            long due = this.startTime + (timestamp - this.firstTimestamp) * 1000000L;
+            long wait = due - System.nanoTime();
+            if (wait <= 0)
+                return;
+            try {
+                Thread.sleep(wait / 1000000L, (int) (wait % 1000000L));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while replaying", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.system;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import de.lmu.ifi.medien.probui.gui.ProbInteractorBase;
+import de.lmu.ifi.medien.probui.gui.ProbInteractorCoreBase;
+
+/**
+ * The result of a {@link TouchTraceReplay}: For each event, its timestamp, the time taken to handle it,
+ * the decision (i.e. the interactor determined during the event, or -1) and the posterior over the
+ * interactors afterwards (the candidate probabilities, 0 for non-candidates).
+ * For replayed traces, the mediation state recorded on the device is kept as well.
+ */
+public class TouchTraceReplayResult {
+
+
+    private final int numInteractors;
+
+    private int numEvents;
+    private long[] timestamps = new long[64];
+    private long[] latencies = new long[64];
+    private int[] decisions = new int[64];
+    private int[] recordedDetermined = new int[64];
+    private int[] recordedMostLikely = new int[64];
+    private double[][] posteriors = new double[64][];
+
+
+    TouchTraceReplayResult(int numInteractors) {
+        this.numInteractors = numInteractors;
+    }
+
+
+    void add(long timestamp, long latency, int decision, List<ProbInteractorBase> interactors) {
+        if (this.numEvents == this.timestamps.length) {
+            int capacity = this.numEvents * 2;
+            this.timestamps = Arrays.copyOf(this.timestamps, capacity);
+            this.latencies = Arrays.copyOf(this.latencies, capacity);
+            this.decisions = Arrays.copyOf(this.decisions, capacity);
+            this.recordedDetermined = Arrays.copyOf(this.recordedDetermined, capacity);
+            this.recordedMostLikely = Arrays.copyOf(this.recordedMostLikely, capacity);
+            this.posteriors = Arrays.copyOf(this.posteriors, capacity);
+        }
+        double[] posterior = new double[this.numInteractors];
+        for (int k = 0; k < posterior.length; k++) {
+            ProbInteractorCoreBase core = interactors.get(k).getCore();
+            posterior[k] = core.isCandidate() ? core.getCandidateProb() : 0;
+        }
+        this.timestamps[this.numEvents] = timestamp;
+        this.latencies[this.numEvents] = latency;
+        this.decisions[this.numEvents] = decision;
+        this.recordedDetermined[this.numEvents] = -1;
+        this.recordedMostLikely[this.numEvents] = -1;
+        this.posteriors[this.numEvents] = posterior;
+        this.numEvents++;
+    }
+
+
+    /**
+     * Sets the mediation state recorded for the last event.
+     */
+    void setRecorded(int determined, int mostLikely) {
+        this.recordedDetermined[this.numEvents - 1] = determined;
+        this.recordedMostLikely[this.numEvents - 1] = mostLikely;
+    }
+
+
+    public int getNumEvents() {
+        return this.numEvents;
+    }
+
+
+    public int getNumInteractors() {
+        return this.numInteractors;
+    }
+
+
+    public long getTimestamp(int event) {
+        return this.timestamps[event];
+    }
+
+
+    /**
+     * @param event
+     * @return The time taken to handle the event, in nanoseconds.
+     */
+    public long getLatency(int event) {
+        return this.latencies[event];
+    }
+
+
+    /**
+     * @param event
+     * @return The index of the interactor determined during the event, or -1.
+     */
+    public int getDecision(int event) {
+        return this.decisions[event];
+    }
+
+
+    /**
+     * Returns the posterior over the interactors after the event (the returned array must not be modified).
+     *
+     * @param event
+     * @return
+     */
+    public double[] getPosterior(int event) {
+        return this.posteriors[event];
+    }
+
+
+    /**
+     * @param event
+     * @return The determined interactor as recorded on the device, or -1 (also for synthetic events).
+     */
+    public int getRecordedDetermined(int event) {
+        return this.recordedDetermined[event];
+    }
+
+
+    /**
+     * @param event
+     * @return The most likely candidate as recorded on the device, or -1 (also for synthetic events).
+     */
+    public int getRecordedMostLikely(int event) {
+        return this.recordedMostLikely[event];
+    }
+
+
+    /**
+     * @return The number of events with a decision.
+     */
+    public int getNumDecisions() {
+        int count = 0;
+        for (int i = 0; i < this.numEvents; i++) {
+            if (this.decisions[i] != -1) count++;
+        }
+        return count;
+    }
+
+
+    /**
+     * @return The mean time taken per event, in nanoseconds.
+     */
+    public double getMeanLatency() {
+        if (this.numEvents == 0)
+            return 0;
+        double sum = 0;
+        for (int i = 0; i < this.numEvents; i++) {
+            sum += this.latencies[i];
+        }
+        return sum / this.numEvents;
+    }
+
+
+    /**
+     * @param percentile In [0, 100].
+     * @return The given percentile of the times taken per event, in nanoseconds (nearest rank).
+     */
+    public long getLatencyPercentile(double percentile) {
+        if (this.numEvents == 0)
+            return 0;
+        long[] sorted = Arrays.copyOf(this.latencies, this.numEvents);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank))];
+    }
+
+
+    /**
+     * Counts the events with different decisions than in the given result of the same events
+     * (e.g. of another version of the library).
+     *
+     * @param other
+     * @return
+     */
+    public int countDecisionDifferences(TouchTraceReplayResult other) {
+        checkComparable(other);
+        int count = 0;
+        for (int i = 0; i < this.numEvents; i++) {
+            if (this.decisions[i] != other.decisions[i]) count++;
+        }
+        return count;
+    }
+
+
+    /**
+     * @param other Result of the same events (e.g. of another version of the library).
+     * @return The maximum absolute difference of the posteriors over all events and interactors.
+     */
+    public double getMaxPosteriorDifference(TouchTraceReplayResult other) {
+        checkComparable(other);
+        double max = 0;
+        for (int i = 0; i < this.numEvents; i++) {
+            for (int k = 0; k < this.numInteractors; k++) {
+                max = Math.max(max, Math.abs(this.posteriors[i][k] - other.posteriors[i][k]));
+            }
+        }
+        return max;
+    }
+
+
+    private void checkComparable(TouchTraceReplayResult other) {
+        if (other.numEvents != this.numEvents || other.numInteractors != this.numInteractors)
+            throw new IllegalArgumentException("Results of different events or interactors: "
+                    + this.numEvents + " vs. " + other.numEvents + " events, "
+                    + this.numInteractors + " vs. " + other.numInteractors + " interactors");
+    }
+
+
+    /**
+     * Writes one line per event: timestamp, latency (ns), decision, recorded determined and most likely
+     * interactor, and the posterior of each interactor.
+     *
+     * @param writer
+     * @throws IOException
+     */
+    public void writeCsv(Writer writer) throws IOException {
+        writer.write("timestamp,latency_ns,decision,recorded_determined,recorded_most_likely");
+        for (int k = 0; k < this.numInteractors; k++) {
+            writer.write(",posterior_" + k);
+        }
+        writer.write("\n");
+        for (int i = 0; i < this.numEvents; i++) {
+            writer.write(this.timestamps[i] + "," + this.latencies[i] + "," + this.decisions[i] + ","
+                    + this.recordedDetermined[i] + "," + this.recordedMostLikely[i]);
+            for (int k = 0; k < this.numInteractors; k++) {
+                writer.write(String.format(Locale.US, ",%.6f", this.posteriors[i][k]));
+            }
+            writer.write("\n");
+        }
+        writer.flush();
+    }
+
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%d events, %d decisions, latency mean %.1f us, median %.1f us, p99 %.1f us",
+                this.numEvents, getNumDecisions(), getMeanLatency() / 1000,
+                getLatencyPercentile(50) / 1000.0, getLatencyPercentile(99) / 1000.0);
+    }
+}
@@ -23,10 +23,13 @@
 package be.ac.ulg.montefiore.run.jahmm.test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import junit.framework.TestCase;
+import be.ac.ulg.montefiore.run.distributions.SplitRandom;
 import be.ac.ulg.montefiore.run.jahmm.*;
+import be.ac.ulg.montefiore.run.jahmm.toolbox.MarkovGenerator;
 
 
 public class BasicIntegerTest 
@@ -88,4 +91,45 @@ extends TestCase
 		assertEquals("KMeans did not produce expected number of clusters",
 				nbClusters, kmc.nbClusters());
 	}
+	
+	
+	public void testMarkovGenerator()
+	{
+		hmm.setPi(0, 0.);
+		hmm.setPi(1, 0.5);
+		hmm.setPi(2, 0.5);
+		hmm.setPi(3, 0.);
+		hmm.setPi(4, 0.);
+		for (int i = 0; i < 5; i++)
+			for (int j = 0; j < 5; j++)
+				hmm.setAij(i, j, j == (i + 1) % 5 ? 0.8 : j == i ? 0.2 : 0.);
+		
+		/* Same seed -> same sequences (and same split generators) */
+		MarkovGenerator<ObservationInteger> mg1 = 
+			new MarkovGenerator<ObservationInteger>(hmm, new SplitRandom(1));
+		MarkovGenerator<ObservationInteger> mg2 = 
+			new MarkovGenerator<ObservationInteger>(hmm, new SplitRandom(1));
+		assertEquals(mg1.observationSequence(50).toString(), 
+				mg2.observationSequence(50).toString());
+		assertEquals(mg1.split().observationSequence(50).toString(), 
+				mg2.split().observationSequence(50).toString());
+		
+		/* The states follow pi and aij */
+		int[] states = new int[100000];
+		int[] firstStates = new int[5];
+		int[] transitions = new int[3];
+		for (int n = 0; n < 100; n++) {
+			mg1.stateSequence(states);
+			firstStates[states[0]]++;
+			for (int t = 1; t < states.length; t++) {
+				int diff = (states[t] - states[t - 1] + 5) % 5;
+				transitions[Math.min(diff, 2)]++;
+			}
+		}
+		
+		assertTrue(Arrays.equals(new int[] { 0, 0, 0 }, 
+				new int[] { firstStates[0], firstStates[3], firstStates[4] }));
+		assertEquals(0, transitions[2]);
+		assertEquals(0.2, transitions[0] / (100. * (states.length - 1)), 0.01);
+	}
 }
@@ -0,0 +1,282 @@
+package be.ac.ulg.montefiore.run.jahmm.test;
+
+import java.io.*;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import be.ac.ulg.montefiore.run.jahmm.Hmm;
+import be.ac.ulg.montefiore.run.jahmm.apps.cli.AbnormalTerminationException;
+import be.ac.ulg.montefiore.run.jahmm.apps.cli.Cli;
+import be.ac.ulg.montefiore.run.jahmm.io.FileFormatException;
+import be.ac.ulg.montefiore.run.jahmm.io.HmmReader;
+import be.ac.ulg.montefiore.run.jahmm.io.OpdfTouchGaussianReader;
+import de.lmu.ifi.medien.probui.hmm.ObservationVectorTouch;
+import de.lmu.ifi.medien.probui.hmm.OpdfTouchGaussian;
+import de.lmu.ifi.medien.probui.pml.PMLAssetLibrary;
+
+
+public class CliTest extends TestCase
+{
+	private InputStream origIn;
+	private PrintStream origOut;
+	private PrintStream origErr;
+	
+	
+	protected void setUp()
+	{
+		origIn = System.in;
+		origOut = System.out;
+		origErr = System.err;
+	}
+	
+	
+	public void testCli()
+	throws IOException
+	{
+		ByteArrayOutputStream err = new ByteArrayOutputStream();
+		System.setErr(new PrintStream(err));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(out));
+		
+		try {
+			help();
+			flush(out, err);
+			
+			// Creates a HMM
+			create();
+			String hmm = new String(out.toByteArray());
+			flush(out, err);
+			
+			// Prints the HMM created above
+			ByteArrayInputStream in = new ByteArrayInputStream(hmm.getBytes());
+			System.setIn(in);
+			print();
+			flush(out, err);
+		}
+		catch(AbnormalTerminationException e) {
+			 throw new AssertionError("Unexpected exception: " + e);
+		}
+		
+		System.setOut(origOut);
+		System.setErr(origErr);
+		System.setIn(origIn);
+	}
+	
+	
+	public void testEvaluate()
+	throws IOException
+	{
+		ByteArrayOutputStream err = new ByteArrayOutputStream();
+		System.setErr(new PrintStream(err));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(out));
+		
+		File hmmFile = File.createTempFile("jahmm", ".hmm");
+		File seqFile = File.createTempFile("jahmm", ".seq");
+		try {
+			Cli.run("create", "-opdf", "integer", "-r", "4", "-n", "3", "-o",
+					hmmFile.getPath());
+			Cli.run("generate", "-opdf", "integer", "-r", "4", "-i",
+					hmmFile.getPath(), "-os", seqFile.getPath());
+			flush(out, err);
+			
+			// Two HMMs, 100 sequences: a header and 200 lines
+			Cli.run("evaluate", "-opdf", "integer", "-r", "4", "-i",
+					hmmFile.getPath() + "," + hmmFile.getPath(), "-is",
+					seqFile.getPath(), "-nt", "2");
+			String[] lines = out.toString().split("\n");
+			assertEquals(201, lines.length);
+			assertTrue(lines[200].startsWith("99 1 "));
+			flush(out, err);
+		}
+		catch(AbnormalTerminationException e) {
+			 throw new AssertionError("Unexpected exception: " + e);
+		}
+		finally {
+			hmmFile.delete();
+			seqFile.delete();
+		}
+		
+		System.setOut(origOut);
+		System.setErr(origErr);
+	}
+	
+	
+	public void testGenerate()
+	throws IOException
+	{
+		ByteArrayOutputStream err = new ByteArrayOutputStream();
+		System.setErr(new PrintStream(err));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(out));
+		
+		File hmmFile = File.createTempFile("jahmm", ".hmm");
+		try {
+			Cli.run("create", "-opdf", "integer", "-r", "4", "-n", "3", "-o",
+					hmmFile.getPath());
+			flush(out, err);
+			
+			// The sequences only depend on the seed
+			String[] seqs = new String[2];
+			for (int i = 0; i < seqs.length; i++) {
+				Cli.run("generate", "-opdf", "integer", "-r", "4", "-i",
+						hmmFile.getPath(), "-ns", "50", "-l", "2000",
+						"-seed", "42", "-nt", i == 0 ? "1" : "3");
+				seqs[i] = out.toString();
+				flush(out, err);
+			}
+			assertEquals(50, seqs[0].split("\n").length);
+			assertEquals(seqs[0], seqs[1]);
+		}
+		catch(AbnormalTerminationException e) {
+			 throw new AssertionError("Unexpected exception: " + e);
+		}
+		finally {
+			hmmFile.delete();
+		}
+		
+		System.setOut(origOut);
+		System.setErr(origErr);
+	}
+	
+	
+	public void testCompilePml()
+	throws IOException, FileFormatException
+	{
+		ByteArrayOutputStream err = new ByteArrayOutputStream();
+		System.setErr(new PrintStream(err));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(out));
+		
+		File pmlFile = File.createTempFile("jahmm", ".pml");
+		File libFile = File.createTempFile("jahmm", ".lib");
+		try {
+			Writer writer = new FileWriter(pmlFile);
+			writer.write("# behaviours and rules\ntap: Cd*u\nswipe: C->E\n" +
+					"rule activated: tap on complete\n");
+			writer.close();
+			
+			Cli.run("compile-pml", "-ipml", pmlFile.getPath(), "-o",
+					libFile.getPath());
+			flush(out, err);
+			
+			PMLAssetLibrary library = PMLAssetLibrary.open(libFile);
+			assertEquals(2, library.getNumBehaviours());
+			assertEquals(1, library.getNumRules());
+			assertEquals("C->E", library.getBehaviourStatement(
+					library.indexOfBehaviour("swipe")).split(": ")[1]);
+			assertEquals(2, library.createBehaviour("swipe", 10., 20., 100.,
+					50., 1000., 1000., 2f).getModel().nbStates());
+			assertEquals(0, library.indexOfRule("activated"));
+		}
+		catch(AbnormalTerminationException e) {
+			 throw new AssertionError("Unexpected exception: " + e);
+		}
+		finally {
+			pmlFile.delete();
+			libFile.delete();
+		}
+		
+		System.setOut(origOut);
+		System.setErr(origErr);
+	}
+	
+	
+	public void testLearnTouchRelative()
+	throws IOException, FileFormatException
+	{
+		ByteArrayOutputStream err = new ByteArrayOutputStream();
+		System.setErr(new PrintStream(err));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(out));
+		
+		File pmlFile = File.createTempFile("jahmm", ".pml");
+		File seqFile = File.createTempFile("jahmm", ".log");
+		File outDir = File.createTempFile("jahmm", ".dir");
+		outDir.delete();
+		try {
+			Writer writer = new FileWriter(pmlFile);
+			writer.write("panel 1 100 200 400 300 1000 1000 tap: Cd*u\n" +
+					"panel 1 100 200 400 300 1000 1000 swipe: O->E\n");
+			writer.close();
+			
+			// Swipes to the right, far from the centre of the interactor
+			Random random = new Random(42);
+			writer = new FileWriter(seqFile);
+			for (int g = 0; g < 30; g++) {
+				double x = .05 + random.nextDouble() * .1;
+				double y = .8 + random.nextDouble() * .1;
+				for (int i = 0; i <= 10; i++)
+					writer.write((i == 0 ? 0 : i == 10 ? 2 : 1) + " 0 " + 
+							(16 * i) + " " + (x + .04 * i) + " " + y +
+							" 0 .01 .012 .8\n");
+				writer.write("= panel\n");
+			}
+			writer.close();
+			
+			Cli.run("learn-touch", "-ipml", pmlFile.getPath(), "-is",
+					seqFile.getPath(), "-od", outDir.getPath(), "-nt", "2");
+			
+			// All gestures are assigned to the relative swipe...
+			File swipeFile = new File(outDir, "panel.swipe.hmm");
+			assertTrue(out.toString().contains(swipeFile + ": 30 sequences"));
+			flush(out, err);
+			
+			// ...and translated to its origin (0.3, 0.35)
+			Reader reader = new FileReader(swipeFile);
+			Hmm<ObservationVectorTouch> hmm = HmmReader.read(reader,
+					new OpdfTouchGaussianReader());
+			reader.close();
+			double[] mean = ((OpdfTouchGaussian) hmm.getOpdf(0)).mean();
+			assertEquals(.35, mean[1], 1e-6);
+			assertTrue(mean[0] >= .3 && mean[0] < .5);
+		}
+		catch(AbnormalTerminationException e) {
+			 throw new AssertionError("Unexpected exception: " + e);
+		}
+		finally {
+			pmlFile.delete();
+			seqFile.delete();
+			File[] files = outDir.listFiles();
+			if (files != null)
+				for (File file : files)
+					file.delete();
+			outDir.delete();
+		}
+		
+		System.setOut(origOut);
+		System.setErr(origErr);
+	}
+	
+	
+	protected void flush(ByteArrayOutputStream out, ByteArrayOutputStream err)
+	{
+		assertEquals("Something has been written on the \"standard\"" +
+				" error stream ('" + err.toString() + "')",
+				err.toString().length(), 0);
+		
+		out.reset();
+		err.reset();
+	}
+	
+	
+	protected void help()
+	throws IOException, AbnormalTerminationException
+	{
+		Cli.run("-help");
+	}
+	
+	
+	protected void create()
+	throws IOException, AbnormalTerminationException
+	{
+		Cli.run("create", "-opdf", "integer", "-r", "4", "-n", "3", "-o", "-");
+	}
+	
+	
+	protected void print()
+	throws IOException, AbnormalTerminationException
+	{
+		Cli.run("print", "-i", "-");
+	}
+}
@@ -23,7 +23,10 @@
 package be.ac.ulg.montefiore.run.jahmm.test;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import junit.framework.TestCase;
 import be.ac.ulg.montefiore.run.jahmm.*;
@@ -188,4 +191,79 @@ extends TestCase
 				equalsArrays(sequences.get(1).get(4).values(),
 						new double[] { 7., 8. }, 0.));
 	}
+	
+	
+	public void testStream()
+	throws IOException, FileFormatException
+	{
+		File file = File.createTempFile("jahmm", ".seq");
+		file.deleteOnExit();
+		
+		Writer writer = new FileWriter(file);
+		for (int i = 0; i < 50; i++)
+			writer.write(integerSequences);
+		writer.close();
+		
+		Reader reader = new FileReader(file);
+		List<? extends List<ObservationInteger>> expected =
+			ObservationSequencesReader.
+			readSequences(new ObservationIntegerReader(), reader);
+		reader.close();
+		
+		FileInputStream stream = new FileInputStream(file);
+		FileChannel channel = stream.getChannel();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			for (int nbParts = 1; nbParts <= 7; nbParts++) {
+				List<List<ObservationInteger>> sequences =
+					ObservationSequencesStreamReader.readSequences(channel,
+							new ObservationSequencesStreamReader.
+							IntegerBuilder(), executor, nbParts);
+				
+				assertEquals("Wrong number of sequences read",
+						expected.size(), sequences.size());
+				for (int i = 0; i < expected.size(); i++) {
+					assertEquals("Wrong sequence length",
+							expected.get(i).size(), sequences.get(i).size());
+					for (int j = 0; j < expected.get(i).size(); j++)
+						assertEquals("Wrong observation",
+								expected.get(i).get(j).value,
+								sequences.get(i).get(j).value);
+				}
+			}
+		} finally {
+			executor.shutdown();
+			stream.close();
+		}
+	}
+	
+	
+	public void testStreamVector()
+	throws IOException, FileFormatException
+	{
+		File file = File.createTempFile("jahmm", ".seq");
+		file.deleteOnExit();
+		
+		Writer writer = new FileWriter(file);
+		writer.write(vectorSequences + "[ -1.5e2 2.5E-1 ] ; # no final newline");
+		writer.close();
+		
+		FileInputStream stream = new FileInputStream(file);
+		ObservationSequencesStreamReader<ObservationVector> reader =
+			new ObservationSequencesStreamReader<ObservationVector>(
+					stream.getChannel(),
+					new ObservationSequencesStreamReader.VectorBuilder(2));
+		
+		List<ObservationVector> sequence = reader.nextSequence();
+		assertTrue("Wrong first observation", GaussianTest.
+				equalsArrays(sequence.get(0).values(),
+						new double[] { 1.1, 2.2 }, 0.));
+		assertEquals("Wrong sequence length", 5,
+				reader.nextSequence().size());
+		assertTrue("Wrong exponent", GaussianTest.
+				equalsArrays(reader.nextSequence().get(0).values(),
+						new double[] { -150., .25 }, 0.));
+		assertNull("Sequence after end of file", reader.nextSequence());
+		stream.close();
+	}
 }
@@ -0,0 +1,340 @@
+/* jahmm package - v0.6.1 */
+
+/*
+  *  Copyright (c) 2004-2006, Jean-Marc Francois.
+ *
+ *  This file is part of Jahmm.
+ *  Jahmm is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Jahmm is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Jahmm; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ */
+
+package be.ac.ulg.montefiore.run.jahmm.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.TestCase;
+import be.ac.ulg.montefiore.run.jahmm.*;
+import be.ac.ulg.montefiore.run.jahmm.learn.*;
+import be.ac.ulg.montefiore.run.jahmm.toolbox.DistanceMatrixCalculator;
+import be.ac.ulg.montefiore.run.jahmm.toolbox.KullbackLeiblerDistanceCalculator;
+import be.ac.ulg.montefiore.run.jahmm.toolbox.MarkovGenerator;
+
+
+public class LearnerTest
+extends TestCase
+{	
+	final static private double DELTA = 5.E-3;
+	
+	private Hmm<ObservationInteger> hmm;
+	private List<List<ObservationInteger>> sequences;
+	private KullbackLeiblerDistanceCalculator klc;
+	
+	
+	protected void setUp() 
+	{ 
+		hmm = new Hmm<ObservationInteger>(3, new OpdfIntegerFactory(10));
+		hmm.getOpdf(0).fit(new ObservationInteger(1), new ObservationInteger(2));
+		
+		MarkovGenerator<ObservationInteger> mg =
+			new MarkovGenerator<ObservationInteger>(hmm);
+		
+		sequences = new ArrayList<List<ObservationInteger>>();		
+		for (int i = 0; i < 100; i++)
+			sequences.add(mg.observationSequence(100));
+		
+		klc = new KullbackLeiblerDistanceCalculator();
+	}
+	
+	
+	public void testBaumWelch()
+	{
+		/* Model sequences using BW algorithm */
+		
+		BaumWelchLearner bwl = new BaumWelchLearner();
+
+		Hmm<ObservationInteger> bwHmm = bwl.learn(hmm, sequences);
+		
+		assertEquals(0., klc.distance(bwHmm, hmm), DELTA);
+		
+		/* Model sequences using the scaled BW algorithm */
+		
+		BaumWelchScaledLearner bwsl = new BaumWelchScaledLearner();
+		bwHmm = bwsl.learn(hmm, sequences);
+
+		assertEquals(0., klc.distance(bwHmm, hmm), DELTA);
+	}
+	
+	
+	public void testParallelBaumWelch()
+	{
+		BaumWelchScaledLearner bwsl = new BaumWelchScaledLearner();
+		bwsl.setNbIterations(3);
+		Hmm<ObservationInteger> serialHmm = bwsl.learn(hmm, sequences);
+		
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			/* Same number of parts -> same result, whatever the threads */
+			bwsl.setExecutor(executor, 8);
+			Hmm<ObservationInteger> parallelHmm = bwsl.learn(hmm, sequences);
+			
+			ExecutorService singleExecutor = 
+				Executors.newSingleThreadExecutor();
+			bwsl.setExecutor(singleExecutor, 8);
+			Hmm<ObservationInteger> singleHmm = bwsl.learn(hmm, sequences);
+			singleExecutor.shutdown();
+			
+			/* The calling thread also splits the sequences in parts */
+			bwsl.setExecutor(null, 8);
+			Hmm<ObservationInteger> callerHmm = bwsl.learn(hmm, sequences);
+			
+			for (int i = 0; i < hmm.nbStates(); i++) {
+				assertEquals(parallelHmm.getPi(i), singleHmm.getPi(i));
+				assertEquals(parallelHmm.getPi(i), callerHmm.getPi(i));
+				for (int j = 0; j < hmm.nbStates(); j++) {
+					assertEquals(parallelHmm.getAij(i, j),
+							singleHmm.getAij(i, j));
+					assertEquals(parallelHmm.getAij(i, j),
+							callerHmm.getAij(i, j));
+				}
+			}
+			
+			assertEquals(0., klc.distance(parallelHmm, serialHmm), DELTA);
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	
+	public void testMemoryBoundedBaumWelch()
+	{
+		BaumWelchScaledLearner bwsl = new BaumWelchScaledLearner();
+		bwsl.setNbIterations(3);
+		Hmm<ObservationInteger> storedHmm = bwsl.learn(hmm, sequences);
+		
+		bwsl.setMemoryBounded(true);
+		Hmm<ObservationInteger> boundedHmm = bwsl.learn(hmm, sequences);
+		assertEquals(0., klc.distance(boundedHmm, storedHmm), DELTA);
+		
+		/* The log-likelihood must not decrease until convergence */
+		bwsl.setNbIterations(100);
+		bwsl.setConvergenceThreshold(1.E-3);
+		Hmm<ObservationInteger> learntHmm = bwsl.learn(hmm, sequences);
+		double lnProbability = bwsl.lnProbability();
+		bwsl.iterate(learntHmm, sequences);
+		assertTrue(bwsl.lnProbability() >= lnProbability);
+		assertEquals(0., klc.distance(learntHmm, hmm), DELTA);
+	}
+	
+	
+	public void testKMeans()
+	{
+		KMeansLearner<ObservationInteger> kml =
+			new KMeansLearner<ObservationInteger>(5,
+					new OpdfIntegerFactory(10), sequences);
+		assertEquals(0., klc.distance(kml.learn(), hmm), DELTA);
+	}
+	
+	
+	public void testParallelKMeans()
+	{
+		KMeansLearner<ObservationInteger> serial =
+			new KMeansLearner<ObservationInteger>(5,
+					new OpdfIntegerFactory(10), sequences);
+		serial.setExecutor(null, 8);
+		Hmm<ObservationInteger> serialHmm = serial.learn();
+		
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			/* Same initial clusters, and the decoding does not depend on the
+			 parts -> same result */
+			KMeansLearner<ObservationInteger> parallel =
+				new KMeansLearner<ObservationInteger>(5,
+						new OpdfIntegerFactory(10), sequences);
+			parallel.setExecutor(executor, 8);
+			Hmm<ObservationInteger> parallelHmm = parallel.learn();
+			
+			for (int i = 0; i < serialHmm.nbStates(); i++) {
+				assertEquals(serialHmm.getPi(i), parallelHmm.getPi(i));
+				for (int j = 0; j < serialHmm.nbStates(); j++)
+					assertEquals(serialHmm.getAij(i, j),
+							parallelHmm.getAij(i, j));
+			}
+			
+			assertEquals(0., klc.distance(parallelHmm, hmm), DELTA);
+			
+			/* The Gaussian moments are summed per part, so the serial
+			 learner must split the sequences in the same parts */
+			List<List<ObservationReal>> realSequences = 
+				new ArrayList<List<ObservationReal>>();
+			Random random = new Random(1);
+			for (int i = 0; i < 40; i++) {
+				List<ObservationReal> sequence = 
+					new ArrayList<ObservationReal>();
+				for (int t = 0; t < 25; t++)
+					sequence.add(new ObservationReal(
+							3. * ((i + t) % 3) + 1.5 * random.nextGaussian()));
+				realSequences.add(sequence);
+			}
+			KMeansLearner<ObservationReal> serialReal =
+				new KMeansLearner<ObservationReal>(3,
+						new OpdfGaussianFactory(), realSequences);
+			serialReal.setExecutor(null, 8);
+			Hmm<ObservationReal> serialRealHmm = serialReal.learn();
+			KMeansLearner<ObservationReal> parallelReal =
+				new KMeansLearner<ObservationReal>(3,
+						new OpdfGaussianFactory(), realSequences);
+			parallelReal.setExecutor(executor, 8);
+			Hmm<ObservationReal> parallelRealHmm = parallelReal.learn();
+			
+			for (int i = 0; i < serialRealHmm.nbStates(); i++) {
+				assertEquals(serialRealHmm.getPi(i), parallelRealHmm.getPi(i));
+				for (int j = 0; j < serialRealHmm.nbStates(); j++)
+					assertEquals(serialRealHmm.getAij(i, j),
+							parallelRealHmm.getAij(i, j));
+				OpdfGaussian serialOpdf = 
+					(OpdfGaussian) serialRealHmm.getOpdf(i);
+				OpdfGaussian parallelOpdf = 
+					(OpdfGaussian) parallelRealHmm.getOpdf(i);
+				assertEquals(serialOpdf.mean(), parallelOpdf.mean());
+				assertEquals(serialOpdf.variance(), parallelOpdf.variance());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	
+	public void testFlatKMeans()
+	{
+		/* Three well separated clouds of vectors */
+		Random random = new Random(0);
+		List<List<ObservationVector>> vectorSequences = 
+			new ArrayList<List<ObservationVector>>();
+		for (int i = 0; i < 50; i++) {
+			List<ObservationVector> sequence = 
+				new ArrayList<ObservationVector>();
+			for (int t = 0; t < 30; t++) {
+				int cloud = (i + t) % 3;
+				sequence.add(new ObservationVector(new double[] {
+						10. * cloud + random.nextGaussian(),
+						-5. * cloud + random.nextGaussian() }));
+			}
+			vectorSequences.add(sequence);
+		}
+		
+		List<ObservationVector> observations = 
+			new ArrayList<ObservationVector>();
+		for (List<ObservationVector> sequence : vectorSequences)
+			observations.addAll(sequence);
+		double[] values = FlatKMeansCalculator.values(observations);
+		
+		FlatKMeansCalculator serial = 
+			new FlatKMeansCalculator(3, values, 2, 1, null, 8);
+		
+		/* Each cluster is one of the clouds (the first three observations
+		 belong to the clouds 0, 1 and 2) */
+		for (int i = 0; i < observations.size(); i++) {
+			int cloud = (int) Math.round(observations.get(i).value(0) / 10.);
+			assertEquals(serial.clusterNb(cloud), serial.clusterNb(i));
+		}
+		
+		/* Same number of parts -> same result, whatever the threads */
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			FlatKMeansCalculator parallel = 
+				new FlatKMeansCalculator(3, values, 2, 1, executor, 8);
+			assertTrue(Arrays.equals(serial.clusterNbs(), 
+					parallel.clusterNbs()));
+			for (int c = 0; c < 3; c++)
+				assertTrue(Arrays.equals(serial.centroid(c), 
+						parallel.centroid(c)));
+		} finally {
+			executor.shutdown();
+		}
+		
+		KMeansLearner<ObservationVector> kml = 
+			new KMeansLearner<ObservationVector>(3, 
+					new OpdfMultiGaussianFactory(2), vectorSequences, serial);
+		Hmm<ObservationVector> learntHmm = kml.learn();
+		for (int i = 0; i < 3; i++)
+			for (int j = 0; j < 3; j++)
+				assertEquals(learntHmm.getAij(i, j), 
+						serial.clusterNb(j) == (serial.clusterNb(i) + 1) % 3 ?
+								1. : 0., DELTA);
+	}
+	
+	
+	public void testDistanceMatrix() throws CloneNotSupportedException
+	{
+		Hmm<ObservationInteger> other = 
+			new Hmm<ObservationInteger>(3, new OpdfIntegerFactory(10));
+		other.getOpdf(0).fit(new ObservationInteger(7), 
+				new ObservationInteger(8));
+		
+		List<Hmm<ObservationInteger>> hmms = 
+			new ArrayList<Hmm<ObservationInteger>>();
+		hmms.add(hmm);
+		hmms.add(hmm.clone());
+		hmms.add(other);
+		
+		MarkovGenerator<ObservationInteger> mg =
+			new MarkovGenerator<ObservationInteger>(other);
+		List<List<ObservationInteger>> otherSequences = 
+			new ArrayList<List<ObservationInteger>>();
+		for (int i = 0; i < 10; i++)
+			otherSequences.add(mg.observationSequence(100));
+		
+		List<List<List<ObservationInteger>>> allSequences =
+			new ArrayList<List<List<ObservationInteger>>>();
+		allSequences.add(sequences.subList(0, 10));
+		allSequences.add(sequences.subList(10, 20));
+		allSequences.add(otherSequences);
+		
+		DistanceMatrixCalculator serial = 
+			new DistanceMatrixCalculator(hmms, allSequences, null, 1);
+		
+		assertEquals(0., serial.symmetricKullbackLeibler(0, 1), 0.);
+		assertEquals(0., serial.bhattacharyya(0, 1), DELTA);
+		assertTrue(serial.symmetricKullbackLeibler(0, 2) > 0.01);
+		assertTrue(serial.bhattacharyya(0, 2) > 0.);
+		assertEquals(serial.bhattacharyya(0, 2), serial.bhattacharyya(2, 0));
+		
+		/* Evaluating in parallel does not change anything */
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			DistanceMatrixCalculator parallel = new DistanceMatrixCalculator(
+					hmms, allSequences, executor, 7);
+			
+			assertTrue(Arrays.deepEquals(
+					serial.symmetricKullbackLeiblerMatrix(), 
+					parallel.symmetricKullbackLeiblerMatrix()));
+			assertTrue(Arrays.deepEquals(serial.bhattacharyyaMatrix(), 
+					parallel.bhattacharyyaMatrix()));
+			
+			/* Generated sequences */
+			DistanceMatrixCalculator generated = new DistanceMatrixCalculator(
+					hmms, 10, 100, executor, 7);
+			assertEquals(klc.distance(hmm, other), 
+					generated.kullbackLeibler(0, 2), 0.1);
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,319 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.test;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import de.lmu.ifi.medien.probui.gui.HeadlessProbInteractor;
+import de.lmu.ifi.medien.probui.gui.ProbInteractorCoreBase;
+import de.lmu.ifi.medien.probui.observations.ProbObservationFactory;
+import de.lmu.ifi.medien.probui.observations.ProbObservationTouch;
+import de.lmu.ifi.medien.probui.pml.PMLRuleListener;
+import de.lmu.ifi.medien.probui.pml.rules.PMLRule;
+import de.lmu.ifi.medien.probui.system.InferenceTelemetryReader;
+import de.lmu.ifi.medien.probui.system.InferenceTelemetrySink;
+import de.lmu.ifi.medien.probui.system.TouchTraceReplay;
+
+/**
+ * Records the reasoning of a replay of taps on two headless buttons with an InferenceTelemetrySink
+ * and reads it back with an InferenceTelemetryReader.
+ */
+public class InferenceTelemetryTest extends TestCase {
+
+
+    private static final int SURFACE_SIZE = 1000;
+
+    private static final int NUM_TAPS = 6;
+
+    /**
+     * Number of interactor and rule rows per block: Less than the three events of a tap need,
+     * i.e. the taps are split in several blocks.
+     */
+    private static final int ROWS_PER_BLOCK = 4;
+
+
+    private File directory;
+
+    /**
+     * The values the sink is expected to write, as recorded from the interactors (in the order of the rows).
+     */
+    private final List<long[]> events = new ArrayList<long[]>();
+    private final List<Object[]> interactorRows = new ArrayList<Object[]>();
+    private final List<Object[]> ruleRows = new ArrayList<Object[]>();
+
+
+    @Override
+    protected void setUp() throws Exception {
+        this.directory = File.createTempFile("probui", "telemetry");
+        assertTrue(this.directory.delete() && this.directory.mkdir());
+    }
+
+
+    @Override
+    protected void tearDown() throws Exception {
+        for (File file : this.directory.listFiles())
+            file.delete();
+        this.directory.delete();
+    }
+
+
+    public void testColumns() throws Exception {
+
+        // 1. Record (one block per event is free, so that nothing is dropped if the writer falls behind):
+        InferenceTelemetrySink sink = new InferenceTelemetrySink(this.directory, "test", 100, ROWS_PER_BLOCK,
+                3 * NUM_TAPS, 1 << 20, 2);
+        record(sink);
+        sink.close();
+        assertNull(sink.getError());
+        assertEquals(0, sink.getNumDroppedEvents());
+
+        // 2. Read all blocks of the single file:
+        File[] files = this.directory.listFiles();
+        assertEquals(1, files.length);
+        List<Set<Integer>> dictionaries = readDictionaries(files[0]);
+        InferenceTelemetryReader reader = new InferenceTelemetryReader(files[0]);
+        int event = 0;
+        int interactorRow = 0;
+        int ruleRow = 0;
+        int numBlocks = 0;
+        while (reader.nextBlock()) {
+            Set<Integer> dictionary = dictionaries.get(numBlocks++);
+
+            // Blocks are split when the rows of the next event do not fit, and at the end of each tap:
+            assertTrue(reader.getNumEvents() > 0);
+            assertTrue(reader.getNumInteractorRows() <= ROWS_PER_BLOCK);
+            assertTrue(reader.getNumRuleRows() <= ROWS_PER_BLOCK);
+
+            for (int i = 0; i < reader.getNumEvents(); i++, event++) {
+                long[] expected = this.events.get(event);
+                assertEquals(expected[0], reader.getTimestamps()[i]);
+                assertEquals(expected[1], reader.getTypes()[i]);
+                assertEquals(1, reader.getNumObservations()[i]);
+                assertEquals(1, reader.getPassedOn()[i]);
+                assertEquals(0.5f * event, reader.getMoveDistances()[i]);
+                assertEquals(10 * event, reader.getObserveTimes()[i]);
+                assertEquals(20 * event, reader.getMediateTimes()[i]);
+                assertEquals(30 * event, reader.getTotalTimes()[i]);
+                assertEquals(expected[2], reader.getDetermined()[i]);
+                assertEquals(expected[3], reader.getNumCandidates()[i]);
+                if (i == reader.getNumEvents() - 1 && event < this.events.size() - 1)
+                    assertTrue(expected[1] == ProbObservationTouch.TYPE_TOUCH_UP
+                            || reader.getNumInteractorRows() + 2 > ROWS_PER_BLOCK);
+            }
+
+            // The labels are looked up in the dictionary of the block itself:
+            for (int i = 0; i < reader.getNumInteractorRows(); i++, interactorRow++) {
+                Object[] expected = this.interactorRows.get(interactorRow);
+                assertEquals(expected[0], event - reader.getNumEvents() + reader.getInteractorEvents()[i]);
+                assertTrue(dictionary.contains(reader.getInteractors()[i]));
+                assertEquals(expected[1], reader.getLabel(reader.getInteractors()[i]));
+                assertEquals(expected[2], (int) reader.getFlags()[i]);
+                assertEquals(expected[3], reader.getMeanEvidences()[i]);
+                assertEquals(expected[4], reader.getCandidateProbs()[i]);
+                assertEquals(expected[5], (int) reader.getIndicesPosteriorMax()[i]);
+                assertTrue(dictionary.contains(reader.getMostLikelyBehaviours()[i]));
+                assertEquals(expected[6], reader.getLabel(reader.getMostLikelyBehaviours()[i]));
+            }
+            for (int i = 0; i < reader.getNumRuleRows(); i++, ruleRow++) {
+                Object[] expected = this.ruleRows.get(ruleRow);
+                assertEquals(expected[0], event - reader.getNumEvents() + reader.getRuleEvents()[i]);
+                assertEquals(expected[1], reader.getLabel(reader.getRuleInteractors()[i]));
+                assertTrue(dictionary.contains(reader.getRules()[i]));
+                assertEquals(expected[2], reader.getLabel(reader.getRules()[i]));
+                assertEquals(expected[3], (int) reader.getRuleResults()[i]);
+            }
+        }
+        assertEquals(this.events.size(), event);
+        assertEquals(this.interactorRows.size(), interactorRow);
+        assertEquals(this.ruleRows.size(), ruleRow);
+        assertTrue(this.ruleRows.size() > 0);
+        assertTrue(numBlocks > NUM_TAPS);
+    }
+
+
+    public void testRotation() throws Exception {
+
+        // Each block starts a new file, only the last two are kept:
+        InferenceTelemetrySink sink = new InferenceTelemetrySink(this.directory, "test", 100, ROWS_PER_BLOCK,
+                3 * NUM_TAPS, 1, 2);
+        record(sink);
+        sink.close();
+        assertNull(sink.getError());
+        int numFiles = 0;
+        for (int index = 1; index <= 10 * NUM_TAPS; index++) {
+            if (InferenceTelemetrySink.getFile(this.directory, "test", index).exists())
+                numFiles = index;
+        }
+        assertTrue(numFiles > NUM_TAPS);
+        assertEquals(2, this.directory.listFiles().length);
+        assertTrue(InferenceTelemetrySink.getFile(this.directory, "test", numFiles - 1).exists());
+
+        // Each file can be read on its own, i.e. with the labels of its block:
+        for (int index = numFiles - 1; index <= numFiles; index++) {
+            InferenceTelemetryReader reader = new InferenceTelemetryReader(
+                    InferenceTelemetrySink.getFile(this.directory, "test", index));
+            assertTrue(reader.nextBlock());
+            for (int i = 0; i < reader.getNumInteractorRows(); i++)
+                assertNotNull(reader.getLabel(reader.getInteractors()[i]));
+            assertFalse(reader.nextBlock());
+        }
+
+        // A new sink continues after the last file:
+        sink = new InferenceTelemetrySink(this.directory, "test", 100, ROWS_PER_BLOCK, 3 * NUM_TAPS, 1, 2);
+        record(sink);
+        sink.close();
+        assertTrue(InferenceTelemetrySink.getFile(this.directory, "test", 2 * numFiles).exists());
+        assertEquals(2, this.directory.listFiles().length);
+    }
+
+
+    /**
+     * Replays the taps and records each event, together with the values the sink is expected to write.
+     *
+     * @param sink
+     */
+    private void record(InferenceTelemetrySink sink) throws Exception {
+        this.events.clear();
+        this.interactorRows.clear();
+        this.ruleRows.clear();
+        List<HeadlessProbInteractor> interactors = createInteractors();
+        sink.setInteractorLabel(interactors.get(0), "left");
+        TouchTraceReplay replay = new TouchTraceReplay(interactors);
+        for (List<ProbObservationTouch> observations : createTaps()) {
+            replay.replay(Collections.singletonList(observations));
+            int event = this.events.size();
+            int determined = -1;
+            int numCandidates = 0;
+            for (int k = 0; k < interactors.size(); k++) {
+                ProbInteractorCoreBase core = interactors.get(k).getCore();
+                String label = k == 0 ? "left" : "HeadlessProbInteractor#" + k;
+                if (core.isDetermined() && determined == -1)
+                    determined = k;
+                if (core.isCandidate())
+                    numCandidates++;
+                int flags = (core.isCandidate() ? InferenceTelemetrySink.FLAG_CANDIDATE : 0)
+                        | (core.isDetermined() ? InferenceTelemetrySink.FLAG_DETERMINED : 0)
+                        | (core.isClaimingDetermination() ? InferenceTelemetrySink.FLAG_CLAIMS_DETERMINATION : 0)
+                        | (core.hasSelfExcluded() ? InferenceTelemetrySink.FLAG_SELF_EXCLUDED : 0);
+                this.interactorRows.add(new Object[]{event, label, flags, (float) core.getMeanEvidence(),
+                        (float) core.getCandidateProb(), core.getIndexPosteriorMax(), "tap"});
+                if (!core.isCandidate())
+                    continue;
+                for (PMLRule rule : core.getRulebook().getStatementRules()) {
+                    if (rule.checkedThisUpdate)
+                        this.ruleRows.add(new Object[]{event, label, rule.label, rule.currentCheckResult ? 1 : 0});
+                }
+            }
+            this.events.add(new long[]{observations.get(0).getTimestamp(),
+                    observations.get(0).getNominalFeatures()[0], determined, numCandidates});
+            sink.record(observations, true, 0.5 * event, interactors, 10 * event, 20 * event, 30 * event);
+        }
+    }
+
+
+    /**
+     * Reads the label ids of the dictionary of each block of the given file.
+     *
+     * @param file
+     * @return
+     */
+    private static List<Set<Integer>> readDictionaries(File file) throws Exception {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        byte[] bytes = new byte[(int) in.length()];
+        in.readFully(bytes);
+        in.close();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.position(InferenceTelemetrySink.FILE_HEADER_SIZE);
+        List<Set<Integer>> dictionaries = new ArrayList<Set<Integer>>();
+        while (buffer.hasRemaining()) {
+            int blockEnd = buffer.getInt();
+            blockEnd += buffer.position();
+            buffer.position(buffer.position() + 12);
+            int numLabels = buffer.getInt();
+            Set<Integer> dictionary = new HashSet<Integer>();
+            for (int i = 0; i < numLabels; i++) {
+                dictionary.add(buffer.getInt());
+                int length = buffer.getShort();
+                buffer.position(buffer.position() + length);
+            }
+            dictionaries.add(dictionary);
+            buffer.position(blockEnd);
+        }
+        return dictionaries;
+    }
+
+
+    /**
+     * Creates two buttons side by side, which claim determination when their tap is complete.
+     *
+     * @return
+     */
+    private static List<HeadlessProbInteractor> createInteractors() {
+        List<HeadlessProbInteractor> interactors = new ArrayList<HeadlessProbInteractor>();
+        for (int x : new int[]{100, 500}) {
+            HeadlessProbInteractor interactor = new HeadlessProbInteractor(x, 100, 300, 200,
+                    SURFACE_SIZE, SURFACE_SIZE, 2);
+            interactor.addBehaviour("tap: Cd*u", null);
+            final ProbInteractorCoreBase core = interactor.getCore();
+            core.addRule("activated: tap on complete", new PMLRuleListener() {
+                @Override
+                public void onRuleSatisfied(String event, int subsequentCalls) {
+                    core.claimDetermination();
+                }
+            });
+            core.setReady();
+            interactors.add(interactor);
+        }
+        return interactors;
+    }
+
+
+    /**
+     * Creates taps (down, move, up) alternating between the centres of the two buttons.
+     *
+     * @return The observations of each event.
+     */
+    private static List<List<ProbObservationTouch>> createTaps() {
+        List<List<ProbObservationTouch>> events = new ArrayList<List<ProbObservationTouch>>();
+        long timestamp = 1000;
+        for (int g = 0; g < NUM_TAPS; g++) {
+            double x = g % 2 == 0 ? 0.25 : 0.65;
+            for (int type : new int[]{ProbObservationTouch.TYPE_TOUCH_DOWN, ProbObservationTouch.TYPE_TOUCH_MOVE,
+                    ProbObservationTouch.TYPE_TOUCH_UP}) {
+                double dx = type == ProbObservationTouch.TYPE_TOUCH_DOWN ? 0 : 0.02;
+                events.add(Arrays.asList(ProbObservationFactory.createTouchObservation(
+                        (x + dx) * SURFACE_SIZE, 0.2 * SURFACE_SIZE, x + dx, 0.2,
+                        0, 0.02, 0.02, 1, type, 0, timestamp)));
+                timestamp += 20;
+            }
+        }
+        return events;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.test;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.lmu.ifi.medien.probui.analysis.OverlapAnalysis;
+import de.lmu.ifi.medien.probui.analysis.StaticProbUISnapshot;
+import de.lmu.ifi.medien.probui.gui.HeadlessProbInteractor;
+
+/**
+ * Compares the analytic overlap bounds of small models with estimates from samples of these models.
+ */
+public class OverlapAnalysisTest extends TestCase {
+
+
+    private static final int SURFACE_SIZE = 1000;
+
+    private static final int NUM_SAMPLES = 1000;
+
+
+    public void testSingleStates() {
+
+        // For single states, the analytic coefficient is exact, i.e. the samples have to agree with it:
+        for (int dx = 50; dx <= 100; dx += 50) {
+            StaticProbUISnapshot snapshot = createSnapshot(new int[]{400, 400 + dx}, "touch: C");
+            for (int length = 1; length <= 5; length += 2) {
+                OverlapAnalysis analytic = OverlapAnalysis.analyse(snapshot, length);
+                OverlapAnalysis sampled = sample(snapshot, length, 0);
+                assertFalse(analytic.isSampled(0, 1));
+                assertTrue(sampled.isSampled(0, 1));
+                assertEquals(analytic.getCoefficient(0, 1), sampled.getCoefficient(0, 1), 0.02);
+            }
+        }
+    }
+
+
+    public void testBound() {
+
+        // For several states, the analytic coefficient bounds the one estimated from the samples:
+        for (String statement : new String[]{"swipe: C->E", "corner: C->N->E"}) {
+            for (int dx = 50; dx <= 100; dx += 50) {
+                StaticProbUISnapshot snapshot = createSnapshot(new int[]{400, 400 + dx}, statement);
+                for (int length = 1; length <= 5; length += 2) {
+                    OverlapAnalysis analytic = OverlapAnalysis.analyse(snapshot, length);
+                    OverlapAnalysis sampled = sample(snapshot, length, 0);
+                    assertTrue(statement + " " + dx + " " + length,
+                            analytic.getCoefficient(0, 1) >= sampled.getCoefficient(0, 1) - 0.02);
+                }
+            }
+        }
+    }
+
+
+    public void testSampledPairs() {
+
+        // Only the pairs with the corner are sampled:
+        List<HeadlessProbInteractor> interactors = new ArrayList<HeadlessProbInteractor>();
+        interactors.add(createInteractor(400, "touch: C"));
+        interactors.add(createInteractor(450, "touch: C", "corner: C->N->E"));
+        interactors.add(createInteractor(500, "touch: C"));
+        StaticProbUISnapshot snapshot = new StaticProbUISnapshot(interactors);
+        OverlapAnalysis analytic = OverlapAnalysis.analyse(snapshot, 3);
+        OverlapAnalysis sampled = sample(snapshot, 3, 2);
+        assertFalse(sampled.isSampled(0, 2));
+        assertEquals(analytic.getCoefficient(0, 2), sampled.getCoefficient(0, 2));
+        assertTrue(sampled.isSampled(0, 1));
+        assertTrue(sampled.isSampled(1, 2));
+
+        // The samples of a behaviour do not depend on which other behaviours are sampled:
+        interactors.add(createInteractor(700, "swipe: C->S->E"));
+        OverlapAnalysis extended = sample(new StaticProbUISnapshot(interactors), 3, 2);
+        assertEquals(sampled.getCoefficient(0, 1), extended.getCoefficient(0, 1));
+        assertEquals(sampled.getCoefficient(1, 2), extended.getCoefficient(1, 2));
+        assertTrue(extended.isSampled(0, 3));
+        assertFalse(extended.isSampled(0, 2));
+    }
+
+
+    private static OverlapAnalysis sample(StaticProbUISnapshot snapshot, int length, int maxAnalyticStates) {
+        return OverlapAnalysis.analyse(snapshot, length, maxAnalyticStates, NUM_SAMPLES, 0, 0, 0, 1, null, 1);
+    }
+
+
+    private static StaticProbUISnapshot createSnapshot(int[] xs, String statement) {
+        List<HeadlessProbInteractor> interactors = new ArrayList<HeadlessProbInteractor>();
+        for (int x : xs)
+            interactors.add(createInteractor(x, statement));
+        return new StaticProbUISnapshot(interactors);
+    }
+
+
+    private static HeadlessProbInteractor createInteractor(int x, String... statements) {
+        HeadlessProbInteractor interactor = new HeadlessProbInteractor(x, 400, 200, 200,
+                SURFACE_SIZE, SURFACE_SIZE, 2);
+        for (String statement : statements)
+            interactor.addBehaviour(statement, null);
+        interactor.getCore().setReady();
+        return interactor;
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.test;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import de.lmu.ifi.medien.probui.behaviours.ProbBehaviourTouch;
+import de.lmu.ifi.medien.probui.gui.HeadlessProbInteractor;
+import de.lmu.ifi.medien.probui.observations.ProbObservationTouch;
+import de.lmu.ifi.medien.probui.pml.PMLAssetLibrary;
+import de.lmu.ifi.medien.probui.pml.PMLAssetLibraryWriter;
+import de.lmu.ifi.medien.probui.pml.PMLParserTouchImpl;
+
+/**
+ * Writes labelled PML statements to a memory-mapped asset library and checks that the behaviours
+ * created from it at other geometries are the same as the ones parsed from the statements.
+ */
+public class PMLAssetLibraryTest extends TestCase {
+
+
+    private static final List<String> RULES = Arrays.asList(
+            "activated: tap on complete", "swiped: north on complete and north is most_likely");
+
+    private static final float[] DENSITIES = {1, 1.5f, 2, 2.625f, 3, 4};
+
+
+    private File file;
+
+
+    @Override
+    protected void setUp() throws Exception {
+        this.file = File.createTempFile("probui", ".pml");
+        OutputStream out = new FileOutputStream(this.file);
+        try {
+            PMLAssetLibraryWriter.write(out, PMLBehaviourLibraryTest.STATEMENTS, RULES);
+        } finally {
+            out.close();
+        }
+    }
+
+
+    @Override
+    protected void tearDown() {
+        this.file.delete();
+    }
+
+
+    public void testAllBehavioursCompiled() throws Exception {
+        PMLAssetLibrary library = PMLAssetLibrary.open(this.file);
+        assertEquals(PMLBehaviourLibraryTest.STATEMENTS.size(), library.getNumBehaviours());
+        ByteBuffer bytes = ByteBuffer.wrap(readFile());
+        for (int i = 0; i < library.getNumBehaviours(); i++) {
+            int flags = getFlags(bytes, i);
+            assertTrue(library.getBehaviourLabel(i), (flags & PMLAssetLibrary.FLAG_COMPILED) != 0);
+        }
+    }
+
+
+    public void testNewGeometries() throws Exception {
+        PMLAssetLibrary library = PMLAssetLibrary.open(this.file);
+        Random random = new Random(3);
+        for (String statement : PMLBehaviourLibraryTest.STATEMENTS) {
+            String label = PMLParserTouchImpl.parseLabel(statement);
+            for (int g = 0; g < 10; g++) {
+                double x = random.nextInt(800);
+                double y = random.nextInt(1500);
+                double width = 20 + random.nextInt(600);
+                double height = 20 + random.nextInt(600);
+                float density = DENSITIES[random.nextInt(DENSITIES.length)];
+                ProbBehaviourTouch parsed = new PMLParserTouchImpl(density).parse(statement, x, y, width, height,
+                        PMLBehaviourLibraryTest.SCREEN_WIDTH, PMLBehaviourLibraryTest.SCREEN_HEIGHT);
+                ProbBehaviourTouch created = library.createBehaviour(label, x, y, width, height,
+                        PMLBehaviourLibraryTest.SCREEN_WIDTH, PMLBehaviourLibraryTest.SCREEN_HEIGHT, density);
+                PMLBehaviourLibraryTest.assertSameBehaviour(parsed, created, 1e-9);
+                PMLBehaviourLibraryTest.assertSameLikelihoods(parsed, created, random, 1e-6);
+            }
+        }
+        assertNull(library.createBehaviour("unknown", 0, 0, 100, 100,
+                PMLBehaviourLibraryTest.SCREEN_WIDTH, PMLBehaviourLibraryTest.SCREEN_HEIGHT, 1));
+    }
+
+
+    public void testRelativeGestures() throws Exception {
+        PMLAssetLibrary library = PMLAssetLibrary.open(this.file);
+        for (String statement : new String[]{PMLBehaviourLibraryTest.STATEMENTS.get(3),
+                PMLBehaviourLibraryTest.STATEMENTS.get(4)}) {
+            ProbBehaviourTouch parsed = new PMLParserTouchImpl(2).parse(statement, 300, 200, 250, 180,
+                    PMLBehaviourLibraryTest.SCREEN_WIDTH, PMLBehaviourLibraryTest.SCREEN_HEIGHT);
+            ProbBehaviourTouch created = library.createBehaviour(PMLParserTouchImpl.parseLabel(statement),
+                    300, 200, 250, 180, PMLBehaviourLibraryTest.SCREEN_WIDTH, PMLBehaviourLibraryTest.SCREEN_HEIGHT, 2);
+            assertTrue(created.isRelativeGesture());
+            PMLBehaviourLibraryTest.assertSameBehaviour(parsed, created, 1e-9);
+
+            // A gesture far from the interactor moves both behaviours to its start:
+            List<ProbObservationTouch> gesture = PMLBehaviourLibraryTest.createGesture(0.8, 0.7, 0.05, 0);
+            assertEquals(PMLBehaviourLibraryTest.lnProbability(parsed, gesture),
+                    PMLBehaviourLibraryTest.lnProbability(created, gesture), 1e-6);
+        }
+    }
+
+
+    public void testRules() throws Exception {
+        PMLAssetLibrary library = PMLAssetLibrary.open(this.file);
+        assertEquals(RULES.size(), library.getNumRules());
+        for (String rule : RULES) {
+            int index = library.indexOfRule(PMLParserTouchImpl.parseLabel(rule));
+            assertTrue(rule, index >= 0);
+            assertEquals(rule, library.getRuleStatement(index));
+        }
+        assertEquals(-1, library.indexOfRule("unknown"));
+    }
+
+
+    public void testUncompiledBehaviourIsParsed() throws Exception {
+
+        // A library with one behaviour that only has its statement (as written if it could not be compiled):
+        String statement = PMLBehaviourLibraryTest.STATEMENTS.get(2);
+        String label = PMLParserTouchImpl.parseLabel(statement);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        byte[] labelBytes = label.getBytes("UTF-8");
+        byte[] statementBytes = statement.getBytes("UTF-8");
+        out.writeInt(PMLAssetLibrary.MAGIC);
+        out.writeShort(PMLAssetLibrary.VERSION);
+        out.writeShort(0);
+        out.writeInt(1);
+        out.writeInt(0);
+        out.writeInt(PMLAssetLibrary.HEADER_SIZE + PMLAssetLibrary.INDEX_ENTRY_SIZE);
+        out.writeInt(2 + labelBytes.length + 2 + statementBytes.length + 1);
+        out.writeShort(labelBytes.length);
+        out.write(labelBytes);
+        out.writeShort(statementBytes.length);
+        out.write(statementBytes);
+        out.writeByte(0);
+        out.flush();
+
+        PMLAssetLibrary library = new PMLAssetLibrary(ByteBuffer.wrap(bytes.toByteArray()));
+        ProbBehaviourTouch parsed = new PMLParserTouchImpl(3).parse(statement, 50, 400, 500, 120,
+                PMLBehaviourLibraryTest.SCREEN_WIDTH, PMLBehaviourLibraryTest.SCREEN_HEIGHT);
+        ProbBehaviourTouch created = library.createBehaviour(label, 50, 400, 500, 120,
+                PMLBehaviourLibraryTest.SCREEN_WIDTH, PMLBehaviourLibraryTest.SCREEN_HEIGHT, 3);
+        PMLBehaviourLibraryTest.assertSameBehaviour(parsed, created, 0);
+        PMLBehaviourLibraryTest.assertSameLikelihoods(parsed, created, new Random(5), 0);
+    }
+
+
+    public void testInteractorUsesLibrary() throws Exception {
+        HeadlessProbInteractor interactor = new HeadlessProbInteractor(100, 300, 400, 150,
+                PMLBehaviourLibraryTest.SCREEN_WIDTH, PMLBehaviourLibraryTest.SCREEN_HEIGHT, 2.625f);
+        interactor.getCore().setBehaviourLibrary(PMLAssetLibrary.open(this.file));
+        String statement = PMLBehaviourLibraryTest.STATEMENTS.get(1);
+
+        // Both the label and the full statement refer to the library behaviour:
+        ProbBehaviourTouch parsed = new PMLParserTouchImpl(2.625f).parse(statement, 100, 300, 400, 150,
+                PMLBehaviourLibraryTest.SCREEN_WIDTH, PMLBehaviourLibraryTest.SCREEN_HEIGHT);
+        assertTrue(interactor.getCore().indexOfLibraryBehaviour(statement) >= 0);
+        PMLBehaviourLibraryTest.assertSameBehaviour(parsed,
+                interactor.addBehaviour(PMLParserTouchImpl.parseLabel(statement), null), 1e-9);
+        PMLBehaviourLibraryTest.assertSameBehaviour(parsed, interactor.addBehaviour(statement, null), 1e-9);
+    }
+
+
+    private byte[] readFile() throws Exception {
+        FileInputStream in = new FileInputStream(this.file);
+        try {
+            byte[] bytes = new byte[(int) this.file.length()];
+            int read = 0;
+            while (read < bytes.length)
+                read += in.read(bytes, read, bytes.length - read);
+            return bytes;
+        } finally {
+            in.close();
+        }
+    }
+
+
+    /**
+     * Returns the flags of the behaviour record with the given index (see the format of PMLAssetLibrary).
+     */
+    private static int getFlags(ByteBuffer bytes, int index) {
+        int position = bytes.getInt(PMLAssetLibrary.HEADER_SIZE + index * PMLAssetLibrary.INDEX_ENTRY_SIZE);
+        position += 2 + bytes.getShort(position);
+        position += 2 + bytes.getShort(position);
+        return bytes.get(position);
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.test;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import be.ac.ulg.montefiore.run.jahmm.Hmm;
+import be.ac.ulg.montefiore.run.jahmm.io.FileFormatException;
+import de.lmu.ifi.medien.probui.behaviours.ProbBehaviourTouch;
+import de.lmu.ifi.medien.probui.hmm.ObservationVectorTouch;
+import de.lmu.ifi.medien.probui.hmm.OpdfTouchGaussian;
+import de.lmu.ifi.medien.probui.observations.ProbObservationFactory;
+import de.lmu.ifi.medien.probui.observations.ProbObservationTouch;
+import de.lmu.ifi.medien.probui.pml.PMLBehaviourLibrary;
+import de.lmu.ifi.medien.probui.pml.PMLBehaviourLibraryWriter;
+import de.lmu.ifi.medien.probui.pml.PMLParserTouchImpl;
+import de.lmu.ifi.medien.probui.pml.PMLRulePattern;
+
+/**
+ * Writes parsed behaviours to a memory-mapped library and checks that the decoded behaviours
+ * have the same models, sequence rules and likelihoods as the parsed ones.
+ */
+public class PMLBehaviourLibraryTest extends TestCase {
+
+
+    /**
+     * Behaviours with all parts of the format: relative gestures, sizes, touch events, markers.
+     */
+    static final List<String> STATEMENTS = Arrays.asList(
+            "tap: Cd*u", "north: C->N", "corner: C->N->E", "relative: O->E", "relativeSized: O[w=40,h=40]->N[w=20]",
+            "sized: C[w=48,h=30]d->S[s=0.5]u", "back: C<->E.", "marked: C$->N", "zoom: C->Z");
+
+    static final int SCREEN_WIDTH = 1080;
+
+    static final int SCREEN_HEIGHT = 1920;
+
+    private static final double X = 140;
+    private static final double Y = 610;
+    private static final double WIDTH = 420;
+    private static final double HEIGHT = 260;
+    private static final float DENSITY = 2.625f;
+
+
+    private File file;
+
+
+    @Override
+    protected void setUp() throws Exception {
+        this.file = File.createTempFile("probui", ".pblb");
+        List<ProbBehaviourTouch> behaviours = new ArrayList<ProbBehaviourTouch>();
+        for (String statement : STATEMENTS)
+            behaviours.add(parse(statement, X, Y));
+        OutputStream out = new FileOutputStream(this.file);
+        try {
+            PMLBehaviourLibraryWriter.write(out, behaviours);
+        } finally {
+            out.close();
+        }
+    }
+
+
+    @Override
+    protected void tearDown() {
+        this.file.delete();
+    }
+
+
+    public void testRoundTrip() throws Exception {
+        PMLBehaviourLibrary library = PMLBehaviourLibrary.open(this.file);
+        assertEquals(STATEMENTS.size(), library.size());
+        Random random = new Random(7);
+        for (String statement : STATEMENTS) {
+            String label = PMLParserTouchImpl.parseLabel(statement);
+            assertEquals(label, library.getLabel(library.indexOf(label)));
+            ProbBehaviourTouch loaded = library.createBehaviour(label);
+            assertSameBehaviour(parse(statement, X, Y), loaded, 1e-12);
+            assertSameLikelihoods(parse(statement, X, Y), loaded, random, 1e-9);
+        }
+        assertNull(library.createBehaviour("unknown"));
+    }
+
+
+    public void testMovedToNewGeometry() throws Exception {
+        PMLBehaviourLibrary library = PMLBehaviourLibrary.open(this.file);
+        Random random = new Random(11);
+        for (String statement : STATEMENTS) {
+
+            // The library holds the behaviours for one layout, so moving them is like parsing them elsewhere:
+            double dx = 300 * random.nextDouble();
+            double dy = 900 * random.nextDouble();
+            ProbBehaviourTouch loaded = library.createBehaviour(PMLParserTouchImpl.parseLabel(statement));
+            loaded.move((float) (dx / SCREEN_WIDTH), (float) (dy / SCREEN_HEIGHT));
+            assertSameBehaviour(parse(statement, X + dx, Y + dy), loaded, 1e-6);
+            assertSameLikelihoods(parse(statement, X + dx, Y + dy), loaded, random, 1e-4);
+        }
+    }
+
+
+    public void testRelativeGestures() throws Exception {
+        PMLBehaviourLibrary library = PMLBehaviourLibrary.open(this.file);
+        for (String statement : new String[]{STATEMENTS.get(3), STATEMENTS.get(4)}) {
+            ProbBehaviourTouch loaded = library.createBehaviour(PMLParserTouchImpl.parseLabel(statement));
+            assertTrue(loaded.isRelativeGesture());
+
+            // A gesture far from the interactor moves the behaviour to its start as for the parsed behaviour:
+            ProbBehaviourTouch parsed = parse(statement, X, Y);
+            List<ProbObservationTouch> gesture = createGesture(0.8, 0.1, 0.05, 0);
+            assertEquals(lnProbability(parsed, gesture), lnProbability(loaded, gesture), 1e-9);
+            assertSameBehaviour(parsed, loaded, 1e-12);
+        }
+    }
+
+
+    public void testInvalidLibrary() throws Exception {
+        byte[] bytes = new byte[PMLBehaviourLibrary.HEADER_SIZE];
+        try {
+            new PMLBehaviourLibrary(ByteBuffer.wrap(bytes));
+            fail("Opened a library without magic number");
+        } catch (FileFormatException e) {
+            // expected
+        }
+        ByteBuffer truncated = ByteBuffer.wrap(bytes);
+        truncated.putInt(0, PMLBehaviourLibrary.MAGIC);
+        truncated.putShort(4, PMLBehaviourLibrary.VERSION);
+        truncated.putInt(8, 1000);
+        try {
+            new PMLBehaviourLibrary(truncated);
+            fail("Opened a truncated library");
+        } catch (FileFormatException e) {
+            // expected
+        }
+    }
+
+
+    private static ProbBehaviourTouch parse(String statement, double x, double y) {
+        return new PMLParserTouchImpl(DENSITY).parse(statement, x, y, WIDTH, HEIGHT, SCREEN_WIDTH, SCREEN_HEIGHT);
+    }
+
+
+    /**
+     * Compares the models, sequence rules and relative origins of the given behaviours.
+     *
+     * @param expected
+     * @param actual
+     * @param precision Relative precision of the means and covariances.
+     */
+    static void assertSameBehaviour(ProbBehaviourTouch expected, ProbBehaviourTouch actual, double precision) {
+
+        // 1. Model:
+        assertEquals(expected.getLabel(), actual.getLabel());
+        Hmm<ObservationVectorTouch> e = expected.getModel();
+        Hmm<ObservationVectorTouch> a = actual.getModel();
+        assertEquals(e.nbStates(), a.nbStates());
+        for (int i = 0; i < e.nbStates(); i++) {
+            assertEquals(e.getPi(i), a.getPi(i));
+            for (int j = 0; j < e.nbStates(); j++)
+                assertEquals(e.getAij(i, j), a.getAij(i, j));
+            OpdfTouchGaussian eo = (OpdfTouchGaussian) e.getOpdf(i);
+            OpdfTouchGaussian ao = (OpdfTouchGaussian) a.getOpdf(i);
+            for (int k = 0; k < 2; k++) {
+                assertEquals(eo.mean()[k], ao.mean()[k], precision * (1 + Math.abs(eo.mean()[k])));
+                for (int l = 0; l < 2; l++)
+                    assertEquals(eo.covariance()[k][l], ao.covariance()[k][l],
+                            precision * Math.abs(eo.covariance()[k][l]));
+            }
+        }
+
+        // 2. Sequence rule:
+        PMLRulePattern er = expected.getSequenceRule();
+        PMLRulePattern ar = actual.getSequenceRule();
+        assertTrue(Arrays.equals(er.pis, ar.pis));
+        assertTrue(Arrays.equals(er.ends, ar.ends));
+        assertTrue(Arrays.deepEquals(er.mT, ar.mT));
+        assertTrue(Arrays.equals(er.getStateMapping(), ar.getStateMapping()));
+        assertEquals(er.touchEventTokens.size(), ar.touchEventTokens.size());
+        for (int i = 0; i < er.touchEventTokens.size(); i++)
+            assertEquals(er.getTouchEventTokens(i).size(), ar.getTouchEventTokens(i).size());
+        assertEquals(er.getNotificationMarkers().size(), ar.getNotificationMarkers().size());
+        assertEquals(er.getStateReachedMarkers().size(), ar.getStateReachedMarkers().size());
+
+        // 3. Relative origin:
+        assertEquals(expected.isRelativeGesture(), actual.isRelativeGesture());
+        float[] eOrigin = expected.getRelativeOriginFakeState();
+        float[] aOrigin = actual.getRelativeOriginFakeState();
+        assertEquals(eOrigin == null, aOrigin == null);
+        if (eOrigin != null) {
+            assertEquals(eOrigin[0], aOrigin[0], 1e-5);
+            assertEquals(eOrigin[1], aOrigin[1], 1e-5);
+        }
+    }
+
+
+    /**
+     * Compares the likelihoods of gestures starting at random points (the behaviours are reset).
+     *
+     * @param expected
+     * @param actual
+     * @param random
+     * @param precision Relative precision (moved behaviours keep their means as floats).
+     */
+    static void assertSameLikelihoods(ProbBehaviourTouch expected, ProbBehaviourTouch actual, Random random,
+                                      double precision) throws Exception {
+        for (int g = 0; g < 5; g++) {
+            List<ProbObservationTouch> gesture = createGesture(random.nextDouble(), random.nextDouble(),
+                    0.1 * (random.nextDouble() - 0.5), 0.1 * (random.nextDouble() - 0.5));
+            double lnExpected = lnProbability(expected, gesture);
+            assertEquals(lnExpected, lnProbability(actual, gesture), precision * Math.max(1, Math.abs(lnExpected)));
+        }
+    }
+
+
+    static double lnProbability(ProbBehaviourTouch behaviour, List<ProbObservationTouch> gesture) throws Exception {
+        behaviour.reset();
+        for (ProbObservationTouch obs : gesture)
+            behaviour.observe(obs);
+        return behaviour.getRunningProbLn();
+    }
+
+
+    /**
+     * Creates a straight gesture (down, moves, up) from the given point (in normalised coordinates).
+     */
+    static List<ProbObservationTouch> createGesture(double x, double y, double dx, double dy) {
+        List<ProbObservationTouch> gesture = new ArrayList<ProbObservationTouch>();
+        int numEvents = 8;
+        for (int t = 0; t < numEvents; t++) {
+            int type = t == 0 ? ProbObservationTouch.TYPE_TOUCH_DOWN
+                    : t == numEvents - 1 ? ProbObservationTouch.TYPE_TOUCH_UP : ProbObservationTouch.TYPE_TOUCH_MOVE;
+            double ox = x + dx * t;
+            double oy = y + dy * t;
+            gesture.add(ProbObservationFactory.createTouchObservation(ox * SCREEN_WIDTH, oy * SCREEN_HEIGHT,
+                    ox, oy, 0, 0.01, 0.01, 1, type, 0, 1000 + 20 * t));
+        }
+        return gesture;
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.test;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import be.ac.ulg.montefiore.run.jahmm.Hmm;
+import de.lmu.ifi.medien.probui.behaviours.ProbBehaviourTouch;
+import de.lmu.ifi.medien.probui.hmm.ObservationVectorTouch;
+import de.lmu.ifi.medien.probui.hmm.OpdfTouchGaussian;
+import de.lmu.ifi.medien.probui.observations.ProbObservationFactory;
+import de.lmu.ifi.medien.probui.observations.ProbObservationTouch;
+import de.lmu.ifi.medien.probui.pml.PMLModelOptimiser;
+import de.lmu.ifi.medien.probui.pml.PMLParserTouchImpl;
+import de.lmu.ifi.medien.probui.pml.PMLRulePattern;
+
+/**
+ * Checks the state mappings of the optimiser, and that the behaviours created by the parser
+ * with and without optimising their state structure yield the same sequence likelihoods.
+ */
+public class PMLModelOptimiserTest extends TestCase {
+
+
+    private static final int NUM_MODELS = 20;
+
+    private static final int NUM_SEQUENCES = 20;
+
+    private static final int SEQUENCE_LENGTH = 10;
+
+    private static final int SURFACE_SIZE = 1000;
+
+    /**
+     * Statements with two-way transitions, whose parsed states can be merged.
+     */
+    private static final String[] MERGEABLE_STATEMENTS = {"a: N<->S<->N", "b: C<->N<->N<->C", "c: N<->C<->N",
+            "d: C<->E<->C", "e: W<->W<->W<->W"};
+
+    /**
+     * Statements whose parsed states cannot be merged.
+     */
+    private static final String[] FIXED_STATEMENTS = {"f: C->N->E", "g: Cd*u", "h: N<->S", "i: C->N->C->N"};
+
+
+    private Random random;
+
+
+    @Override
+    protected void setUp() {
+        this.random = new Random(42);
+    }
+
+
+    public void testIdentityIfNothingToOptimise() {
+        for (int m = 0; m < NUM_MODELS; m++) {
+            Model model = this.randomModel(1 + this.random.nextInt(6));
+            int[] mapping = PMLModelOptimiser.optimise(model.pis, model.transitions,
+                    model.means, model.variances, model.keys);
+            for (int i = 0; i < mapping.length; i++)
+                assertEquals(i, mapping[i]);
+        }
+    }
+
+
+    public void testMergedCopies() {
+        for (int m = 0; m < NUM_MODELS; m++) {
+
+            // Split the states of a model into equivalent copies, plus an unreachable state:
+            Model base = this.randomModel(1 + this.random.nextInt(6));
+            Model parsed = this.splitStates(base);
+
+            int[] mapping = PMLModelOptimiser.optimise(parsed.pis, parsed.transitions,
+                    parsed.means, parsed.variances, parsed.keys);
+            assertEquals(base.pis.length, PMLModelOptimiser.getNumStates(mapping));
+            assertEquals(-1, mapping[mapping.length - 1]);
+        }
+    }
+
+
+    public void testFixedStatesAreKept() {
+        for (int m = 0; m < NUM_MODELS; m++) {
+            Model base = this.randomModel(1 + this.random.nextInt(6));
+            Model parsed = this.splitStates(base);
+
+            // States without key must not be merged (e.g. they have a notification marker):
+            parsed.keys[0] = null;
+            int[] mapping = PMLModelOptimiser.optimise(parsed.pis, parsed.transitions,
+                    parsed.means, parsed.variances, parsed.keys);
+            for (int i = 1; i < mapping.length; i++)
+                assertTrue(mapping[i] == -1 || mapping[i] != mapping[0]);
+        }
+    }
+
+
+    public void testParsedMergesKeepLikelihoods() throws Exception {
+        for (String statement : MERGEABLE_STATEMENTS) {
+            ProbBehaviourTouch parsed = parse(statement, false);
+            ProbBehaviourTouch optimised = parse(statement, true);
+            assertTrue(statement, optimised.getModel().nbStates() < parsed.getModel().nbStates());
+            assertSameSequenceRule(parsed.getSequenceRule(), optimised.getSequenceRule());
+            this.assertSameLikelihoods(parsed.getModel(), optimised.getModel());
+        }
+    }
+
+
+    public void testParsedIdentity() throws Exception {
+        for (String statement : FIXED_STATEMENTS) {
+            Hmm<ObservationVectorTouch> parsed = parse(statement, false).getModel();
+            Hmm<ObservationVectorTouch> optimised = parse(statement, true).getModel();
+            assertEquals(statement, parsed.nbStates(), optimised.nbStates());
+            for (int i = 0; i < parsed.nbStates(); i++) {
+                assertEquals(parsed.getPi(i), optimised.getPi(i));
+                for (int j = 0; j < parsed.nbStates(); j++)
+                    assertEquals(parsed.getAij(i, j), optimised.getAij(i, j));
+            }
+        }
+    }
+
+
+    private static ProbBehaviourTouch parse(String statement, boolean optimiseStates) {
+        PMLParserTouchImpl parser = new PMLParserTouchImpl(2);
+        parser.setOptimiseStates(optimiseStates);
+        return parser.parse(statement, 400, 400, 200, 200, SURFACE_SIZE, SURFACE_SIZE);
+    }
+
+
+    /**
+     * Checks that each parsed state has the sequence rule properties of the model state it is mapped to.
+     */
+    private static void assertSameSequenceRule(PMLRulePattern parsed, PMLRulePattern optimised) {
+        int[] mapping = optimised.getStateMapping();
+        assertEquals(parsed.pis.length, mapping.length);
+        for (int i = 0; i < mapping.length; i++) {
+            assertEquals(i, parsed.getStateMapping()[i]);
+            if (mapping[i] < 0)
+                continue;
+            assertEquals(parsed.ends[i], optimised.ends[mapping[i]]);
+            assertTrue(parsed.pis[i] <= optimised.pis[mapping[i]]);
+            for (int j = 0; j < mapping.length; j++) {
+                if (mapping[j] >= 0 && parsed.mT[i][j] > 0)
+                    assertEquals(1, optimised.mT[mapping[i]][mapping[j]]);
+            }
+        }
+    }
+
+
+    /**
+     * Compares the likelihoods of random touch sequences around the states of the first model.
+     */
+    private void assertSameLikelihoods(Hmm<ObservationVectorTouch> expected, Hmm<ObservationVectorTouch> actual) {
+        for (int s = 0; s < NUM_SEQUENCES; s++) {
+            List<ObservationVectorTouch> sequence = new ArrayList<ObservationVectorTouch>();
+            for (int t = 0; t < SEQUENCE_LENGTH; t++) {
+                double[] mean = ((OpdfTouchGaussian) expected.getOpdf(this.random.nextInt(expected.nbStates()))).mean();
+                double x = mean[0] + this.random.nextGaussian() * 0.05;
+                double y = mean[1] + this.random.nextGaussian() * 0.05;
+                sequence.add(new ObservationVectorTouch(ProbObservationFactory.createTouchObservation(
+                        x * SURFACE_SIZE, y * SURFACE_SIZE, x, y, 0, 0.02, 0.02, 1,
+                        ProbObservationTouch.TYPE_TOUCH_MOVE, 0, t)));
+            }
+            double lnExpected = expected.lnProbability(sequence);
+            double lnActual = actual.lnProbability(sequence);
+            assertEquals(lnExpected, lnActual, 1e-9 * Math.max(1, Math.abs(lnExpected)));
+        }
+    }
+
+
+    /**
+     * Creates a random model. States have distinct Gaussians, so they are not equivalent.
+     *
+     * @param numStates
+     * @return
+     */
+    private Model randomModel(int numStates) {
+        Model model = new Model(numStates);
+        double piSum = 0;
+        for (int i = 0; i < numStates; i++) {
+            model.pis[i] = i == 0 || this.random.nextBoolean() ? this.random.nextDouble() + 0.1 : 0;
+            piSum += model.pis[i];
+            double rowSum = 0;
+            for (int j = 0; j < numStates; j++) {
+                // Keep a path through all states, so that each one is reachable:
+                boolean edge = j == i || j == i + 1 || this.random.nextBoolean();
+                model.transitions[i][j] = edge ? this.random.nextDouble() + 0.1 : 0;
+                rowSum += model.transitions[i][j];
+            }
+            for (int j = 0; j < numStates; j++)
+                model.transitions[i][j] /= rowSum;
+            model.means[i] = new double[]{i * 100 + this.random.nextDouble() * 50, this.random.nextDouble() * 500};
+            model.variances[i] = new double[]{500 + this.random.nextDouble() * 1000, 500 + this.random.nextDouble() * 1000};
+            model.keys[i] = "" + this.random.nextBoolean();
+        }
+        for (int i = 0; i < numStates; i++)
+            model.pis[i] /= piSum;
+        return model;
+    }
+
+
+    /**
+     * Replaces each state by 1-3 copies with the same Gaussian and key. Each copy has the same total
+     * transition probability into the copies of each state, but split differently among them.
+     * Adds an unreachable state at the end.
+     *
+     * @param base
+     * @return
+     */
+    private Model splitStates(Model base) {
+
+        int numBase = base.pis.length;
+        List<Integer> origins = new ArrayList<Integer>();
+        for (int i = 0; i < numBase; i++) {
+            int copies = 1 + this.random.nextInt(3);
+            for (int c = 0; c < copies; c++)
+                origins.add(i);
+        }
+        int numStates = origins.size() + 1;
+
+        Model model = new Model(numStates);
+        for (int k = 0; k < origins.size(); k++) {
+            int i = origins.get(k);
+            model.means[k] = base.means[i];
+            model.variances[k] = base.variances[i];
+            model.keys[k] = base.keys[i];
+        }
+        splitWeights(base.pis, origins, model.pis);
+        for (int k = 0; k < origins.size(); k++)
+            splitWeights(base.transitions[origins.get(k)], origins, model.transitions[k]);
+
+        // Unreachable state (only transitions out of it):
+        int u = numStates - 1;
+        model.means[u] = new double[]{-1000, -1000};
+        model.variances[u] = new double[]{100, 100};
+        model.keys[u] = "unreachable";
+        for (int j = 0; j < numStates; j++)
+            model.transitions[u][j] = 1.0 / numStates;
+        return model;
+    }
+
+
+    /**
+     * Splits the weight of each base state randomly among its copies.
+     */
+    private void splitWeights(double[] baseWeights, List<Integer> origins, double[] weights) {
+        for (int i = 0; i < baseWeights.length; i++) {
+            List<Integer> copies = new ArrayList<Integer>();
+            for (int k = 0; k < origins.size(); k++) {
+                if (origins.get(k) == i)
+                    copies.add(k);
+            }
+            double[] parts = new double[copies.size()];
+            double partSum = 0;
+            for (int c = 0; c < parts.length; c++) {
+                parts[c] = this.random.nextDouble() + 0.1;
+                partSum += parts[c];
+            }
+            for (int c = 0; c < parts.length; c++)
+                weights[copies.get(c)] = baseWeights[i] * parts[c] / partSum;
+        }
+    }
+
+
+    private static class Model {
+
+        double[] pis;
+        double[][] transitions;
+        double[][] means;
+        double[][] variances;
+        String[] keys;
+
+        Model(int numStates) {
+            this.pis = new double[numStates];
+            this.transitions = new double[numStates][numStates];
+            this.means = new double[numStates][];
+            this.variances = new double[numStates][];
+            this.keys = new String[numStates];
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.test;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.lmu.ifi.medien.probui.pml.PMLRuleListener;
+import de.lmu.ifi.medien.probui.pml.rules.PMLRule;
+import de.lmu.ifi.medien.probui.pml.rules.PMLRuleAND;
+import de.lmu.ifi.medien.probui.pml.rules.PMLRuleCompiler;
+import de.lmu.ifi.medien.probui.pml.rules.PMLRuleNOT;
+import de.lmu.ifi.medien.probui.pml.rules.PMLRuleOR;
+import de.lmu.ifi.medien.probui.pml.rules.PMLRuleProgram;
+
+/**
+ * Checks that a compiled rule program yields the same truth table as the evaluation of the rule tree.
+ */
+public class PMLRuleCompilerTest extends TestCase {
+
+
+    private List<PMLRule> nodes;
+
+    private List<LeafRule> leaves;
+
+
+    @Override
+    protected void setUp() {
+        this.nodes = new ArrayList<PMLRule>();
+        this.leaves = new ArrayList<LeafRule>();
+    }
+
+
+    public void testAndOrNot() {
+        // a & (b | !c)
+        PMLRule root = and(leaf(), or(leaf(), not(leaf())));
+        assertSameTruthTable(root);
+    }
+
+
+    public void testNestedChains() {
+        // (a | b | (c & d)) & !(e | f) & (a | e)
+        PMLRule a = leaf();
+        PMLRule e = leaf();
+        PMLRule root = and(or(a, leaf(), and(leaf(), leaf())), not(or(e, leaf())), or(a, e));
+        assertSameTruthTable(root);
+    }
+
+
+    public void testDoubleNegation() {
+        // !(!(a & !b) | !!c)
+        PMLRule root = not(or(not(and(leaf(), not(leaf()))), not(not(leaf()))));
+        assertSameTruthTable(root);
+    }
+
+
+    public void testSubruleWithListener() {
+        // a | (b & c) where the subrule (b & c) notifies a listener, so it is kept as a slot
+        PMLRule sub = and(leaf(), leaf());
+        final int[] notified = new int[1];
+        sub.addListener(new PMLRuleListener() {
+            @Override
+            public void onRuleSatisfied(String event, int subsequentCalls) {
+                notified[0]++;
+            }
+        });
+        PMLRule root = or(leaf(), sub);
+        assertSameTruthTable(root);
+    }
+
+
+    public void testLeafIsNotCompiled() {
+        assertNull(PMLRuleCompiler.compile(leaf()));
+    }
+
+
+    /**
+     * Evaluates the given rule for all assignments of its leaves,
+     * once as a tree and once as a compiled program, and compares the results.
+     *
+     * @param root
+     */
+    private void assertSameTruthTable(PMLRule root) {
+
+        PMLRuleProgram program = PMLRuleCompiler.compile(root);
+        assertNotNull(program);
+
+        int numLeaves = this.leaves.size();
+        for (int assignment = 0; assignment < (1 << numLeaves); assignment++) {
+
+            // 1. Evaluate the tree:
+            this.assign(assignment);
+            root.setProgram(null);
+            boolean expected = root.check();
+
+            // 2. Evaluate the compiled program:
+            this.assign(assignment);
+            root.setProgram(program);
+            boolean actual = root.check();
+
+            assertEquals("assignment " + Integer.toBinaryString(assignment) + " of " + program,
+                    expected, actual);
+        }
+    }
+
+
+    private void assign(int assignment) {
+        for (PMLRule node : this.nodes)
+            node.checkedThisUpdate = false;
+        for (int i = 0; i < this.leaves.size(); i++)
+            this.leaves.get(i).value = ((assignment >> i) & 1) == 1;
+    }
+
+
+    private PMLRule leaf() {
+        LeafRule leaf = new LeafRule("leaf" + this.leaves.size());
+        this.leaves.add(leaf);
+        this.nodes.add(leaf);
+        return leaf;
+    }
+
+
+    private PMLRule and(PMLRule... rules) {
+        PMLRuleAND rule = new PMLRuleAND("and" + this.nodes.size());
+        for (PMLRule r : rules)
+            rule.addRule(r);
+        this.nodes.add(rule);
+        return rule;
+    }
+
+
+    private PMLRule or(PMLRule... rules) {
+        PMLRuleOR rule = new PMLRuleOR("or" + this.nodes.size());
+        for (PMLRule r : rules)
+            rule.addRule(r);
+        this.nodes.add(rule);
+        return rule;
+    }
+
+
+    private PMLRule not(PMLRule r) {
+        PMLRuleNOT rule = new PMLRuleNOT("not" + this.nodes.size(), r);
+        this.nodes.add(rule);
+        return rule;
+    }
+
+
+    /**
+     * A rule with a fixed check result.
+     */
+    private static class LeafRule extends PMLRule {
+
+        boolean value;
+
+        public LeafRule(String label) {
+            super(label);
+        }
+
+        @Override
+        public boolean checkSpecific() {
+            return this.value;
+        }
+    }
+}
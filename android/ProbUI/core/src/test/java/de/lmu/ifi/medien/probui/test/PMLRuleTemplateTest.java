@@ -0,0 +1,126 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.test;
+
+import junit.framework.TestCase;
+
+import de.lmu.ifi.medien.probui.behaviours.ProbBehaviourTouch;
+import de.lmu.ifi.medien.probui.observations.ProbObservationFactory;
+import de.lmu.ifi.medien.probui.observations.ProbObservationTouch;
+import de.lmu.ifi.medien.probui.pml.PMLParserTouchImpl;
+import de.lmu.ifi.medien.probui.pml.PMLRuleTemplate;
+import de.lmu.ifi.medien.probui.pml.PMLRulebookImpl;
+import de.lmu.ifi.medien.probui.pml.rules.PMLRule;
+import de.lmu.ifi.medien.probui.pml.rules.PMLRuleBehaviour;
+import de.lmu.ifi.medien.probui.pml.rules.PMLRuleBehaviourQualifier;
+
+/**
+ * Checks that rulebooks sharing a cached rule template get rules of their own,
+ * and that statements that cannot be templates are parsed for each rulebook.
+ */
+public class PMLRuleTemplateTest extends TestCase {
+
+
+    private static final String STATEMENT = "activated: tap is most_likely or tap on complete";
+
+    private static final String REFERENCED_STATEMENT = "tapped: tap on complete";
+
+    /**
+     * A qualifier on a rule referenced by its label, which cannot be expressed as a template.
+     */
+    private static final String QUALIFIED_REFERENCE_STATEMENT = "quick: tapped in <500 ms";
+
+
+    public void testIndependentRuleState() throws Exception {
+
+        // Both rulebooks use the same template:
+        ProbBehaviourTouch tapA = createTap();
+        ProbBehaviourTouch tapB = createTap();
+        PMLRulebookImpl rulebookA = createRulebook(tapA, STATEMENT);
+        PMLRulebookImpl rulebookB = createRulebook(tapB, STATEMENT);
+        assertSame(PMLRuleTemplate.forStatement(STATEMENT), PMLRuleTemplate.forStatement(STATEMENT));
+        PMLRule ruleA = rulebookA.getStatementRules().get(0);
+        PMLRule ruleB = rulebookB.getStatementRules().get(0);
+        assertNotSame(ruleA, ruleB);
+
+        // Only the tap of the first rulebook is most likely (the taps are not complete, since they are not released):
+        tapA.setMostLikelyBehaviour(true);
+        tapB.setMostLikelyBehaviour(false);
+
+        // Updating one rulebook does not check the rule of the other:
+        rulebookA.update();
+        assertTrue(ruleA.checkedThisUpdate);
+        assertTrue(ruleA.currentCheckResult);
+        assertFalse(ruleB.checkedThisUpdate);
+        assertFalse(ruleB.currentCheckResult);
+
+        rulebookB.update();
+        assertTrue(ruleB.checkedThisUpdate);
+        assertFalse(ruleB.currentCheckResult);
+        assertTrue(ruleA.currentCheckResult);
+    }
+
+
+    public void testNonTemplatableStatement() throws Exception {
+
+        // A statement without a template is not cached:
+        assertNotNull(PMLRuleTemplate.forStatement(REFERENCED_STATEMENT));
+        assertNull(PMLRuleTemplate.forStatement(QUALIFIED_REFERENCE_STATEMENT));
+        assertNull(PMLRuleTemplate.forStatement(QUALIFIED_REFERENCE_STATEMENT));
+
+        // Instead, each rulebook parses it for its own rules:
+        ProbBehaviourTouch tapA = createTap();
+        ProbBehaviourTouch tapB = createTap();
+        PMLRulebookImpl rulebookA = createRulebook(tapA, REFERENCED_STATEMENT, QUALIFIED_REFERENCE_STATEMENT);
+        PMLRulebookImpl rulebookB = createRulebook(tapB, REFERENCED_STATEMENT, QUALIFIED_REFERENCE_STATEMENT);
+        PMLRule quickA = rulebookA.getStatementRules().get(1);
+        PMLRule quickB = rulebookB.getStatementRules().get(1);
+        assertNotSame(quickA, quickB);
+        assertEquals("quick", quickA.label);
+        assertSame(tapA, ((PMLRuleBehaviour) quickA).behaviour);
+        assertSame(tapB, ((PMLRuleBehaviour) quickB).behaviour);
+        assertSame(rulebookA.getStatementRules().get(0), ((PMLRuleBehaviourQualifier) quickA).getRule());
+        assertSame(rulebookB.getStatementRules().get(0), ((PMLRuleBehaviourQualifier) quickB).getRule());
+
+        rulebookA.update();
+        assertTrue(quickA.checkedThisUpdate);
+        assertFalse(quickB.checkedThisUpdate);
+    }
+
+
+    /**
+     * Creates a tap behaviour that has observed a touch down at its centre.
+     */
+    private static ProbBehaviourTouch createTap() throws Exception {
+        ProbBehaviourTouch tap = new PMLParserTouchImpl(2).parse("tap: Cd*u", 400, 400, 200, 200, 1000, 1000);
+        tap.observe(ProbObservationFactory.createTouchObservation(500, 500, 0.5, 0.5, 0, 0.02, 0.02, 1,
+                ProbObservationTouch.TYPE_TOUCH_DOWN, 0, 1000));
+        return tap;
+    }
+
+
+    private static PMLRulebookImpl createRulebook(ProbBehaviourTouch behaviour, String... statements) {
+        PMLRulebookImpl rulebook = new PMLRulebookImpl();
+        rulebook.addBehaviour(behaviour);
+        for (String statement : statements)
+            rulebook.addRule(statement, null);
+        return rulebook;
+    }
+}
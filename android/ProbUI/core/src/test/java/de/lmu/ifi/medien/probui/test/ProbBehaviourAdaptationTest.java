@@ -0,0 +1,156 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.test;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import be.ac.ulg.montefiore.run.jahmm.Hmm;
+import de.lmu.ifi.medien.probui.behaviours.ProbBehaviourTouch;
+import de.lmu.ifi.medien.probui.hmm.ObservationVectorTouch;
+import de.lmu.ifi.medien.probui.hmm.OpdfTouchGaussian;
+import de.lmu.ifi.medien.probui.observations.ProbObservationFactory;
+import de.lmu.ifi.medien.probui.observations.ProbObservationTouch;
+import de.lmu.ifi.medien.probui.pml.PMLParserTouchImpl;
+
+/**
+ * Adapts a behaviour to the same gesture many times and checks that it moves towards the gesture,
+ * while the paths that the gesture does not take keep finite likelihoods.
+ */
+public class ProbBehaviourAdaptationTest extends TestCase {
+
+
+    private static final int SURFACE_SIZE = 1000;
+
+    /**
+     * The interactor's bounding box in the coordinates of the model.
+     */
+    private static final double[] BOUNDS = {0.4, 0.4, 0.6, 0.6};
+
+    /**
+     * The centre, north and east states of the behaviour (in pixels).
+     */
+    private static final double[][] CENTRE = {{500, 500}};
+    private static final double[][] NORTH = {{500, 300}};
+    private static final double[][] CENTRE_NORTH_EAST = {{510, 500}, {510, 300}, {710, 300}};
+    private static final double[][] CENTRE_EAST = {{500, 500}, {700, 300}};
+
+
+    public void testFullRate() throws Exception {
+        ProbBehaviourTouch behaviour = adapt(1, 5);
+        assertValidProbabilities(behaviour.getModel());
+        assertOtherPathsPossible(behaviour);
+    }
+
+
+    public void testRepeatedAdaptation() throws Exception {
+        ProbBehaviourTouch behaviour = adapt(0.3, 100);
+        assertValidProbabilities(behaviour.getModel());
+        assertOtherPathsPossible(behaviour);
+
+        // The centre state has moved towards the gesture, but not out of the bounding box:
+        double[] mean = ((OpdfTouchGaussian) behaviour.getModel().getOpdf(0)).mean();
+        assertTrue(mean[0] > 0.5);
+        assertTrue(mean[0] <= BOUNDS[2]);
+    }
+
+
+    public void testInvalidRate() {
+        ProbBehaviourTouch behaviour = parse();
+        try {
+            behaviour.setAdaptationRate(1.5);
+            fail("Accepted an adaptation rate above 1");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+
+    private static ProbBehaviourTouch parse() {
+        return new PMLParserTouchImpl(2).parse("corner: C->N->E", 400, 400, 200, 200, SURFACE_SIZE, SURFACE_SIZE);
+    }
+
+
+    /**
+     * Adapts a new behaviour to the same centre-north-east gesture the given number of times.
+     */
+    private static ProbBehaviourTouch adapt(double rate, int numGestures) throws Exception {
+        ProbBehaviourTouch behaviour = parse();
+        behaviour.setAdaptationRate(rate);
+        for (int g = 0; g < numGestures; g++) {
+            observe(behaviour, CENTRE_NORTH_EAST);
+            assertTrue(behaviour.adapt(BOUNDS));
+        }
+        return behaviour;
+    }
+
+
+    private static void assertValidProbabilities(Hmm<ObservationVectorTouch> model) {
+        double min = PMLParserTouchImpl.LAPLACE_CORRECTION_FACTOR
+                / (1 + model.nbStates() * PMLParserTouchImpl.LAPLACE_CORRECTION_FACTOR);
+        double piSum = 0;
+        for (int i = 0; i < model.nbStates(); i++) {
+            assertTrue(model.getPi(i) >= min - 1e-12);
+            piSum += model.getPi(i);
+            double rowSum = 0;
+            for (int j = 0; j < model.nbStates(); j++) {
+                assertTrue(model.getAij(i, j) >= min - 1e-12);
+                rowSum += model.getAij(i, j);
+            }
+            assertEquals(1, rowSum, 1e-9);
+        }
+        assertEquals(1, piSum, 1e-9);
+    }
+
+
+    /**
+     * Gestures that stay in the start state, start in another state or skip a state are still possible.
+     */
+    private static void assertOtherPathsPossible(ProbBehaviourTouch behaviour) throws Exception {
+        for (double[][] path : new double[][][]{CENTRE, NORTH, CENTRE_EAST}) {
+            observe(behaviour, path);
+            double lnProbability = behaviour.getRunningProbLn();
+            assertFalse(Double.isInfinite(lnProbability));
+            assertFalse(Double.isNaN(lnProbability));
+        }
+    }
+
+
+    /**
+     * Observes a gesture with a few events at each of the given points (in pixels).
+     */
+    private static void observe(ProbBehaviourTouch behaviour, double[][] points) throws Exception {
+        behaviour.reset();
+        List<ProbObservationTouch> gesture = new ArrayList<ProbObservationTouch>();
+        int eventsPerPoint = 4;
+        int numEvents = points.length * eventsPerPoint;
+        for (int t = 0; t < numEvents; t++) {
+            int type = t == 0 ? ProbObservationTouch.TYPE_TOUCH_DOWN
+                    : t == numEvents - 1 ? ProbObservationTouch.TYPE_TOUCH_UP : ProbObservationTouch.TYPE_TOUCH_MOVE;
+            double[] point = points[t / eventsPerPoint];
+            gesture.add(ProbObservationFactory.createTouchObservation(point[0], point[1],
+                    point[0] / SURFACE_SIZE, point[1] / SURFACE_SIZE, 0, 0.01, 0.02, 0.5, type, 0, 16 * t));
+        }
+        for (ProbObservationTouch obs : gesture)
+            behaviour.observe(obs);
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.test;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import de.lmu.ifi.medien.probui.behaviours.ProbBehaviour;
+import de.lmu.ifi.medien.probui.behaviours.ProbBehaviourPrefilter;
+import de.lmu.ifi.medien.probui.behaviours.ProbBehaviourTouch;
+import de.lmu.ifi.medien.probui.observations.ProbObservationFactory;
+import de.lmu.ifi.medien.probui.observations.ProbObservationTouch;
+import de.lmu.ifi.medien.probui.pml.PMLParserTouchImpl;
+
+/**
+ * Checks that the posterior over behaviours evaluated with the prefilter matches the posterior
+ * of evaluating all behaviours, up to the tolerance of the prefilter.
+ */
+public class ProbBehaviourPrefilterTest extends TestCase {
+
+
+    private static final String[] STATEMENTS = {"north: C->N", "east: C->E", "south: C->S", "west: C->W",
+            "tap: Cd*u", "corner: C->N->E"};
+
+    private static final int SURFACE_SIZE = 1000;
+
+    /**
+     * Maximum difference of a posterior probability: Each pruned behaviour keeps a likelihood that is at most
+     * exp(LN_TOLERANCE) of the best one (times the prior), instead of its (even lower) exact likelihood.
+     */
+    private static final double TOLERANCE = STATEMENTS.length * Math.exp(ProbBehaviourPrefilter.LN_TOLERANCE);
+
+
+    public void testPosterior() throws Exception {
+        double[] prior = new double[STATEMENTS.length];
+        for (int i = 0; i < prior.length; i++)
+            prior[i] = 1.0 / prior.length;
+
+        Random random = new Random(1);
+        boolean pruned = false;
+        for (int g = 0; g < 20; g++) {
+            pruned |= compare(createGesture(random, g % 4), prior, null);
+        }
+        assertTrue("Nothing was pruned", pruned);
+    }
+
+
+    public void testPriorAtCheckTime() throws Exception {
+
+        // The south swipe is very unlikely at first, and thus pruned for swipes to the north:
+        double[] prior = new double[STATEMENTS.length];
+        for (int i = 0; i < prior.length; i++)
+            prior[i] = i == 2 ? 1e-20 : 1.0 / (prior.length - 1);
+
+        // Halfway through the gesture, the interactor changes its prior (in place) to favour it:
+        double[] changedPrior = new double[STATEMENTS.length];
+        for (int i = 0; i < changedPrior.length; i++)
+            changedPrior[i] = i == 2 ? 0.9 : 0.1 / (changedPrior.length - 1);
+
+        Random random = new Random(2);
+        for (int g = 0; g < 10; g++) {
+            compare(createGesture(random, 0), prior.clone(), changedPrior);
+        }
+    }
+
+
+    /**
+     * Lets new behaviours observe the gesture, once via the prefilter and once evaluating all of them,
+     * and compares the posteriors after each observation.
+     *
+     * @param gesture
+     * @param prior
+     * @param changedPrior If not null, copied into the prior halfway through the gesture.
+     * @return True if the prefilter skipped any behaviour.
+     */
+    private static boolean compare(List<ProbObservationTouch> gesture, double[] prior, double[] changedPrior)
+            throws Exception {
+        List<ProbBehaviour> filtered = createBehaviours();
+        List<ProbBehaviour> all = createBehaviours();
+        ProbBehaviourPrefilter prefilter = new ProbBehaviourPrefilter(filtered);
+        boolean pruned = false;
+        for (int t = 0; t < gesture.size(); t++) {
+            if (changedPrior != null && t == gesture.size() / 2)
+                System.arraycopy(changedPrior, 0, prior, 0, prior.length);
+            prefilter.observe(gesture.get(t), prior);
+            for (ProbBehaviour behaviour : all)
+                behaviour.observe(gesture.get(t));
+            pruned |= prefilter.getNumEvaluated() < STATEMENTS.length;
+
+            double[] expected = posterior(all, prior);
+            double[] actual = posterior(filtered, prior);
+            for (int i = 0; i < expected.length; i++)
+                assertEquals(expected[i], actual[i], TOLERANCE);
+            assertEquals(argMax(expected), argMax(actual));
+        }
+        return pruned;
+    }
+
+
+    private static double[] posterior(List<ProbBehaviour> behaviours, double[] prior) {
+        double[] lnJoint = new double[behaviours.size()];
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < lnJoint.length; i++) {
+            lnJoint[i] = Math.log(prior[i]) + ((ProbBehaviourTouch) behaviours.get(i)).getRunningProbLn();
+            max = Math.max(max, lnJoint[i]);
+        }
+        double sum = 0;
+        for (double value : lnJoint)
+            sum += Math.exp(value - max);
+        double[] posterior = new double[lnJoint.length];
+        for (int i = 0; i < lnJoint.length; i++)
+            posterior[i] = Math.exp(lnJoint[i] - max) / sum;
+        return posterior;
+    }
+
+
+    private static int argMax(double[] values) {
+        int max = 0;
+        for (int i = 1; i < values.length; i++)
+            if (values[i] > values[max])
+                max = i;
+        return max;
+    }
+
+
+    private static List<ProbBehaviour> createBehaviours() {
+        List<ProbBehaviour> behaviours = new ArrayList<ProbBehaviour>();
+        for (String statement : STATEMENTS)
+            behaviours.add(new PMLParserTouchImpl(2).parse(statement, 400, 400, 200, 200,
+                    SURFACE_SIZE, SURFACE_SIZE));
+        return behaviours;
+    }
+
+
+    /**
+     * Creates a noisy swipe (down, moves, up) from the centre of the behaviours towards
+     * the north, east, south or west (direction 0 to 3).
+     */
+    private static List<ProbObservationTouch> createGesture(Random random, int direction) {
+        List<ProbObservationTouch> gesture = new ArrayList<ProbObservationTouch>();
+        int numEvents = 10 + random.nextInt(20);
+        double dx = direction == 1 ? 1 : direction == 3 ? -1 : 0;
+        double dy = direction == 0 ? -1 : direction == 2 ? 1 : 0;
+        for (int t = 0; t < numEvents; t++) {
+            int type = t == 0 ? ProbObservationTouch.TYPE_TOUCH_DOWN
+                    : t == numEvents - 1 ? ProbObservationTouch.TYPE_TOUCH_UP : ProbObservationTouch.TYPE_TOUCH_MOVE;
+            double progress = 200.0 * t / (numEvents - 1);
+            double x = 500 + dx * progress + random.nextGaussian() * 10;
+            double y = 500 + dy * progress + random.nextGaussian() * 10;
+            gesture.add(ProbObservationFactory.createTouchObservation(x, y, x / SURFACE_SIZE, y / SURFACE_SIZE,
+                    random.nextDouble(), 0.01, 0.02, 0.5, type, 0, 16 * t));
+        }
+        return gesture;
+    }
+}
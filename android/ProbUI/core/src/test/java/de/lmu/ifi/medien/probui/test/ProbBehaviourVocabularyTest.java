@@ -0,0 +1,161 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.test;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import de.lmu.ifi.medien.probui.behaviours.ProbBehaviour;
+import de.lmu.ifi.medien.probui.behaviours.ProbBehaviourTouch;
+import de.lmu.ifi.medien.probui.behaviours.ProbBehaviourVocabulary;
+import de.lmu.ifi.medien.probui.gui.HeadlessProbInteractor;
+import de.lmu.ifi.medien.probui.observations.ProbObservationFactory;
+import de.lmu.ifi.medien.probui.observations.ProbObservationTouch;
+import de.lmu.ifi.medien.probui.pml.PMLParserTouchImpl;
+
+/**
+ * Checks that behaviours sharing their emissions in a vocabulary give the same likelihoods,
+ * state sequences and posteriors as behaviours that evaluate their models on their own.
+ */
+public class ProbBehaviourVocabularyTest extends TestCase {
+
+
+    private static final String[] STATEMENTS = {"north: C->N", "east: C->E", "south: C->S", "west: C->W",
+            "tap: Cd*u", "relative: O->E", "corner: C->N->E"};
+
+    private static final int SURFACE_SIZE = 1000;
+
+
+    public void testSharedEmissions() throws Exception {
+        List<ProbBehaviour> shared = createBehaviours();
+        List<ProbBehaviour> separate = createBehaviours();
+        ProbBehaviourVocabulary vocabulary = new ProbBehaviourVocabulary(shared);
+
+        // The swipes share their centre state:
+        int numStates = 0;
+        for (ProbBehaviour behaviour : shared)
+            numStates += ((ProbBehaviourTouch) behaviour).getModel().nbStates();
+        assertEquals(STATEMENTS.length, vocabulary.getNumBehaviours());
+        assertTrue(vocabulary.getNumEmissions() < numStates);
+
+        Random random = new Random(1);
+        for (int g = 0; g < 30; g++) {
+            for (int i = 0; i < shared.size(); i++) {
+                shared.get(i).reset();
+                separate.get(i).reset();
+                if (g % 7 == 3) {
+                    shared.get(i).move(0.01f, -0.005f);
+                    separate.get(i).move(0.01f, -0.005f);
+                }
+            }
+            for (ProbObservationTouch obs : createGesture(random)) {
+                for (int i = 0; i < shared.size(); i++) {
+                    ProbBehaviourTouch a = (ProbBehaviourTouch) shared.get(i);
+                    ProbBehaviourTouch b = (ProbBehaviourTouch) separate.get(i);
+                    a.observe(obs);
+                    b.observe(obs);
+                    assertEquals(b.getRunningProbLn(), a.getRunningProbLn());
+                    assertTrue(Arrays.equals(b.getMostLikelyStateSequence(0), a.getMostLikelyStateSequence(0)));
+                }
+            }
+        }
+
+        // Released behaviours evaluate their models directly again:
+        vocabulary.release();
+        assertEquals(0, vocabulary.getNumBehaviours());
+        List<ProbObservationTouch> gesture = createGesture(random);
+        for (int i = 0; i < shared.size(); i++) {
+            shared.get(i).reset();
+            separate.get(i).reset();
+            for (ProbObservationTouch obs : gesture) {
+                shared.get(i).observe(obs);
+                separate.get(i).observe(obs);
+            }
+            assertEquals(((ProbBehaviourTouch) separate.get(i)).getRunningProbLn(),
+                    ((ProbBehaviourTouch) shared.get(i)).getRunningProbLn());
+        }
+    }
+
+
+    public void testInteractorPosterior() throws Exception {
+
+        // The interactor sets up a vocabulary when it is ready, the baseline evaluates each behaviour on its own:
+        HeadlessProbInteractor shared = createInteractor();
+        HeadlessProbInteractor separate = createInteractor();
+        assertNotNull(shared.getCore().getVocabulary());
+        separate.getCore().getVocabulary().release();
+
+        Random random = new Random(2);
+        for (int g = 0; g < 20; g++) {
+            shared.getCore().resetObservations();
+            separate.getCore().resetObservations();
+            for (ProbObservationTouch obs : createGesture(random)) {
+                shared.getCore().observe(obs);
+                separate.getCore().observe(obs);
+                assertTrue(Arrays.equals(separate.getCore().getBehavioursPosterior(),
+                        shared.getCore().getBehavioursPosterior()));
+                assertEquals(separate.getCore().getIndexPosteriorMax(), shared.getCore().getIndexPosteriorMax());
+            }
+        }
+    }
+
+
+    private static List<ProbBehaviour> createBehaviours() {
+        List<ProbBehaviour> behaviours = new ArrayList<ProbBehaviour>();
+        for (String statement : STATEMENTS)
+            behaviours.add(new PMLParserTouchImpl(2).parse(statement, 400, 400, 200, 200,
+                    SURFACE_SIZE, SURFACE_SIZE));
+        return behaviours;
+    }
+
+
+    private static HeadlessProbInteractor createInteractor() {
+        HeadlessProbInteractor interactor = new HeadlessProbInteractor(400, 400, 200, 200,
+                SURFACE_SIZE, SURFACE_SIZE, 2);
+        for (String statement : STATEMENTS)
+            interactor.addBehaviour(statement, null);
+        interactor.getCore().setReady();
+        return interactor;
+    }
+
+
+    /**
+     * Creates a random walk (down, moves, up) around the centre of the behaviours.
+     */
+    private static List<ProbObservationTouch> createGesture(Random random) {
+        List<ProbObservationTouch> gesture = new ArrayList<ProbObservationTouch>();
+        int numEvents = 5 + random.nextInt(60);
+        double x = 500 + random.nextGaussian() * 60;
+        double y = 500 + random.nextGaussian() * 60;
+        for (int t = 0; t < numEvents; t++) {
+            int type = t == 0 ? ProbObservationTouch.TYPE_TOUCH_DOWN
+                    : t == numEvents - 1 ? ProbObservationTouch.TYPE_TOUCH_UP : ProbObservationTouch.TYPE_TOUCH_MOVE;
+            x += random.nextGaussian() * 10;
+            y += random.nextGaussian() * 10;
+            gesture.add(ProbObservationFactory.createTouchObservation(x, y, x / SURFACE_SIZE, y / SURFACE_SIZE,
+                    random.nextDouble(), 0.01, 0.02, 0.5, type, 0, 16 * t));
+        }
+        return gesture;
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.test;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import de.lmu.ifi.medien.probui.behaviours.ProbBehaviourTouch;
+import de.lmu.ifi.medien.probui.gui.HeadlessProbInteractor;
+import de.lmu.ifi.medien.probui.gui.ProbInteractorCoreBase;
+import de.lmu.ifi.medien.probui.observations.ProbObservationFactory;
+import de.lmu.ifi.medien.probui.observations.ProbObservationTouch;
+import de.lmu.ifi.medien.probui.pml.PMLBehaviourLibrary;
+import de.lmu.ifi.medien.probui.pml.PMLBehaviourLibraryWriter;
+import de.lmu.ifi.medien.probui.pml.PMLRuleListener;
+
+/**
+ * Cuts gestures midway, restores the reasoning state of the interactor into a fresh one
+ * and checks that both continue with the same posteriors and rule results.
+ */
+public class ProbInteractorStateTest extends TestCase {
+
+
+    private static final String[] BEHAVIOURS = {"tap: Cd*u", "north: C->N", "east: C->E", "corner: C->N->E",
+            "relative: O->E"};
+
+    private static final String RULE = "activated: tap on complete and tap is most_likely";
+
+    private static final int SURFACE_SIZE = 1000;
+
+    private static final int NUM_GESTURES = 50;
+
+
+    public void testContinueAfterRestore() throws Exception {
+        Random random = new Random(3);
+        for (int g = 0; g < NUM_GESTURES; g++) {
+            List<ProbObservationTouch> gesture = createGesture(random);
+            int cut = 1 + random.nextInt(gesture.size() - 1);
+
+            // 1. Observe the first part of the gesture:
+            List<Integer> originalCalls = new ArrayList<Integer>();
+            HeadlessProbInteractor original = createInteractor(originalCalls);
+            observe(original, gesture.subList(0, cut));
+
+            // 2. Restore its state into a fresh interactor:
+            List<Integer> restoredCalls = new ArrayList<Integer>();
+            HeadlessProbInteractor restored = createInteractor(restoredCalls);
+            restoreState(original.getCore(), restored.getCore());
+            assertSameState(original.getCore(), restored.getCore());
+
+            // 3. Continue the gesture on both:
+            originalCalls.clear();
+            for (ProbObservationTouch obs : gesture.subList(cut, gesture.size())) {
+                observe(original, Arrays.asList(obs));
+                observe(restored, Arrays.asList(obs));
+                assertSameState(original.getCore(), restored.getCore());
+            }
+            assertEquals(originalCalls, restoredCalls);
+        }
+    }
+
+
+    public void testRestoredBehaviours() throws Exception {
+        Random random = new Random(5);
+        List<ProbObservationTouch> gesture = createGesture(random);
+        int cut = gesture.size() / 2;
+        HeadlessProbInteractor original = createInteractor(new ArrayList<Integer>());
+        observe(original, gesture.subList(0, cut));
+
+        // The behaviours' models are restored from a library instead of parsing them again:
+        ByteArrayOutputStream library = new ByteArrayOutputStream();
+        PMLBehaviourLibraryWriter.write(library, original.getCore().getBehavioursTouch());
+        HeadlessProbInteractor restored = new HeadlessProbInteractor(100, 100, 300, 200,
+                SURFACE_SIZE, SURFACE_SIZE, 2);
+        restored.getCore().setRestoredBehaviours(new PMLBehaviourLibrary(ByteBuffer.wrap(library.toByteArray())));
+        for (String statement : BEHAVIOURS)
+            restored.addBehaviour(statement, null);
+        restored.getCore().addRule(RULE, null);
+        restored.getCore().finaliseBehaviourSetup(original.getCore().getBehavioursPrior().clone());
+        restoreState(original.getCore(), restored.getCore());
+
+        for (ProbObservationTouch obs : gesture.subList(cut, gesture.size())) {
+            observe(original, Arrays.asList(obs));
+            observe(restored, Arrays.asList(obs));
+            assertSameState(original.getCore(), restored.getCore());
+        }
+    }
+
+
+    public void testStateForOtherBehaviours() throws Exception {
+        HeadlessProbInteractor original = createInteractor(new ArrayList<Integer>());
+        observe(original, createGesture(new Random(7)).subList(0, 3));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        original.getCore().writeState(out);
+        out.flush();
+
+        HeadlessProbInteractor other = new HeadlessProbInteractor(100, 100, 300, 200, SURFACE_SIZE, SURFACE_SIZE, 2);
+        other.addBehaviour("west: C->W", null);
+        other.getCore().setReady();
+        try {
+            other.getCore().readState(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+            fail("Read a state for other behaviours");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+
+    private static HeadlessProbInteractor createInteractor(final List<Integer> calls) {
+        HeadlessProbInteractor interactor = new HeadlessProbInteractor(100, 100, 300, 200,
+                SURFACE_SIZE, SURFACE_SIZE, 2);
+        for (String statement : BEHAVIOURS)
+            interactor.addBehaviour(statement, null);
+        interactor.getCore().addRule(RULE, new PMLRuleListener() {
+            @Override
+            public void onRuleSatisfied(String event, int subsequentCalls) {
+                calls.add(subsequentCalls);
+            }
+        });
+        interactor.getCore().setReady();
+        return interactor;
+    }
+
+
+    private static void observe(HeadlessProbInteractor interactor, List<ProbObservationTouch> observations)
+            throws Exception {
+        for (ProbObservationTouch obs : observations) {
+            interactor.getCore().observe(obs);
+            interactor.getCore().updateRulebook();
+        }
+    }
+
+
+    private static void restoreState(ProbInteractorCoreBase from, ProbInteractorCoreBase to) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        from.writeState(out);
+        out.flush();
+        to.readState(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+
+    private static void assertSameState(ProbInteractorCoreBase expected, ProbInteractorCoreBase actual) {
+        assertTrue(Arrays.equals(expected.getBehavioursPosterior(), actual.getBehavioursPosterior()));
+        assertEquals(expected.getIndexPosteriorMax(), actual.getIndexPosteriorMax());
+        for (int i = 0; i < BEHAVIOURS.length; i++) {
+            ProbBehaviourTouch e = (ProbBehaviourTouch) expected.getBehaviour(i);
+            ProbBehaviourTouch a = (ProbBehaviourTouch) actual.getBehaviour(i);
+            assertTrue(Arrays.equals(e.getMostLikelyStateSequence(0), a.getMostLikelyStateSequence(0)));
+            assertEquals(e.getTimeTaken(), a.getTimeTaken());
+        }
+        assertEquals(expected.getRulebook().evaluate("activated"), actual.getRulebook().evaluate("activated"));
+    }
+
+
+    /**
+     * Creates a straight gesture with random start, direction and length on the interactor.
+     */
+    private static List<ProbObservationTouch> createGesture(Random random) {
+        List<ProbObservationTouch> gesture = new ArrayList<ProbObservationTouch>();
+        int numEvents = 4 + random.nextInt(40);
+        double x = 150 + random.nextDouble() * 200;
+        double y = 150 + random.nextDouble() * 100;
+        double vx = random.nextGaussian() * 8;
+        double vy = random.nextGaussian() * 8;
+        for (int t = 0; t < numEvents; t++) {
+            int type = t == 0 ? ProbObservationTouch.TYPE_TOUCH_DOWN
+                    : t == numEvents - 1 ? ProbObservationTouch.TYPE_TOUCH_UP : ProbObservationTouch.TYPE_TOUCH_MOVE;
+            x += vx;
+            y += vy;
+            gesture.add(ProbObservationFactory.createTouchObservation(x, y, x / SURFACE_SIZE, y / SURFACE_SIZE,
+                    0, 0.01, 0.02, 0.5, type, 0, 1000 + 16 * t));
+        }
+        return gesture;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.test;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import de.lmu.ifi.medien.probui.analysis.StaticProbUIAnalysis;
+import de.lmu.ifi.medien.probui.analysis.StaticProbUIAnalysisResult;
+import de.lmu.ifi.medien.probui.analysis.StaticProbUISnapshot;
+import de.lmu.ifi.medien.probui.gui.HeadlessProbInteractor;
+
+/**
+ * Checks that the Monte-Carlo analysis of an interface only depends on its seed,
+ * not on the executor or the number of parts the samples are split in.
+ */
+public class StaticProbUIAnalysisTest extends TestCase {
+
+
+    private static final int SURFACE_SIZE = 1000;
+
+    private static final int NUM_SAMPLES = 200;
+
+    private static final int SEQUENCE_LENGTH = 5;
+
+    private static final long SEED = 7;
+
+
+    public void testSameSeedSameResult() throws Exception {
+        StaticProbUISnapshot snapshot = createSnapshot();
+        StaticProbUIAnalysisResult expected = analyse(snapshot, SEED, null, 1);
+
+        // Some samples are confused, so the decisions are not trivially equal:
+        assertTrue(expected.getErrorRate() > 0);
+
+        assertSameResult(expected, analyse(snapshot, SEED, null, 1));
+        assertSameResult(expected, analyse(snapshot, SEED, null, 4));
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (int numParts : new int[]{1, 2, 3, 7, NUM_SAMPLES, 2 * NUM_SAMPLES}) {
+                assertSameResult(expected, analyse(snapshot, SEED, executor, numParts));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+
+    public void testDifferentSeed() throws Exception {
+        StaticProbUISnapshot snapshot = createSnapshot();
+        StaticProbUIAnalysisResult first = analyse(snapshot, SEED, null, 1);
+        StaticProbUIAnalysisResult second = analyse(snapshot, SEED + 1, null, 1);
+        assertFalse(Arrays.equals(first.getEntropies(), second.getEntropies()));
+    }
+
+
+    private static StaticProbUIAnalysisResult analyse(StaticProbUISnapshot snapshot, long seed,
+                                                      ExecutorService executor, int numParts) {
+        return StaticProbUIAnalysis.analyse(snapshot, NUM_SAMPLES, SEQUENCE_LENGTH, 0, 0.02, 0.02,
+                seed, executor, numParts);
+    }
+
+
+    private static void assertSameResult(StaticProbUIAnalysisResult expected, StaticProbUIAnalysisResult actual) {
+        assertEquals(expected.getNumSamples(), actual.getNumSamples());
+        for (int i = 0; i < expected.getNumSamples(); i++) {
+            assertEquals(expected.getTrueInteractor(i), actual.getTrueInteractor(i));
+            assertEquals(expected.getDecision(i), actual.getDecision(i));
+        }
+        assertTrue(Arrays.equals(expected.getEntropies(), actual.getEntropies()));
+        assertTrue(Arrays.deepEquals(expected.getConfusionMatrix(), actual.getConfusionMatrix()));
+    }
+
+
+    /**
+     * Creates three overlapping interactors with different behaviours.
+     */
+    private static StaticProbUISnapshot createSnapshot() {
+        List<HeadlessProbInteractor> interactors = new ArrayList<HeadlessProbInteractor>();
+        String[][] statements = {{"tap: Cd*u"}, {"tap: Cd*u", "swipe: C->E"}, {"north: C->N", "south: C->S"}};
+        for (int k = 0; k < statements.length; k++) {
+            HeadlessProbInteractor interactor = new HeadlessProbInteractor(300 + 60 * k, 400, 200, 200,
+                    SURFACE_SIZE, SURFACE_SIZE, 2);
+            for (String statement : statements[k])
+                interactor.addBehaviour(statement, null);
+            interactor.getCore().setReady();
+            interactors.add(interactor);
+        }
+        return new StaticProbUISnapshot(interactors);
+    }
+}
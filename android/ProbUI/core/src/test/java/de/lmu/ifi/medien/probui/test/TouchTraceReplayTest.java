@@ -0,0 +1,198 @@
+/*
+ProbUI - a probabilistic reinterpretation of bounding boxes
+designed to facilitate creating dynamic and adaptive mobile touch GUIs.
+Copyright (C) 2017 Daniel Buschek
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package de.lmu.ifi.medien.probui.test;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import de.lmu.ifi.medien.probui.gui.HeadlessProbInteractor;
+import de.lmu.ifi.medien.probui.gui.ProbInteractorCoreBase;
+import de.lmu.ifi.medien.probui.observations.ProbObservationFactory;
+import de.lmu.ifi.medien.probui.observations.ProbObservationTouch;
+import de.lmu.ifi.medien.probui.pml.PMLRuleListener;
+import de.lmu.ifi.medien.probui.system.ProbUIMediatorImpl;
+import de.lmu.ifi.medien.probui.system.TouchEventDispatcher;
+import de.lmu.ifi.medien.probui.system.TouchTraceReader;
+import de.lmu.ifi.medien.probui.system.TouchTraceRecorder;
+import de.lmu.ifi.medien.probui.system.TouchTraceReplay;
+import de.lmu.ifi.medien.probui.system.TouchTraceReplayResult;
+
+/**
+ * Replays taps on two headless buttons (on a plain JVM, without views).
+ */
+public class TouchTraceReplayTest extends TestCase {
+
+
+    private static final int SURFACE_SIZE = 1000;
+
+    private static final int NUM_TAPS = 10;
+
+    private static final long EVENT_INTERVAL = 20;
+
+
+    public void testDecisions() throws Exception {
+        List<HeadlessProbInteractor> interactors = createInteractors();
+        TouchTraceReplayResult result = new TouchTraceReplay(interactors).replay(createTaps());
+
+        assertEquals(3 * NUM_TAPS, result.getNumEvents());
+        assertEquals(NUM_TAPS, result.getNumDecisions());
+        for (int g = 0; g < NUM_TAPS; g++) {
+            assertEquals(-1, result.getDecision(3 * g));
+            assertEquals(g % 2, result.getDecision(3 * g + 2));
+        }
+        assertEquals(NUM_TAPS / 2, interactors.get(0).getNumDeterminations());
+        assertEquals(NUM_TAPS / 2, interactors.get(1).getNumDeterminations());
+    }
+
+
+    public void testDeterministic() throws Exception {
+        TouchTraceReplayResult first = new TouchTraceReplay(createInteractors()).replay(createTaps());
+        TouchTraceReplayResult second = new TouchTraceReplay(createInteractors()).replay(createTaps());
+        assertEquals(0, first.countDecisionDifferences(second));
+        assertEquals(0.0, first.getMaxPosteriorDifference(second));
+    }
+
+
+    public void testRealTimePacing() throws Exception {
+        List<List<ProbObservationTouch>> taps = createTaps().subList(0, 6);
+        TouchTraceReplay replay = new TouchTraceReplay(createInteractors());
+        replay.setPacing(TouchTraceReplay.PACING_REAL_TIME);
+        long start = System.nanoTime();
+        replay.replay(taps);
+        long elapsed = (System.nanoTime() - start) / 1000000;
+        assertTrue("Replay took " + elapsed + " ms", elapsed >= (taps.size() - 1) * EVENT_INTERVAL);
+    }
+
+
+    public void testRecordedTrace() throws Exception {
+        File directory = File.createTempFile("probui", "trace");
+        assertTrue(directory.delete() && directory.mkdir());
+        try {
+            // 1. Record the taps with the decisions of a replay:
+            List<HeadlessProbInteractor> interactors = createInteractors();
+            TouchTraceReplay replay = new TouchTraceReplay(interactors);
+            // (one buffer per tap, so that no event is dropped if the writer thread falls behind):
+            TouchTraceRecorder recorder = new TouchTraceRecorder(directory, "test", 4096, NUM_TAPS, 1 << 20, 2);
+            for (List<ProbObservationTouch> event : createTaps()) {
+                replay.replay(Collections.singletonList(event));
+                recorder.record(event, interactors, SURFACE_SIZE, SURFACE_SIZE);
+            }
+            recorder.close();
+            assertNull(recorder.getError());
+            assertEquals(0, recorder.getNumDroppedEvents());
+
+            // 2. Replay the trace with new interactors: Each decision is the most likely candidate
+            // recorded before it (the buttons are undetermined right after having been determined):
+            File[] files = directory.listFiles();
+            assertEquals(1, files.length);
+            TouchTraceReader reader = new TouchTraceReader(files[0]);
+            TouchTraceReplayResult result = new TouchTraceReplay(createInteractors()).replay(reader);
+            assertEquals(3 * NUM_TAPS, result.getNumEvents());
+            assertEquals(NUM_TAPS, result.getNumDecisions());
+            for (int i = 0; i < result.getNumEvents(); i++) {
+                if (result.getDecision(i) >= 0)
+                    assertEquals(result.getDecision(i), result.getRecordedMostLikely(i - 1));
+            }
+        } finally {
+            for (File file : directory.listFiles())
+                file.delete();
+            directory.delete();
+        }
+    }
+
+
+    public void testDispatcherFiltersSmallMoves() throws Exception {
+        List<HeadlessProbInteractor> interactors = createInteractors();
+        ProbUIMediatorImpl mediator = new ProbUIMediatorImpl();
+        for (HeadlessProbInteractor interactor : interactors)
+            mediator.addInteractor(interactor);
+        TouchEventDispatcher dispatcher = new TouchEventDispatcher(interactors, mediator);
+        List<ProbObservationTouch> previous = new ArrayList<ProbObservationTouch>();
+
+        // Touch down is always passed on, moves only if they moved far enough since the last one passed on:
+        assertTrue(dispatcher.dispatch(createEvent(0.25, ProbObservationTouch.TYPE_TOUCH_DOWN), previous, 1));
+        List<ProbObservationTouch> move = createEvent(0.27, ProbObservationTouch.TYPE_TOUCH_MOVE);
+        assertTrue(dispatcher.dispatch(move, previous, 1));
+        assertEquals(move, previous);
+        assertFalse(dispatcher.dispatch(createEvent(0.275, ProbObservationTouch.TYPE_TOUCH_MOVE), previous, 1));
+        assertEquals(move, previous);
+        assertTrue(dispatcher.dispatch(createEvent(0.3, ProbObservationTouch.TYPE_TOUCH_MOVE), previous, 1));
+        assertEquals(3, interactors.get(0).getCore().getBehaviour(0).getNumObservations());
+    }
+
+
+    /**
+     * Creates two buttons side by side, which claim determination when their tap is complete.
+     *
+     * @return
+     */
+    private static List<HeadlessProbInteractor> createInteractors() {
+        List<HeadlessProbInteractor> interactors = new ArrayList<HeadlessProbInteractor>();
+        for (int x : new int[]{100, 500}) {
+            HeadlessProbInteractor interactor = new HeadlessProbInteractor(x, 100, 300, 200,
+                    SURFACE_SIZE, SURFACE_SIZE, 2);
+            interactor.addBehaviour("tap: Cd*u", null);
+            final ProbInteractorCoreBase core = interactor.getCore();
+            core.addRule("activated: tap on complete", new PMLRuleListener() {
+                @Override
+                public void onRuleSatisfied(String event, int subsequentCalls) {
+                    core.claimDetermination();
+                }
+            });
+            core.setReady();
+            interactors.add(interactor);
+        }
+        return interactors;
+    }
+
+
+    private static List<ProbObservationTouch> createEvent(double x, int type) {
+        return Arrays.asList(ProbObservationFactory.createTouchObservation(x * SURFACE_SIZE, 0.2 * SURFACE_SIZE,
+                x, 0.2, 0, 0.02, 0.02, 1, type, 0, 1000));
+    }
+
+
+    /**
+     * Creates taps (down, move, up) alternating between the centres of the two buttons.
+     *
+     * @return The observations of each event.
+     */
+    private static List<List<ProbObservationTouch>> createTaps() {
+        List<List<ProbObservationTouch>> events = new ArrayList<List<ProbObservationTouch>>();
+        long timestamp = 1000;
+        for (int g = 0; g < NUM_TAPS; g++) {
+            double x = g % 2 == 0 ? 0.25 : 0.65;
+            for (int type : new int[]{ProbObservationTouch.TYPE_TOUCH_DOWN, ProbObservationTouch.TYPE_TOUCH_MOVE,
+                    ProbObservationTouch.TYPE_TOUCH_UP}) {
+                double dx = type == ProbObservationTouch.TYPE_TOUCH_DOWN ? 0 : 0.02;
+                events.add(Arrays.asList(ProbObservationFactory.createTouchObservation(
+                        (x + dx) * SURFACE_SIZE, 0.2 * SURFACE_SIZE, x + dx, 0.2,
+                        0, 0.02, 0.02, 1, type, 0, timestamp)));
+                timestamp += EVENT_INTERVAL;
+            }
+        }
+        return events;
+    }
+}